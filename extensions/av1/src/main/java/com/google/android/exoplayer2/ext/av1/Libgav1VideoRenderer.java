@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.ext.av1;
 
 import static com.google.android.exoplayer2.decoder.DecoderReuseEvaluation.REUSE_RESULT_YES_WITHOUT_RECONFIGURATION;
+import static java.lang.Runtime.getRuntime;
 
 import android.os.Handler;
 import android.view.Surface;
@@ -51,8 +52,6 @@ public class Libgav1VideoRenderer extends DecoderVideoRenderer {
   public static final int THREAD_COUNT_AUTODETECT = 0;
 
   private static final String TAG = "Libgav1VideoRenderer";
-  private static final int DEFAULT_NUM_OF_INPUT_BUFFERS = 4;
-  private static final int DEFAULT_NUM_OF_OUTPUT_BUFFERS = 4;
   /**
    * Default input buffer size in bytes, based on 720p resolution video compressed by a factor of
    * two.
@@ -94,8 +93,8 @@ public class Libgav1VideoRenderer extends DecoderVideoRenderer {
         eventListener,
         maxDroppedFramesToNotify,
         THREAD_COUNT_AUTODETECT,
-        DEFAULT_NUM_OF_INPUT_BUFFERS,
-        DEFAULT_NUM_OF_OUTPUT_BUFFERS);
+        /* numInputBuffers= */ getBufferCountForThreadCount(getRuntime().availableProcessors()),
+        /* numOutputBuffers= */ getBufferCountForThreadCount(getRuntime().availableProcessors()));
   }
 
   /**
@@ -111,8 +110,12 @@ public class Libgav1VideoRenderer extends DecoderVideoRenderer {
    * @param threads Number of threads libgav1 will use to decode. If {@link
    *     #THREAD_COUNT_AUTODETECT} is passed, then the number of threads to use is autodetected
    *     based on CPU capabilities.
-   * @param numInputBuffers Number of input buffers.
-   * @param numOutputBuffers Number of output buffers.
+   * @param numInputBuffers Number of input buffers. See {@link
+   *     DecoderVideoRenderer#getBufferCountForThreadCount(int)} for a value based on the number of
+   *     threads.
+   * @param numOutputBuffers Number of output buffers. See {@link
+   *     DecoderVideoRenderer#getBufferCountForThreadCount(int)} for a value based on the number of
+   *     threads.
    */
   public Libgav1VideoRenderer(
       long allowedJoiningTimeMs,
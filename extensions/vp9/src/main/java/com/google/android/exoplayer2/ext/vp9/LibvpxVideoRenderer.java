@@ -94,8 +94,8 @@ public class LibvpxVideoRenderer extends DecoderVideoRenderer {
         eventListener,
         maxDroppedFramesToNotify,
         getRuntime().availableProcessors(),
-        /* numInputBuffers= */ 4,
-        /* numOutputBuffers= */ 4);
+        /* numInputBuffers= */ getBufferCountForThreadCount(getRuntime().availableProcessors()),
+        /* numOutputBuffers= */ getBufferCountForThreadCount(getRuntime().availableProcessors()));
   }
 
   /**
@@ -109,8 +109,12 @@ public class LibvpxVideoRenderer extends DecoderVideoRenderer {
    * @param maxDroppedFramesToNotify The maximum number of frames that can be dropped between
    *     invocations of {@link VideoRendererEventListener#onDroppedFrames(int, long)}.
    * @param threads Number of threads libvpx will use to decode.
-   * @param numInputBuffers Number of input buffers.
-   * @param numOutputBuffers Number of output buffers.
+   * @param numInputBuffers Number of input buffers. See {@link
+   *     DecoderVideoRenderer#getBufferCountForThreadCount(int)} for a value based on the number of
+   *     threads.
+   * @param numOutputBuffers Number of output buffers. See {@link
+   *     DecoderVideoRenderer#getBufferCountForThreadCount(int)} for a value based on the number of
+   *     threads.
    */
   public LibvpxVideoRenderer(
       long allowedJoiningTimeMs,
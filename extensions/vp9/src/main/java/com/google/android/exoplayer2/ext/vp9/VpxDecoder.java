@@ -83,8 +83,11 @@ public final class VpxDecoder
     if (cryptoConfig != null && !VpxLibrary.vpxIsSecureDecodeSupported()) {
       throw new VpxDecoderException("Vpx decoder does not support secure decode.");
     }
+    // Row based multi-threading lets all threads work on each frame, rather than one thread per
+    // tile column.
     vpxDecContext =
-        vpxInit(/* disableLoopFilter= */ false, /* enableRowMultiThreadMode= */ false, threads);
+        vpxInit(
+            /* disableLoopFilter= */ false, /* enableRowMultiThreadMode= */ threads > 1, threads);
     if (vpxDecContext == 0) {
       throw new VpxDecoderException("Failed to initialize decoder");
     }
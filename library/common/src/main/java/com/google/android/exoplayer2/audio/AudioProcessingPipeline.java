@@ -65,6 +65,12 @@ import java.util.List;
  *       #getOutput() output} in the new configuration.
  * </ul>
  *
+ * <p>A {@link BaseAudioProcessor} that {@linkplain BaseAudioProcessor#canProcessInPlace() can
+ * process in place} and follows a {@link BaseAudioProcessor} that {@linkplain
+ * BaseAudioProcessor#canOutputBeOverwritten() allows its output to be overwritten} writes its
+ * output over the output of the previous processor, rather than copying it to a buffer of its own.
+ * The previous processor doesn't process more input until that output has been consumed.
+ *
  * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
  *     contains the same ExoPlayer code). See <a
  *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
@@ -86,6 +92,12 @@ public final class AudioProcessingPipeline {
    * as {@link #activeAudioProcessors}.
    */
   private ByteBuffer[] outputBuffers;
+  /**
+   * Whether the {@link #activeAudioProcessors} at each index may write their output over the output
+   * of the previous processor. This has the same number of elements as {@link
+   * #activeAudioProcessors}.
+   */
+  private boolean[] processesInPlace;
   /** The {@link AudioFormat} currently being output by the pipeline. */
   private AudioFormat outputAudioFormat;
   /** The {@link AudioFormat} that will be output following a {@link #flush()}. */
@@ -102,6 +114,7 @@ public final class AudioProcessingPipeline {
     this.audioProcessors = audioProcessors;
     activeAudioProcessors = new ArrayList<>();
     outputBuffers = new ByteBuffer[0];
+    processesInPlace = new boolean[0];
     outputAudioFormat = AudioFormat.NOT_SET;
     pendingOutputAudioFormat = AudioFormat.NOT_SET;
     inputEnded = false;
@@ -165,8 +178,19 @@ public final class AudioProcessingPipeline {
     }
 
     outputBuffers = new ByteBuffer[activeAudioProcessors.size()];
+    processesInPlace = new boolean[activeAudioProcessors.size()];
     for (int i = 0; i <= getFinalOutputBufferIndex(); i++) {
-      outputBuffers[i] = activeAudioProcessors.get(i).getOutput();
+      AudioProcessor audioProcessor = activeAudioProcessors.get(i);
+      outputBuffers[i] = audioProcessor.getOutput();
+      if (audioProcessor instanceof BaseAudioProcessor) {
+        // The input of the first processor belongs to the caller, and the output of other
+        // processors may only be overwritten if they allow it.
+        processesInPlace[i] =
+            i > 0
+                && canOutputBeOverwritten(activeAudioProcessors.get(i - 1))
+                && ((BaseAudioProcessor) audioProcessor).canProcessInPlace();
+        ((BaseAudioProcessor) audioProcessor).setInputBufferWritable(processesInPlace[i]);
+      }
     }
   }
 
@@ -264,8 +288,12 @@ public final class AudioProcessingPipeline {
       AudioProcessor audioProcessor = audioProcessors.get(i);
       audioProcessor.flush();
       audioProcessor.reset();
+      if (audioProcessor instanceof BaseAudioProcessor) {
+        ((BaseAudioProcessor) audioProcessor).setInputBufferWritable(false);
+      }
     }
     outputBuffers = new ByteBuffer[0];
+    processesInPlace = new boolean[0];
     outputAudioFormat = AudioFormat.NOT_SET;
     pendingOutputAudioFormat = AudioFormat.NOT_SET;
     inputEnded = false;
@@ -308,7 +336,7 @@ public final class AudioProcessingPipeline {
     while (progressMade) {
       progressMade = false;
       for (int index = 0; index <= getFinalOutputBufferIndex(); index++) {
-        if (outputBuffers[index].hasRemaining()) {
+        if (hasPendingOutput(index)) {
           // Processor at this index has output that has not been consumed. Do not queue input.
           continue;
         }
@@ -335,6 +363,27 @@ public final class AudioProcessingPipeline {
     }
   }
 
+  /**
+   * Returns whether the output of the processor at {@code index} hasn't been consumed, either
+   * directly or by a following processor that wrote its output over it.
+   */
+  private boolean hasPendingOutput(int index) {
+    for (int i = index; i <= getFinalOutputBufferIndex(); i++) {
+      if (outputBuffers[i].hasRemaining()) {
+        return true;
+      }
+      if (i == getFinalOutputBufferIndex() || !processesInPlace[i + 1]) {
+        return false;
+      }
+    }
+    return false;
+  }
+
+  private static boolean canOutputBeOverwritten(AudioProcessor audioProcessor) {
+    return audioProcessor instanceof BaseAudioProcessor
+        && ((BaseAudioProcessor) audioProcessor).canOutputBeOverwritten();
+  }
+
   private int getFinalOutputBufferIndex() {
     return outputBuffers.length - 1;
   }
@@ -43,6 +43,8 @@ public abstract class BaseAudioProcessor implements AudioProcessor {
   private ByteBuffer buffer;
   private ByteBuffer outputBuffer;
   private boolean inputEnded;
+  private boolean inputBufferWritable;
+  private boolean outputOverwritesInput;
 
   public BaseAudioProcessor() {
     buffer = EMPTY_BUFFER;
@@ -120,14 +122,64 @@ public abstract class BaseAudioProcessor implements AudioProcessor {
       buffer.clear();
     }
     outputBuffer = buffer;
+    outputOverwritesInput = false;
     return buffer;
   }
 
+  /**
+   * Like {@link #replaceOutputBuffer(int)}, but returns a buffer that overwrites the remaining
+   * bytes of {@code inputBuffer} if the processor {@link #canProcessInPlace() can process in place}
+   * and the caller has allowed {@code inputBuffer} to be overwritten, for example because it's the
+   * output of a previous processor in an {@link AudioProcessingPipeline}. Otherwise, or if {@code
+   * size} is larger than the number of remaining input bytes, the processor's own buffer is
+   * returned.
+   *
+   * <p>Callers must read each input byte before writing output over it, and must only use absolute
+   * reads from {@code inputBuffer} while writing.
+   */
+  protected final ByteBuffer replaceOutputBuffer(ByteBuffer inputBuffer, int size) {
+    if (!inputBufferWritable || size > inputBuffer.remaining()) {
+      return replaceOutputBuffer(size);
+    }
+    outputBuffer = inputBuffer.slice().order(ByteOrder.nativeOrder());
+    outputOverwritesInput = true;
+    return outputBuffer;
+  }
+
+  /**
+   * Returns whether the buffer last returned by {@link #replaceOutputBuffer(ByteBuffer, int)}
+   * overwrites the input, in which case each input byte must be read before output is written over
+   * it.
+   */
+  protected final boolean isOutputOverwritingInput() {
+    return outputOverwritesInput;
+  }
+
   /** Returns whether the current output buffer has any data remaining. */
   protected final boolean hasPendingOutput() {
     return outputBuffer.hasRemaining();
   }
 
+  /**
+   * Returns whether the processor can write its output over its input in the current configuration,
+   * using {@link #replaceOutputBuffer(ByteBuffer, int)}. This is the case if the output for each
+   * input frame is no larger than the frame, so that output is never written over input that hasn't
+   * been read yet. Called after the processor is flushed. The default implementation returns false.
+   */
+  protected boolean canProcessInPlace() {
+    return false;
+  }
+
+  /**
+   * Returns whether the next processor in an {@link AudioProcessingPipeline} may write its output
+   * over the output of this processor once it has read it. Processors that return true must only
+   * write their output through {@link #replaceOutputBuffer}, and must not read it back after it's
+   * been returned by {@link #getOutput()}. The default implementation returns false.
+   */
+  protected boolean canOutputBeOverwritten() {
+    return false;
+  }
+
   /** Called when the processor is configured for a new input format. */
   @CanIgnoreReturnValue
   protected AudioFormat onConfigure(AudioFormat inputAudioFormat)
@@ -149,4 +201,12 @@ public abstract class BaseAudioProcessor implements AudioProcessor {
   protected void onReset() {
     // Do nothing.
   }
+
+  /**
+   * Sets whether buffers queued to the processor may be overwritten with its output. Only takes
+   * effect if the processor {@link #canProcessInPlace() can process in place}.
+   */
+  /* package */ final void setInputBufferWritable(boolean inputBufferWritable) {
+    this.inputBufferWritable = inputBufferWritable;
+  }
 }
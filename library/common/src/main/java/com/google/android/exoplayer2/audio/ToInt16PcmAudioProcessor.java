@@ -89,8 +89,9 @@ public final class ToInt16PcmAudioProcessor extends BaseAudioProcessor {
         throw new IllegalStateException();
     }
 
-    // Resample the little endian input and update the input/output buffers.
-    ByteBuffer buffer = replaceOutputBuffer(resampledSize);
+    // Resample the little endian input and update the input/output buffers. Apart from 8 bit input,
+    // the output is never larger than the input, so it can be written over the input.
+    ByteBuffer buffer = replaceOutputBuffer(inputBuffer, resampledSize);
     switch (inputAudioFormat.encoding) {
       case C.ENCODING_PCM_8BIT:
         // 8 -> 16 bit resampling. Shift each byte from [0, 256) to [-128, 128) and scale up.
@@ -102,8 +103,9 @@ public final class ToInt16PcmAudioProcessor extends BaseAudioProcessor {
       case C.ENCODING_PCM_16BIT_BIG_ENDIAN:
         // Big endian to little endian resampling. Swap the byte order.
         for (int i = position; i < limit; i += 2) {
+          byte firstByte = inputBuffer.get(i);
           buffer.put(inputBuffer.get(i + 1));
-          buffer.put(inputBuffer.get(i));
+          buffer.put(firstByte);
         }
         break;
       case C.ENCODING_PCM_24BIT:
@@ -143,4 +145,14 @@ public final class ToInt16PcmAudioProcessor extends BaseAudioProcessor {
     inputBuffer.position(inputBuffer.limit());
     buffer.flip();
   }
+
+  @Override
+  protected boolean canOutputBeOverwritten() {
+    return true;
+  }
+
+  @Override
+  protected boolean canProcessInPlace() {
+    return inputAudioFormat.encoding != C.ENCODING_PCM_8BIT;
+  }
 }
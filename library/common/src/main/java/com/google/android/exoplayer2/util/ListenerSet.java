@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.util;
 
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import static com.google.android.exoplayer2.util.Assertions.checkState;
 
 import android.os.Looper;
@@ -23,8 +24,8 @@ import androidx.annotation.CheckResult;
 import androidx.annotation.GuardedBy;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
+import com.google.common.collect.ImmutableList;
 import java.util.ArrayDeque;
-import java.util.concurrent.CopyOnWriteArraySet;
 import org.checkerframework.checker.nullness.qual.NonNull;
 
 /**
@@ -39,6 +40,10 @@ import org.checkerframework.checker.nullness.qual.NonNull;
  * <p>All methods must be called on the {@link Looper} passed to the constructor unless indicated
  * otherwise.
  *
+ * <p>Queuing and sending events doesn't allocate memory beyond the {@link Event} itself. The queued
+ * events are recycled once they have been sent, and the listeners an event is sent to are captured
+ * as an immutable snapshot that is only replaced when listeners are added or removed.
+ *
  * @param <T> The listener type.
  * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
  *     contains the same ExoPlayer code). See <a
@@ -79,12 +84,16 @@ public final class ListenerSet<T extends @NonNull Object> {
 
   private static final int MSG_ITERATION_FINISHED = 0;
 
+  /** The maximum number of recycled {@link QueuedEvent} instances kept for reuse. */
+  private static final int MAX_RECYCLED_EVENTS = 32;
+
   private final Clock clock;
   private final HandlerWrapper handler;
   private final IterationFinishedEvent<T> iterationFinishedEvent;
-  private final CopyOnWriteArraySet<ListenerHolder<T>> listeners;
-  private final ArrayDeque<Runnable> flushingEvents;
-  private final ArrayDeque<Runnable> queuedEvents;
+  private final ListenerHolderList<T> listeners;
+  private final ArrayDeque<QueuedEvent<T>> flushingEvents;
+  private final ArrayDeque<QueuedEvent<T>> queuedEvents;
+  private final ArrayDeque<QueuedEvent<T>> recycledEvents;
   private final Object releasedLock;
 
   @GuardedBy("releasedLock")
@@ -103,7 +112,7 @@ public final class ListenerSet<T extends @NonNull Object> {
    */
   public ListenerSet(Looper looper, Clock clock, IterationFinishedEvent<T> iterationFinishedEvent) {
     this(
-        /* listeners= */ new CopyOnWriteArraySet<>(),
+        /* listeners= */ new ListenerHolderList<>(),
         looper,
         clock,
         iterationFinishedEvent,
@@ -111,7 +120,7 @@ public final class ListenerSet<T extends @NonNull Object> {
   }
 
   private ListenerSet(
-      CopyOnWriteArraySet<ListenerHolder<T>> listeners,
+      ListenerHolderList<T> listeners,
       Looper looper,
       Clock clock,
       IterationFinishedEvent<T> iterationFinishedEvent,
@@ -122,6 +131,7 @@ public final class ListenerSet<T extends @NonNull Object> {
     releasedLock = new Object();
     flushingEvents = new ArrayDeque<>();
     queuedEvents = new ArrayDeque<>();
+    recycledEvents = new ArrayDeque<>();
     // It's safe to use "this" because we don't send a message before exiting the constructor.
     @SuppressWarnings("nullness:methodref.receiver.bound")
     HandlerWrapper handler = clock.createHandler(looper, this::handleMessage);
@@ -190,7 +200,9 @@ public final class ListenerSet<T extends @NonNull Object> {
    */
   public void remove(T listener) {
     verifyCurrentThread();
-    for (ListenerHolder<T> listenerHolder : listeners) {
+    ImmutableList<ListenerHolder<T>> listenerSnapshot = listeners.get();
+    for (int i = 0; i < listenerSnapshot.size(); i++) {
+      ListenerHolder<T> listenerHolder = listenerSnapshot.get(i);
       if (listenerHolder.listener.equals(listener)) {
         listenerHolder.release(iterationFinishedEvent);
         listeners.remove(listenerHolder);
@@ -207,7 +219,7 @@ public final class ListenerSet<T extends @NonNull Object> {
   /** Returns the number of added listeners. */
   public int size() {
     verifyCurrentThread();
-    return listeners.size();
+    return listeners.get().size();
   }
 
   /**
@@ -219,13 +231,12 @@ public final class ListenerSet<T extends @NonNull Object> {
    */
   public void queueEvent(int eventFlag, Event<T> event) {
     verifyCurrentThread();
-    CopyOnWriteArraySet<ListenerHolder<T>> listenerSnapshot = new CopyOnWriteArraySet<>(listeners);
-    queuedEvents.add(
-        () -> {
-          for (ListenerHolder<T> holder : listenerSnapshot) {
-            holder.invoke(eventFlag, event);
-          }
-        });
+    @Nullable QueuedEvent<T> queuedEvent = recycledEvents.pollFirst();
+    if (queuedEvent == null) {
+      queuedEvent = new QueuedEvent<>();
+    }
+    queuedEvent.set(eventFlag, event, listeners.get());
+    queuedEvents.add(queuedEvent);
   }
 
   /** Notifies listeners of events previously enqueued with {@link #queueEvent(int, Event)}. */
@@ -238,15 +249,20 @@ public final class ListenerSet<T extends @NonNull Object> {
       handler.sendMessageAtFrontOfQueue(handler.obtainMessage(MSG_ITERATION_FINISHED));
     }
     boolean recursiveFlushInProgress = !flushingEvents.isEmpty();
-    flushingEvents.addAll(queuedEvents);
-    queuedEvents.clear();
+    while (!queuedEvents.isEmpty()) {
+      flushingEvents.add(queuedEvents.removeFirst());
+    }
     if (recursiveFlushInProgress) {
       // Recursive call to flush. Let the outer call handle the flush queue.
       return;
     }
     while (!flushingEvents.isEmpty()) {
-      flushingEvents.peekFirst().run();
-      flushingEvents.removeFirst();
+      flushingEvents.peekFirst().dispatch();
+      QueuedEvent<T> dispatchedEvent = flushingEvents.removeFirst();
+      dispatchedEvent.clear();
+      if (recycledEvents.size() < MAX_RECYCLED_EVENTS) {
+        recycledEvents.add(dispatchedEvent);
+      }
     }
   }
 
@@ -273,8 +289,9 @@ public final class ListenerSet<T extends @NonNull Object> {
     synchronized (releasedLock) {
       released = true;
     }
-    for (ListenerHolder<T> listenerHolder : listeners) {
-      listenerHolder.release(iterationFinishedEvent);
+    ImmutableList<ListenerHolder<T>> listenerSnapshot = listeners.get();
+    for (int i = 0; i < listenerSnapshot.size(); i++) {
+      listenerSnapshot.get(i).release(iterationFinishedEvent);
     }
     listeners.clear();
   }
@@ -293,8 +310,9 @@ public final class ListenerSet<T extends @NonNull Object> {
   }
 
   private boolean handleMessage(Message message) {
-    for (ListenerHolder<T> holder : listeners) {
-      holder.iterationFinished(iterationFinishedEvent);
+    ImmutableList<ListenerHolder<T>> listenerSnapshot = listeners.get();
+    for (int i = 0; i < listenerSnapshot.size(); i++) {
+      listenerSnapshot.get(i).iterationFinished(iterationFinishedEvent);
       if (handler.hasMessages(MSG_ITERATION_FINISHED)) {
         // The invocation above triggered new events (and thus scheduled a new message). We need
         // to stop here because this new message will take care of informing every listener about
@@ -312,6 +330,77 @@ public final class ListenerSet<T extends @NonNull Object> {
     checkState(Thread.currentThread() == handler.getLooper().getThread());
   }
 
+  /**
+   * The listeners of a set and its {@link #copy copies}. Every update replaces the list, so that
+   * readers can keep a snapshot of the listeners without copying them.
+   */
+  private static final class ListenerHolderList<T extends @NonNull Object> {
+
+    private volatile ImmutableList<ListenerHolder<T>> holders;
+
+    public ListenerHolderList() {
+      holders = ImmutableList.of();
+    }
+
+    public ImmutableList<ListenerHolder<T>> get() {
+      return holders;
+    }
+
+    public synchronized void add(ListenerHolder<T> holder) {
+      if (!holders.contains(holder)) {
+        holders =
+            ImmutableList.<ListenerHolder<T>>builderWithExpectedSize(holders.size() + 1)
+                .addAll(holders)
+                .add(holder)
+                .build();
+      }
+    }
+
+    public synchronized void remove(ListenerHolder<T> holder) {
+      ImmutableList.Builder<ListenerHolder<T>> newHolders = ImmutableList.builder();
+      for (int i = 0; i < holders.size(); i++) {
+        if (!holders.get(i).equals(holder)) {
+          newHolders.add(holders.get(i));
+        }
+      }
+      holders = newHolders.build();
+    }
+
+    public synchronized void clear() {
+      holders = ImmutableList.of();
+    }
+  }
+
+  /** An event waiting to be sent to a snapshot of the listeners, recycled once sent. */
+  private static final class QueuedEvent<T extends @NonNull Object> {
+
+    private int eventFlag;
+    @Nullable private Event<T> event;
+    private ImmutableList<ListenerHolder<T>> listeners;
+
+    public QueuedEvent() {
+      listeners = ImmutableList.of();
+    }
+
+    public void set(int eventFlag, Event<T> event, ImmutableList<ListenerHolder<T>> listeners) {
+      this.eventFlag = eventFlag;
+      this.event = event;
+      this.listeners = listeners;
+    }
+
+    public void dispatch() {
+      Event<T> event = checkNotNull(this.event);
+      for (int i = 0; i < listeners.size(); i++) {
+        listeners.get(i).invoke(eventFlag, event);
+      }
+    }
+
+    public void clear() {
+      event = null;
+      listeners = ImmutableList.of();
+    }
+  }
+
   private static final class ListenerHolder<T extends @NonNull Object> {
 
     public final T listener;
@@ -38,6 +38,8 @@ import org.junit.runner.RunWith;
 public final class AudioProcessingPipelineTest {
   private static final AudioFormat AUDIO_FORMAT =
       new AudioFormat(/* sampleRate= */ 44100, /* channelCount= */ 2, C.ENCODING_PCM_16BIT);
+  private static final AudioFormat AUDIO_FORMAT_32_BIT =
+      new AudioFormat(/* sampleRate= */ 44100, /* channelCount= */ 2, C.ENCODING_PCM_32BIT);
 
   @Test
   public void noAudioProcessors_isNotOperational() throws Exception {
@@ -257,6 +259,111 @@ public final class AudioProcessingPipelineTest {
     assertThat(bytesOutput.get(12)).isEqualTo((byte) 0);
   }
 
+  @Test
+  public void inPlaceProcessorFirst_doesNotOverwriteInput() throws Exception {
+    AudioProcessingPipeline audioProcessingPipeline =
+        new AudioProcessingPipeline(ImmutableList.of(new ToInt16PcmAudioProcessor()));
+    audioProcessingPipeline.configure(AUDIO_FORMAT_32_BIT);
+    audioProcessingPipeline.flush();
+    ByteBuffer inputBuffer = createPcm32BitBuffer(0x12345678, 0x7FFF0000);
+
+    audioProcessingPipeline.queueInput(inputBuffer);
+    ByteBuffer outputBuffer = audioProcessingPipeline.getOutput();
+
+    assertThat(outputBuffer.getShort(0)).isEqualTo((short) 0x1234);
+    assertThat(outputBuffer.getShort(2)).isEqualTo((short) 0x7FFF);
+    assertThat(inputBuffer.getInt(0)).isEqualTo(0x12345678);
+    assertThat(inputBuffer.getInt(4)).isEqualTo(0x7FFF0000);
+  }
+
+  @Test
+  public void inPlaceProcessor_holdsBackPreviousProcessorUntilOutputConsumed() throws Exception {
+    AudioProcessingPipeline audioProcessingPipeline =
+        new AudioProcessingPipeline(
+            ImmutableList.of(
+                new CopyingAudioProcessor(/* canOutputBeOverwritten= */ true),
+                new ToInt16PcmAudioProcessor()));
+    audioProcessingPipeline.configure(AUDIO_FORMAT_32_BIT);
+    audioProcessingPipeline.flush();
+    ByteBuffer firstInputBuffer = createPcm32BitBuffer(0x12345678, 0x7FFF0000);
+    ByteBuffer secondInputBuffer = createPcm32BitBuffer(0x43210000, 0x80000000);
+
+    audioProcessingPipeline.queueInput(firstInputBuffer);
+    ByteBuffer outputBuffer = audioProcessingPipeline.getOutput();
+    audioProcessingPipeline.queueInput(secondInputBuffer);
+
+    // The second buffer isn't copied over the output of the first buffer.
+    assertThat(firstInputBuffer.hasRemaining()).isFalse();
+    assertThat(secondInputBuffer.remaining()).isEqualTo(8);
+    assertThat(outputBuffer.remaining()).isEqualTo(4);
+    assertThat(outputBuffer.getShort(0)).isEqualTo((short) 0x1234);
+    assertThat(outputBuffer.getShort(2)).isEqualTo((short) 0x7FFF);
+
+    // "consume" the buffer
+    outputBuffer.position(outputBuffer.limit());
+    audioProcessingPipeline.queueInput(secondInputBuffer);
+    outputBuffer = audioProcessingPipeline.getOutput();
+
+    assertThat(secondInputBuffer.hasRemaining()).isFalse();
+    assertThat(outputBuffer.remaining()).isEqualTo(4);
+    assertThat(outputBuffer.getShort(0)).isEqualTo((short) 0x4321);
+    assertThat(outputBuffer.getShort(2)).isEqualTo((short) 0x8000);
+  }
+
+  @Test
+  public void inPlaceProcessor_afterProcessorNotAllowingOverwrite_doesNotOverwriteItsOutput()
+      throws Exception {
+    CopyingAudioProcessor copyingAudioProcessor =
+        new CopyingAudioProcessor(/* canOutputBeOverwritten= */ false);
+    AudioProcessingPipeline audioProcessingPipeline =
+        new AudioProcessingPipeline(
+            ImmutableList.of(copyingAudioProcessor, new ToInt16PcmAudioProcessor()));
+    audioProcessingPipeline.configure(AUDIO_FORMAT_32_BIT);
+    audioProcessingPipeline.flush();
+    ByteBuffer inputBuffer = createPcm32BitBuffer(0x12345678, 0x7FFF0000);
+
+    audioProcessingPipeline.queueInput(inputBuffer);
+    ByteBuffer outputBuffer = audioProcessingPipeline.getOutput();
+
+    assertThat(outputBuffer.getShort(0)).isEqualTo((short) 0x1234);
+    assertThat(outputBuffer.getShort(2)).isEqualTo((short) 0x7FFF);
+    ByteBuffer copiedBuffer = copyingAudioProcessor.lastOutputBuffer;
+    assertThat(copiedBuffer.getInt(0)).isEqualTo(0x12345678);
+    assertThat(copiedBuffer.getInt(4)).isEqualTo(0x7FFF0000);
+  }
+
+  /** A {@link BaseAudioProcessor} that copies its input to its output. */
+  private static final class CopyingAudioProcessor extends BaseAudioProcessor {
+
+    private final boolean canOutputBeOverwritten;
+
+    public ByteBuffer lastOutputBuffer;
+
+    public CopyingAudioProcessor(boolean canOutputBeOverwritten) {
+      this.canOutputBeOverwritten = canOutputBeOverwritten;
+      lastOutputBuffer = EMPTY_BUFFER;
+    }
+
+    @Override
+    protected AudioFormat onConfigure(AudioFormat inputAudioFormat) {
+      return inputAudioFormat;
+    }
+
+    @Override
+    public void queueInput(ByteBuffer inputBuffer) {
+      if (!inputBuffer.hasRemaining()) {
+        return;
+      }
+      lastOutputBuffer = replaceOutputBuffer(inputBuffer.remaining());
+      lastOutputBuffer.put(inputBuffer).flip();
+    }
+
+    @Override
+    protected boolean canOutputBeOverwritten() {
+      return canOutputBeOverwritten;
+    }
+  }
+
   // TODO(b/198772621): Consider implementing BaseAudioProcessor once that is in common.
   private static class FakeAudioProcessor implements AudioProcessor {
     protected ByteBuffer internalBuffer;
@@ -359,6 +466,15 @@ public final class AudioProcessingPipelineTest {
     return buffer;
   }
 
+  private static ByteBuffer createPcm32BitBuffer(int... samples) {
+    ByteBuffer buffer = createOrReplaceBuffer(samples.length * 4, /* buffer= */ null);
+    for (int sample : samples) {
+      buffer.putInt(sample);
+    }
+    buffer.flip();
+    return buffer;
+  }
+
   /** Creates a one second silence buffer for the given {@link AudioFormat}. */
   private static ByteBuffer createOneSecondDefaultSilenceBuffer(AudioFormat audioFormat) {
     return createOrReplaceBuffer(
@@ -22,6 +22,8 @@ import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
 import com.google.android.exoplayer2.audio.AudioProcessor.UnhandledAudioFormatException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -40,6 +42,10 @@ public final class SonicAudioProcessorTest {
       new AudioFormat(
           /* sampleRate= */ 48000, /* channelCount= */ 2, /* encoding= */ C.ENCODING_PCM_16BIT);
 
+  private static final AudioFormat AUDIO_FORMAT_44100_HZ_FLOAT =
+      new AudioFormat(
+          /* sampleRate= */ 44100, /* channelCount= */ 2, /* encoding= */ C.ENCODING_PCM_FLOAT);
+
   private SonicAudioProcessor sonicAudioProcessor;
 
   @Before
@@ -122,4 +128,76 @@ public final class SonicAudioProcessorTest {
       // Expected.
     }
   }
+
+  @Test
+  public void configureWithFloatInput_outputsFloat() throws Exception {
+    sonicAudioProcessor.setSpeed(1.5f);
+
+    AudioFormat outputAudioFormat = sonicAudioProcessor.configure(AUDIO_FORMAT_44100_HZ_FLOAT);
+
+    assertThat(outputAudioFormat.encoding).isEqualTo(C.ENCODING_PCM_FLOAT);
+    assertThat(outputAudioFormat.sampleRate).isEqualTo(44100);
+    assertThat(sonicAudioProcessor.isActive()).isTrue();
+  }
+
+  @Test
+  public void changeSpeedWithFloatInput_matchesSixteenBitOutput() throws Exception {
+    float[] input =
+        generateSine(/* frequencyHz= */ 440, AUDIO_FORMAT_44100_HZ, /* frameCount= */ 44100);
+    ByteBuffer sixteenBitInput =
+        ByteBuffer.allocateDirect(input.length * 2).order(ByteOrder.nativeOrder());
+    ByteBuffer floatInput =
+        ByteBuffer.allocateDirect(input.length * 4).order(ByteOrder.nativeOrder());
+    for (float sample : input) {
+      sixteenBitInput.putShort((short) (sample * Short.MAX_VALUE));
+      floatInput.putFloat(sample);
+    }
+    sixteenBitInput.flip();
+    floatInput.flip();
+
+    sonicAudioProcessor.setSpeed(2f);
+    sonicAudioProcessor.configure(AUDIO_FORMAT_44100_HZ);
+    sonicAudioProcessor.flush();
+    ByteBuffer sixteenBitOutput = processAll(sonicAudioProcessor, sixteenBitInput);
+    SonicAudioProcessor floatSonicAudioProcessor = new SonicAudioProcessor();
+    floatSonicAudioProcessor.setSpeed(2f);
+    floatSonicAudioProcessor.configure(AUDIO_FORMAT_44100_HZ_FLOAT);
+    floatSonicAudioProcessor.flush();
+    ByteBuffer floatOutput = processAll(floatSonicAudioProcessor, floatInput);
+
+    int sampleCount = floatOutput.remaining() / 4;
+    assertThat(sixteenBitOutput.remaining() / 2).isEqualTo(sampleCount);
+    assertThat(Math.abs(sampleCount - input.length / 2)).isAtMost(2 * 4);
+    double signalEnergy = 0;
+    double noiseEnergy = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      float reference = sixteenBitOutput.getShort() / (float) Short.MAX_VALUE;
+      float sample = floatOutput.getFloat();
+      signalEnergy += reference * reference;
+      noiseEnergy += (sample - reference) * (sample - reference);
+    }
+    double signalToNoiseRatioDb = 10 * Math.log10(signalEnergy / noiseEnergy);
+    assertThat(signalToNoiseRatioDb).isGreaterThan(40);
+  }
+
+  private static float[] generateSine(int frequencyHz, AudioFormat audioFormat, int frameCount) {
+    float[] samples = new float[frameCount * audioFormat.channelCount];
+    for (int i = 0; i < frameCount; i++) {
+      float value = 0.5f * (float) Math.sin(2 * Math.PI * frequencyHz * i / audioFormat.sampleRate);
+      for (int j = 0; j < audioFormat.channelCount; j++) {
+        samples[i * audioFormat.channelCount + j] = value;
+      }
+    }
+    return samples;
+  }
+
+  private static ByteBuffer processAll(AudioProcessor audioProcessor, ByteBuffer input) {
+    ByteBuffer output = ByteBuffer.allocate(input.remaining() * 2).order(ByteOrder.nativeOrder());
+    audioProcessor.queueInput(input);
+    output.put(audioProcessor.getOutput());
+    audioProcessor.queueEndOfStream();
+    output.put(audioProcessor.getOutput());
+    output.flip();
+    return output;
+  }
 }
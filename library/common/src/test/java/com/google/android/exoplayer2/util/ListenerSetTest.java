@@ -15,6 +15,8 @@
  */
 package com.google.android.exoplayer2.util;
 
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assume.assumeTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
@@ -25,6 +27,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import android.os.Looper;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
+import java.lang.management.ManagementFactory;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.InOrder;
@@ -402,6 +405,37 @@ public class ListenerSetTest {
     verify(listener, never()).callback1();
   }
 
+  @Test
+  public void queueEvent_withRecycledEvents_doesNotAllocate() {
+    com.sun.management.ThreadMXBean threadMxBean =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    assumeTrue(threadMxBean.isThreadAllocatedMemorySupported());
+    threadMxBean.setThreadAllocatedMemoryEnabled(true);
+    long threadId = Thread.currentThread().getId();
+    ListenerSet<TestListener> listenerSet =
+        new ListenerSet<>(Looper.myLooper(), Clock.DEFAULT, TestListener::iterationFinished);
+    listenerSet.add(new TestListener() {});
+    listenerSet.add(new TestListener() {});
+    ListenerSet.Event<TestListener> event = TestListener::callback1;
+    // Send events once so that the queued events can be recycled afterwards.
+    for (int i = 0; i < 10; i++) {
+      listenerSet.queueEvent(EVENT_ID_1, event);
+    }
+    listenerSet.flushEvents();
+    ShadowLooper.idleMainLooper();
+
+    long allocatedBytesBefore = threadMxBean.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < 10; i++) {
+      listenerSet.queueEvent(EVENT_ID_1, event);
+    }
+    long allocatedBytes = threadMxBean.getThreadAllocatedBytes(threadId) - allocatedBytesBefore;
+    listenerSet.flushEvents();
+    ShadowLooper.idleMainLooper();
+
+    // Allow for a few bytes allocated by the measurement itself.
+    assertThat(allocatedBytes).isLessThan(100);
+  }
+
   private interface TestListener {
     default void callback1() {}
 
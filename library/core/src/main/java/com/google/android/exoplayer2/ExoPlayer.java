@@ -485,6 +485,7 @@ public interface ExoPlayer extends Player {
     /* package */ long detachSurfaceTimeoutMs;
     /* package */ boolean pauseAtEndOfMediaItems;
     /* package */ boolean usePlatformDiagnostics;
+    /* package */ boolean dynamicSchedulingEnabled;
     @Nullable /* package */ Looper playbackLooper;
     /* package */ boolean buildCalled;
 
@@ -701,6 +702,30 @@ public interface ExoPlayer extends Player {
       return this;
     }
 
+    /**
+     * Sets whether the playback loop is scheduled dynamically, based on how long each renderer can
+     * make progress without being rendered again (see {@link Renderer#getDurationToProgressUs(long,
+     * long)}).
+     *
+     * <p>If enabled, the playback loop runs sooner than it otherwise would while playing when a
+     * renderer is about to run out of data, for example when an audio renderer is close to an
+     * underrun. The loop never runs less often than it does when this is disabled.
+     *
+     * <p>This method is experimental, and will be renamed or removed in a future release.
+     *
+     * <p>The default value is {@code false}.
+     *
+     * @param dynamicSchedulingEnabled Whether dynamic scheduling is enabled.
+     * @return This builder.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder experimentalSetDynamicSchedulingEnabled(boolean dynamicSchedulingEnabled) {
+      checkState(!buildCalled);
+      this.dynamicSchedulingEnabled = dynamicSchedulingEnabled;
+      return this;
+    }
+
     /**
      * Sets the {@link RenderersFactory} that will be used by the player.
      *
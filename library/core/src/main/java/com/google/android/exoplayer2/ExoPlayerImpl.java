@@ -152,7 +152,6 @@ import java.util.concurrent.TimeoutException;
   private final ListenerSet<Listener> listeners;
   private final CopyOnWriteArraySet<AudioOffloadListener> audioOffloadListeners;
   private final Timeline.Period period;
-  private final List<MediaSourceHolderSnapshot> mediaSourceHolderSnapshots;
   private final boolean useLazyPreparation;
   private final MediaSource.Factory mediaSourceFactory;
   private final AnalyticsCollector analyticsCollector;
@@ -178,6 +177,7 @@ import java.util.concurrent.TimeoutException;
   private @PlayWhenReadyChangeReason int pendingPlayWhenReadyChangeReason;
   private boolean foregroundMode;
   private SeekParameters seekParameters;
+  private PlaylistTree playlistTree;
   private ShuffleOrder shuffleOrder;
   private boolean pauseAtEndOfMediaItems;
   private Commands availableCommands;
@@ -277,7 +277,7 @@ import java.util.concurrent.TimeoutException;
               clock,
               (listener, flags) -> listener.onEvents(this.wrappingPlayer, new Events(flags)));
       audioOffloadListeners = new CopyOnWriteArraySet<>();
-      mediaSourceHolderSnapshots = new ArrayList<>();
+      playlistTree = PlaylistTree.EMPTY;
       shuffleOrder = new ShuffleOrder.DefaultShuffleOrder(/* length= */ 0);
       emptyTrackSelectorResult =
           new TrackSelectorResult(
@@ -347,6 +347,7 @@ import java.util.concurrent.TimeoutException;
               builder.livePlaybackSpeedControl,
               builder.releaseTimeoutMs,
               pauseAtEndOfMediaItems,
+              builder.dynamicSchedulingEnabled,
               applicationLooper,
               clock,
               playbackInfoUpdateListener,
@@ -641,15 +642,15 @@ import java.util.concurrent.TimeoutException;
   @Override
   public void addMediaSources(List<MediaSource> mediaSources) {
     verifyApplicationThread();
-    addMediaSources(/* index= */ mediaSourceHolderSnapshots.size(), mediaSources);
+    addMediaSources(/* index= */ playlistTree.size(), mediaSources);
   }
 
   @Override
   public void addMediaSources(int index, List<MediaSource> mediaSources) {
     verifyApplicationThread();
     checkArgument(index >= 0);
-    index = min(index, mediaSourceHolderSnapshots.size());
-    if (mediaSourceHolderSnapshots.isEmpty()) {
+    index = min(index, playlistTree.size());
+    if (playlistTree.isEmpty()) {
       // Handle initial items in a playlist as a set operation to ensure state changes and initial
       // position are updated correctly.
       setMediaSources(mediaSources, /* resetPosition= */ maskingWindowIndex == C.INDEX_UNSET);
@@ -671,7 +672,7 @@ import java.util.concurrent.TimeoutException;
   public void removeMediaItems(int fromIndex, int toIndex) {
     verifyApplicationThread();
     checkArgument(fromIndex >= 0 && toIndex >= fromIndex);
-    int playlistSize = mediaSourceHolderSnapshots.size();
+    int playlistSize = playlistTree.size();
     toIndex = min(toIndex, playlistSize);
     if (fromIndex >= playlistSize || fromIndex == toIndex) {
       // Do nothing.
@@ -695,7 +696,7 @@ import java.util.concurrent.TimeoutException;
   public void moveMediaItems(int fromIndex, int toIndex, int newFromIndex) {
     verifyApplicationThread();
     checkArgument(fromIndex >= 0 && fromIndex <= toIndex && newFromIndex >= 0);
-    int playlistSize = mediaSourceHolderSnapshots.size();
+    int playlistSize = playlistTree.size();
     toIndex = min(toIndex, playlistSize);
     newFromIndex = min(newFromIndex, playlistSize - (toIndex - fromIndex));
     if (fromIndex >= playlistSize || fromIndex == toIndex || fromIndex == newFromIndex) {
@@ -704,7 +705,7 @@ import java.util.concurrent.TimeoutException;
     }
     Timeline oldTimeline = getCurrentTimeline();
     pendingOperationAcks++;
-    Util.moveItems(mediaSourceHolderSnapshots, fromIndex, toIndex, newFromIndex);
+    playlistTree = playlistTree.move(fromIndex, toIndex, newFromIndex);
     Timeline newTimeline = createMaskingTimeline();
     PlaybackInfo newPlaybackInfo =
         maskTimelineAndPosition(
@@ -731,14 +732,14 @@ import java.util.concurrent.TimeoutException;
   public void replaceMediaItems(int fromIndex, int toIndex, List<MediaItem> mediaItems) {
     verifyApplicationThread();
     checkArgument(fromIndex >= 0 && toIndex >= fromIndex);
-    int playlistSize = mediaSourceHolderSnapshots.size();
+    int playlistSize = playlistTree.size();
     if (fromIndex > playlistSize) {
       // Do nothing.
       return;
     }
     toIndex = min(toIndex, playlistSize);
     List<MediaSource> mediaSources = createMediaSources(mediaItems);
-    if (mediaSourceHolderSnapshots.isEmpty()) {
+    if (playlistTree.isEmpty()) {
       // Handle initial items in a playlist as a set operation to ensure state changes and initial
       // position are updated correctly.
       setMediaSources(mediaSources, /* resetPosition= */ maskingWindowIndex == C.INDEX_UNSET);
@@ -762,7 +763,7 @@ import java.util.concurrent.TimeoutException;
   @Override
   public void setShuffleOrder(ShuffleOrder shuffleOrder) {
     verifyApplicationThread();
-    checkArgument(shuffleOrder.getLength() == mediaSourceHolderSnapshots.size());
+    checkArgument(shuffleOrder.getLength() == playlistTree.size());
     this.shuffleOrder = shuffleOrder;
     Timeline timeline = createMaskingTimeline();
     PlaybackInfo newPlaybackInfo =
@@ -1919,11 +1920,11 @@ import java.util.concurrent.TimeoutException;
         maskingPeriodIndex = 0;
       }
       if (!newTimeline.isEmpty()) {
-        List<Timeline> timelines = ((PlaylistTimeline) newTimeline).getChildTimelines();
-        checkState(timelines.size() == mediaSourceHolderSnapshots.size());
-        for (int i = 0; i < timelines.size(); i++) {
-          mediaSourceHolderSnapshots.get(i).timeline = timelines.get(i);
-        }
+        // All operations have been acknowledged, so the playlist of the internal player has the
+        // same items and holds their latest timelines.
+        PlaylistTree newPlaylistTree = ((PlaylistTimeline) newTimeline).getPlaylistTree();
+        checkState(newPlaylistTree.size() == playlistTree.size());
+        playlistTree = newPlaylistTree;
       }
       boolean positionDiscontinuity = false;
       long discontinuityWindowStartPositionUs = C.TIME_UNSET;
@@ -2286,9 +2287,8 @@ import java.util.concurrent.TimeoutException;
     int currentWindowIndex = getCurrentWindowIndexInternal(playbackInfo);
     long currentPositionMs = getCurrentPosition();
     pendingOperationAcks++;
-    if (!mediaSourceHolderSnapshots.isEmpty()) {
-      removeMediaSourceHolders(
-          /* fromIndex= */ 0, /* toIndexExclusive= */ mediaSourceHolderSnapshots.size());
+    if (!playlistTree.isEmpty()) {
+      removeMediaSourceHolders(/* fromIndex= */ 0, /* toIndexExclusive= */ playlistTree.size());
     }
     List<MediaSourceList.MediaSourceHolder> holders =
         addMediaSourceHolders(/* index= */ 0, mediaSources);
@@ -2339,14 +2339,11 @@ import java.util.concurrent.TimeoutException;
 
   private List<MediaSourceList.MediaSourceHolder> addMediaSourceHolders(
       int index, List<MediaSource> mediaSources) {
-    List<MediaSourceList.MediaSourceHolder> holders = new ArrayList<>();
+    List<MediaSourceList.MediaSourceHolder> holders = new ArrayList<>(mediaSources.size());
     for (int i = 0; i < mediaSources.size(); i++) {
-      MediaSourceList.MediaSourceHolder holder =
-          new MediaSourceList.MediaSourceHolder(mediaSources.get(i), useLazyPreparation);
-      holders.add(holder);
-      mediaSourceHolderSnapshots.add(
-          i + index, new MediaSourceHolderSnapshot(holder.uid, holder.mediaSource.getTimeline()));
+      holders.add(new MediaSourceList.MediaSourceHolder(mediaSources.get(i), useLazyPreparation));
     }
+    playlistTree = playlistTree.insert(index, holders);
     shuffleOrder =
         shuffleOrder.cloneAndInsert(
             /* insertionIndex= */ index, /* insertionCount= */ holders.size());
@@ -2377,7 +2374,7 @@ import java.util.concurrent.TimeoutException;
     int currentIndex = getCurrentWindowIndexInternal(playbackInfo);
     long contentPositionMs = getContentPositionInternal(playbackInfo);
     Timeline oldTimeline = playbackInfo.timeline;
-    int currentMediaSourceCount = mediaSourceHolderSnapshots.size();
+    int currentMediaSourceCount = playlistTree.size();
     pendingOperationAcks++;
     removeMediaSourceHolders(fromIndex, /* toIndexExclusive= */ toIndex);
     Timeline newTimeline = createMaskingTimeline();
@@ -2402,14 +2399,12 @@ import java.util.concurrent.TimeoutException;
   }
 
   private void removeMediaSourceHolders(int fromIndex, int toIndexExclusive) {
-    for (int i = toIndexExclusive - 1; i >= fromIndex; i--) {
-      mediaSourceHolderSnapshots.remove(i);
-    }
+    playlistTree = playlistTree.remove(fromIndex, toIndexExclusive);
     shuffleOrder = shuffleOrder.cloneAndRemove(fromIndex, toIndexExclusive);
   }
 
   private Timeline createMaskingTimeline() {
-    return new PlaylistTimeline(mediaSourceHolderSnapshots, shuffleOrder);
+    return new PlaylistTimeline(playlistTree, shuffleOrder);
   }
 
   private PlaybackInfo maskTimelineAndPosition(
@@ -2867,28 +2862,6 @@ import java.util.concurrent.TimeoutException;
         : PLAY_WHEN_READY_CHANGE_REASON_USER_REQUEST;
   }
 
-  private static final class MediaSourceHolderSnapshot implements MediaSourceInfoHolder {
-
-    private final Object uid;
-
-    private Timeline timeline;
-
-    public MediaSourceHolderSnapshot(Object uid, Timeline timeline) {
-      this.uid = uid;
-      this.timeline = timeline;
-    }
-
-    @Override
-    public Object getUid() {
-      return uid;
-    }
-
-    @Override
-    public Timeline getTimeline() {
-      return timeline;
-    }
-  }
-
   private final class ComponentListener
       implements VideoRendererEventListener,
           AudioRendererEventListener,
@@ -2961,6 +2934,11 @@ import java.util.concurrent.TimeoutException;
       analyticsCollector.onVideoFrameProcessingOffset(totalProcessingOffsetUs, frameCount);
     }
 
+    @Override
+    public void onVideoJudder(long totalJudderUs, int frameCount) {
+      analyticsCollector.onVideoJudder(totalJudderUs, frameCount);
+    }
+
     @Override
     public void onVideoCodecError(Exception videoCodecError) {
       analyticsCollector.onVideoCodecError(videoCodecError);
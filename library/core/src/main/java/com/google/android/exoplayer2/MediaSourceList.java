@@ -82,14 +82,15 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   private static final String TAG = "MediaSourceList";
 
   private final PlayerId playerId;
-  private final List<MediaSourceHolder> mediaSourceHolders;
   private final IdentityHashMap<MediaPeriod, MediaSourceHolder> mediaSourceByMediaPeriod;
   private final Map<Object, MediaSourceHolder> mediaSourceByUid;
   private final MediaSourceListInfoRefreshListener mediaSourceListInfoListener;
   private final HashMap<MediaSourceList.MediaSourceHolder, MediaSourceAndListener> childSources;
   private final Set<MediaSourceHolder> enabledMediaSourceHolders;
+  private final Set<MediaSourceHolder> holdersWithUpdatedTimeline;
   private final AnalyticsCollector eventListener;
   private final HandlerWrapper eventHandler;
+  private PlaylistTree playlistTree;
   private ShuffleOrder shuffleOrder;
   private boolean isPrepared;
 
@@ -116,11 +117,12 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     shuffleOrder = new DefaultShuffleOrder(0);
     mediaSourceByMediaPeriod = new IdentityHashMap<>();
     mediaSourceByUid = new HashMap<>();
-    mediaSourceHolders = new ArrayList<>();
+    playlistTree = PlaylistTree.EMPTY;
     eventListener = analyticsCollector;
     eventHandler = analyticsCollectorHandler;
     childSources = new HashMap<>();
     enabledMediaSourceHolders = new HashSet<>();
+    holdersWithUpdatedTimeline = new HashSet<>();
   }
 
   /**
@@ -131,8 +133,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
    * @return The new {@link Timeline}.
    */
   public Timeline setMediaSources(List<MediaSourceHolder> holders, ShuffleOrder shuffleOrder) {
-    removeMediaSourcesInternal(/* fromIndex= */ 0, /* toIndex= */ mediaSourceHolders.size());
-    return addMediaSources(/* index= */ this.mediaSourceHolders.size(), holders, shuffleOrder);
+    removeMediaSourcesInternal(/* fromIndex= */ 0, /* toIndex= */ getSize());
+    return addMediaSources(/* index= */ getSize(), holders, shuffleOrder);
   }
 
   /**
@@ -148,22 +150,12 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       int index, List<MediaSourceHolder> holders, ShuffleOrder shuffleOrder) {
     if (!holders.isEmpty()) {
       this.shuffleOrder = shuffleOrder;
-      for (int insertionIndex = index; insertionIndex < index + holders.size(); insertionIndex++) {
-        MediaSourceHolder holder = holders.get(insertionIndex - index);
-        if (insertionIndex > 0) {
-          MediaSourceHolder previousHolder = mediaSourceHolders.get(insertionIndex - 1);
-          Timeline previousTimeline = previousHolder.mediaSource.getTimeline();
-          holder.reset(
-              /* firstWindowIndexInChild= */ previousHolder.firstWindowIndexInChild
-                  + previousTimeline.getWindowCount());
-        } else {
-          holder.reset(/* firstWindowIndexInChild= */ 0);
-        }
-        Timeline newTimeline = holder.mediaSource.getTimeline();
-        correctOffsets(
-            /* startIndex= */ insertionIndex,
-            /* windowOffsetUpdate= */ newTimeline.getWindowCount());
-        mediaSourceHolders.add(insertionIndex, holder);
+      for (int i = 0; i < holders.size(); i++) {
+        holders.get(i).reset();
+      }
+      playlistTree = playlistTree.insert(index, holders);
+      for (int i = 0; i < holders.size(); i++) {
+        MediaSourceHolder holder = holders.get(i);
         mediaSourceByUid.put(holder.uid, holder);
         if (isPrepared) {
           prepareChildSource(holder);
@@ -174,8 +166,9 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
           }
         }
       }
+      updateFirstWindowIndicesInChild(/* fromIndex= */ index, /* toIndex= */ getSize());
     }
-    return createTimeline();
+    return createTimelineInternal();
   }
 
   /**
@@ -198,7 +191,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     Assertions.checkArgument(fromIndex >= 0 && fromIndex <= toIndex && toIndex <= getSize());
     this.shuffleOrder = shuffleOrder;
     removeMediaSourcesInternal(fromIndex, toIndex);
-    return createTimeline();
+    return createTimelineInternal();
   }
 
   /**
@@ -240,26 +233,20 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
         fromIndex >= 0 && fromIndex <= toIndex && toIndex <= getSize() && newFromIndex >= 0);
     this.shuffleOrder = shuffleOrder;
     if (fromIndex == toIndex || fromIndex == newFromIndex) {
-      return createTimeline();
+      return createTimelineInternal();
     }
+    playlistTree = playlistTree.move(fromIndex, toIndex, newFromIndex);
     int startIndex = min(fromIndex, newFromIndex);
-    int newEndIndex = newFromIndex + (toIndex - fromIndex) - 1;
-    int endIndex = max(newEndIndex, toIndex - 1);
-    int windowOffset = mediaSourceHolders.get(startIndex).firstWindowIndexInChild;
-    Util.moveItems(mediaSourceHolders, fromIndex, toIndex, newFromIndex);
-    for (int i = startIndex; i <= endIndex; i++) {
-      MediaSourceHolder holder = mediaSourceHolders.get(i);
-      holder.firstWindowIndexInChild = windowOffset;
-      windowOffset += holder.mediaSource.getTimeline().getWindowCount();
-    }
-    return createTimeline();
+    int endIndex = min(max(newFromIndex + (toIndex - fromIndex), toIndex), getSize());
+    updateFirstWindowIndicesInChild(startIndex, endIndex);
+    return createTimelineInternal();
   }
 
   /** Clears the playlist. */
   public Timeline clear(@Nullable ShuffleOrder shuffleOrder) {
     this.shuffleOrder = shuffleOrder != null ? shuffleOrder : this.shuffleOrder.cloneAndClear();
     removeMediaSourcesInternal(/* fromIndex= */ 0, /* toIndex= */ getSize());
-    return createTimeline();
+    return createTimelineInternal();
   }
 
   /** Whether the playlist is prepared. */
@@ -269,7 +256,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
 
   /** Returns the number of media sources in the playlist. */
   public int getSize() {
-    return mediaSourceHolders.size();
+    return playlistTree.size();
   }
 
   /**
@@ -286,15 +273,16 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
               .cloneAndInsert(/* insertionIndex= */ 0, /* insertionCount= */ size);
     }
     this.shuffleOrder = shuffleOrder;
-    return createTimeline();
+    return createTimelineInternal();
   }
 
   /** Prepares the playlist. */
   public void prepare(@Nullable TransferListener mediaTransferListener) {
     Assertions.checkState(!isPrepared);
     this.mediaTransferListener = mediaTransferListener;
-    for (int i = 0; i < mediaSourceHolders.size(); i++) {
-      MediaSourceHolder mediaSourceHolder = mediaSourceHolders.get(i);
+    for (int i = 0; i < playlistTree.size(); i++) {
+      MediaSourceHolder mediaSourceHolder =
+          checkNotNull(mediaSourceByUid.get(playlistTree.getUid(i)));
       prepareChildSource(mediaSourceHolder);
       enabledMediaSourceHolders.add(mediaSourceHolder);
     }
@@ -358,16 +346,12 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
 
   /** Creates a timeline reflecting the current state of the playlist. */
   public Timeline createTimeline() {
-    if (mediaSourceHolders.isEmpty()) {
-      return Timeline.EMPTY;
-    }
-    int windowOffset = 0;
-    for (int i = 0; i < mediaSourceHolders.size(); i++) {
-      MediaSourceHolder mediaSourceHolder = mediaSourceHolders.get(i);
-      mediaSourceHolder.firstWindowIndexInChild = windowOffset;
-      windowOffset += mediaSourceHolder.mediaSource.getTimeline().getWindowCount();
+    if (holdersWithUpdatedTimeline.isEmpty()) {
+      // No media source reported a timeline update, so read all timelines again in case one changed
+      // without being reported.
+      refreshAllTimelines();
     }
-    return new PlaylistTimeline(mediaSourceHolders, shuffleOrder);
+    return createTimelineInternal();
   }
 
   /** Returns the shuffle order */
@@ -377,6 +361,52 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
 
   // Internal methods.
 
+  private Timeline createTimelineInternal() {
+    // Only the timelines that changed since the last call are updated, so that creating a timeline
+    // takes O(k log n) time for k updated media sources in a playlist of n items.
+    for (MediaSourceHolder holder : holdersWithUpdatedTimeline) {
+      int index = playlistTree.getIndexOfUid(holder.uid);
+      if (index != C.INDEX_UNSET) {
+        int oldWindowCount = playlistTree.getTimeline(index).getWindowCount();
+        Timeline timeline = holder.mediaSource.getTimeline();
+        playlistTree = playlistTree.setTimeline(index, timeline);
+        if (timeline.getWindowCount() != oldWindowCount) {
+          updateFirstWindowIndicesInChild(/* fromIndex= */ index + 1, /* toIndex= */ getSize());
+        }
+      }
+    }
+    holdersWithUpdatedTimeline.clear();
+    if (playlistTree.isEmpty()) {
+      return Timeline.EMPTY;
+    }
+    return new PlaylistTimeline(playlistTree, shuffleOrder);
+  }
+
+  private void refreshAllTimelines() {
+    List<Object> uids = playlistTree.getUids();
+    List<Timeline> timelines = new ArrayList<>(uids.size());
+    int firstWindowIndexInChild = 0;
+    for (int i = 0; i < uids.size(); i++) {
+      MediaSourceHolder holder = checkNotNull(mediaSourceByUid.get(uids.get(i)));
+      Timeline timeline = holder.mediaSource.getTimeline();
+      holder.firstWindowIndexInChild = firstWindowIndexInChild;
+      firstWindowIndexInChild += timeline.getWindowCount();
+      timelines.add(timeline);
+    }
+    playlistTree = playlistTree.copyWithTimelines(timelines);
+  }
+
+  /**
+   * Sets {@link MediaSourceHolder#firstWindowIndexInChild} of the holders in the given index range,
+   * in O(k log n) time for k holders in a playlist of n items.
+   */
+  private void updateFirstWindowIndicesInChild(int fromIndex, int toIndex) {
+    for (int i = fromIndex; i < toIndex; i++) {
+      MediaSourceHolder holder = checkNotNull(mediaSourceByUid.get(playlistTree.getUid(i)));
+      holder.firstWindowIndexInChild = playlistTree.getFirstWindowIndex(i);
+    }
+  }
+
   private void enableMediaSource(MediaSourceHolder mediaSourceHolder) {
     enabledMediaSourceHolders.add(mediaSourceHolder);
     @Nullable MediaSourceAndListener enabledChild = childSources.get(mediaSourceHolder);
@@ -404,12 +434,19 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   }
 
   private void removeMediaSourcesInternal(int fromIndex, int toIndex) {
-    for (int index = toIndex - 1; index >= fromIndex; index--) {
-      MediaSourceHolder holder = mediaSourceHolders.remove(index);
+    if (fromIndex == toIndex) {
+      return;
+    }
+    List<MediaSourceHolder> removedHolders = new ArrayList<>(toIndex - fromIndex);
+    for (int i = fromIndex; i < toIndex; i++) {
+      MediaSourceHolder holder = checkNotNull(mediaSourceByUid.get(playlistTree.getUid(i)));
+      removedHolders.add(holder);
+    }
+    playlistTree = playlistTree.remove(fromIndex, toIndex);
+    updateFirstWindowIndicesInChild(/* fromIndex= */ fromIndex, /* toIndex= */ getSize());
+    for (int index = removedHolders.size() - 1; index >= 0; index--) {
+      MediaSourceHolder holder = removedHolders.get(index);
       mediaSourceByUid.remove(holder.uid);
-      Timeline oldTimeline = holder.mediaSource.getTimeline();
-      correctOffsets(
-          /* startIndex= */ index, /* windowOffsetUpdate= */ -oldTimeline.getWindowCount());
       holder.isRemoved = true;
       if (isPrepared) {
         maybeReleaseChildSource(holder);
@@ -417,13 +454,6 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     }
   }
 
-  private void correctOffsets(int startIndex, int windowOffsetUpdate) {
-    for (int i = startIndex; i < mediaSourceHolders.size(); i++) {
-      MediaSourceHolder mediaSourceHolder = mediaSourceHolders.get(i);
-      mediaSourceHolder.firstWindowIndexInChild += windowOffsetUpdate;
-    }
-  }
-
   // Internal methods to manage child sources.
 
   @Nullable
@@ -449,7 +479,10 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
   private void prepareChildSource(MediaSourceHolder holder) {
     MediaSource mediaSource = holder.mediaSource;
     MediaSource.MediaSourceCaller caller =
-        (source, timeline) -> mediaSourceListInfoListener.onPlaylistUpdateRequested();
+        (source, timeline) -> {
+          holdersWithUpdatedTimeline.add(holder);
+          mediaSourceListInfoListener.onPlaylistUpdateRequested();
+        };
     ForwardingEventListener eventListener = new ForwardingEventListener(holder);
     childSources.put(holder, new MediaSourceAndListener(mediaSource, caller, eventListener));
     mediaSource.addEventListener(Util.createHandlerForCurrentOrMainLooper(), eventListener);
@@ -498,8 +531,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       this.uid = new Object();
     }
 
-    public void reset(int firstWindowIndexInChild) {
-      this.firstWindowIndexInChild = firstWindowIndexInChild;
+    public void reset() {
+      this.firstWindowIndexInChild = 0;
       this.isRemoved = false;
       this.activeMediaPeriodIds.clear();
     }
@@ -16,11 +16,13 @@
 
 package com.google.android.exoplayer2;
 
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
 import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 
 import android.content.Context;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.Looper;
 import android.os.Message;
 import androidx.annotation.VisibleForTesting;
 import com.google.android.exoplayer2.analytics.PlayerId;
@@ -35,8 +37,12 @@ import com.google.android.exoplayer2.upstream.Allocator;
 import com.google.android.exoplayer2.upstream.DefaultAllocator;
 import com.google.android.exoplayer2.util.Clock;
 import com.google.android.exoplayer2.util.HandlerWrapper;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
 // TODO(internal b/161127201): discard samples written to the sample queue.
@@ -84,23 +90,168 @@ public final class MetadataRetriever {
     return retrieveMetadata(mediaSourceFactory, mediaItem, Clock.DEFAULT);
   }
 
+  /**
+   * Retrieves the {@link TrackGroupArray TrackGroupArrays} corresponding to a list of {@link
+   * MediaItem MediaItems}.
+   *
+   * <p>This is equivalent to using {@link #retrieveMetadata(MediaSource.Factory, List, int)} with a
+   * {@link DefaultMediaSourceFactory} and a {@link DefaultExtractorsFactory} with {@link
+   * Mp4Extractor#FLAG_READ_MOTION_PHOTO_METADATA} and {@link Mp4Extractor#FLAG_READ_SEF_DATA} set.
+   *
+   * @param context The {@link Context}.
+   * @param mediaItems The {@link MediaItem MediaItems} whose metadata should be retrieved.
+   * @param maxParallelRetrievals The maximum number of items whose metadata is retrieved at the
+   *     same time.
+   * @return A list of {@link ListenableFuture ListenableFutures} of the results, in the same order
+   *     as {@code mediaItems}.
+   */
+  public static ImmutableList<ListenableFuture<TrackGroupArray>> retrieveMetadata(
+      Context context, List<MediaItem> mediaItems, int maxParallelRetrievals) {
+    return retrieveMetadata(context, mediaItems, maxParallelRetrievals, Clock.DEFAULT);
+  }
+
+  /**
+   * Retrieves the {@link TrackGroupArray TrackGroupArrays} corresponding to a list of {@link
+   * MediaItem MediaItems}.
+   *
+   * <p>Unlike calling {@link #retrieveMetadata(MediaSource.Factory, MediaItem)} for each item, all
+   * items are retrieved using a single background thread, and at most {@code maxParallelRetrievals}
+   * items are loaded at the same time. The futures complete as soon as the metadata of their item
+   * is available, so {@link com.google.common.util.concurrent.Futures#inCompletionOrder} can be
+   * used to process the results as they arrive.
+   *
+   * <p>This method is thread-safe.
+   *
+   * @param mediaSourceFactory The {@link MediaSource.Factory} to use to read the data. It's shared
+   *     by all items.
+   * @param mediaItems The {@link MediaItem MediaItems} whose metadata should be retrieved.
+   * @param maxParallelRetrievals The maximum number of items whose metadata is retrieved at the
+   *     same time.
+   * @return A list of {@link ListenableFuture ListenableFutures} of the results, in the same order
+   *     as {@code mediaItems}.
+   */
+  public static ImmutableList<ListenableFuture<TrackGroupArray>> retrieveMetadata(
+      MediaSource.Factory mediaSourceFactory,
+      List<MediaItem> mediaItems,
+      int maxParallelRetrievals) {
+    return retrieveMetadata(mediaSourceFactory, mediaItems, maxParallelRetrievals, Clock.DEFAULT);
+  }
+
   @VisibleForTesting
   /* package */ static ListenableFuture<TrackGroupArray> retrieveMetadata(
       Context context, MediaItem mediaItem, Clock clock) {
+    return retrieveMetadata(createMediaSourceFactory(context), mediaItem, clock);
+  }
+
+  @VisibleForTesting
+  /* package */ static ImmutableList<ListenableFuture<TrackGroupArray>> retrieveMetadata(
+      Context context, List<MediaItem> mediaItems, int maxParallelRetrievals, Clock clock) {
+    return retrieveMetadata(
+        createMediaSourceFactory(context), mediaItems, maxParallelRetrievals, clock);
+  }
+
+  private static MediaSource.Factory createMediaSourceFactory(Context context) {
     ExtractorsFactory extractorsFactory =
         new DefaultExtractorsFactory()
             .setMp4ExtractorFlags(
                 Mp4Extractor.FLAG_READ_MOTION_PHOTO_METADATA | Mp4Extractor.FLAG_READ_SEF_DATA);
-    MediaSource.Factory mediaSourceFactory =
-        new DefaultMediaSourceFactory(context, extractorsFactory);
-    return retrieveMetadata(mediaSourceFactory, mediaItem, clock);
+    return new DefaultMediaSourceFactory(context, extractorsFactory);
   }
 
   private static ListenableFuture<TrackGroupArray> retrieveMetadata(
       MediaSource.Factory mediaSourceFactory, MediaItem mediaItem, Clock clock) {
     // Recreate thread and handler every time this method is called so that it can be used
     // concurrently.
-    return new MetadataRetrieverInternal(mediaSourceFactory, clock).retrieveMetadata(mediaItem);
+    HandlerThread mediaSourceThread = new HandlerThread("ExoPlayer:MetadataRetriever");
+    mediaSourceThread.start();
+    return new MetadataRetrieverInternal(
+            mediaSourceFactory,
+            clock,
+            mediaSourceThread.getLooper(),
+            /* releaseCallback= */ mediaSourceThread::quit)
+        .retrieveMetadata(mediaItem);
+  }
+
+  private static ImmutableList<ListenableFuture<TrackGroupArray>> retrieveMetadata(
+      MediaSource.Factory mediaSourceFactory,
+      List<MediaItem> mediaItems,
+      int maxParallelRetrievals,
+      Clock clock) {
+    checkArgument(maxParallelRetrievals > 0);
+    return new BatchMetadataRetriever(mediaSourceFactory, clock, maxParallelRetrievals)
+        .retrieveMetadata(mediaItems);
+  }
+
+  /** Retrieves the metadata of a list of items, a limited number at a time, on a shared thread. */
+  private static final class BatchMetadataRetriever {
+
+    private final MediaSource.Factory mediaSourceFactory;
+    private final Clock clock;
+    private final int maxParallelRetrievals;
+    private final HandlerThread mediaSourceThread;
+    private final HandlerWrapper mediaSourceHandler;
+    private final ArrayDeque<MediaItem> pendingMediaItems;
+    private final ArrayDeque<SettableFuture<TrackGroupArray>> pendingTrackGroupsFutures;
+
+    private int activeRetrievalCount;
+
+    public BatchMetadataRetriever(
+        MediaSource.Factory mediaSourceFactory, Clock clock, int maxParallelRetrievals) {
+      this.mediaSourceFactory = mediaSourceFactory;
+      this.clock = clock;
+      this.maxParallelRetrievals = maxParallelRetrievals;
+      mediaSourceThread = new HandlerThread("ExoPlayer:MetadataRetriever");
+      mediaSourceThread.start();
+      mediaSourceHandler = clock.createHandler(mediaSourceThread.getLooper(), /* callback= */ null);
+      pendingMediaItems = new ArrayDeque<>();
+      pendingTrackGroupsFutures = new ArrayDeque<>();
+    }
+
+    public ImmutableList<ListenableFuture<TrackGroupArray>> retrieveMetadata(
+        List<MediaItem> mediaItems) {
+      ImmutableList.Builder<ListenableFuture<TrackGroupArray>> trackGroupsFutures =
+          ImmutableList.builder();
+      List<SettableFuture<TrackGroupArray>> settableFutures = new ArrayList<>(mediaItems.size());
+      for (int i = 0; i < mediaItems.size(); i++) {
+        SettableFuture<TrackGroupArray> trackGroupsFuture = SettableFuture.create();
+        settableFutures.add(trackGroupsFuture);
+        trackGroupsFutures.add(trackGroupsFuture);
+      }
+      List<MediaItem> mediaItemsCopy = new ArrayList<>(mediaItems);
+      mediaSourceHandler.post(
+          () -> {
+            pendingMediaItems.addAll(mediaItemsCopy);
+            pendingTrackGroupsFutures.addAll(settableFutures);
+            maybeStartRetrievals();
+          });
+      return trackGroupsFutures.build();
+    }
+
+    private void maybeStartRetrievals() {
+      while (activeRetrievalCount < maxParallelRetrievals && !pendingMediaItems.isEmpty()) {
+        MediaItem mediaItem = pendingMediaItems.remove();
+        SettableFuture<TrackGroupArray> trackGroupsFuture = pendingTrackGroupsFutures.remove();
+        if (trackGroupsFuture.isCancelled()) {
+          continue;
+        }
+        activeRetrievalCount++;
+        trackGroupsFuture.setFuture(
+            new MetadataRetrieverInternal(
+                    mediaSourceFactory,
+                    clock,
+                    mediaSourceThread.getLooper(),
+                    /* releaseCallback= */ this::onRetrievalReleased)
+                .retrieveMetadata(mediaItem));
+      }
+      if (activeRetrievalCount == 0) {
+        mediaSourceThread.quit();
+      }
+    }
+
+    private void onRetrievalReleased() {
+      activeRetrievalCount--;
+      maybeStartRetrievals();
+    }
   }
 
   private static final class MetadataRetrieverInternal {
@@ -111,16 +262,27 @@ public final class MetadataRetriever {
     private static final int MESSAGE_RELEASE = 3;
 
     private final MediaSource.Factory mediaSourceFactory;
-    private final HandlerThread mediaSourceThread;
     private final HandlerWrapper mediaSourceHandler;
+    private final Runnable releaseCallback;
     private final SettableFuture<TrackGroupArray> trackGroupsFuture;
 
-    public MetadataRetrieverInternal(MediaSource.Factory mediaSourceFactory, Clock clock) {
+    /**
+     * Creates an instance.
+     *
+     * @param mediaSourceFactory The {@link MediaSource.Factory} to use to read the data.
+     * @param clock The {@link Clock}.
+     * @param mediaSourceLooper The {@link Looper} of the thread on which the media is loaded.
+     * @param releaseCallback A callback called on the {@code mediaSourceLooper} once the media
+     *     source has been released.
+     */
+    public MetadataRetrieverInternal(
+        MediaSource.Factory mediaSourceFactory,
+        Clock clock,
+        Looper mediaSourceLooper,
+        Runnable releaseCallback) {
       this.mediaSourceFactory = mediaSourceFactory;
-      mediaSourceThread = new HandlerThread("ExoPlayer:MetadataRetriever");
-      mediaSourceThread.start();
-      mediaSourceHandler =
-          clock.createHandler(mediaSourceThread.getLooper(), new MediaSourceHandlerCallback());
+      this.releaseCallback = releaseCallback;
+      mediaSourceHandler = clock.createHandler(mediaSourceLooper, new MediaSourceHandlerCallback());
       trackGroupsFuture = SettableFuture.create();
     }
 
@@ -175,7 +337,7 @@ public final class MetadataRetriever {
             }
             checkNotNull(mediaSource).releaseSource(mediaSourceCaller);
             mediaSourceHandler.removeCallbacksAndMessages(/* token= */ null);
-            mediaSourceThread.quit();
+            releaseCallback.run();
             return true;
           default:
             return false;
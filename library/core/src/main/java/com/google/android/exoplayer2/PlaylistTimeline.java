@@ -18,15 +18,16 @@ package com.google.android.exoplayer2;
 import com.google.android.exoplayer2.source.ForwardingTimeline;
 import com.google.android.exoplayer2.source.ShuffleOrder;
 import com.google.android.exoplayer2.source.ads.AdPlaybackState;
-import com.google.android.exoplayer2.util.Util;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.List;
 
 /**
  * Timeline exposing concatenated timelines of playlist media sources.
  *
+ * <p>The uids and timelines of the media sources are held in a {@link PlaylistTree}, so that the
+ * timeline of an edited playlist can be created without copying the playlist.
+ *
  * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
  *     contains the same ExoPlayer code). See <a
  *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
@@ -35,93 +36,79 @@ import java.util.List;
 @Deprecated
 /* package */ final class PlaylistTimeline extends AbstractConcatenatedTimeline {
 
-  private final int windowCount;
-  private final int periodCount;
-  private final int[] firstPeriodInChildIndices;
-  private final int[] firstWindowInChildIndices;
-  private final Timeline[] timelines;
-  private final Object[] uids;
-  private final HashMap<Object, Integer> childIndexByUid;
+  private final PlaylistTree playlistTree;
 
   /** Creates an instance. */
   public PlaylistTimeline(
       Collection<? extends MediaSourceInfoHolder> mediaSourceInfoHolders,
       ShuffleOrder shuffleOrder) {
-    this(getTimelines(mediaSourceInfoHolders), getUids(mediaSourceInfoHolders), shuffleOrder);
+    this(PlaylistTree.create(mediaSourceInfoHolders), shuffleOrder);
   }
 
-  private PlaylistTimeline(Timeline[] timelines, Object[] uids, ShuffleOrder shuffleOrder) {
+  /**
+   * Creates an instance from a {@link PlaylistTree}, in constant time.
+   *
+   * @param playlistTree The {@link PlaylistTree} with the uids and timelines of the items.
+   * @param shuffleOrder The {@link ShuffleOrder}.
+   */
+  public PlaylistTimeline(PlaylistTree playlistTree, ShuffleOrder shuffleOrder) {
     super(/* isAtomic= */ false, shuffleOrder);
-    int childCount = timelines.length;
-    this.timelines = timelines;
-    firstPeriodInChildIndices = new int[childCount];
-    firstWindowInChildIndices = new int[childCount];
-    this.uids = uids;
-    childIndexByUid = new HashMap<>();
-    int index = 0;
-    int windowCount = 0;
-    int periodCount = 0;
-    for (Timeline timeline : timelines) {
-      this.timelines[index] = timeline;
-      firstWindowInChildIndices[index] = windowCount;
-      firstPeriodInChildIndices[index] = periodCount;
-      windowCount += this.timelines[index].getWindowCount();
-      periodCount += this.timelines[index].getPeriodCount();
-      childIndexByUid.put(uids[index], index++);
-    }
-    this.windowCount = windowCount;
-    this.periodCount = periodCount;
+    this.playlistTree = playlistTree;
+  }
+
+  /** Returns the {@link PlaylistTree} with the uids and timelines of the items. */
+  /* package */ PlaylistTree getPlaylistTree() {
+    return playlistTree;
   }
 
   /** Returns the child timelines. */
   /* package */ List<Timeline> getChildTimelines() {
-    return Arrays.asList(timelines);
+    return playlistTree.getTimelines();
   }
 
   @Override
   protected int getChildIndexByPeriodIndex(int periodIndex) {
-    return Util.binarySearchFloor(firstPeriodInChildIndices, periodIndex + 1, false, false);
+    return playlistTree.getIndexByPeriodIndex(periodIndex);
   }
 
   @Override
   protected int getChildIndexByWindowIndex(int windowIndex) {
-    return Util.binarySearchFloor(firstWindowInChildIndices, windowIndex + 1, false, false);
+    return playlistTree.getIndexByWindowIndex(windowIndex);
   }
 
   @Override
   protected int getChildIndexByChildUid(Object childUid) {
-    Integer index = childIndexByUid.get(childUid);
-    return index == null ? C.INDEX_UNSET : index;
+    return playlistTree.getIndexOfUid(childUid);
   }
 
   @Override
   protected Timeline getTimelineByChildIndex(int childIndex) {
-    return timelines[childIndex];
+    return playlistTree.getTimeline(childIndex);
   }
 
   @Override
   protected int getFirstPeriodIndexByChildIndex(int childIndex) {
-    return firstPeriodInChildIndices[childIndex];
+    return playlistTree.getFirstPeriodIndex(childIndex);
   }
 
   @Override
   protected int getFirstWindowIndexByChildIndex(int childIndex) {
-    return firstWindowInChildIndices[childIndex];
+    return playlistTree.getFirstWindowIndex(childIndex);
   }
 
   @Override
   protected Object getChildUidByChildIndex(int childIndex) {
-    return uids[childIndex];
+    return playlistTree.getUid(childIndex);
   }
 
   @Override
   public int getWindowCount() {
-    return windowCount;
+    return playlistTree.getWindowCount();
   }
 
   @Override
   public int getPeriodCount() {
-    return periodCount;
+    return playlistTree.getPeriodCount();
   }
 
   /**
@@ -139,10 +126,11 @@ import java.util.List;
    * playback.
    */
   public PlaylistTimeline copyWithPlaceholderTimeline(ShuffleOrder shuffleOrder) {
-    Timeline[] newTimelines = new Timeline[timelines.length];
-    for (int i = 0; i < timelines.length; i++) {
-      newTimelines[i] =
-          new ForwardingTimeline(timelines[i]) {
+    List<Timeline> timelines = playlistTree.getTimelines();
+    List<Timeline> newTimelines = new ArrayList<>(timelines.size());
+    for (int i = 0; i < timelines.size(); i++) {
+      newTimelines.add(
+          new ForwardingTimeline(timelines.get(i)) {
             private final Window window = new Window();
 
             @Override
@@ -163,28 +151,9 @@ import java.util.List;
               }
               return superPeriod;
             }
-          };
-    }
-    return new PlaylistTimeline(newTimelines, uids, shuffleOrder);
-  }
-
-  private static Object[] getUids(
-      Collection<? extends MediaSourceInfoHolder> mediaSourceInfoHolders) {
-    Object[] uids = new Object[mediaSourceInfoHolders.size()];
-    int i = 0;
-    for (MediaSourceInfoHolder holder : mediaSourceInfoHolders) {
-      uids[i++] = holder.getUid();
-    }
-    return uids;
-  }
-
-  private static Timeline[] getTimelines(
-      Collection<? extends MediaSourceInfoHolder> mediaSourceInfoHolders) {
-    Timeline[] timelines = new Timeline[mediaSourceInfoHolders.size()];
-    int i = 0;
-    for (MediaSourceInfoHolder holder : mediaSourceInfoHolders) {
-      timelines[i++] = holder.getTimeline();
+          });
     }
-    return timelines;
+    // The child timelines have the same structure and uids, so only the timelines are replaced.
+    return new PlaylistTimeline(playlistTree.copyWithTimelines(newTimelines), shuffleOrder);
   }
 }
@@ -0,0 +1,807 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import androidx.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * An immutable list of the uids and timelines of the items of a playlist.
+ *
+ * <p>The items are stored in a persistent treap that accumulates the window and period counts of
+ * its subtrees. For a playlist of n items, finding an item by index, uid, window index or period
+ * index takes O(log n) expected time. Editing the list returns a new instance that shares all but
+ * O(log n) nodes with this one, so that updating the timeline of an item takes O(log n) expected
+ * time, and inserting, removing or moving k items takes O(k log n).
+ *
+ * <p>To find the index of an item by uid, each item has a label that increases with its index. A
+ * second treap maps uids to labels, and the index is the number of items with a smaller label.
+ * Labels are assigned as in the order-maintenance algorithm of Bender et al., which relabels an
+ * amortized O(log n) items per insertion.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class PlaylistTree {
+
+  /** An empty instance. */
+  public static final PlaylistTree EMPTY = new PlaylistTree(/* root= */ null, /* uidRoot= */ null);
+
+  private static final int LABEL_BITS = 62;
+  private static final long LABEL_SPACE = 1L << LABEL_BITS;
+  // A range of 2^i labels is relabeled if it holds at most RELABEL_DENSITY_BASE^i items.
+  private static final double RELABEL_DENSITY_BASE = 4d / 3;
+
+  @Nullable private final ItemNode root;
+  @Nullable private final UidNode uidRoot;
+
+  private PlaylistTree(@Nullable ItemNode root, @Nullable UidNode uidRoot) {
+    this.root = root;
+    this.uidRoot = uidRoot;
+  }
+
+  /**
+   * Creates an instance holding the uids and current timelines of the given holders, in O(n log n)
+   * time.
+   */
+  public static PlaylistTree create(Collection<? extends MediaSourceInfoHolder> holders) {
+    int itemCount = holders.size();
+    if (itemCount == 0) {
+      return EMPTY;
+    }
+    Object[] uids = new Object[itemCount];
+    Timeline[] timelines = new Timeline[itemCount];
+    long[] labels = new long[itemCount];
+    long labelSpacing = LABEL_SPACE / (itemCount + 1);
+    int index = 0;
+    for (MediaSourceInfoHolder holder : holders) {
+      uids[index] = holder.getUid();
+      timelines[index] = holder.getTimeline();
+      labels[index] = labelSpacing * (index + 1);
+      index++;
+    }
+    return new PlaylistTree(
+        buildItemTree(uids, timelines, labels), buildUidTree(uids, labels, itemCount));
+  }
+
+  /** Returns the number of items. */
+  public int size() {
+    return root == null ? 0 : root.size;
+  }
+
+  /** Returns whether there are no items. */
+  public boolean isEmpty() {
+    return root == null;
+  }
+
+  /** Returns the total number of windows of the item timelines. */
+  public int getWindowCount() {
+    return root == null ? 0 : root.windowCount;
+  }
+
+  /** Returns the total number of periods of the item timelines. */
+  public int getPeriodCount() {
+    return root == null ? 0 : root.periodCount;
+  }
+
+  /** Returns the uid of the item at the given index. */
+  public Object getUid(int index) {
+    return getNode(index).uid;
+  }
+
+  /** Returns the timeline of the item at the given index. */
+  public Timeline getTimeline(int index) {
+    return getNode(index).timeline;
+  }
+
+  /** Returns the uids of all items, in O(n) time. */
+  public List<Object> getUids() {
+    List<ItemNode> nodes = new ArrayList<>(size());
+    addNodes(root, nodes);
+    List<Object> uids = new ArrayList<>(nodes.size());
+    for (int i = 0; i < nodes.size(); i++) {
+      uids.add(nodes.get(i).uid);
+    }
+    return uids;
+  }
+
+  /** Returns the timelines of all items, in O(n) time. */
+  public List<Timeline> getTimelines() {
+    List<ItemNode> nodes = new ArrayList<>(size());
+    addNodes(root, nodes);
+    List<Timeline> timelines = new ArrayList<>(nodes.size());
+    for (int i = 0; i < nodes.size(); i++) {
+      timelines.add(nodes.get(i).timeline);
+    }
+    return timelines;
+  }
+
+  /** Returns the index of the item with the given uid, or {@link C#INDEX_UNSET} if not found. */
+  public int getIndexOfUid(Object uid) {
+    @Nullable UidNode node = uidRoot;
+    int hash = uid.hashCode();
+    while (node != null) {
+      if (hash < node.hash) {
+        node = node.left;
+      } else if (hash > node.hash) {
+        node = node.right;
+      } else {
+        int bucketIndex = node.indexOf(uid);
+        return bucketIndex == C.INDEX_UNSET
+            ? C.INDEX_UNSET
+            : countLabelsBelow(root, node.labels[bucketIndex]);
+      }
+    }
+    return C.INDEX_UNSET;
+  }
+
+  /** Returns the index of the first window of the item at the given index. */
+  public int getFirstWindowIndex(int index) {
+    checkArgument(index >= 0 && index < size());
+    int windowIndex = 0;
+    ItemNode node = checkNotNull(root);
+    while (true) {
+      int leftSize = size(node.left);
+      if (index < leftSize) {
+        node = checkNotNull(node.left);
+      } else {
+        windowIndex += windowCount(node.left);
+        if (index == leftSize) {
+          return windowIndex;
+        }
+        windowIndex += node.timeline.getWindowCount();
+        index -= leftSize + 1;
+        node = checkNotNull(node.right);
+      }
+    }
+  }
+
+  /** Returns the index of the first period of the item at the given index. */
+  public int getFirstPeriodIndex(int index) {
+    checkArgument(index >= 0 && index < size());
+    int periodIndex = 0;
+    ItemNode node = checkNotNull(root);
+    while (true) {
+      int leftSize = size(node.left);
+      if (index < leftSize) {
+        node = checkNotNull(node.left);
+      } else {
+        periodIndex += periodCount(node.left);
+        if (index == leftSize) {
+          return periodIndex;
+        }
+        periodIndex += node.timeline.getPeriodCount();
+        index -= leftSize + 1;
+        node = checkNotNull(node.right);
+      }
+    }
+  }
+
+  /** Returns the index of the item holding the window with the given index. */
+  public int getIndexByWindowIndex(int windowIndex) {
+    int index = 0;
+    @Nullable ItemNode node = root;
+    while (node != null) {
+      int leftWindowCount = windowCount(node.left);
+      if (windowIndex < leftWindowCount) {
+        node = node.left;
+        continue;
+      }
+      windowIndex -= leftWindowCount;
+      index += size(node.left);
+      if (windowIndex < node.timeline.getWindowCount()) {
+        return index;
+      }
+      windowIndex -= node.timeline.getWindowCount();
+      index++;
+      node = node.right;
+    }
+    return index - 1;
+  }
+
+  /** Returns the index of the item holding the period with the given index. */
+  public int getIndexByPeriodIndex(int periodIndex) {
+    int index = 0;
+    @Nullable ItemNode node = root;
+    while (node != null) {
+      int leftPeriodCount = periodCount(node.left);
+      if (periodIndex < leftPeriodCount) {
+        node = node.left;
+        continue;
+      }
+      periodIndex -= leftPeriodCount;
+      index += size(node.left);
+      if (periodIndex < node.timeline.getPeriodCount()) {
+        return index;
+      }
+      periodIndex -= node.timeline.getPeriodCount();
+      index++;
+      node = node.right;
+    }
+    return index - 1;
+  }
+
+  /**
+   * Returns a copy with the uids and current timelines of the given holders inserted at the given
+   * index.
+   */
+  public PlaylistTree insert(int index, List<? extends MediaSourceInfoHolder> holders) {
+    int size = size();
+    checkArgument(index >= 0 && index <= size);
+    int insertionCount = holders.size();
+    if (insertionCount == 0) {
+      return this;
+    }
+    @Nullable ItemNode root = this.root;
+    @Nullable UidNode uidRoot = this.uidRoot;
+    long lowLabel = index > 0 ? getNode(index - 1).label : -1;
+    long highLabel = index < size ? getNode(index).label : LABEL_SPACE;
+    long[] labels = new long[insertionCount];
+    if (highLabel - lowLabel > insertionCount) {
+      long labelSpacing = (highLabel - lowLabel) / (insertionCount + 1);
+      for (int i = 0; i < insertionCount; i++) {
+        labels[i] = lowLabel + labelSpacing * (i + 1);
+      }
+    } else {
+      // Find the smallest aligned range of labels around the insertion point that is sparse enough,
+      // and spread the labels of the items in the range and the inserted items evenly over it.
+      long anchorLabel = Math.max(lowLabel, 0);
+      for (int level = 1; ; level++) {
+        long rangeSize = 1L << level;
+        long rangeStart = anchorLabel & -rangeSize;
+        long rangeEnd = rangeStart + rangeSize;
+        int rangeCount = countLabelsBelow(root, rangeEnd) - countLabelsBelow(root, rangeStart);
+        if (level < LABEL_BITS
+            && rangeCount + insertionCount > Math.pow(RELABEL_DENSITY_BASE, level)) {
+          continue;
+        }
+        @NullableType ItemNode[] beforeAndRange = splitByLabel(root, rangeStart);
+        @NullableType ItemNode[] rangeAndAfter = splitByLabel(beforeAndRange[1], rangeEnd);
+        int insertionOffset = index - size(beforeAndRange[0]);
+        long labelSpacing = rangeSize / (rangeCount + insertionCount);
+        long[] rangeLabels = new long[rangeCount];
+        for (int i = 0; i < rangeCount; i++) {
+          int position = i < insertionOffset ? i : i + insertionCount;
+          rangeLabels[i] = rangeStart + labelSpacing * position;
+        }
+        for (int i = 0; i < insertionCount; i++) {
+          labels[i] = rangeStart + labelSpacing * (insertionOffset + i);
+        }
+        @Nullable
+        ItemNode range =
+            rangeAndAfter[0] == null
+                ? null
+                : relabel(rangeAndAfter[0], rangeLabels, /* offset= */ 0);
+        List<ItemNode> relabeledNodes = new ArrayList<>(rangeCount);
+        addNodes(range, relabeledNodes);
+        for (int i = 0; i < relabeledNodes.size(); i++) {
+          ItemNode node = relabeledNodes.get(i);
+          uidRoot = putUid(uidRoot, node.uid, node.label);
+        }
+        root = merge(beforeAndRange[0], merge(range, rangeAndAfter[1]));
+        break;
+      }
+    }
+    Object[] uids = new Object[insertionCount];
+    Timeline[] timelines = new Timeline[insertionCount];
+    for (int i = 0; i < insertionCount; i++) {
+      MediaSourceInfoHolder holder = holders.get(i);
+      uids[i] = holder.getUid();
+      timelines[i] = holder.getTimeline();
+      uidRoot = putUid(uidRoot, uids[i], labels[i]);
+    }
+    @NullableType ItemNode[] split = splitByIndex(root, index);
+    root = merge(merge(split[0], buildItemTree(uids, timelines, labels)), split[1]);
+    return new PlaylistTree(root, uidRoot);
+  }
+
+  /**
+   * Returns a copy with the items from {@code fromIndex} (inclusive) to {@code toIndex} (exclusive)
+   * removed.
+   */
+  public PlaylistTree remove(int fromIndex, int toIndex) {
+    checkArgument(fromIndex >= 0 && fromIndex <= toIndex && toIndex <= size());
+    if (fromIndex == toIndex) {
+      return this;
+    }
+    @NullableType ItemNode[] rangeAndAfter = splitByIndex(root, toIndex);
+    @NullableType ItemNode[] beforeAndRange = splitByIndex(rangeAndAfter[0], fromIndex);
+    List<ItemNode> removedNodes = new ArrayList<>(toIndex - fromIndex);
+    addNodes(beforeAndRange[1], removedNodes);
+    @Nullable UidNode uidRoot = this.uidRoot;
+    for (int i = 0; i < removedNodes.size(); i++) {
+      uidRoot = removeUid(uidRoot, removedNodes.get(i).uid);
+    }
+    return new PlaylistTree(merge(beforeAndRange[0], rangeAndAfter[1]), uidRoot);
+  }
+
+  /**
+   * Returns a copy with the items from {@code fromIndex} (inclusive) to {@code toIndex} (exclusive)
+   * moved to start at {@code newFromIndex}, with the same semantics as {@link
+   * com.google.android.exoplayer2.util.Util#moveItems}.
+   */
+  public PlaylistTree move(int fromIndex, int toIndex, int newFromIndex) {
+    checkArgument(fromIndex >= 0 && fromIndex <= toIndex && toIndex <= size() && newFromIndex >= 0);
+    if (fromIndex == toIndex || fromIndex == newFromIndex) {
+      return this;
+    }
+    @NullableType ItemNode[] rangeAndAfter = splitByIndex(root, toIndex);
+    @NullableType ItemNode[] beforeAndRange = splitByIndex(rangeAndAfter[0], fromIndex);
+    List<ItemNode> movedNodes = new ArrayList<>(toIndex - fromIndex);
+    addNodes(beforeAndRange[1], movedNodes);
+    PlaylistTree remainingTree = remove(fromIndex, toIndex);
+    return remainingTree.insert(Math.min(newFromIndex, remainingTree.size()), movedNodes);
+  }
+
+  /** Returns a copy with the timeline of the item at the given index replaced. */
+  public PlaylistTree setTimeline(int index, Timeline timeline) {
+    checkArgument(index >= 0 && index < size());
+    return new PlaylistTree(setTimeline(checkNotNull(root), index, timeline), uidRoot);
+  }
+
+  /**
+   * Returns a copy with the timelines of all items replaced, in O(n) time.
+   *
+   * @param timelines The new timelines, in item order.
+   */
+  public PlaylistTree copyWithTimelines(List<Timeline> timelines) {
+    checkArgument(timelines.size() == size());
+    return root == null
+        ? this
+        : new PlaylistTree(replaceTimelines(root, timelines, /* offset= */ 0), uidRoot);
+  }
+
+  private ItemNode getNode(int index) {
+    checkArgument(index >= 0 && index < size());
+    ItemNode node = checkNotNull(root);
+    while (true) {
+      int leftSize = size(node.left);
+      if (index < leftSize) {
+        node = checkNotNull(node.left);
+      } else if (index > leftSize) {
+        index -= leftSize + 1;
+        node = checkNotNull(node.right);
+      } else {
+        return node;
+      }
+    }
+  }
+
+  // Item tree operations.
+
+  private static int size(@Nullable ItemNode node) {
+    return node == null ? 0 : node.size;
+  }
+
+  private static int windowCount(@Nullable ItemNode node) {
+    return node == null ? 0 : node.windowCount;
+  }
+
+  private static int periodCount(@Nullable ItemNode node) {
+    return node == null ? 0 : node.periodCount;
+  }
+
+  /** Returns the number of items with a label smaller than the given label. */
+  private static int countLabelsBelow(@Nullable ItemNode node, long label) {
+    int count = 0;
+    while (node != null) {
+      if (node.label < label) {
+        count += size(node.left) + 1;
+        node = node.right;
+      } else {
+        node = node.left;
+      }
+    }
+    return count;
+  }
+
+  /** Adds the nodes of the tree to the list, in order. */
+  private static void addNodes(@Nullable ItemNode node, List<ItemNode> nodes) {
+    if (node != null) {
+      addNodes(node.left, nodes);
+      nodes.add(node);
+      addNodes(node.right, nodes);
+    }
+  }
+
+  /** Returns the concatenation of two trees, where all labels of the first are smaller. */
+  @Nullable
+  private static ItemNode merge(@Nullable ItemNode first, @Nullable ItemNode second) {
+    if (first == null) {
+      return second;
+    }
+    if (second == null) {
+      return first;
+    }
+    if (first.priority >= second.priority) {
+      return first.copyWithChildren(first.left, merge(first.right, second));
+    }
+    return second.copyWithChildren(merge(first, second.left), second.right);
+  }
+
+  /** Splits the tree into its first {@code count} items and the remaining items. */
+  private static @NullableType ItemNode[] splitByIndex(@Nullable ItemNode node, int count) {
+    if (node == null || count == 0 || count == node.size) {
+      return count == 0 ? new ItemNode[] {null, node} : new ItemNode[] {node, null};
+    }
+    int leftSize = size(node.left);
+    if (count <= leftSize) {
+      @NullableType ItemNode[] split = splitByIndex(node.left, count);
+      split[1] = node.copyWithChildren(split[1], node.right);
+      return split;
+    }
+    @NullableType ItemNode[] split = splitByIndex(node.right, count - leftSize - 1);
+    split[0] = node.copyWithChildren(node.left, split[0]);
+    return split;
+  }
+
+  /** Splits the tree into the items with a label smaller than the given label and the others. */
+  private static @NullableType ItemNode[] splitByLabel(@Nullable ItemNode node, long label) {
+    if (node == null) {
+      return new ItemNode[2];
+    }
+    if (label <= node.label) {
+      @NullableType ItemNode[] split = splitByLabel(node.left, label);
+      split[1] = node.copyWithChildren(split[1], node.right);
+      return split;
+    }
+    @NullableType ItemNode[] split = splitByLabel(node.right, label);
+    split[0] = node.copyWithChildren(node.left, split[0]);
+    return split;
+  }
+
+  private static ItemNode setTimeline(ItemNode node, int index, Timeline timeline) {
+    int leftSize = size(node.left);
+    if (index < leftSize) {
+      return node.copyWithChildren(
+          setTimeline(checkNotNull(node.left), index, timeline), node.right);
+    } else if (index > leftSize) {
+      return node.copyWithChildren(
+          node.left, setTimeline(checkNotNull(node.right), index - leftSize - 1, timeline));
+    }
+    return new ItemNode(node.uid, timeline, node.label, node.priority, node.left, node.right);
+  }
+
+  /** Returns a tree of the same shape with the items labeled in order, starting at an offset. */
+  private static ItemNode relabel(ItemNode node, long[] labels, int offset) {
+    int index = offset + size(node.left);
+    return new ItemNode(
+        node.uid,
+        node.timeline,
+        labels[index],
+        node.priority,
+        node.left == null ? null : relabel(node.left, labels, offset),
+        node.right == null ? null : relabel(node.right, labels, index + 1));
+  }
+
+  /** Returns a tree of the same shape with the timelines replaced in order, from an offset. */
+  private static ItemNode replaceTimelines(ItemNode node, List<Timeline> timelines, int offset) {
+    int index = offset + size(node.left);
+    return new ItemNode(
+        node.uid,
+        timelines.get(index),
+        node.label,
+        node.priority,
+        node.left == null ? null : replaceTimelines(node.left, timelines, offset),
+        node.right == null ? null : replaceTimelines(node.right, timelines, index + 1));
+  }
+
+  /** Builds a tree of items with increasing labels, in O(n) time. */
+  @Nullable
+  private static ItemNode buildItemTree(Object[] uids, Timeline[] timelines, long[] labels) {
+    int itemCount = uids.length;
+    int[] priorities = new int[itemCount];
+    for (int i = 0; i < itemCount; i++) {
+      priorities[i] = getPriority(uids[i].hashCode());
+    }
+    int[] leftChildren = new int[itemCount];
+    int[] rightChildren = new int[itemCount];
+    int rootIndex = buildCartesianTree(priorities, leftChildren, rightChildren);
+    return buildItemTree(
+        uids, timelines, labels, priorities, leftChildren, rightChildren, rootIndex);
+  }
+
+  @Nullable
+  private static ItemNode buildItemTree(
+      Object[] uids,
+      Timeline[] timelines,
+      long[] labels,
+      int[] priorities,
+      int[] leftChildren,
+      int[] rightChildren,
+      int index) {
+    if (index == C.INDEX_UNSET) {
+      return null;
+    }
+    return new ItemNode(
+        uids[index],
+        timelines[index],
+        labels[index],
+        priorities[index],
+        buildItemTree(
+            uids, timelines, labels, priorities, leftChildren, rightChildren, leftChildren[index]),
+        buildItemTree(
+            uids,
+            timelines,
+            labels,
+            priorities,
+            leftChildren,
+            rightChildren,
+            rightChildren[index]));
+  }
+
+  // Uid tree operations.
+
+  /** Builds a tree mapping the uids to their labels, in O(n log n) time. */
+  @Nullable
+  private static UidNode buildUidTree(Object[] uids, long[] labels, int itemCount) {
+    // Sort the items by hash, keeping the item index in the low bits.
+    long[] hashesAndIndices = new long[itemCount];
+    for (int i = 0; i < itemCount; i++) {
+      hashesAndIndices[i] = ((long) uids[i].hashCode() << 32) | i;
+    }
+    Arrays.sort(hashesAndIndices);
+    List<UidNode> buckets = new ArrayList<>(itemCount);
+    int bucketStart = 0;
+    while (bucketStart < itemCount) {
+      int hash = (int) (hashesAndIndices[bucketStart] >> 32);
+      int bucketEnd = bucketStart + 1;
+      while (bucketEnd < itemCount && (int) (hashesAndIndices[bucketEnd] >> 32) == hash) {
+        bucketEnd++;
+      }
+      Object[] bucketUids = new Object[bucketEnd - bucketStart];
+      long[] bucketLabels = new long[bucketEnd - bucketStart];
+      for (int i = bucketStart; i < bucketEnd; i++) {
+        int index = (int) hashesAndIndices[i];
+        bucketUids[i - bucketStart] = uids[index];
+        bucketLabels[i - bucketStart] = labels[index];
+      }
+      buckets.add(new UidNode(hash, bucketUids, bucketLabels, /* left= */ null, /* right= */ null));
+      bucketStart = bucketEnd;
+    }
+    int bucketCount = buckets.size();
+    int[] priorities = new int[bucketCount];
+    for (int i = 0; i < bucketCount; i++) {
+      priorities[i] = buckets.get(i).priority;
+    }
+    int[] leftChildren = new int[bucketCount];
+    int[] rightChildren = new int[bucketCount];
+    int rootIndex = buildCartesianTree(priorities, leftChildren, rightChildren);
+    return buildUidTree(buckets, leftChildren, rightChildren, rootIndex);
+  }
+
+  @Nullable
+  private static UidNode buildUidTree(
+      List<UidNode> buckets, int[] leftChildren, int[] rightChildren, int index) {
+    if (index == C.INDEX_UNSET) {
+      return null;
+    }
+    return buckets
+        .get(index)
+        .copyWithChildren(
+            buildUidTree(buckets, leftChildren, rightChildren, leftChildren[index]),
+            buildUidTree(buckets, leftChildren, rightChildren, rightChildren[index]));
+  }
+
+  /** Returns a copy of the tree with the label of the uid set. */
+  private static UidNode putUid(@Nullable UidNode node, Object uid, long label) {
+    int hash = uid.hashCode();
+    if (node == null) {
+      return new UidNode(
+          hash, new Object[] {uid}, new long[] {label}, /* left= */ null, /* right= */ null);
+    }
+    if (hash < node.hash) {
+      UidNode left = putUid(node.left, uid, label);
+      return left.priority > node.priority
+          ? left.copyWithChildren(left.left, node.copyWithChildren(left.right, node.right))
+          : node.copyWithChildren(left, node.right);
+    } else if (hash > node.hash) {
+      UidNode right = putUid(node.right, uid, label);
+      return right.priority > node.priority
+          ? right.copyWithChildren(node.copyWithChildren(node.left, right.left), right.right)
+          : node.copyWithChildren(node.left, right);
+    }
+    int bucketIndex = node.indexOf(uid);
+    Object[] uids;
+    long[] labels;
+    if (bucketIndex == C.INDEX_UNSET) {
+      bucketIndex = node.uids.length;
+      uids = Arrays.copyOf(node.uids, bucketIndex + 1);
+      labels = Arrays.copyOf(node.labels, bucketIndex + 1);
+      uids[bucketIndex] = uid;
+    } else {
+      uids = node.uids;
+      labels = Arrays.copyOf(node.labels, node.labels.length);
+    }
+    labels[bucketIndex] = label;
+    return new UidNode(hash, uids, labels, node.left, node.right);
+  }
+
+  /** Returns a copy of the tree without the uid. */
+  @Nullable
+  private static UidNode removeUid(@Nullable UidNode node, Object uid) {
+    if (node == null) {
+      return null;
+    }
+    int hash = uid.hashCode();
+    if (hash < node.hash) {
+      return node.copyWithChildren(removeUid(node.left, uid), node.right);
+    } else if (hash > node.hash) {
+      return node.copyWithChildren(node.left, removeUid(node.right, uid));
+    }
+    int bucketIndex = node.indexOf(uid);
+    if (bucketIndex == C.INDEX_UNSET) {
+      return node;
+    }
+    int bucketSize = node.uids.length;
+    if (bucketSize == 1) {
+      return mergeUids(node.left, node.right);
+    }
+    Object[] uids = new Object[bucketSize - 1];
+    long[] labels = new long[bucketSize - 1];
+    for (int i = 0, j = 0; i < bucketSize; i++) {
+      if (i != bucketIndex) {
+        uids[j] = node.uids[i];
+        labels[j++] = node.labels[i];
+      }
+    }
+    return new UidNode(hash, uids, labels, node.left, node.right);
+  }
+
+  @Nullable
+  private static UidNode mergeUids(@Nullable UidNode first, @Nullable UidNode second) {
+    if (first == null) {
+      return second;
+    }
+    if (second == null) {
+      return first;
+    }
+    if (first.priority >= second.priority) {
+      return first.copyWithChildren(first.left, mergeUids(first.right, second));
+    }
+    return second.copyWithChildren(mergeUids(first, second.left), second.right);
+  }
+
+  // Shared helpers.
+
+  /**
+   * Sets the children of a Cartesian tree over the given priorities, which is a treap of the
+   * positions, and returns its root. Missing children are set to {@link C#INDEX_UNSET}.
+   */
+  private static int buildCartesianTree(int[] priorities, int[] leftChildren, int[] rightChildren) {
+    int[] stack = new int[priorities.length];
+    int stackSize = 0;
+    for (int i = 0; i < priorities.length; i++) {
+      int lastPopped = C.INDEX_UNSET;
+      while (stackSize > 0 && priorities[stack[stackSize - 1]] < priorities[i]) {
+        lastPopped = stack[--stackSize];
+      }
+      leftChildren[i] = lastPopped;
+      rightChildren[i] = C.INDEX_UNSET;
+      if (stackSize > 0) {
+        rightChildren[stack[stackSize - 1]] = i;
+      }
+      stack[stackSize++] = i;
+    }
+    return stackSize == 0 ? C.INDEX_UNSET : stack[0];
+  }
+
+  /**
+   * Returns a pseudo-random treap priority derived from a hash code (the MurmurHash3 finalizer).
+   */
+  private static int getPriority(int hash) {
+    hash ^= hash >>> 16;
+    hash *= 0x85ebca6b;
+    hash ^= hash >>> 13;
+    hash *= 0xc2b2ae35;
+    hash ^= hash >>> 16;
+    return hash;
+  }
+
+  /** A node of the item tree, ordered by index and by label. */
+  private static final class ItemNode implements MediaSourceInfoHolder {
+
+    public final Object uid;
+    public final Timeline timeline;
+    public final long label;
+    public final int priority;
+    @Nullable public final ItemNode left;
+    @Nullable public final ItemNode right;
+    public final int size;
+    public final int windowCount;
+    public final int periodCount;
+
+    public ItemNode(
+        Object uid,
+        Timeline timeline,
+        long label,
+        int priority,
+        @Nullable ItemNode left,
+        @Nullable ItemNode right) {
+      this.uid = uid;
+      this.timeline = timeline;
+      this.label = label;
+      this.priority = priority;
+      this.left = left;
+      this.right = right;
+      size = size(left) + 1 + size(right);
+      windowCount = windowCount(left) + timeline.getWindowCount() + windowCount(right);
+      periodCount = periodCount(left) + timeline.getPeriodCount() + periodCount(right);
+    }
+
+    public ItemNode copyWithChildren(@Nullable ItemNode left, @Nullable ItemNode right) {
+      return left == this.left && right == this.right
+          ? this
+          : new ItemNode(uid, timeline, label, priority, left, right);
+    }
+
+    @Override
+    public Object getUid() {
+      return uid;
+    }
+
+    @Override
+    public Timeline getTimeline() {
+      return timeline;
+    }
+  }
+
+  /** A node of the uid tree, ordered by hash code, holding the uids with the same hash code. */
+  private static final class UidNode {
+
+    public final int hash;
+    public final int priority;
+    public final Object[] uids;
+    public final long[] labels;
+    @Nullable public final UidNode left;
+    @Nullable public final UidNode right;
+
+    public UidNode(
+        int hash, Object[] uids, long[] labels, @Nullable UidNode left, @Nullable UidNode right) {
+      this.hash = hash;
+      this.uids = uids;
+      this.labels = labels;
+      this.left = left;
+      this.right = right;
+      priority = getPriority(hash);
+    }
+
+    public int indexOf(Object uid) {
+      for (int i = 0; i < uids.length; i++) {
+        if (uids[i].equals(uid)) {
+          return i;
+        }
+      }
+      return C.INDEX_UNSET;
+    }
+
+    public UidNode copyWithChildren(@Nullable UidNode left, @Nullable UidNode right) {
+      return left == this.left && right == this.right
+          ? this
+          : new UidNode(hash, uids, labels, left, right);
+    }
+  }
+}
@@ -233,6 +233,12 @@ public interface Renderer extends PlayerMessage.Target {
    */
   int MSG_CUSTOM_BASE = 10000;
 
+  /**
+   * The default duration for which a renderer can make progress without {@link #render} being
+   * called again, in microseconds.
+   */
+  long DEFAULT_DURATION_TO_PROGRESS_US = 10_000L;
+
   /**
    * The renderer states. One of {@link #STATE_DISABLED}, {@link #STATE_ENABLED} or {@link
    * #STATE_STARTED}.
@@ -472,6 +478,26 @@ public interface Renderer extends PlayerMessage.Target {
    */
   void render(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException;
 
+  /**
+   * Returns the duration for which the renderer can make progress without {@link #render} being
+   * called again, for example because it has enough data queued for output, in microseconds.
+   *
+   * <p>The player may use this to call {@link #render} sooner when a renderer is about to run out
+   * of data. The value is a hint only, and the player may call {@link #render} more or less often.
+   *
+   * <p>This method may be called when the renderer is in the following states: {@link
+   * #STATE_ENABLED}, {@link #STATE_STARTED}.
+   *
+   * @param positionUs The current media time in microseconds, measured at the start of the current
+   *     iteration of the rendering loop.
+   * @param elapsedRealtimeUs {@link android.os.SystemClock#elapsedRealtime()} in microseconds,
+   *     measured at the start of the current iteration of the rendering loop.
+   * @return The duration for which the renderer can make progress, in microseconds.
+   */
+  default long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+    return DEFAULT_DURATION_TO_PROGRESS_US;
+  }
+
   /**
    * Whether the renderer is able to immediately render media from the current position.
    *
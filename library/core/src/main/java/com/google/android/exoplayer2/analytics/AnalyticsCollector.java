@@ -271,6 +271,15 @@ public interface AnalyticsCollector
    */
   void onVideoFrameProcessingOffset(long totalProcessingOffsetUs, int frameCount);
 
+  /**
+   * Called to report the judder of video frames rendered by the video renderer.
+   *
+   * @param totalJudderUs The sum of the judder of the video frames with visible judder, in
+   *     microseconds.
+   * @param frameCount The number of video frames included in {@code totalJudderUs}.
+   */
+  void onVideoJudder(long totalJudderUs, int frameCount);
+
   /**
    * Called when a video decoder encounters an error.
    *
@@ -235,6 +235,7 @@ public interface AnalyticsListener {
     EVENT_PLAYER_RELEASED,
     EVENT_AUDIO_CODEC_ERROR,
     EVENT_VIDEO_CODEC_ERROR,
+    EVENT_VIDEO_JUDDER,
   })
   @interface EventFlags {}
   /** {@link Player#getCurrentTimeline()} changed. */
@@ -370,6 +371,8 @@ public interface AnalyticsListener {
   int EVENT_AUDIO_CODEC_ERROR = 1029;
   /** The video codec encountered an error. */
   int EVENT_VIDEO_CODEC_ERROR = 1030;
+  /** Video judder data has been reported. */
+  int EVENT_VIDEO_JUDDER = 1031;
 
   /** Time information of an event. */
   final class EventTime {
@@ -1120,6 +1123,23 @@ public interface AnalyticsListener {
   default void onVideoFrameProcessingOffset(
       EventTime eventTime, long totalProcessingOffsetUs, int frameCount) {}
 
+  /**
+   * Called when there is an update to the video judder reported by a video renderer.
+   *
+   * <p>The judder of a video frame is how far its scheduled release time deviates from the time
+   * expected from the previously released frame and the frame rate of the media. The scheduled
+   * release time is the vsync-adjusted time at which the renderer asks the platform to display the
+   * frame, not the time at which the frame is actually displayed. Only frames with judder that's
+   * large enough to be visible are reported. Dividing {@code frameCount} by the number of rendered
+   * frames gives the proportion of frames with visible judder.
+   *
+   * @param eventTime The event time.
+   * @param totalJudderUs The sum of the judder of the frames with visible judder rendered since the
+   *     last call to this method, in microseconds.
+   * @param frameCount The number of frames included in {@code totalJudderUs}.
+   */
+  default void onVideoJudder(EventTime eventTime, long totalJudderUs, int frameCount) {}
+
   /**
    * Called when a video decoder encounters an error.
    *
@@ -211,6 +211,9 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
 
   @Override
   public final void onAudioPositionAdvancing(long playoutStartSystemTimeMs) {
+    if (!hasListeners()) {
+      return;
+    }
     EventTime eventTime = generateReadingMediaPeriodEventTime();
     sendEvent(
         eventTime,
@@ -320,6 +323,9 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
 
   @Override
   public final void onDroppedFrames(int count, long elapsedMs) {
+    if (!hasListeners()) {
+      return;
+    }
     EventTime eventTime = generatePlayingMediaPeriodEventTime();
     sendEvent(
         eventTime,
@@ -358,6 +364,9 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
 
   @Override
   public final void onVideoFrameProcessingOffset(long totalProcessingOffsetUs, int frameCount) {
+    if (!hasListeners()) {
+      return;
+    }
     EventTime eventTime = generatePlayingMediaPeriodEventTime();
     sendEvent(
         eventTime,
@@ -366,6 +375,18 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
             listener.onVideoFrameProcessingOffset(eventTime, totalProcessingOffsetUs, frameCount));
   }
 
+  @Override
+  public final void onVideoJudder(long totalJudderUs, int frameCount) {
+    if (!hasListeners()) {
+      return;
+    }
+    EventTime eventTime = generatePlayingMediaPeriodEventTime();
+    sendEvent(
+        eventTime,
+        AnalyticsListener.EVENT_VIDEO_JUDDER,
+        listener -> listener.onVideoJudder(eventTime, totalJudderUs, frameCount));
+  }
+
   @Override
   public final void onVideoCodecError(Exception videoCodecError) {
     EventTime eventTime = generateReadingMediaPeriodEventTime();
@@ -802,6 +823,9 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
 
   @Override
   public final void onBandwidthSample(int elapsedMs, long bytesTransferred, long bitrateEstimate) {
+    if (!hasListeners()) {
+      return;
+    }
     EventTime eventTime = generateLoadingMediaPeriodEventTime();
     sendEvent(
         eventTime,
@@ -888,6 +912,14 @@ public class DefaultAnalyticsCollector implements AnalyticsCollector {
     listeners.sendEvent(eventFlag, eventInvocation);
   }
 
+  /**
+   * Returns whether any listener is registered. Frequent events check this to avoid generating an
+   * {@link EventTime} that nobody receives.
+   */
+  private boolean hasListeners() {
+    return listeners.size() > 0;
+  }
+
   /** Generates an {@link EventTime} for the currently playing item in the player. */
   protected final EventTime generateCurrentPlayerMediaPeriodEventTime() {
     return generateEventTime(mediaPeriodQueueTracker.getCurrentPlayerMediaPeriod());
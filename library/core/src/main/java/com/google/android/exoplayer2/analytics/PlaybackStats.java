@@ -239,7 +239,8 @@ public final class PlaybackStats {
    * Returns the combined {@link PlaybackStats} for all input {@link PlaybackStats}.
    *
    * <p>Note that the full history of events is not kept as the history only makes sense in the
-   * context of a single playback.
+   * context of a single playback. The {@link QuantileSketch QuantileSketches} are merged without
+   * loss of accuracy.
    *
    * @param playbackStats Array of {@link PlaybackStats} to combine.
    * @return The combined {@link PlaybackStats}.
@@ -279,6 +280,10 @@ public final class PlaybackStats {
     int fatalErrorPlaybackCount = 0;
     int fatalErrorCount = 0;
     int nonFatalErrorCount = 0;
+    QuantileSketch.Builder joinTimeMsSketch = new QuantileSketch.Builder();
+    QuantileSketch.Builder rebufferTimeMsSketch = new QuantileSketch.Builder();
+    QuantileSketch.Builder videoFormatBitrateSketch = new QuantileSketch.Builder();
+    QuantileSketch.Builder droppedFramesSketch = new QuantileSketch.Builder();
     for (PlaybackStats stats : playbackStats) {
       playbackCount += stats.playbackCount;
       for (int i = 0; i < PLAYBACK_STATE_COUNT; i++) {
@@ -340,6 +345,10 @@ public final class PlaybackStats {
       fatalErrorPlaybackCount += stats.fatalErrorPlaybackCount;
       fatalErrorCount += stats.fatalErrorCount;
       nonFatalErrorCount += stats.nonFatalErrorCount;
+      joinTimeMsSketch.addAll(stats.joinTimeMsSketch);
+      rebufferTimeMsSketch.addAll(stats.rebufferTimeMsSketch);
+      videoFormatBitrateSketch.addAll(stats.videoFormatBitrateSketch);
+      droppedFramesSketch.addAll(stats.droppedFramesSketch);
     }
     return new PlaybackStats(
         playbackCount,
@@ -381,7 +390,11 @@ public final class PlaybackStats {
         fatalErrorCount,
         nonFatalErrorCount,
         /* fatalErrorHistory= */ Collections.emptyList(),
-        /* nonFatalErrorHistory= */ Collections.emptyList());
+        /* nonFatalErrorHistory= */ Collections.emptyList(),
+        joinTimeMsSketch.build(),
+        rebufferTimeMsSketch.build(),
+        videoFormatBitrateSketch.build(),
+        droppedFramesSketch.build());
   }
 
   /** The number of individual playbacks for which these stats were collected. */
@@ -426,6 +439,11 @@ public final class PlaybackStats {
    * The number of playbacks with a valid join time as documented in {@link #totalValidJoinTimeMs}.
    */
   public final int validJoinTimeCount;
+  /**
+   * The distribution of valid join times as documented in {@link #totalValidJoinTimeMs}, in
+   * milliseconds, with one value per playback.
+   */
+  public final QuantileSketch joinTimeMsSketch;
   /** The total number of times a playback has been paused. */
   public final int totalPauseCount;
   /** The total number of times a playback has been paused while rebuffering. */
@@ -445,6 +463,11 @@ public final class PlaybackStats {
    * rebuffer occurred.
    */
   public final long maxRebufferTimeMs;
+  /**
+   * The distribution of the time spent during single rebuffers, in milliseconds, with one value per
+   * completed rebuffer.
+   */
+  public final QuantileSketch rebufferTimeMsSketch;
   /** The number of ad playbacks. */
   public final int adPlaybackCount;
 
@@ -474,6 +497,11 @@ public final class PlaybackStats {
    * was used for playback, in milliseconds.
    */
   public final long totalVideoFormatBitrateTimeProduct;
+  /**
+   * The distribution of video format bitrates, in bits per second, weighted by the media time the
+   * format was used for playback, in milliseconds.
+   */
+  public final QuantileSketch videoFormatBitrateSketch;
   /** The total media time for which audio format data is available, in milliseconds. */
   public final long totalAudioFormatTimeMs;
   /**
@@ -514,6 +542,8 @@ public final class PlaybackStats {
 
   /** The total number of dropped video frames. */
   public final long totalDroppedFrames;
+  /** The distribution of the number of dropped video frames, with one value per playback. */
+  public final QuantileSketch droppedFramesSketch;
   /** The total number of audio underruns. */
   public final long totalAudioUnderruns;
 
@@ -585,7 +615,11 @@ public final class PlaybackStats {
       int fatalErrorCount,
       int nonFatalErrorCount,
       List<EventTimeAndException> fatalErrorHistory,
-      List<EventTimeAndException> nonFatalErrorHistory) {
+      List<EventTimeAndException> nonFatalErrorHistory,
+      QuantileSketch joinTimeMsSketch,
+      QuantileSketch rebufferTimeMsSketch,
+      QuantileSketch videoFormatBitrateSketch,
+      QuantileSketch droppedFramesSketch) {
     this.playbackCount = playbackCount;
     this.playbackStateDurationsMs = playbackStateDurationsMs;
     this.playbackStateHistory = Collections.unmodifiableList(playbackStateHistory);
@@ -626,6 +660,10 @@ public final class PlaybackStats {
     this.nonFatalErrorCount = nonFatalErrorCount;
     this.fatalErrorHistory = Collections.unmodifiableList(fatalErrorHistory);
     this.nonFatalErrorHistory = Collections.unmodifiableList(nonFatalErrorHistory);
+    this.joinTimeMsSketch = joinTimeMsSketch;
+    this.rebufferTimeMsSketch = rebufferTimeMsSketch;
+    this.videoFormatBitrateSketch = videoFormatBitrateSketch;
+    this.droppedFramesSketch = droppedFramesSketch;
   }
 
   /**
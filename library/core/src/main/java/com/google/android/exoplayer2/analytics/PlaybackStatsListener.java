@@ -55,6 +55,11 @@ import java.util.Map;
  * <p>Playback stats are gathered separately for each playback session, i.e. each window in the
  * {@link Timeline} and each single ad.
  *
+ * <p>If the full history of events is not kept, the memory used per playback session is fixed,
+ * which makes the listener suitable for long-running sessions. Distributions such as rebuffer
+ * durations, join times, video bitrates and dropped frames are then still available as {@link
+ * QuantileSketch QuantileSketches} that can be merged across sessions.
+ *
  * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
  *     contains the same ExoPlayer code). See <a
  *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
@@ -367,6 +372,8 @@ public final class PlaybackStatsListener
     private final List<EventTimeAndFormat> audioFormatHistory;
     private final List<EventTimeAndException> fatalErrorHistory;
     private final List<EventTimeAndException> nonFatalErrorHistory;
+    private final QuantileSketch.Builder rebufferTimeMsSketch;
+    private final QuantileSketch.Builder videoFormatBitrateSketch;
     private final boolean isAd;
 
     private long firstReportedTimeMs;
@@ -424,6 +431,8 @@ public final class PlaybackStatsListener
       audioFormatHistory = keepHistory ? new ArrayList<>() : Collections.emptyList();
       fatalErrorHistory = keepHistory ? new ArrayList<>() : Collections.emptyList();
       nonFatalErrorHistory = keepHistory ? new ArrayList<>() : Collections.emptyList();
+      rebufferTimeMsSketch = new QuantileSketch.Builder();
+      videoFormatBitrateSketch = new QuantileSketch.Builder();
       currentPlaybackState = PlaybackStats.PLAYBACK_STATE_NOT_STARTED;
       currentPlaybackStateStartTimeMs = startTime.realtimeMs;
       firstReportedTimeMs = C.TIME_UNSET;
@@ -617,6 +626,12 @@ public final class PlaybackStatsListener
           isFinal ? videoFormatHistory : new ArrayList<>(videoFormatHistory);
       List<EventTimeAndFormat> audioHistory =
           isFinal ? audioFormatHistory : new ArrayList<>(audioFormatHistory);
+      QuantileSketch.Builder joinTimeMsSketch = new QuantileSketch.Builder();
+      if (!isJoinTimeInvalid) {
+        joinTimeMsSketch.add(validJoinTimeMs);
+      }
+      QuantileSketch.Builder droppedFramesSketch = new QuantileSketch.Builder();
+      droppedFramesSketch.add(droppedFrames);
       return new PlaybackStats(
           /* playbackCount= */ 1,
           playbackStateDurationsMs,
@@ -657,7 +672,11 @@ public final class PlaybackStatsListener
           fatalErrorCount,
           nonFatalErrorCount,
           fatalErrorHistory,
-          nonFatalErrorHistory);
+          nonFatalErrorHistory,
+          joinTimeMsSketch.build(),
+          rebufferTimeMsSketch.build(),
+          videoFormatBitrateSketch.build(),
+          droppedFramesSketch.build());
     }
 
     private void updatePlaybackState(@PlaybackState int newPlaybackState, EventTime eventTime) {
@@ -686,6 +705,9 @@ public final class PlaybackStatsListener
         pauseBufferCount++;
       }
       maybeUpdateMaxRebufferTimeMs(eventTime.realtimeMs);
+      if (isRebufferingState(currentPlaybackState) && !isRebufferingState(newPlaybackState)) {
+        rebufferTimeMsSketch.add(eventTime.realtimeMs - lastRebufferStartTimeMs);
+      }
 
       currentPlaybackState = newPlaybackState;
       currentPlaybackStateStartTimeMs = eventTime.realtimeMs;
@@ -827,6 +849,7 @@ public final class PlaybackStatsListener
         if (currentVideoFormat.bitrate != Format.NO_VALUE) {
           videoFormatBitrateTimeMs += mediaDurationMs;
           videoFormatBitrateTimeProduct += mediaDurationMs * currentVideoFormat.bitrate;
+          videoFormatBitrateSketch.add(currentVideoFormat.bitrate, max(0, mediaDurationMs));
         }
       }
       lastVideoFormatStartTimeMs = nowMs;
@@ -0,0 +1,305 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.analytics;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * A fixed-memory, mergeable summary of the distribution of non-negative values.
+ *
+ * <p>Values are counted in logarithmic buckets, similar to an HDR histogram. Values below {@code
+ * 32} are counted exactly and larger values are counted in buckets whose width is at most 1/16 of
+ * their lower bound, so that quantiles are reported with a relative error of at most about 3%. The
+ * memory used by a sketch only depends on the largest value it contains and never exceeds {@value
+ * #MAX_BUCKET_COUNT} counters, regardless of the number of values added.
+ *
+ * <p>Sketches are immutable. Sketches collected from different playbacks, or on different devices
+ * via {@link #toByteArray()} and {@link #fromByteArray(byte[])}, can be combined with {@link
+ * #merge(QuantileSketch...)} without loss of accuracy.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class QuantileSketch {
+
+  /** The maximum number of counters held by a sketch. */
+  public static final int MAX_BUCKET_COUNT = 960;
+
+  /** An empty sketch. */
+  public static final QuantileSketch EMPTY = new Builder().build();
+
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int SUB_BUCKET_HALF_COUNT = SUB_BUCKET_COUNT / 2;
+  private static final int SERIALIZATION_VERSION = 1;
+
+  /**
+   * Returns the combined {@link QuantileSketch} for all input sketches.
+   *
+   * @param sketches Array of {@link QuantileSketch QuantileSketches} to combine.
+   * @return The combined {@link QuantileSketch}.
+   */
+  public static QuantileSketch merge(QuantileSketch... sketches) {
+    Builder builder = new Builder();
+    for (QuantileSketch sketch : sketches) {
+      builder.addAll(sketch);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Restores a sketch from the output of {@link #toByteArray()}.
+   *
+   * @param data The serialized sketch.
+   * @return The restored {@link QuantileSketch}.
+   * @throws IllegalArgumentException If {@code data} is not a valid serialized sketch.
+   */
+  public static QuantileSketch fromByteArray(byte[] data) {
+    ByteBuffer buffer = ByteBuffer.wrap(data);
+    try {
+      checkArgument(buffer.getInt() == SERIALIZATION_VERSION);
+      long count = buffer.getLong();
+      long min = buffer.getLong();
+      long max = buffer.getLong();
+      long sum = buffer.getLong();
+      int bucketCount = buffer.getInt();
+      checkArgument(bucketCount >= 0 && bucketCount <= MAX_BUCKET_COUNT);
+      long[] counts = new long[bucketCount];
+      long totalCount = 0;
+      for (int i = 0; i < bucketCount; i++) {
+        counts[i] = buffer.getLong();
+        checkArgument(counts[i] >= 0);
+        totalCount += counts[i];
+      }
+      checkArgument(!buffer.hasRemaining() && totalCount == count);
+      checkArgument(count == 0 || (min >= 0 && min <= max));
+      return new QuantileSketch(counts, count, min, max, sum);
+    } catch (BufferUnderflowException e) {
+      throw new IllegalArgumentException(e);
+    }
+  }
+
+  /** The total weight of all values added to the sketch. */
+  public final long count;
+
+  private final long[] counts;
+  private final long min;
+  private final long max;
+  private final long sum;
+
+  private QuantileSketch(long[] counts, long count, long min, long max, long sum) {
+    this.counts = counts;
+    this.count = count;
+    this.min = min;
+    this.max = max;
+    this.sum = sum;
+  }
+
+  /** Returns the smallest value in the sketch, or {@link C#LENGTH_UNSET} if it's empty. */
+  public long getMin() {
+    return count == 0 ? C.LENGTH_UNSET : min;
+  }
+
+  /** Returns the largest value in the sketch, or {@link C#LENGTH_UNSET} if it's empty. */
+  public long getMax() {
+    return count == 0 ? C.LENGTH_UNSET : max;
+  }
+
+  /** Returns the weighted mean of all values, or {@link C#LENGTH_UNSET} if the sketch is empty. */
+  public float getMean() {
+    return count == 0 ? C.LENGTH_UNSET : (float) sum / count;
+  }
+
+  /**
+   * Returns an estimate of the given quantile, or {@link C#LENGTH_UNSET} if the sketch is empty.
+   *
+   * <p>The estimate is within about 3% of the exact value, and exact for values below 32.
+   *
+   * @param quantile The quantile, between 0 and 1. For example, 0.5 for the median and 0.95 for the
+   *     95th percentile.
+   * @return The estimated value at the given quantile.
+   */
+  public long getQuantile(double quantile) {
+    checkArgument(quantile >= 0 && quantile <= 1);
+    if (count == 0) {
+      return C.LENGTH_UNSET;
+    }
+    long rank = max(1, (long) Math.ceil(quantile * count));
+    if (rank == 1) {
+      return min;
+    } else if (rank == count) {
+      return max;
+    }
+    long cumulativeCount = 0;
+    for (int i = 0; i < counts.length; i++) {
+      cumulativeCount += counts[i];
+      if (cumulativeCount >= rank) {
+        // Use the middle of the bucket, restricted to the range of values actually added.
+        long lowerBound = max(min, getBucketLowerBound(i));
+        long upperBound =
+            i == MAX_BUCKET_COUNT - 1 ? max : min(max, getBucketLowerBound(i + 1) - 1);
+        return lowerBound + (upperBound - lowerBound) / 2;
+      }
+    }
+    return max;
+  }
+
+  /** Returns the sketch serialized to a byte array that can be read by {@link #fromByteArray}. */
+  public byte[] toByteArray() {
+    ByteBuffer buffer = ByteBuffer.allocate(/* version and length */ 8 + 8 * (4 + counts.length));
+    buffer.putInt(SERIALIZATION_VERSION);
+    buffer.putLong(count);
+    buffer.putLong(min);
+    buffer.putLong(max);
+    buffer.putLong(sum);
+    buffer.putInt(counts.length);
+    for (long bucketCount : counts) {
+      buffer.putLong(bucketCount);
+    }
+    return buffer.array();
+  }
+
+  @Override
+  public boolean equals(@Nullable Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    QuantileSketch other = (QuantileSketch) o;
+    return count == other.count
+        && getMin() == other.getMin()
+        && getMax() == other.getMax()
+        && sum == other.sum
+        && Arrays.equals(counts, other.counts);
+  }
+
+  @Override
+  public int hashCode() {
+    int result = (int) (count ^ (count >>> 32));
+    result = 31 * result + (int) (sum ^ (sum >>> 32));
+    result = 31 * result + Arrays.hashCode(counts);
+    return result;
+  }
+
+  private static int getBucketIndex(long value) {
+    if (value < SUB_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - (SUB_BUCKET_BITS - 1);
+    return SUB_BUCKET_COUNT
+        + (exponent - SUB_BUCKET_BITS) * SUB_BUCKET_HALF_COUNT
+        + (int) ((value >>> shift) - SUB_BUCKET_HALF_COUNT);
+  }
+
+  private static long getBucketLowerBound(int bucketIndex) {
+    if (bucketIndex < SUB_BUCKET_COUNT) {
+      return bucketIndex;
+    }
+    int offset = bucketIndex - SUB_BUCKET_COUNT;
+    int shift = offset / SUB_BUCKET_HALF_COUNT + 1;
+    return (long) (offset % SUB_BUCKET_HALF_COUNT + SUB_BUCKET_HALF_COUNT) << shift;
+  }
+
+  /** Accumulates values into a {@link QuantileSketch}. */
+  /* package */ static final class Builder {
+
+    private long[] counts;
+    private long count;
+    private long min;
+    private long max;
+    private long sum;
+
+    /** Creates an empty builder. */
+    public Builder() {
+      counts = new long[0];
+      min = Long.MAX_VALUE;
+      max = Long.MIN_VALUE;
+    }
+
+    /**
+     * Adds a value with a weight of one.
+     *
+     * @param value The non-negative value to add.
+     */
+    public void add(long value) {
+      add(value, /* weight= */ 1);
+    }
+
+    /**
+     * Adds a value with the given weight, for example the time for which the value applied.
+     *
+     * @param value The non-negative value to add.
+     * @param weight The non-negative weight of the value. Values with zero weight are ignored.
+     */
+    public void add(long value, long weight) {
+      checkArgument(value >= 0 && weight >= 0);
+      if (weight == 0) {
+        return;
+      }
+      int bucketIndex = getBucketIndex(value);
+      ensureBucketCount(bucketIndex + 1);
+      counts[bucketIndex] += weight;
+      count += weight;
+      sum += value * weight;
+      min = min(min, value);
+      max = max(max, value);
+    }
+
+    /**
+     * Adds all values of a sketch.
+     *
+     * @param sketch The {@link QuantileSketch} to add.
+     */
+    public void addAll(QuantileSketch sketch) {
+      if (sketch.count == 0) {
+        return;
+      }
+      ensureBucketCount(sketch.counts.length);
+      for (int i = 0; i < sketch.counts.length; i++) {
+        counts[i] += sketch.counts[i];
+      }
+      count += sketch.count;
+      sum += sketch.sum;
+      min = min(min, sketch.min);
+      max = max(max, sketch.max);
+    }
+
+    /** Returns a {@link QuantileSketch} with the values added so far. */
+    public QuantileSketch build() {
+      return new QuantileSketch(counts.clone(), count, min, max, sum);
+    }
+
+    private void ensureBucketCount(int bucketCount) {
+      if (counts.length < bucketCount) {
+        counts = Arrays.copyOf(counts, bucketCount);
+      }
+    }
+  }
+}
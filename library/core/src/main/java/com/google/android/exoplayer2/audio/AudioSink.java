@@ -94,7 +94,7 @@ public interface AudioSink {
      * <p>An audio sink implementation may never call this method (for example, if audio data is
      * consumed in batches rather than based on the sink's own clock).
      *
-     * @param bufferSize The size of the sink's buffer, in bytes.
+     * @param bufferSize The size of the sink's buffer in use when it ran out of data, in bytes.
      * @param bufferSizeMs The size of the sink's buffer, in milliseconds, if it is configured for
      *     PCM output. {@link C#TIME_UNSET} if it is configured for encoded audio output, as the
      *     buffered media can have a variable bitrate so the duration may be unknown.
@@ -387,6 +387,16 @@ public interface AudioSink {
   /** Returns whether the sink has data pending that has not been consumed yet. */
   boolean hasPendingData();
 
+  /**
+   * Returns the real time until the sink runs out of data to play out if no more data is written to
+   * it, in microseconds, or {@link C#TIME_UNSET} if unknown.
+   *
+   * <p>The playback loop can use this to feed the sink sooner when it's about to underrun.
+   */
+  default long getDurationUntilUnderrunUs() {
+    return C.TIME_UNSET;
+  }
+
   /**
    * Attempts to set the playback parameters. The audio sink may override these parameters if they
    * are not supported.
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.VisibleForTesting;
+import com.google.android.exoplayer2.C;
+
+/**
+ * Adapts the size of the part of an {@link android.media.AudioTrack} buffer that's used, to keep
+ * latency low without underruns.
+ *
+ * <p>The buffer starts small. It's doubled on each underrun, and grown to cover the longest
+ * observed interval between writes, so that the track doesn't run out of data while the caller
+ * isn't writing. It's shrunk by a quarter after each period without underruns in which the interval
+ * between writes stayed short enough. The size is kept between a minimum size and the capacity of
+ * the buffer.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class AudioTrackBufferSizeController {
+
+  /** The initial buffer size, as a multiple of the minimum buffer size. */
+  @VisibleForTesting static final int INITIAL_MIN_BUFFER_SIZE_MULTIPLIER = 2;
+  /** The buffer size, as a multiple of the longest interval between writes. */
+  @VisibleForTesting static final int WRITE_INTERVAL_MULTIPLIER = 2;
+  /** The time without underruns or growth after which the buffer is shrunk, in milliseconds. */
+  @VisibleForTesting static final long SHRINK_INTERVAL_MS = 10_000;
+
+  private final int minBufferSizeFrames;
+  private final int maxBufferSizeFrames;
+  private final int sampleRate;
+
+  private int bufferSizeFrames;
+  private long lastWriteTimeMs;
+  private long maxWriteIntervalMs;
+  private long lastAdjustmentTimeMs;
+
+  /**
+   * Creates an instance.
+   *
+   * @param minBufferSizeFrames The minimum buffer size, in frames.
+   * @param maxBufferSizeFrames The maximum buffer size, which is the capacity of the buffer, in
+   *     frames.
+   * @param sampleRate The sample rate of the track, in Hz.
+   */
+  public AudioTrackBufferSizeController(
+      int minBufferSizeFrames, int maxBufferSizeFrames, int sampleRate) {
+    this.minBufferSizeFrames = min(minBufferSizeFrames, maxBufferSizeFrames);
+    this.maxBufferSizeFrames = maxBufferSizeFrames;
+    this.sampleRate = sampleRate;
+    bufferSizeFrames =
+        constrainBufferSize((long) minBufferSizeFrames * INITIAL_MIN_BUFFER_SIZE_MULTIPLIER);
+    lastWriteTimeMs = C.TIME_UNSET;
+    lastAdjustmentTimeMs = C.TIME_UNSET;
+  }
+
+  /** Returns the buffer size to use, in frames. */
+  public int getBufferSizeFrames() {
+    return bufferSizeFrames;
+  }
+
+  /**
+   * Called when data is written to the track while it's playing.
+   *
+   * @param nowMs The current {@link android.os.SystemClock#elapsedRealtime()}, in milliseconds.
+   * @return Whether the buffer size changed.
+   */
+  public boolean onWrite(long nowMs) {
+    if (lastAdjustmentTimeMs == C.TIME_UNSET) {
+      lastAdjustmentTimeMs = nowMs;
+    }
+    if (lastWriteTimeMs != C.TIME_UNSET) {
+      maxWriteIntervalMs = max(maxWriteIntervalMs, nowMs - lastWriteTimeMs);
+    }
+    lastWriteTimeMs = nowMs;
+    long requiredBufferSizeFrames =
+        maxWriteIntervalMs * WRITE_INTERVAL_MULTIPLIER * sampleRate / C.MILLIS_PER_SECOND;
+    if (requiredBufferSizeFrames > bufferSizeFrames) {
+      return updateBufferSize(requiredBufferSizeFrames, nowMs);
+    }
+    if (nowMs - lastAdjustmentTimeMs >= SHRINK_INTERVAL_MS) {
+      maxWriteIntervalMs = 0;
+      return updateBufferSize(max(bufferSizeFrames * 3L / 4, requiredBufferSizeFrames), nowMs);
+    }
+    return false;
+  }
+
+  /**
+   * Called when the track has underrun.
+   *
+   * @param nowMs The current {@link android.os.SystemClock#elapsedRealtime()}, in milliseconds.
+   * @return Whether the buffer size changed.
+   */
+  public boolean onUnderrun(long nowMs) {
+    return updateBufferSize(bufferSizeFrames * 2L, nowMs);
+  }
+
+  /**
+   * Called when the track is paused, so that the time for which it's paused isn't taken as an
+   * interval between writes.
+   */
+  public void onPaused() {
+    lastWriteTimeMs = C.TIME_UNSET;
+  }
+
+  private boolean updateBufferSize(long bufferSizeFrames, long nowMs) {
+    lastAdjustmentTimeMs = nowMs;
+    int oldBufferSizeFrames = this.bufferSizeFrames;
+    this.bufferSizeFrames = constrainBufferSize(bufferSizeFrames);
+    return this.bufferSizeFrames != oldBufferSizeFrames;
+  }
+
+  private int constrainBufferSize(long bufferSizeFrames) {
+    return (int) max(minBufferSizeFrames, min(maxBufferSizeFrames, bufferSizeFrames));
+  }
+}
@@ -436,6 +436,21 @@ import java.lang.reflect.Method;
         || forceHasPendingData();
   }
 
+  /**
+   * Returns the real time it will take to play out the data written to the audio track from its
+   * current position, which is the time until the track will underrun if no more data is written.
+   *
+   * @param writtenFrames The number of frames written to the audio track.
+   * @return The duration until the written data has been played out, in microseconds.
+   */
+  public long getPendingPlayoutDurationUs(long writtenFrames) {
+    long pendingDurationUs =
+        sampleCountToDurationUs(writtenFrames, outputSampleRate)
+            - getCurrentPositionUs(/* sourceEnded= */ false);
+    return max(
+        0, Util.getPlayoutDurationForMediaDuration(pendingDurationUs, audioTrackPlaybackSpeed));
+  }
+
   /**
    * Pauses the audio track position tracker, returning whether the audio track needs to be paused
    * to cause playback to pause. If {@code false} is returned the audio track will pause without
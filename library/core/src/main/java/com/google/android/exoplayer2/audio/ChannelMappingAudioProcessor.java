@@ -36,6 +36,11 @@ import java.nio.ByteBuffer;
 
   @Nullable private int[] pendingOutputChannels;
   @Nullable private int[] outputChannels;
+  private short[] frame;
+
+  public ChannelMappingAudioProcessor() {
+    frame = new short[0];
+  }
 
   /**
    * Resets the channel mapping. After calling this method, call {@link #configure(AudioFormat)} to
@@ -83,20 +88,46 @@ import java.nio.ByteBuffer;
     int limit = inputBuffer.limit();
     int frameCount = (limit - position) / inputAudioFormat.bytesPerFrame;
     int outputSize = frameCount * outputAudioFormat.bytesPerFrame;
-    ByteBuffer buffer = replaceOutputBuffer(outputSize);
-    while (position < limit) {
-      for (int channelIndex : outputChannels) {
-        buffer.putShort(inputBuffer.getShort(position + 2 * channelIndex));
+    ByteBuffer buffer = replaceOutputBuffer(inputBuffer, outputSize);
+    if (isOutputOverwritingInput()) {
+      while (position < limit) {
+        // Read the whole frame first, as its output is written over it.
+        for (int i = 0; i < outputChannels.length; i++) {
+          frame[i] = inputBuffer.getShort(position + 2 * outputChannels[i]);
+        }
+        for (int i = 0; i < outputChannels.length; i++) {
+          buffer.putShort(frame[i]);
+        }
+        position += inputAudioFormat.bytesPerFrame;
+      }
+    } else {
+      while (position < limit) {
+        for (int channelIndex : outputChannels) {
+          buffer.putShort(inputBuffer.getShort(position + 2 * channelIndex));
+        }
+        position += inputAudioFormat.bytesPerFrame;
       }
-      position += inputAudioFormat.bytesPerFrame;
     }
     inputBuffer.position(limit);
     buffer.flip();
   }
 
+  @Override
+  protected boolean canOutputBeOverwritten() {
+    return true;
+  }
+
+  @Override
+  protected boolean canProcessInPlace() {
+    return outputAudioFormat.bytesPerFrame <= inputAudioFormat.bytesPerFrame;
+  }
+
   @Override
   protected void onFlush() {
     outputChannels = pendingOutputChannels;
+    if (outputChannels != null && frame.length < outputChannels.length) {
+      frame = new short[outputChannels.length];
+    }
   }
 
   @Override
@@ -414,6 +414,10 @@ public abstract class DecoderAudioRenderer<
         decoderCounters.skippedOutputBufferCount += outputBuffer.skippedOutputBufferCount;
         audioSink.handleDiscontinuity();
       }
+      if (outputBuffer.decodeTimeUs > 0 && !outputBuffer.isEndOfStream()) {
+        decoderCounters.addDecodeTime(
+            outputBuffer.decodeTimeUs, /* count= */ outputBuffer.skippedOutputBufferCount + 1);
+      }
       if (outputBuffer.isFirstSample()) {
         processFirstSampleOfStream();
       }
@@ -567,6 +571,16 @@ public abstract class DecoderAudioRenderer<
         || (inputFormat != null && (isSourceReady() || outputBuffer != null));
   }
 
+  @Override
+  public long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+    long durationUntilUnderrunUs = audioSink.getDurationUntilUnderrunUs();
+    if (durationUntilUnderrunUs == C.TIME_UNSET || hasReadStreamToEnd()) {
+      return DEFAULT_DURATION_TO_PROGRESS_US;
+    }
+    // Feed the sink again well before it runs out of data.
+    return durationUntilUnderrunUs / 2;
+  }
+
   @Override
   public long getPositionUs() {
     if (getState() == STATE_STARTED) {
@@ -231,6 +231,7 @@ public final class DefaultAudioSink implements AudioSink {
     private int offloadMode;
     AudioTrackBufferSizeProvider audioTrackBufferSizeProvider;
     @Nullable AudioOffloadListener audioOffloadListener;
+    private boolean adaptiveBufferSizingEnabled;
 
     /**
      * @deprecated Use {@link #Builder(Context)} instead.
@@ -301,7 +302,8 @@ public final class DefaultAudioSink implements AudioSink {
      * Sets whether to enable 32-bit float output or integer output. Where possible, 32-bit float
      * output will be used if the input is 32-bit float, and also if the input is high resolution
      * (24-bit or 32-bit) integer PCM. Float output is supported from API level 21. Audio processing
-     * (for example, speed adjustment) will not be available when float output is in use.
+     * will not be available when float output is in use, except for speed and pitch adjustment by
+     * the {@link DefaultAudioProcessorChain}.
      *
      * <p>The default value is {@code false}.
      */
@@ -367,6 +369,26 @@ public final class DefaultAudioSink implements AudioSink {
       return this;
     }
 
+    /**
+     * Sets whether the size of the used part of the {@link AudioTrack} buffer is adapted during
+     * playback, to keep latency low without underruns.
+     *
+     * <p>If enabled, playback starts with a small buffer, which is grown when the track underruns
+     * or when the interval between writes gets longer, and shrunk again after a period of stable
+     * playback. The buffer allocated for the track, as computed by the {@link
+     * AudioTrackBufferSizeProvider}, is the upper bound. Adaptive sizing is only applied to PCM
+     * output without tunneling, from API level 24.
+     *
+     * <p>This method is experimental, and will be renamed or removed in a future release.
+     *
+     * <p>The default value is {@code false}.
+     */
+    @CanIgnoreReturnValue
+    public Builder setExperimentalAdaptiveBufferSizingEnabled(boolean adaptiveBufferSizingEnabled) {
+      this.adaptiveBufferSizingEnabled = adaptiveBufferSizingEnabled;
+      return this;
+    }
+
     /** Builds the {@link DefaultAudioSink}. Must only be called once per Builder instance. */
     public DefaultAudioSink build() {
       if (audioProcessorChain == null) {
@@ -498,6 +520,7 @@ public final class DefaultAudioSink implements AudioSink {
   private final PendingExceptionHolder<WriteException> writeExceptionPendingExceptionHolder;
   private final AudioTrackBufferSizeProvider audioTrackBufferSizeProvider;
   @Nullable private final AudioOffloadListener audioOffloadListener;
+  private final boolean adaptiveBufferSizingEnabled;
 
   @Nullable private PlayerId playerId;
   @Nullable private Listener listener;
@@ -505,6 +528,7 @@ public final class DefaultAudioSink implements AudioSink {
   private @MonotonicNonNull Configuration configuration;
   private @MonotonicNonNull AudioProcessingPipeline audioProcessingPipeline;
   @Nullable private AudioTrack audioTrack;
+  @Nullable private AudioTrackBufferSizeController bufferSizeController;
   private AudioCapabilities audioCapabilities;
   private @MonotonicNonNull AudioCapabilitiesReceiver audioCapabilitiesReceiver;
 
@@ -580,6 +604,7 @@ public final class DefaultAudioSink implements AudioSink {
     writeExceptionPendingExceptionHolder =
         new PendingExceptionHolder<>(AUDIO_TRACK_RETRY_DURATION_MS);
     audioOffloadListener = builder.audioOffloadListener;
+    adaptiveBufferSizingEnabled = Util.SDK_INT >= 24 && builder.adaptiveBufferSizingEnabled;
   }
 
   // AudioSink implementation.
@@ -653,6 +678,11 @@ public final class DefaultAudioSink implements AudioSink {
       ImmutableList.Builder<AudioProcessor> pipelineProcessors = new ImmutableList.Builder<>();
       if (shouldUseFloatOutput(inputFormat.pcmEncoding)) {
         pipelineProcessors.addAll(toFloatPcmAvailableAudioProcessors);
+        if (audioProcessorChain instanceof DefaultAudioProcessorChain) {
+          // SonicAudioProcessor supports float PCM, so speed and pitch can still be adjusted.
+          pipelineProcessors.add(
+              ((DefaultAudioProcessorChain) audioProcessorChain).sonicAudioProcessor);
+        }
       } else {
         pipelineProcessors.addAll(toIntPcmAvailableAudioProcessors);
         pipelineProcessors.add(audioProcessorChain.getAudioProcessors());
@@ -806,6 +836,13 @@ public final class DefaultAudioSink implements AudioSink {
     if (preferredDevice != null && Util.SDK_INT >= 23) {
       Api23.setPreferredDeviceOnAudioTrack(audioTrack, preferredDevice);
     }
+    if (adaptiveBufferSizingEnabled
+        && configuration.outputMode == OUTPUT_MODE_PCM
+        && !tunneling
+        && Util.SDK_INT >= 24) {
+      bufferSizeController = Api24.createBufferSizeController(audioTrack, configuration);
+      Api24.setBufferSizeInFrames(audioTrack, bufferSizeController.getBufferSizeFrames());
+    }
 
     startMediaTimeUsNeedsInit = true;
     return true;
@@ -1145,6 +1182,11 @@ public final class DefaultAudioSink implements AudioSink {
     }
 
     lastFeedElapsedRealtimeMs = SystemClock.elapsedRealtime();
+    if (playing
+        && bufferSizeController != null
+        && bufferSizeController.onWrite(lastFeedElapsedRealtimeMs)) {
+      Api24.setBufferSizeInFrames(audioTrack, bufferSizeController.getBufferSizeFrames());
+    }
 
     if (bytesWrittenOrError < 0) {
       int error = bytesWrittenOrError;
@@ -1238,6 +1280,14 @@ public final class DefaultAudioSink implements AudioSink {
         && audioTrackPositionTracker.hasPendingData(getWrittenFrames());
   }
 
+  @Override
+  public long getDurationUntilUnderrunUs() {
+    if (!isAudioTrackInitialized() || startMediaTimeUsNeedsInit) {
+      return C.TIME_UNSET;
+    }
+    return audioTrackPositionTracker.getPendingPlayoutDurationUs(getWrittenFrames());
+  }
+
   @Override
   public void setPlaybackParameters(PlaybackParameters playbackParameters) {
     this.playbackParameters =
@@ -1367,6 +1417,9 @@ public final class DefaultAudioSink implements AudioSink {
     if (isAudioTrackInitialized() && audioTrackPositionTracker.pause()) {
       audioTrack.pause();
     }
+    if (bufferSizeController != null) {
+      bufferSizeController.onPaused();
+    }
   }
 
   @Override
@@ -1395,6 +1448,7 @@ public final class DefaultAudioSink implements AudioSink {
       audioTrackPositionTracker.reset();
       releaseAudioTrackAsync(audioTrack, releasingConditionVariable);
       audioTrack = null;
+      bufferSizeController = null;
     }
     writeExceptionPendingExceptionHolder.clear();
     initializationExceptionPendingExceptionHolder.clear();
@@ -1492,6 +1546,9 @@ public final class DefaultAudioSink implements AudioSink {
     bytesUntilNextAvSync = 0;
     trimmingAudioProcessor.resetTrimmedFrameCount();
     setupAudioProcessors();
+    if (bufferSizeController != null) {
+      bufferSizeController.onPaused();
+    }
   }
 
   @RequiresApi(23)
@@ -1545,7 +1602,7 @@ public final class DefaultAudioSink implements AudioSink {
       audioProcessorPlaybackParameters = PlaybackParameters.DEFAULT;
     }
     skipSilenceEnabled =
-        shouldApplyAudioProcessorPlaybackParameters()
+        shouldApplyAudioProcessorSkipSilence()
             ? audioProcessorChain.applySkipSilenceEnabled(skipSilenceEnabled)
             : DEFAULT_SKIP_SILENCE;
     mediaPositionParametersCheckpoints.add(
@@ -1570,7 +1627,19 @@ public final class DefaultAudioSink implements AudioSink {
     //   https://github.com/google/ExoPlayer/issues/4803);
     // - when playing encoded audio via passthrough/offload, because modifying the audio stream
     //   would require decoding/re-encoding; and
-    // - when outputting float PCM audio, because SonicAudioProcessor outputs 16-bit integer PCM.
+    // - when outputting float PCM audio with a custom audio processor chain, because the chain may
+    //   include processors that only support 16-bit integer PCM. The SonicAudioProcessor of the
+    //   DefaultAudioProcessorChain supports float PCM, so it's applied on its own in that case.
+    return !tunneling
+        && configuration.outputMode == OUTPUT_MODE_PCM
+        && (!shouldUseFloatOutput(configuration.inputFormat.pcmEncoding)
+            || audioProcessorChain instanceof DefaultAudioProcessorChain);
+  }
+
+  /** Returns whether silence skipping should be applied in the current configuration. */
+  private boolean shouldApplyAudioProcessorSkipSilence() {
+    // Silence skipping isn't applied to float PCM audio, because SilenceSkippingAudioProcessor only
+    // supports 16-bit integer PCM.
     return !tunneling
         && configuration.outputMode == OUTPUT_MODE_PCM
         && !shouldUseFloatOutput(configuration.inputFormat.pcmEncoding);
@@ -2010,6 +2079,17 @@ public final class DefaultAudioSink implements AudioSink {
 
     @Override
     public void onUnderrun(int bufferSize, long bufferSizeMs) {
+      if (bufferSizeController != null) {
+        // Report the part of the buffer that was in use when the underrun occurred, rather than
+        // the allocated size or the size it's grown to in response.
+        int bufferSizeFrames = bufferSizeController.getBufferSizeFrames();
+        bufferSize = bufferSizeFrames * configuration.outputPcmFrameSize;
+        bufferSizeMs = Util.usToMs(configuration.framesToDurationUs(bufferSizeFrames));
+        if (bufferSizeController.onUnderrun(SystemClock.elapsedRealtime())) {
+          Api24.setBufferSizeInFrames(
+              checkNotNull(audioTrack), bufferSizeController.getBufferSizeFrames());
+        }
+      }
       if (listener != null) {
         long elapsedSinceLastFeedMs = SystemClock.elapsedRealtime() - lastFeedElapsedRealtimeMs;
         listener.onUnderrun(bufferSize, bufferSizeMs, elapsedSinceLastFeedMs);
@@ -2265,6 +2345,31 @@ public final class DefaultAudioSink implements AudioSink {
     }
   }
 
+  @RequiresApi(24)
+  private static final class Api24 {
+    private Api24() {}
+
+    @DoNotInline
+    public static AudioTrackBufferSizeController createBufferSizeController(
+        AudioTrack audioTrack, Configuration configuration) {
+      int minBufferSizeFrames =
+          getAudioTrackMinBufferSize(
+                  configuration.outputSampleRate,
+                  configuration.outputChannelConfig,
+                  configuration.outputEncoding)
+              / configuration.outputPcmFrameSize;
+      return new AudioTrackBufferSizeController(
+          minBufferSizeFrames,
+          audioTrack.getBufferCapacityInFrames(),
+          configuration.outputSampleRate);
+    }
+
+    @DoNotInline
+    public static void setBufferSizeInFrames(AudioTrack audioTrack, int bufferSizeInFrames) {
+      audioTrack.setBufferSizeInFrames(bufferSizeInFrames);
+    }
+  }
+
   @RequiresApi(31)
   private static final class Api31 {
     private Api31() {}
@@ -103,6 +103,11 @@ public class ForwardingAudioSink implements AudioSink {
     return sink.hasPendingData();
   }
 
+  @Override
+  public long getDurationUntilUnderrunUs() {
+    return sink.getDurationUntilUnderrunUs();
+  }
+
   @Override
   public void setPlaybackParameters(PlaybackParameters playbackParameters) {
     sink.setPlaybackParameters(playbackParameters);
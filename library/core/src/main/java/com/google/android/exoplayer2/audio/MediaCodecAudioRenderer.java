@@ -639,6 +639,16 @@ public class MediaCodecAudioRenderer extends MediaCodecRenderer implements Media
     return audioSink.hasPendingData() || super.isReady();
   }
 
+  @Override
+  public long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+    long durationUntilUnderrunUs = audioSink.getDurationUntilUnderrunUs();
+    if (durationUntilUnderrunUs == C.TIME_UNSET || hasReadStreamToEnd()) {
+      return DEFAULT_DURATION_TO_PROGRESS_US;
+    }
+    // Feed the sink again well before it runs out of data.
+    return durationUntilUnderrunUs / 2;
+  }
+
   @Override
   public long getPositionUs() {
     if (getState() == STATE_STARTED) {
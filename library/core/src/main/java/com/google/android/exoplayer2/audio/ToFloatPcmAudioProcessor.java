@@ -75,7 +75,8 @@ import java.nio.ByteBuffer;
         }
         break;
       case C.ENCODING_PCM_32BIT:
-        buffer = replaceOutputBuffer(size);
+        // The output is the same size as the input, so it can be written over the input.
+        buffer = replaceOutputBuffer(inputBuffer, size);
         for (int i = position; i < limit; i += 4) {
           int pcm32BitInteger =
               (inputBuffer.get(i) & 0xFF)
@@ -100,6 +101,16 @@ import java.nio.ByteBuffer;
     buffer.flip();
   }
 
+  @Override
+  protected boolean canOutputBeOverwritten() {
+    return true;
+  }
+
+  @Override
+  protected boolean canProcessInPlace() {
+    return inputAudioFormat.encoding == C.ENCODING_PCM_32BIT;
+  }
+
   /**
    * Converts the provided 32-bit integer to a 32-bit float value and writes it to {@code buffer}.
    *
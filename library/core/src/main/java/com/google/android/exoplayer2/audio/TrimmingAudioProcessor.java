@@ -136,6 +136,11 @@ import java.nio.ByteBuffer;
     buffer.flip();
   }
 
+  @Override
+  protected boolean canOutputBeOverwritten() {
+    return true;
+  }
+
   @Override
   public ByteBuffer getOutput() {
     if (super.isEnded() && endBufferSize > 0) {
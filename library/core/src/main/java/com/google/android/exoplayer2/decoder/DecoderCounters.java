@@ -114,6 +114,72 @@ public final class DecoderCounters {
    * updating it directly.
    */
   public int videoFrameProcessingOffsetCount;
+  /**
+   * The sum of the times spent decoding buffers in microseconds, for decoders that measure it.
+   *
+   * <p>Dividing by {@link #decodeTimeCount} gives the average decode time per buffer, which is the
+   * inverse of the decode throughput.
+   *
+   * <p>Note: Use {@link #addDecodeTime(long, int)} to update this field instead of updating it
+   * directly.
+   */
+  public long totalDecodeTimeUs;
+  /**
+   * The number of buffers whose decode time was added to {@link #totalDecodeTimeUs}.
+   *
+   * <p>Note: Use {@link #addDecodeTime(long, int)} to update this field instead of updating it
+   * directly.
+   */
+  public int decodeTimeCount;
+  /**
+   * The number of batches of samples processed without a decoder.
+   *
+   * <p>Dividing by the playback duration gives the number of batches per second, which is the
+   * number of round trips between the renderer and its output.
+   *
+   * <p>Note: Use {@link #addBypassBatch(int)} to update this field instead of updating it directly.
+   */
+  public int bypassBatchCount;
+  /**
+   * The number of samples in the batches counted by {@link #bypassBatchCount}.
+   *
+   * <p>Dividing by {@link #bypassBatchCount} gives the average number of samples per batch.
+   *
+   * <p>Note: Use {@link #addBypassBatch(int)} to update this field instead of updating it directly.
+   */
+  public int bypassBatchSampleCount;
+  /**
+   * The number of dropped output buffers that weren't late yet, but were dropped because they were
+   * predicted to be late.
+   *
+   * <p>These buffers are also included in {@link #droppedBufferCount}.
+   */
+  public int predictedDroppedBufferCount;
+  /**
+   * The number of times all buffers to a keyframe were dropped before the buffers were late enough
+   * to require it, because the renderer was predicted to keep falling behind.
+   *
+   * <p>These events are also included in {@link #droppedToKeyframeCount}.
+   */
+  public int predictedDroppedToKeyframeCount;
+  /**
+   * The sum of the judder of rendered video frames in microseconds.
+   *
+   * <p>The judder of a video frame is how far the time at which it was released for rendering
+   * deviates from the time expected from the previously released frame and the frame rate of the
+   * media. Only deviations large enough to be visible are included.
+   *
+   * <p>Note: Use {@link #addVideoJudder(long)} to update this field instead of updating it
+   * directly.
+   */
+  public long totalVideoJudderUs;
+  /**
+   * The number of rendered video frames whose judder was added to {@link #totalVideoJudderUs}.
+   *
+   * <p>Note: Use {@link #addVideoJudder(long)} to update this field instead of updating it
+   * directly.
+   */
+  public int videoJudderFrameCount;
 
   /**
    * Should be called to ensure counter values are made visible across threads. The playback thread
@@ -144,6 +210,13 @@ public final class DecoderCounters {
     droppedToKeyframeCount += other.droppedToKeyframeCount;
     addVideoFrameProcessingOffsets(
         other.totalVideoFrameProcessingOffsetUs, other.videoFrameProcessingOffsetCount);
+    addDecodeTime(other.totalDecodeTimeUs, other.decodeTimeCount);
+    bypassBatchCount += other.bypassBatchCount;
+    bypassBatchSampleCount += other.bypassBatchSampleCount;
+    predictedDroppedBufferCount += other.predictedDroppedBufferCount;
+    predictedDroppedToKeyframeCount += other.predictedDroppedToKeyframeCount;
+    totalVideoJudderUs += other.totalVideoJudderUs;
+    videoJudderFrameCount += other.videoJudderFrameCount;
   }
 
   /**
@@ -158,6 +231,40 @@ public final class DecoderCounters {
     addVideoFrameProcessingOffsets(processingOffsetUs, /* count= */ 1);
   }
 
+  /**
+   * Adds the time spent decoding one or more buffers to {@link #totalDecodeTimeUs} and increases
+   * {@link #decodeTimeCount} by the number of buffers.
+   *
+   * @param decodeTimeUs The time spent decoding the buffers, in microseconds.
+   * @param count The number of buffers.
+   */
+  public void addDecodeTime(long decodeTimeUs, int count) {
+    totalDecodeTimeUs += decodeTimeUs;
+    decodeTimeCount += count;
+  }
+
+  /**
+   * Increases {@link #bypassBatchCount} by one and {@link #bypassBatchSampleCount} by the number of
+   * samples in the batch.
+   *
+   * @param sampleCount The number of samples in the batch.
+   */
+  public void addBypassBatch(int sampleCount) {
+    bypassBatchCount++;
+    bypassBatchSampleCount += sampleCount;
+  }
+
+  /**
+   * Adds the judder of a video frame to {@link #totalVideoJudderUs} and increases {@link
+   * #videoJudderFrameCount} by one.
+   *
+   * @param judderUs The judder of the video frame in microseconds.
+   */
+  public void addVideoJudder(long judderUs) {
+    totalVideoJudderUs += judderUs;
+    videoJudderFrameCount++;
+  }
+
   private void addVideoFrameProcessingOffsets(long totalProcessingOffsetUs, int count) {
     totalVideoFrameProcessingOffsetUs += totalProcessingOffsetUs;
     videoFrameProcessingOffsetCount += count;
@@ -178,7 +285,15 @@ public final class DecoderCounters {
             + "maxConsecutiveDroppedBuffers=%s\n "
             + "droppedToKeyframeEvents=%s\n "
             + "totalVideoFrameProcessingOffsetUs=%s\n "
-            + "videoFrameProcessingOffsetCount=%s\n}",
+            + "videoFrameProcessingOffsetCount=%s\n "
+            + "totalDecodeTimeUs=%s\n "
+            + "decodeTimeCount=%s\n "
+            + "bypassBatches=%s\n "
+            + "bypassBatchSamples=%s\n "
+            + "predictedDroppedBuffers=%s\n "
+            + "predictedDroppedToKeyframeEvents=%s\n "
+            + "totalVideoJudderUs=%s\n "
+            + "videoJudderFrameCount=%s\n}",
         decoderInitCount,
         decoderReleaseCount,
         queuedInputBufferCount,
@@ -190,6 +305,14 @@ public final class DecoderCounters {
         maxConsecutiveDroppedBufferCount,
         droppedToKeyframeCount,
         totalVideoFrameProcessingOffsetUs,
-        videoFrameProcessingOffsetCount);
+        videoFrameProcessingOffsetCount,
+        totalDecodeTimeUs,
+        decodeTimeCount,
+        bypassBatchCount,
+        bypassBatchSampleCount,
+        predictedDroppedBufferCount,
+        predictedDroppedToKeyframeCount,
+        totalVideoJudderUs,
+        videoJudderFrameCount);
   }
 }
@@ -33,6 +33,11 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 /**
  * A {@link MediaCodec.Callback} that routes callbacks on a separate thread.
  *
+ * <p>Available input and output buffers are handed from the callback thread to the thread that
+ * dequeues them through single-producer single-consumer {@link BufferInfoArrayQueue queues},
+ * without locking or allocating. The lock is only taken for format changes, flushes, errors and
+ * shutdown, which are signalled to the dequeuing thread through a volatile flag.
+ *
  * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
  *     contains the same ExoPlayer code). See <a
  *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
@@ -46,25 +51,32 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
   private @MonotonicNonNull Handler handler;
 
-  @GuardedBy("lock")
-  private final IntArrayQueue availableInputBuffers;
+  private final BufferInfoArrayQueue availableInputBuffers;
+  private final BufferInfoArrayQueue availableOutputBuffers;
 
   @GuardedBy("lock")
-  private final IntArrayQueue availableOutputBuffers;
+  private final ArrayDeque<MediaFormat> formats;
 
-  @GuardedBy("lock")
-  private final ArrayDeque<MediaCodec.BufferInfo> bufferInfos;
+  /** Only accessed on the thread that dequeues buffers. */
+  @Nullable private MediaFormat currentFormat;
+
+  /** Only accessed on the callback thread. */
+  @Nullable private MediaFormat pendingOutputFormat;
+
+  /**
+   * Whether there may be a flush, error or shutdown that the thread that dequeues buffers needs to
+   * handle while holding the lock.
+   */
+  private volatile boolean pendingStateChange;
 
   @GuardedBy("lock")
-  private final ArrayDeque<MediaFormat> formats;
+  private boolean pendingBufferDiscard;
 
   @GuardedBy("lock")
-  @Nullable
-  private MediaFormat currentFormat;
+  private long flushedInputBufferCount;
 
   @GuardedBy("lock")
-  @Nullable
-  private MediaFormat pendingOutputFormat;
+  private long flushedOutputBufferCount;
 
   @GuardedBy("lock")
   @Nullable
@@ -89,9 +101,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   /* package */ AsynchronousMediaCodecCallback(HandlerThread callbackThread) {
     this.lock = new Object();
     this.callbackThread = callbackThread;
-    this.availableInputBuffers = new IntArrayQueue();
-    this.availableOutputBuffers = new IntArrayQueue();
-    this.bufferInfos = new ArrayDeque<>();
+    this.availableInputBuffers = new BufferInfoArrayQueue();
+    this.availableOutputBuffers = new BufferInfoArrayQueue();
     this.formats = new ArrayDeque<>();
   }
 
@@ -123,8 +134,9 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   public void shutdown() {
     synchronized (lock) {
       shutDown = true;
+      pendingStateChange = true;
       callbackThread.quit();
-      flushInternal();
+      formats.clear();
     }
   }
 
@@ -133,16 +145,12 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * such buffer exists.
    */
   public int dequeueInputBufferIndex() {
-    synchronized (lock) {
-      maybeThrowException();
-      if (isFlushingOrShutdown()) {
-        return MediaCodec.INFO_TRY_AGAIN_LATER;
-      } else {
-        return availableInputBuffers.isEmpty()
-            ? MediaCodec.INFO_TRY_AGAIN_LATER
-            : availableInputBuffers.remove();
-      }
+    if (pendingStateChange && !handlePendingStateChange()) {
+      return MediaCodec.INFO_TRY_AGAIN_LATER;
     }
+    return availableInputBuffers.isEmpty()
+        ? MediaCodec.INFO_TRY_AGAIN_LATER
+        : availableInputBuffers.remove(/* info= */ null);
   }
 
   /**
@@ -152,30 +160,21 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    * {@link MediaCodec#INFO_TRY_AGAIN_LATER}.
    */
   public int dequeueOutputBufferIndex(MediaCodec.BufferInfo bufferInfo) {
-    synchronized (lock) {
-      maybeThrowException();
-      if (isFlushingOrShutdown()) {
-        return MediaCodec.INFO_TRY_AGAIN_LATER;
-      } else {
-        if (availableOutputBuffers.isEmpty()) {
-          return MediaCodec.INFO_TRY_AGAIN_LATER;
-        } else {
-          int bufferIndex = availableOutputBuffers.remove();
-          if (bufferIndex >= 0) {
-            checkStateNotNull(currentFormat);
-            MediaCodec.BufferInfo nextBufferInfo = bufferInfos.remove();
-            bufferInfo.set(
-                nextBufferInfo.offset,
-                nextBufferInfo.size,
-                nextBufferInfo.presentationTimeUs,
-                nextBufferInfo.flags);
-          } else if (bufferIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
-            currentFormat = formats.remove();
-          }
-          return bufferIndex;
-        }
+    if (pendingStateChange && !handlePendingStateChange()) {
+      return MediaCodec.INFO_TRY_AGAIN_LATER;
+    }
+    if (availableOutputBuffers.isEmpty()) {
+      return MediaCodec.INFO_TRY_AGAIN_LATER;
+    }
+    int bufferIndex = availableOutputBuffers.remove(bufferInfo);
+    if (bufferIndex >= 0) {
+      checkStateNotNull(currentFormat);
+    } else if (bufferIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+      synchronized (lock) {
+        currentFormat = formats.remove();
       }
     }
+    return bufferIndex;
   }
 
   /**
@@ -188,12 +187,10 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    *     {@link MediaCodec#INFO_OUTPUT_FORMAT_CHANGED}.
    */
   public MediaFormat getOutputFormat() {
-    synchronized (lock) {
-      if (currentFormat == null) {
-        throw new IllegalStateException();
-      }
-      return currentFormat;
+    if (currentFormat == null) {
+      throw new IllegalStateException();
     }
+    return currentFormat;
   }
 
   /**
@@ -203,6 +200,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   public void flush() {
     synchronized (lock) {
       ++pendingFlushCount;
+      pendingStateChange = true;
       Util.castNonNull(handler).post(this::onFlushCompleted);
     }
   }
@@ -211,36 +209,30 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
   @Override
   public void onInputBufferAvailable(MediaCodec codec, int index) {
-    synchronized (lock) {
-      availableInputBuffers.add(index);
-    }
+    availableInputBuffers.add(index);
   }
 
   @Override
   public void onOutputBufferAvailable(MediaCodec codec, int index, MediaCodec.BufferInfo info) {
-    synchronized (lock) {
-      if (pendingOutputFormat != null) {
-        addOutputFormat(pendingOutputFormat);
-        pendingOutputFormat = null;
-      }
-      availableOutputBuffers.add(index);
-      bufferInfos.add(info);
+    if (pendingOutputFormat != null) {
+      addOutputFormat(pendingOutputFormat);
+      pendingOutputFormat = null;
     }
+    availableOutputBuffers.add(index, info);
   }
 
   @Override
   public void onError(MediaCodec codec, MediaCodec.CodecException e) {
     synchronized (lock) {
       mediaCodecException = e;
+      pendingStateChange = true;
     }
   }
 
   @Override
   public void onOutputFormatChanged(MediaCodec codec, MediaFormat format) {
-    synchronized (lock) {
-      addOutputFormat(format);
-      pendingOutputFormat = null;
-    }
+    addOutputFormat(format);
+    pendingOutputFormat = null;
   }
 
   private void onFlushCompleted() {
@@ -262,7 +254,12 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     }
   }
 
-  /** Flushes all available input and output buffers and any error that was previously set. */
+  /**
+   * Flushes all available input and output buffers. Called from the callback thread.
+   *
+   * <p>The buffers are discarded by the thread that dequeues them, which only happens once the
+   * flush has completed, because only that thread may remove buffers from the queues.
+   */
   @GuardedBy("lock")
   private void flushInternal() {
     if (!formats.isEmpty()) {
@@ -273,21 +270,43 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
     // mediaCodecException is not reset to null. If the codec has raised an error, then it remains
     // in FAILED_STATE even after flushing.
-    availableInputBuffers.clear();
-    availableOutputBuffers.clear();
-    bufferInfos.clear();
+    pendingBufferDiscard = true;
+    flushedInputBufferCount = availableInputBuffers.getAddedCount();
+    flushedOutputBufferCount = availableOutputBuffers.getAddedCount();
     formats.clear();
   }
 
+  /**
+   * Handles a pending flush, error or shutdown on the thread that dequeues buffers.
+   *
+   * @return Whether buffers can be dequeued.
+   */
+  private boolean handlePendingStateChange() {
+    synchronized (lock) {
+      maybeThrowException();
+      if (isFlushingOrShutdown()) {
+        return false;
+      }
+      if (pendingBufferDiscard) {
+        availableInputBuffers.skipTo(flushedInputBufferCount);
+        availableOutputBuffers.skipTo(flushedOutputBufferCount);
+        pendingBufferDiscard = false;
+      }
+      pendingStateChange = false;
+      return true;
+    }
+  }
+
   @GuardedBy("lock")
   private boolean isFlushingOrShutdown() {
     return pendingFlushCount > 0 || shutDown;
   }
 
-  @GuardedBy("lock")
   private void addOutputFormat(MediaFormat mediaFormat) {
+    synchronized (lock) {
+      formats.add(mediaFormat);
+    }
     availableOutputBuffers.add(MediaCodec.INFO_OUTPUT_FORMAT_CHANGED);
-    formats.add(mediaFormat);
   }
 
   @GuardedBy("lock")
@@ -317,6 +336,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   private void setInternalException(IllegalStateException e) {
     synchronized (lock) {
       internalException = e;
+      pendingStateChange = true;
     }
   }
 }
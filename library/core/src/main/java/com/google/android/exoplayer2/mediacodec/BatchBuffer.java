@@ -16,6 +16,8 @@
 package com.google.android.exoplayer2.mediacodec;
 
 import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import androidx.annotation.IntRange;
 import androidx.annotation.Nullable;
@@ -43,14 +45,21 @@ import java.nio.ByteBuffer;
    * at highest bitrate (800kb/s). That limit is ignored for the first sample.
    */
   @VisibleForTesting /* package */ static final int MAX_SIZE_BYTES = 3 * 1000 * 1024;
+  /** The maximum number of samples that an adaptive buffer can grow to hold. */
+  @VisibleForTesting /* package */ static final int MAX_ADAPTIVE_SAMPLE_COUNT = 512;
 
   private long lastSampleTimeUs;
   private int sampleCount;
   private int maxSampleCount;
+  private int minAdaptiveSampleCount;
+  private boolean adaptive;
+  private long consumedSampleCount;
+  private long consumedSampleSizeBytes;
 
   public BatchBuffer() {
     super(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DIRECT);
     maxSampleCount = DEFAULT_MAX_SAMPLE_COUNT;
+    minAdaptiveSampleCount = DEFAULT_MAX_SAMPLE_COUNT;
   }
 
   @Override
@@ -63,6 +72,68 @@ import java.nio.ByteBuffer;
   public void setMaxSampleCount(@IntRange(from = 1) int maxSampleCount) {
     checkArgument(maxSampleCount > 0);
     this.maxSampleCount = maxSampleCount;
+    minAdaptiveSampleCount = maxSampleCount;
+    resetConsumedSampleSize();
+  }
+
+  /** Returns the maximum number of samples that can be appended before the buffer is full. */
+  public int getMaxSampleCount() {
+    return maxSampleCount;
+  }
+
+  /**
+   * Sets whether the maximum number of samples adapts to how quickly batches are consumed.
+   *
+   * <p>If enabled, {@link #onBatchConsumed(boolean)} grows the maximum sample count from the value
+   * last passed to {@link #setMaxSampleCount(int)} up to {@link #MAX_ADAPTIVE_SAMPLE_COUNT} while
+   * batches are consumed as soon as they're full, and shrinks it back while the consumer isn't
+   * ready for them. The maximum sample count is also limited so that a batch of samples of the
+   * average size consumed so far fits into {@link #MAX_SIZE_BYTES}. The average is taken over all
+   * samples consumed since adaptation or the maximum sample count was last set.
+   */
+  public void setAdaptive(boolean adaptive) {
+    this.adaptive = adaptive;
+    resetConsumedSampleSize();
+    if (!adaptive) {
+      maxSampleCount = minAdaptiveSampleCount;
+    }
+  }
+
+  /**
+   * Updates the maximum number of samples after the samples in the buffer have been consumed, if
+   * the buffer is {@linkplain #setAdaptive(boolean) adaptive}. Must be called after {@link #flip()}
+   * and before {@link #clear()}.
+   *
+   * <p>Batches are only used when rendering without a codec, so there's no codec input queue whose
+   * occupancy could be checked. Whether the consumer accepted a batch the first time it was offered
+   * stands in for the occupancy of the consumer's own queue, such as the buffer of an audio sink: a
+   * batch that's accepted immediately found room in the queue, while a batch that has to be offered
+   * again found the queue full.
+   *
+   * @param consumedImmediately Whether the consumer accepted the whole batch the first time it was
+   *     offered, which indicates that the consumer's queue had room for it.
+   */
+  public void onBatchConsumed(boolean consumedImmediately) {
+    if (!adaptive || !hasSamples()) {
+      return;
+    }
+    int targetSampleCount = maxSampleCount;
+    if (!consumedImmediately) {
+      // The consumer is the bottleneck, so larger batches don't save round trips. Hold less data.
+      targetSampleCount = maxSampleCount / 2;
+    } else if (sampleCount >= maxSampleCount) {
+      // The batch was limited by its sample count and the consumer was waiting for it, so fewer,
+      // larger batches reduce the number of round trips.
+      targetSampleCount = maxSampleCount * 2;
+    }
+    consumedSampleCount += sampleCount;
+    consumedSampleSizeBytes += data == null ? 0 : data.limit();
+    int averageSampleSizeBytes = (int) max(1, consumedSampleSizeBytes / consumedSampleCount);
+    int maxSampleCountForSize = max(1, MAX_SIZE_BYTES / averageSampleSizeBytes);
+    maxSampleCount =
+        max(
+            minAdaptiveSampleCount,
+            min(targetSampleCount, min(MAX_ADAPTIVE_SAMPLE_COUNT, maxSampleCountForSize)));
   }
 
   /**
@@ -124,6 +195,11 @@ import java.nio.ByteBuffer;
     return true;
   }
 
+  private void resetConsumedSampleSize() {
+    consumedSampleCount = 0;
+    consumedSampleSizeBytes = 0;
+  }
+
   private boolean canAppendSampleBuffer(DecoderInputBuffer buffer) {
     if (!hasSamples()) {
       // Always allow appending when the buffer is empty, else no progress can be made.
@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+
+import android.media.MediaCodec;
+import androidx.annotation.Nullable;
+import java.util.NoSuchElementException;
+
+/**
+ * Array-based unbounded queue of {@link MediaCodec} buffer indices and their {@link
+ * MediaCodec.BufferInfo} fields, for handing buffers from one producer thread to one consumer
+ * thread without locking.
+ *
+ * <p>The buffer info fields are stored in primitive arrays, so {@link MediaCodec.BufferInfo}
+ * instances passed to {@link #add(int, MediaCodec.BufferInfo)} aren't retained, and are copied into
+ * the instance passed to {@link #remove(MediaCodec.BufferInfo)}.
+ *
+ * <p>{@link #add} and {@link #getAddedCount()} must only be called from the producer thread. {@link
+ * #remove}, {@link #isEmpty()} and {@link #skipTo(long)} must only be called from the consumer
+ * thread. The backing arrays only grow, so the queue doesn't allocate once it has grown to the
+ * maximum number of buffers in flight.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class BufferInfoArrayQueue {
+
+  /** Default capacity needs to be a power of 2. */
+  private static final int DEFAULT_INITIAL_CAPACITY = 16;
+
+  private volatile Ring ring;
+  private volatile long addedCount;
+  private volatile long removedCount;
+
+  public BufferInfoArrayQueue() {
+    ring = new Ring(DEFAULT_INITIAL_CAPACITY);
+  }
+
+  /**
+   * Adds a buffer index without buffer info to the queue. The index may be negative, for example to
+   * queue {@link MediaCodec#INFO_OUTPUT_FORMAT_CHANGED} in order with the buffers.
+   */
+  public void add(int index) {
+    add(index, /* offset= */ 0, /* size= */ 0, /* presentationTimeUs= */ 0, /* flags= */ 0);
+  }
+
+  /** Adds a buffer index and a copy of its buffer info to the queue. */
+  public void add(int index, MediaCodec.BufferInfo info) {
+    add(index, info.offset, info.size, info.presentationTimeUs, info.flags);
+  }
+
+  /**
+   * Returns the number of buffers that have ever been added to the queue, which can be passed to
+   * {@link #skipTo(long)}.
+   */
+  public long getAddedCount() {
+    return addedCount;
+  }
+
+  /** Returns whether the queue is empty. */
+  public boolean isEmpty() {
+    return removedCount == addedCount;
+  }
+
+  /**
+   * Removes a buffer index from the queue.
+   *
+   * @param info The {@link MediaCodec.BufferInfo} to copy the buffer info into, or null if the
+   *     buffer info isn't needed. Left unchanged if the returned index is negative.
+   * @return The buffer index.
+   * @throws NoSuchElementException if the queue is empty.
+   */
+  public int remove(@Nullable MediaCodec.BufferInfo info) {
+    long position = removedCount;
+    if (position == addedCount) {
+      throw new NoSuchElementException();
+    }
+    // The ring must be read after addedCount, to see the ring that the buffer was written to.
+    Ring ring = this.ring;
+    int slot = (int) position & ring.wrapAroundMask;
+    int index = ring.indices[slot];
+    if (info != null && index >= 0) {
+      info.set(
+          ring.offsets[slot], ring.sizes[slot], ring.presentationTimesUs[slot], ring.flags[slot]);
+    }
+    removedCount = position + 1;
+    return index;
+  }
+
+  /**
+   * Discards the buffers that were added before the buffer with the given position.
+   *
+   * @param position The {@link #getAddedCount()} at the time up to which buffers are discarded.
+   */
+  public void skipTo(long position) {
+    checkArgument(position >= removedCount && position <= addedCount);
+    removedCount = position;
+  }
+
+  private void add(int index, int offset, int size, long presentationTimeUs, int flags) {
+    long position = addedCount;
+    Ring ring = this.ring;
+    if (position - removedCount == ring.indices.length) {
+      ring = grow(ring, position);
+    }
+    int slot = (int) position & ring.wrapAroundMask;
+    ring.indices[slot] = index;
+    ring.offsets[slot] = offset;
+    ring.sizes[slot] = size;
+    ring.presentationTimesUs[slot] = presentationTimeUs;
+    ring.flags[slot] = flags;
+    // The volatile write publishes the buffer to the consumer.
+    addedCount = position + 1;
+  }
+
+  private Ring grow(Ring ring, long position) {
+    int newCapacity = ring.indices.length << 1;
+    if (newCapacity < 0) {
+      throw new IllegalStateException();
+    }
+    Ring newRing = new Ring(newCapacity);
+    // The consumer may still be reading from the old ring, which is left unchanged. Buffers it
+    // removes while they're being copied are copied unnecessarily, but that's harmless.
+    for (long i = removedCount; i < position; i++) {
+      int slot = (int) i & ring.wrapAroundMask;
+      int newSlot = (int) i & newRing.wrapAroundMask;
+      newRing.indices[newSlot] = ring.indices[slot];
+      newRing.offsets[newSlot] = ring.offsets[slot];
+      newRing.sizes[newSlot] = ring.sizes[slot];
+      newRing.presentationTimesUs[newSlot] = ring.presentationTimesUs[slot];
+      newRing.flags[newSlot] = ring.flags[slot];
+    }
+    this.ring = newRing;
+    return newRing;
+  }
+
+  private static final class Ring {
+
+    public final int[] indices;
+    public final int[] offsets;
+    public final int[] sizes;
+    public final long[] presentationTimesUs;
+    public final int[] flags;
+    public final int wrapAroundMask;
+
+    public Ring(int capacity) {
+      indices = new int[capacity];
+      offsets = new int[capacity];
+      sizes = new int[capacity];
+      presentationTimesUs = new long[capacity];
+      flags = new int[capacity];
+      wrapAroundMask = capacity - 1;
+    }
+  }
+}
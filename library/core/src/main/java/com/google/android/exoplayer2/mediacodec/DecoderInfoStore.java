@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.AtomicFile;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Persists the results of decoder queries made by {@link MediaCodecUtil}, so that they're known
+ * when the app is started again.
+ *
+ * <p>The results are only valid for the build of the platform that they were obtained on, so
+ * results persisted on a build with a different fingerprint are discarded when they're read.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class DecoderInfoStore {
+
+  /** The result of a decoder query. */
+  public static final class Entry {
+
+    /** The queried MIME type. */
+    public final String mimeType;
+    /** Whether a secure decoder was queried. */
+    public final boolean secure;
+    /** Whether a tunneling decoder was queried. */
+    public final boolean tunneling;
+    /** The names of the decoders found, in order. */
+    public final ImmutableList<String> decoderNames;
+
+    public Entry(String mimeType, boolean secure, boolean tunneling, List<String> decoderNames) {
+      this.mimeType = mimeType;
+      this.secure = secure;
+      this.tunneling = tunneling;
+      this.decoderNames = ImmutableList.copyOf(decoderNames);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (obj == null || getClass() != obj.getClass()) {
+        return false;
+      }
+      Entry other = (Entry) obj;
+      return mimeType.equals(other.mimeType)
+          && secure == other.secure
+          && tunneling == other.tunneling
+          && decoderNames.equals(other.decoderNames);
+    }
+
+    @Override
+    public int hashCode() {
+      int result = mimeType.hashCode();
+      result = 31 * result + (secure ? 1 : 0);
+      result = 31 * result + (tunneling ? 1 : 0);
+      result = 31 * result + decoderNames.hashCode();
+      return result;
+    }
+  }
+
+  private static final String TAG = "DecoderInfoStore";
+  private static final int VERSION = 1;
+
+  private final AtomicFile atomicFile;
+  private final String buildFingerprint;
+
+  /**
+   * Creates an instance.
+   *
+   * @param file The file in which the results are persisted.
+   * @param buildFingerprint The fingerprint of the platform build, for example {@link
+   *     android.os.Build#FINGERPRINT}.
+   */
+  public DecoderInfoStore(File file, String buildFingerprint) {
+    atomicFile = new AtomicFile(file);
+    this.buildFingerprint = buildFingerprint;
+  }
+
+  /**
+   * Returns the persisted results, or an empty list if there are none, or if they were persisted on
+   * a different build or can't be read.
+   */
+  public ImmutableList<Entry> read() {
+    if (!atomicFile.exists()) {
+      return ImmutableList.of();
+    }
+    @Nullable DataInputStream input = null;
+    try {
+      input = new DataInputStream(new BufferedInputStream(atomicFile.openRead()));
+      if (input.readInt() != VERSION || !buildFingerprint.equals(input.readUTF())) {
+        return ImmutableList.of();
+      }
+      int entryCount = input.readInt();
+      ImmutableList.Builder<Entry> entries = ImmutableList.builder();
+      for (int i = 0; i < entryCount; i++) {
+        String mimeType = input.readUTF();
+        boolean secure = input.readBoolean();
+        boolean tunneling = input.readBoolean();
+        int decoderCount = input.readInt();
+        ImmutableList.Builder<String> decoderNames = ImmutableList.builder();
+        for (int j = 0; j < decoderCount; j++) {
+          decoderNames.add(input.readUTF());
+        }
+        entries.add(new Entry(mimeType, secure, tunneling, decoderNames.build()));
+      }
+      return entries.build();
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to read decoder infos", e);
+      return ImmutableList.of();
+    } finally {
+      Util.closeQuietly(input);
+    }
+  }
+
+  /**
+   * Persists results, replacing any results that were persisted before.
+   *
+   * @param entries The results to persist.
+   * @throws IOException If an error occurs writing the results.
+   */
+  public void write(List<Entry> entries) throws IOException {
+    @Nullable DataOutputStream output = null;
+    try {
+      output = new DataOutputStream(new BufferedOutputStream(atomicFile.startWrite()));
+      output.writeInt(VERSION);
+      output.writeUTF(buildFingerprint);
+      output.writeInt(entries.size());
+      for (int i = 0; i < entries.size(); i++) {
+        Entry entry = entries.get(i);
+        output.writeUTF(entry.mimeType);
+        output.writeBoolean(entry.secure);
+        output.writeBoolean(entry.tunneling);
+        output.writeInt(entry.decoderNames.size());
+        for (int j = 0; j < entry.decoderNames.size(); j++) {
+          output.writeUTF(entry.decoderNames.get(j));
+        }
+      }
+      atomicFile.endWrite(output);
+      output = null;
+    } finally {
+      Util.closeQuietly(output);
+    }
+  }
+}
@@ -330,6 +330,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
 
   private boolean mediaCryptoRequiresSecureDecoder;
   private long renderTimeLimitMs;
+  private boolean adaptiveBypassBatchingEnabled;
   private float currentPlaybackSpeed;
   private float targetPlaybackSpeed;
   @Nullable private MediaCodecAdapter codec;
@@ -361,6 +362,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
   private boolean bypassEnabled;
   private boolean bypassSampleBufferPending;
   private boolean bypassDrainAndReinitialize;
+  private boolean bypassBatchBufferRetried;
   private boolean codecReconfigured;
   private @ReconfigurationState int codecReconfigurationState;
   private @DrainState int codecDrainState;
@@ -448,6 +450,27 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     this.renderTimeLimitMs = renderTimeLimitMs;
   }
 
+  /**
+   * Sets whether the number of samples batched together when playing without a codec adapts to how
+   * quickly batches are consumed and to the size of the samples.
+   *
+   * <p>If enabled, formats that are batched grow their batches while each batch is consumed as soon
+   * as it's full, which reduces the number of round trips for low bitrate streams, and shrink them
+   * back while batches are held back, which reduces the amount of data held for high bitrate
+   * streams. Batches never exceed the size limit of the batch buffer. The resulting batching is
+   * reported in {@link DecoderCounters#bypassBatchCount} and {@link
+   * DecoderCounters#bypassBatchSampleCount}.
+   *
+   * <p>This method should be called right after creating an instance of this class.
+   *
+   * <p>This method is experimental, and will be renamed or removed in a future release.
+   *
+   * @param enabled Whether adaptive batching is enabled.
+   */
+  public void experimentalSetAdaptiveBypassBatchingEnabled(boolean enabled) {
+    this.adaptiveBypassBatchingEnabled = enabled;
+  }
+
   @Override
   public final @AdaptiveSupport int supportsMixedMimeTypeAdaptation() {
     return ADAPTIVE_NOT_SEAMLESS;
@@ -707,6 +730,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
     pendingOutputEndOfStream = false;
     if (bypassEnabled) {
       bypassBatchBuffer.clear();
+      bypassBatchBufferRetried = false;
       bypassSampleBuffer.clear();
       bypassSampleBufferPending = false;
       oggOpusAudioPacketizer.reset();
@@ -752,6 +776,7 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
   private void disableBypass() {
     bypassDrainAndReinitialize = false;
     bypassBatchBuffer.clear();
+    bypassBatchBufferRetried = false;
     bypassSampleBuffer.clear();
     bypassSampleBufferPending = false;
     bypassEnabled = false;
@@ -1111,8 +1136,10 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
         && !MimeTypes.AUDIO_OPUS.equals(mimeType)) {
       // TODO(b/154746451): Batching provokes frame drops in non offload.
       bypassBatchBuffer.setMaxSampleCount(1);
+      bypassBatchBuffer.setAdaptive(false);
     } else {
       bypassBatchBuffer.setMaxSampleCount(BatchBuffer.DEFAULT_MAX_SAMPLE_COUNT);
+      bypassBatchBuffer.setAdaptive(adaptiveBypassBatchingEnabled);
     }
     bypassEnabled = true;
   }
@@ -2263,9 +2290,15 @@ public abstract class MediaCodecRenderer extends BaseRenderer {
           outputFormat)) {
         // The batch buffer has been fully processed.
         onProcessedOutputBuffer(bypassBatchBuffer.getLastSampleTimeUs());
+        decoderCounters.addBypassBatch(bypassBatchBuffer.getSampleCount());
+        // There's no codec queue in bypass mode. Whether the batch had to be retried tells whether
+        // the output, such as the audio sink's buffer, was full.
+        bypassBatchBuffer.onBatchConsumed(/* consumedImmediately= */ !bypassBatchBufferRetried);
+        bypassBatchBufferRetried = false;
         bypassBatchBuffer.clear();
       } else {
         // Could not process the whole batch buffer. Try again later.
+        bypassBatchBufferRetried = true;
         return false;
       }
     }
@@ -15,12 +15,14 @@
  */
 package com.google.android.exoplayer2.mediacodec;
 
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import static java.lang.Math.max;
 
 import android.annotation.SuppressLint;
 import android.media.MediaCodecInfo.CodecCapabilities;
 import android.media.MediaCodecInfo.CodecProfileLevel;
 import android.media.MediaCodecList;
+import android.os.Build;
 import android.text.TextUtils;
 import android.util.Pair;
 import androidx.annotation.CheckResult;
@@ -36,10 +38,20 @@ import com.google.android.exoplayer2.util.Util;
 import com.google.android.exoplayer2.video.ColorInfo;
 import com.google.common.base.Ascii;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.SettableFuture;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import org.checkerframework.checker.nullness.qual.EnsuresNonNull;
@@ -70,12 +82,46 @@ public final class MediaCodecUtil {
     }
   }
 
+  /** Listener for decoder queries. */
+  public interface DecoderQueryListener {
+
+    /**
+     * Called when {@link #getDecoderInfos(String, boolean, boolean)} has returned decoders.
+     *
+     * <p>Called on the thread that queried the decoders.
+     *
+     * @param mimeType The MIME type.
+     * @param secure Whether secure decoders were queried.
+     * @param tunneling Whether tunneling decoders were queried.
+     * @param cached Whether the decoders were returned from the cache, without querying the
+     *     platform or waiting for a query of the platform on another thread.
+     * @param durationUs The time taken by the query, in microseconds.
+     */
+    void onDecoderQuery(
+        String mimeType, boolean secure, boolean tunneling, boolean cached, long durationUs);
+  }
+
   private static final String TAG = "MediaCodecUtil";
   private static final Pattern PROFILE_PATTERN = Pattern.compile("^\\D?(\\d+)$");
 
   @GuardedBy("MediaCodecUtil.class")
   private static final HashMap<CodecKey, List<MediaCodecInfo>> decoderInfosCache = new HashMap<>();
 
+  @GuardedBy("MediaCodecUtil.class")
+  private static final HashMap<CodecKey, SettableFuture<List<MediaCodecInfo>>>
+      pendingDecoderInfoQueries = new HashMap<>();
+
+  @GuardedBy("MediaCodecUtil.class")
+  @Nullable
+  private static DecoderInfoStore decoderInfoStore;
+
+  @GuardedBy("MediaCodecUtil.class")
+  @Nullable
+  private static Executor decoderInfoStoreExecutor;
+
+  @Nullable private static volatile DecoderQueryListener decoderQueryListener;
+  @Nullable private static volatile Runnable platformQueryHook;
+
   // Codecs to constant mappings.
   // AVC.
   private static final String CODEC_ID_AVC1 = "avc1";
@@ -116,6 +162,57 @@ public final class MediaCodecUtil {
     }
   }
 
+  /**
+   * Persists the results of decoder queries in a file, and loads the results persisted in it by
+   * previous app processes.
+   *
+   * <p>Loading happens on a background thread. Queries that found no decoders are answered from the
+   * loaded results as soon as they're loaded, because the answer doesn't depend on decoder
+   * capabilities, which can't be persisted. All loaded queries are then repeated on the background
+   * thread, which enumerates the decoders before renderers need them, and the file is updated if
+   * the results have changed. Results persisted on a different build of the platform are ignored.
+   *
+   * <p>This method should be called once, early during app start-up. Further calls have no effect.
+   *
+   * @param file The file in which to persist the results.
+   */
+  public static synchronized void enablePersistentDecoderInfoCache(File file) {
+    if (decoderInfoStore != null) {
+      return;
+    }
+    DecoderInfoStore decoderInfoStore = new DecoderInfoStore(file, Build.FINGERPRINT);
+    Executor executor =
+        new ThreadPoolExecutor(
+            /* corePoolSize= */ 0,
+            /* maximumPoolSize= */ 1,
+            /* keepAliveTime= */ 1,
+            TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> new Thread(runnable, "ExoPlayer:DecoderInfoStore"));
+    MediaCodecUtil.decoderInfoStore = decoderInfoStore;
+    decoderInfoStoreExecutor = executor;
+    executor.execute(() -> loadAndRefreshDecoderInfos(decoderInfoStore));
+  }
+
+  /**
+   * Sets a {@link DecoderQueryListener} that's called for each decoder query, for example to
+   * measure the time spent querying decoders.
+   *
+   * @param listener The {@link DecoderQueryListener}, or null to remove the current listener.
+   */
+  public static void setDecoderQueryListener(@Nullable DecoderQueryListener listener) {
+    decoderQueryListener = listener;
+  }
+
+  /**
+   * Sets a {@link Runnable} that's run on the querying thread before each query of the platform by
+   * {@link #getDecoderInfos(String, boolean, boolean)}, or null to remove the current one.
+   */
+  @VisibleForTesting
+  /* package */ static void setPlatformQueryHook(@Nullable Runnable hook) {
+    platformQueryHook = hook;
+  }
+
   /* Clears the codec cache.*/
   @VisibleForTesting
   public static synchronized void clearDecoderInfoCache() {
@@ -164,13 +261,94 @@ public final class MediaCodecUtil {
    *     order given by {@link MediaCodecList}.
    * @throws DecoderQueryException If there was an error querying the available decoders.
    */
-  public static synchronized List<MediaCodecInfo> getDecoderInfos(
+  public static List<MediaCodecInfo> getDecoderInfos(
       String mimeType, boolean secure, boolean tunneling) throws DecoderQueryException {
+    long startTimeNs = System.nanoTime();
     CodecKey key = new CodecKey(mimeType, secure, tunneling);
-    @Nullable List<MediaCodecInfo> cachedDecoderInfos = decoderInfosCache.get(key);
-    if (cachedDecoderInfos != null) {
-      return cachedDecoderInfos;
+    @Nullable List<MediaCodecInfo> decoderInfos;
+    @Nullable SettableFuture<List<MediaCodecInfo>> pendingQuery = null;
+    boolean isQueryOwner = false;
+    synchronized (MediaCodecUtil.class) {
+      decoderInfos = decoderInfosCache.get(key);
+      if (decoderInfos == null) {
+        pendingQuery = pendingDecoderInfoQueries.get(key);
+        if (pendingQuery == null) {
+          pendingQuery = SettableFuture.create();
+          pendingDecoderInfoQueries.put(key, pendingQuery);
+          isQueryOwner = true;
+        }
+      }
+    }
+    boolean cached = decoderInfos != null;
+    if (decoderInfos == null) {
+      // Decoders are queried without holding the lock, so that queries that are answered from the
+      // cache don't need to wait for a query of the platform on another thread. Concurrent queries
+      // for the same key share a single query of the platform.
+      decoderInfos =
+          isQueryOwner
+              ? queryAndCacheDecoderInfos(key, checkNotNull(pendingQuery))
+              : waitForDecoderInfos(checkNotNull(pendingQuery));
+    }
+    @Nullable DecoderQueryListener listener = decoderQueryListener;
+    if (listener != null) {
+      listener.onDecoderQuery(
+          mimeType, secure, tunneling, cached, (System.nanoTime() - startTimeNs) / 1000);
     }
+    return decoderInfos;
+  }
+
+  /**
+   * Queries the platform for the decoders for the given key, caches the result and completes the
+   * pending query that other threads may be waiting for.
+   */
+  private static List<MediaCodecInfo> queryAndCacheDecoderInfos(
+      CodecKey key, SettableFuture<List<MediaCodecInfo>> pendingQuery)
+      throws DecoderQueryException {
+    List<MediaCodecInfo> decoderInfos;
+    try {
+      @Nullable Runnable hook = platformQueryHook;
+      if (hook != null) {
+        hook.run();
+      }
+      decoderInfos = queryDecoderInfos(key);
+    } catch (DecoderQueryException | RuntimeException e) {
+      synchronized (MediaCodecUtil.class) {
+        pendingDecoderInfoQueries.remove(key);
+      }
+      pendingQuery.setException(e);
+      throw e;
+    }
+    synchronized (MediaCodecUtil.class) {
+      decoderInfosCache.put(key, decoderInfos);
+      pendingDecoderInfoQueries.remove(key);
+      @Nullable DecoderInfoStore store = decoderInfoStore;
+      @Nullable Executor executor = decoderInfoStoreExecutor;
+      if (store != null && executor != null) {
+        executor.execute(() -> writeDecoderInfos(store));
+      }
+    }
+    pendingQuery.set(decoderInfos);
+    return decoderInfos;
+  }
+
+  /** Waits for a query of the platform that's running on another thread. */
+  private static List<MediaCodecInfo> waitForDecoderInfos(
+      SettableFuture<List<MediaCodecInfo>> pendingQuery) throws DecoderQueryException {
+    try {
+      return pendingQuery.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new DecoderQueryException(e);
+    } catch (ExecutionException e) {
+      throw new DecoderQueryException(checkNotNull(e.getCause()));
+    }
+  }
+
+  private static ImmutableList<MediaCodecInfo> queryDecoderInfos(CodecKey key)
+      throws DecoderQueryException {
+    String mimeType = key.mimeType;
+    boolean secure = key.secure;
+    boolean tunneling = key.tunneling;
     MediaCodecListCompat mediaCodecList =
         Util.SDK_INT >= 21
             ? new MediaCodecListCompatV21(secure, tunneling)
@@ -191,9 +369,62 @@ public final class MediaCodecUtil {
       }
     }
     applyWorkarounds(mimeType, decoderInfos);
-    ImmutableList<MediaCodecInfo> immutableDecoderInfos = ImmutableList.copyOf(decoderInfos);
-    decoderInfosCache.put(key, immutableDecoderInfos);
-    return immutableDecoderInfos;
+    return ImmutableList.copyOf(decoderInfos);
+  }
+
+  /**
+   * Loads persisted decoder query results, and repeats the queries. Runs on a background thread.
+   */
+  private static void loadAndRefreshDecoderInfos(DecoderInfoStore decoderInfoStore) {
+    ImmutableList<DecoderInfoStore.Entry> entries = decoderInfoStore.read();
+    synchronized (MediaCodecUtil.class) {
+      for (int i = 0; i < entries.size(); i++) {
+        DecoderInfoStore.Entry entry = entries.get(i);
+        CodecKey key = new CodecKey(entry.mimeType, entry.secure, entry.tunneling);
+        if (entry.decoderNames.isEmpty() && !decoderInfosCache.containsKey(key)) {
+          decoderInfosCache.put(key, ImmutableList.of());
+        }
+      }
+    }
+    for (int i = 0; i < entries.size(); i++) {
+      DecoderInfoStore.Entry entry = entries.get(i);
+      CodecKey key = new CodecKey(entry.mimeType, entry.secure, entry.tunneling);
+      try {
+        ImmutableList<MediaCodecInfo> decoderInfos = queryDecoderInfos(key);
+        synchronized (MediaCodecUtil.class) {
+          decoderInfosCache.put(key, decoderInfos);
+        }
+      } catch (DecoderQueryException e) {
+        Log.w(TAG, "Failed to refresh decoder infos for " + entry.mimeType, e);
+      }
+    }
+    if (!ImmutableSet.copyOf(entries).equals(ImmutableSet.copyOf(getDecoderInfoStoreEntries()))) {
+      writeDecoderInfos(decoderInfoStore);
+    }
+  }
+
+  /** Persists the cached decoder query results. Runs on a background thread. */
+  private static void writeDecoderInfos(DecoderInfoStore decoderInfoStore) {
+    try {
+      decoderInfoStore.write(getDecoderInfoStoreEntries());
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to persist decoder infos", e);
+    }
+  }
+
+  private static synchronized List<DecoderInfoStore.Entry> getDecoderInfoStoreEntries() {
+    List<DecoderInfoStore.Entry> entries = new ArrayList<>(decoderInfosCache.size());
+    for (Map.Entry<CodecKey, List<MediaCodecInfo>> cacheEntry : decoderInfosCache.entrySet()) {
+      CodecKey key = cacheEntry.getKey();
+      List<MediaCodecInfo> decoderInfos = cacheEntry.getValue();
+      List<String> decoderNames = new ArrayList<>(decoderInfos.size());
+      for (int i = 0; i < decoderInfos.size(); i++) {
+        decoderNames.add(decoderInfos.get(i).name);
+      }
+      entries.add(
+          new DecoderInfoStore.Entry(key.mimeType, key.secure, key.tunneling, decoderNames));
+    }
+    return entries;
   }
 
   /**
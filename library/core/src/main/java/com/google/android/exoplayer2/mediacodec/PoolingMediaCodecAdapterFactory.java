@@ -0,0 +1,557 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+
+import android.annotation.SuppressLint;
+import android.graphics.SurfaceTexture;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.PersistableBundle;
+import android.os.SystemClock;
+import android.view.Surface;
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.VisibleForTesting;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.decoder.CryptoInfo;
+import com.google.android.exoplayer2.decoder.DecoderReuseEvaluation;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link MediaCodecAdapter.Factory} that keeps released adapters in a pool and hands them out
+ * again for compatible configurations, so that codecs don't need to be created again for each item
+ * in a playlist or feed.
+ *
+ * <p>An adapter in the pool is reused for a configuration with the same codec, codec string and
+ * initialization data, if {@link MediaCodecInfo#canReuseCodec} allows the codec to be reused for
+ * the new format. Video adapters are only reused for resolutions that fit the maximum resolution
+ * they were configured for, and adapters are only reused for configurations with a maximum input
+ * size that fits the one they were configured with. Configurations with DRM, tunneling or
+ * configuration flags are never pooled.
+ *
+ * <p>Adapters configured with a {@link Surface} are only pooled from API 23, where the output
+ * surface of a reused codec can be changed. When such an adapter is returned to the pool, its
+ * output is redirected to a placeholder surface owned by this factory, so that the pool doesn't
+ * keep the surface of the renderer that released it.
+ *
+ * <p>Adapters can be created ahead of time with {@link #prewarm}, and the pool can be emptied with
+ * {@link #releaseIdleAdapters()}, for example when the app is asked to trim its memory. When the
+ * pool is full, the least recently released adapter is evicted.
+ *
+ * <p>The time it takes to create or reuse an adapter is reported to the {@link Listener}. The time
+ * taken by the renderer to obtain the adapter, which includes these times, is also reported as the
+ * decoder initialization duration in {@link
+ * com.google.android.exoplayer2.analytics.AnalyticsListener#onVideoDecoderInitialized} and {@link
+ * com.google.android.exoplayer2.analytics.AnalyticsListener#onAudioDecoderInitialized}.
+ *
+ * <p>This class is thread-safe. Adapters in the pool hold codec resources, so {@link #release()}
+ * must be called when the pool is no longer needed.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class PoolingMediaCodecAdapterFactory implements MediaCodecAdapter.Factory {
+
+  /** Listener for events of the pool. */
+  public interface Listener {
+
+    /**
+     * Called when an adapter is created.
+     *
+     * @param codecName The name of the codec.
+     * @param creationDurationMs The time taken to create the adapter, in milliseconds.
+     * @param prewarmed Whether the adapter was created by {@link #prewarm}.
+     */
+    default void onAdapterCreated(String codecName, long creationDurationMs, boolean prewarmed) {}
+
+    /**
+     * Called when an adapter is taken from the pool instead of being created.
+     *
+     * @param codecName The name of the codec.
+     * @param reuseDurationMs The time taken to prepare the adapter for reuse, in milliseconds.
+     */
+    default void onAdapterReused(String codecName, long reuseDurationMs) {}
+
+    /**
+     * Called when an adapter in the pool is released.
+     *
+     * @param codecName The name of the codec.
+     */
+    default void onAdapterEvicted(String codecName) {}
+  }
+
+  /** The default maximum number of adapters kept in the pool. */
+  public static final int DEFAULT_MAX_IDLE_ADAPTER_COUNT = 2;
+
+  private static final String TAG = "PoolingMCAdapterFactory";
+
+  /**
+   * Integer {@link MediaFormat} keys whose values, if set, must be the same for a pooled adapter to
+   * be reused.
+   */
+  @SuppressLint("InlinedApi") // Inlined MediaFormat keys.
+  private static final ImmutableList<String> MATCHING_INTEGER_KEYS =
+      ImmutableList.of(
+          MediaFormat.KEY_PCM_ENCODING,
+          MediaFormat.KEY_MAX_OUTPUT_CHANNEL_COUNT,
+          MediaFormat.KEY_ALLOW_FRAME_DROP,
+          MediaFormat.KEY_ROTATION,
+          "ac4-is-sync",
+          "no-post-process",
+          "auto-frc");
+
+  private final MediaCodecAdapter.Factory adapterFactory;
+  private final int maxIdleAdapterCount;
+  @Nullable private final Listener listener;
+
+  @GuardedBy("this")
+  private final List<PooledAdapter> idleAdapters;
+
+  @GuardedBy("this")
+  private boolean released;
+
+  @GuardedBy("this")
+  @Nullable
+  private SurfaceTexture detachedOutputSurfaceTexture;
+
+  @GuardedBy("this")
+  @Nullable
+  private Surface detachedOutputSurface;
+
+  /**
+   * Creates an instance that pools adapters created by {@link MediaCodecAdapter.Factory#DEFAULT}.
+   */
+  public PoolingMediaCodecAdapterFactory() {
+    this(MediaCodecAdapter.Factory.DEFAULT, DEFAULT_MAX_IDLE_ADAPTER_COUNT, /* listener= */ null);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param adapterFactory The {@link MediaCodecAdapter.Factory} that creates the adapters.
+   * @param maxIdleAdapterCount The maximum number of adapters kept in the pool.
+   * @param listener A {@link Listener} for events of the pool, or null.
+   */
+  public PoolingMediaCodecAdapterFactory(
+      MediaCodecAdapter.Factory adapterFactory,
+      int maxIdleAdapterCount,
+      @Nullable Listener listener) {
+    checkArgument(maxIdleAdapterCount >= 0);
+    this.adapterFactory = adapterFactory;
+    this.maxIdleAdapterCount = maxIdleAdapterCount;
+    this.listener = listener;
+    idleAdapters = new ArrayList<>();
+  }
+
+  /**
+   * Creates an adapter for a configuration and adds it to the pool, so that a renderer that later
+   * needs an adapter for a compatible configuration doesn't need to wait for it to be created.
+   *
+   * <p>Creating an adapter can take hundreds of milliseconds, so this method should be called on a
+   * background thread.
+   *
+   * @param configuration The {@link MediaCodecAdapter.Configuration} to create the adapter for.
+   * @return Whether an adapter was added to the pool. False if the configuration can't be pooled.
+   * @throws IOException If the adapter can't be created.
+   */
+  public boolean prewarm(MediaCodecAdapter.Configuration configuration) throws IOException {
+    if (!isPoolable(configuration)) {
+      return false;
+    }
+    PooledAdapter adapter = createPooledAdapter(configuration, /* prewarmed= */ true);
+    adapter.release();
+    return true;
+  }
+
+  /**
+   * Releases all adapters in the pool. Adapters that are in use are returned to the pool when
+   * they're released.
+   */
+  public void releaseIdleAdapters() {
+    List<PooledAdapter> adaptersToRelease;
+    synchronized (this) {
+      adaptersToRelease = new ArrayList<>(idleAdapters);
+      idleAdapters.clear();
+    }
+    for (int i = 0; i < adaptersToRelease.size(); i++) {
+      evict(adaptersToRelease.get(i));
+    }
+  }
+
+  /**
+   * Releases all adapters in the pool, and stops pooling adapters. Adapters that are in use are
+   * released when they're released by their renderer.
+   */
+  public void release() {
+    synchronized (this) {
+      released = true;
+    }
+    releaseIdleAdapters();
+    synchronized (this) {
+      if (detachedOutputSurface != null) {
+        detachedOutputSurface.release();
+        detachedOutputSurface = null;
+      }
+      if (detachedOutputSurfaceTexture != null) {
+        detachedOutputSurfaceTexture.release();
+        detachedOutputSurfaceTexture = null;
+      }
+    }
+  }
+
+  /** Returns the number of adapters in the pool. */
+  @VisibleForTesting
+  /* package */ synchronized int getIdleAdapterCount() {
+    return idleAdapters.size();
+  }
+
+  @Override
+  public MediaCodecAdapter createAdapter(MediaCodecAdapter.Configuration configuration)
+      throws IOException {
+    if (!isPoolable(configuration)) {
+      return adapterFactory.createAdapter(configuration);
+    }
+    @Nullable PooledAdapter adapter = takeIdleAdapter(configuration);
+    while (adapter != null) {
+      long startTimeMs = SystemClock.elapsedRealtime();
+      if (adapter.prepareForReuse(configuration)) {
+        if (listener != null) {
+          listener.onAdapterReused(
+              configuration.codecInfo.name, SystemClock.elapsedRealtime() - startTimeMs);
+        }
+        return adapter;
+      }
+      evict(adapter);
+      adapter = takeIdleAdapter(configuration);
+    }
+    return createPooledAdapter(configuration, /* prewarmed= */ false);
+  }
+
+  private PooledAdapter createPooledAdapter(
+      MediaCodecAdapter.Configuration configuration, boolean prewarmed) throws IOException {
+    long startTimeMs = SystemClock.elapsedRealtime();
+    MediaCodecAdapter adapter = adapterFactory.createAdapter(configuration);
+    if (listener != null) {
+      listener.onAdapterCreated(
+          configuration.codecInfo.name, SystemClock.elapsedRealtime() - startTimeMs, prewarmed);
+    }
+    return new PooledAdapter(adapter, configuration);
+  }
+
+  @Nullable
+  private synchronized PooledAdapter takeIdleAdapter(
+      MediaCodecAdapter.Configuration configuration) {
+    // Prefer the most recently released adapter.
+    for (int i = idleAdapters.size() - 1; i >= 0; i--) {
+      PooledAdapter adapter = idleAdapters.get(i);
+      if (isCompatible(adapter.configuration, configuration)) {
+        return idleAdapters.remove(i);
+      }
+    }
+    return null;
+  }
+
+  private void onAdapterReleased(PooledAdapter adapter) {
+    @Nullable PooledAdapter adapterToEvict = adapter;
+    synchronized (this) {
+      if (!released && maxIdleAdapterCount > 0) {
+        idleAdapters.add(adapter);
+        adapterToEvict = idleAdapters.size() > maxIdleAdapterCount ? idleAdapters.remove(0) : null;
+      }
+    }
+    if (adapterToEvict != null) {
+      evict(adapterToEvict);
+    }
+  }
+
+  /**
+   * Returns the placeholder surface that the output of pooled adapters is redirected to, or null if
+   * the factory is released.
+   */
+  @Nullable
+  private synchronized Surface getDetachedOutputSurface() {
+    if (released) {
+      return null;
+    }
+    if (detachedOutputSurface == null) {
+      detachedOutputSurfaceTexture = new SurfaceTexture(/* texName= */ 0);
+      detachedOutputSurface = new Surface(detachedOutputSurfaceTexture);
+    }
+    return detachedOutputSurface;
+  }
+
+  private void evict(PooledAdapter adapter) {
+    adapter.adapter.release();
+    if (listener != null) {
+      listener.onAdapterEvicted(adapter.configuration.codecInfo.name);
+    }
+  }
+
+  private static boolean isPoolable(MediaCodecAdapter.Configuration configuration) {
+    return configuration.crypto == null
+        && configuration.flags == 0
+        && !isTunneling(configuration.mediaFormat)
+        && (configuration.surface == null || Util.SDK_INT >= 23);
+  }
+
+  private static boolean isTunneling(MediaFormat mediaFormat) {
+    return Util.SDK_INT >= 21 && mediaFormat.containsKey(MediaFormat.KEY_AUDIO_SESSION_ID);
+  }
+
+  private static boolean isCompatible(
+      MediaCodecAdapter.Configuration pooled, MediaCodecAdapter.Configuration requested) {
+    Format pooledFormat = pooled.format;
+    Format requestedFormat = requested.format;
+    if (!pooled.codecInfo.name.equals(requested.codecInfo.name)
+        || (pooled.surface == null) != (requested.surface == null)
+        || !Util.areEqual(pooledFormat.codecs, requestedFormat.codecs)
+        || !pooledFormat.initializationDataEquals(requestedFormat)
+        || pooled.codecInfo.canReuseCodec(pooledFormat, requestedFormat).result
+            == DecoderReuseEvaluation.REUSE_RESULT_NO) {
+      return false;
+    }
+    // The codec's input buffers are sized for the maximum input size it was configured with.
+    if (pooled.mediaFormat.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)
+        != requested.mediaFormat.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)) {
+      return false;
+    }
+    if (requested.mediaFormat.containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)
+        && requested.mediaFormat.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE)
+            > pooled.mediaFormat.getInteger(MediaFormat.KEY_MAX_INPUT_SIZE)) {
+      return false;
+    }
+    for (int i = 0; i < MATCHING_INTEGER_KEYS.size(); i++) {
+      String key = MATCHING_INTEGER_KEYS.get(i);
+      if (pooled.mediaFormat.containsKey(key) != requested.mediaFormat.containsKey(key)
+          || (requested.mediaFormat.containsKey(key)
+              && pooled.mediaFormat.getInteger(key) != requested.mediaFormat.getInteger(key))) {
+        return false;
+      }
+    }
+    if (MimeTypes.isVideo(requestedFormat.sampleMimeType)) {
+      return requestedFormat.width <= getMaxDimension(pooled, MediaFormat.KEY_MAX_WIDTH)
+          && requestedFormat.height <= getMaxDimension(pooled, MediaFormat.KEY_MAX_HEIGHT);
+    }
+    return true;
+  }
+
+  private static int getMaxDimension(MediaCodecAdapter.Configuration configuration, String key) {
+    if (configuration.mediaFormat.containsKey(key)) {
+      return configuration.mediaFormat.getInteger(key);
+    }
+    return key.equals(MediaFormat.KEY_MAX_WIDTH)
+        ? configuration.format.width
+        : configuration.format.height;
+  }
+
+  /**
+   * A {@link MediaCodecAdapter} that returns the adapter it wraps to the pool when it's released.
+   */
+  private final class PooledAdapter implements MediaCodecAdapter {
+
+    private final MediaCodecAdapter adapter;
+
+    private MediaCodecAdapter.Configuration configuration;
+    private boolean hasOutputFormat;
+    private boolean pendingOutputFormatChange;
+    private boolean released;
+
+    public PooledAdapter(MediaCodecAdapter adapter, MediaCodecAdapter.Configuration configuration) {
+      this.adapter = adapter;
+      this.configuration = configuration;
+    }
+
+    /**
+     * Prepares the adapter to be used for a new configuration, after it's been taken from the pool.
+     *
+     * @return Whether the adapter can be used.
+     */
+    public boolean prepareForReuse(MediaCodecAdapter.Configuration configuration) {
+      // The output of the adapter was redirected to the placeholder surface when it was pooled.
+      if (configuration.surface != null) {
+        try {
+          adapter.setOutputSurface(configuration.surface);
+        } catch (RuntimeException e) {
+          Log.w(TAG, "Failed to set output surface of pooled adapter", e);
+          return false;
+        }
+      }
+      this.configuration = configuration;
+      // The new user needs to be told about the output format, which a codec in synchronous mode
+      // doesn't report again after a flush.
+      pendingOutputFormatChange = hasOutputFormat;
+      released = false;
+      return true;
+    }
+
+    @Override
+    public int dequeueInputBufferIndex() {
+      return adapter.dequeueInputBufferIndex();
+    }
+
+    @Override
+    public int dequeueOutputBufferIndex(MediaCodec.BufferInfo bufferInfo) {
+      if (pendingOutputFormatChange) {
+        pendingOutputFormatChange = false;
+        return MediaCodec.INFO_OUTPUT_FORMAT_CHANGED;
+      }
+      int index = adapter.dequeueOutputBufferIndex(bufferInfo);
+      if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+        hasOutputFormat = true;
+      }
+      return index;
+    }
+
+    @Override
+    public MediaFormat getOutputFormat() {
+      return adapter.getOutputFormat();
+    }
+
+    @Nullable
+    @Override
+    public ByteBuffer getInputBuffer(int index) {
+      return adapter.getInputBuffer(index);
+    }
+
+    @Nullable
+    @Override
+    public ByteBuffer getOutputBuffer(int index) {
+      return adapter.getOutputBuffer(index);
+    }
+
+    @Override
+    public void queueInputBuffer(
+        int index, int offset, int size, long presentationTimeUs, int flags) {
+      adapter.queueInputBuffer(index, offset, size, presentationTimeUs, flags);
+    }
+
+    @Override
+    public void queueSecureInputBuffer(
+        int index, int offset, CryptoInfo info, long presentationTimeUs, int flags) {
+      adapter.queueSecureInputBuffer(index, offset, info, presentationTimeUs, flags);
+    }
+
+    @Override
+    public void releaseOutputBuffer(int index, boolean render) {
+      adapter.releaseOutputBuffer(index, render);
+    }
+
+    @RequiresApi(21)
+    @Override
+    public void releaseOutputBuffer(int index, long renderTimeStampNs) {
+      adapter.releaseOutputBuffer(index, renderTimeStampNs);
+    }
+
+    @Override
+    public void flush() {
+      pendingOutputFormatChange = false;
+      adapter.flush();
+    }
+
+    @Override
+    public void release() {
+      if (released) {
+        return;
+      }
+      released = true;
+      if (!adapter.needsReconfiguration()) {
+        try {
+          // Return any buffers held by the previous user to the codec. This throws if the codec has
+          // failed, in which case it can't be reused.
+          adapter.flush();
+          if (detachOutputSurface()) {
+            onAdapterReleased(this);
+            return;
+          }
+        } catch (RuntimeException e) {
+          Log.w(TAG, "Failed to flush adapter for reuse", e);
+        }
+      }
+      adapter.release();
+    }
+
+    /**
+     * Redirects the output of the adapter to the placeholder surface of the factory, if it renders
+     * to a surface.
+     *
+     * @return Whether the adapter no longer renders to the surface of the previous user.
+     */
+    private boolean detachOutputSurface() {
+      if (configuration.surface == null) {
+        return true;
+      }
+      @Nullable Surface detachedOutputSurface = getDetachedOutputSurface();
+      if (detachedOutputSurface == null || Util.SDK_INT < 23) {
+        return false;
+      }
+      adapter.setOutputSurface(detachedOutputSurface);
+      return true;
+    }
+
+    @RequiresApi(23)
+    @Override
+    public void setOnFrameRenderedListener(OnFrameRenderedListener listener, Handler handler) {
+      adapter.setOnFrameRenderedListener(
+          (codec, presentationTimeUs, nanoTime) ->
+              listener.onFrameRendered(this, presentationTimeUs, nanoTime),
+          handler);
+    }
+
+    @RequiresApi(23)
+    @Override
+    public void setOutputSurface(Surface surface) {
+      adapter.setOutputSurface(surface);
+    }
+
+    @RequiresApi(19)
+    @Override
+    public void setParameters(Bundle params) {
+      adapter.setParameters(params);
+    }
+
+    @Override
+    public void setVideoScalingMode(@C.VideoScalingMode int scalingMode) {
+      adapter.setVideoScalingMode(scalingMode);
+    }
+
+    @Override
+    public boolean needsReconfiguration() {
+      return adapter.needsReconfiguration();
+    }
+
+    @RequiresApi(26)
+    @Override
+    public PersistableBundle getMetrics() {
+      return adapter.getMetrics();
+    }
+  }
+}
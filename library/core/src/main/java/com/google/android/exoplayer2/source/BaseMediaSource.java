@@ -179,6 +179,28 @@ public abstract class BaseMediaSource implements MediaSource {
     return !enabledMediaSourceCallers.isEmpty();
   }
 
+  /**
+   * Returns whether {@link #prepareSource(MediaSourceCaller, TransferListener, PlayerId)} has been
+   * called by at least one {@link MediaSourceCaller} that hasn't released the source yet.
+   */
+  protected final boolean prepareSourceCalled() {
+    return !mediaSourceCallers.isEmpty();
+  }
+
+  /**
+   * Sets the {@link PlayerId} reported by {@link #getPlayerId()}.
+   *
+   * <p>This is only needed by sources that call {@link #prepareSourceInternal(TransferListener)}
+   * themselves before any {@link MediaSourceCaller} prepared them, for example to preload media.
+   * The value is overridden by the next call to {@link #prepareSource(MediaSourceCaller,
+   * TransferListener, PlayerId)}.
+   *
+   * @param playerId The {@link PlayerId}.
+   */
+  protected final void setPlayerId(PlayerId playerId) {
+    this.playerId = playerId;
+  }
+
   /**
    * Returns the {@link PlayerId} of the player using this media source.
    *
@@ -15,7 +15,10 @@
  */
 package com.google.android.exoplayer2.source;
 
+import static java.lang.Math.max;
+
 import android.net.Uri;
+import android.os.SystemClock;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.extractor.DefaultExtractorInput;
@@ -23,10 +26,15 @@ import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.FileTypeSniffer;
+import com.google.android.exoplayer2.extractor.ForwardingExtractorInput;
 import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor;
 import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
 import com.google.android.exoplayer2.upstream.DataReader;
 import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.FileTypes;
 import com.google.android.exoplayer2.util.Util;
 import java.io.EOFException;
 import java.io.IOException;
@@ -49,6 +57,9 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
 
   @Nullable private Extractor extractor;
   @Nullable private ExtractorInput extractorInput;
+  private int sniffedExtractorCount;
+  private long sniffedByteCount;
+  private long sniffDurationMs;
 
   /**
    * Creates a holder that will select an extractor and initialize it using the specified output.
@@ -70,6 +81,9 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
       throws IOException {
     ExtractorInput extractorInput = new DefaultExtractorInput(dataReader, position, length);
     this.extractorInput = extractorInput;
+    sniffedExtractorCount = 0;
+    sniffedByteCount = 0;
+    sniffDurationMs = 0;
     if (extractor != null) {
       return;
     }
@@ -77,9 +91,14 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
     if (extractors.length == 1) {
       this.extractor = extractors[0];
     } else {
+      long sniffStartTimeMs = SystemClock.elapsedRealtime();
+      PeekLengthTrackingExtractorInput sniffInput =
+          new PeekLengthTrackingExtractorInput(extractorInput);
+      extractors = sortExtractorsBySniffedFileType(extractors, sniffInput);
       for (Extractor extractor : extractors) {
+        sniffedExtractorCount++;
         try {
-          if (extractor.sniff(extractorInput)) {
+          if (extractor.sniff(sniffInput)) {
             this.extractor = extractor;
             break;
           }
@@ -87,9 +106,11 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
           // Do nothing.
         } finally {
           Assertions.checkState(this.extractor != null || extractorInput.getPosition() == position);
-          extractorInput.resetPeekPosition();
+          sniffInput.resetPeekPosition();
         }
       }
+      sniffedByteCount = sniffInput.maxPeekPosition - position;
+      sniffDurationMs = SystemClock.elapsedRealtime() - sniffStartTimeMs;
       if (extractor == null) {
         throw new UnrecognizedInputFormatException(
             "None of the available extractors ("
@@ -101,6 +122,21 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
     extractor.init(output);
   }
 
+  @Override
+  public int getSniffedExtractorCount() {
+    return sniffedExtractorCount;
+  }
+
+  @Override
+  public long getSniffedByteCount() {
+    return sniffedByteCount;
+  }
+
+  @Override
+  public long getSniffDurationMs() {
+    return sniffDurationMs;
+  }
+
   @Override
   public void release() {
     if (extractor != null) {
@@ -117,6 +153,18 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
     }
   }
 
+  @Override
+  public void disableSeekIndexLoading() {
+    if (extractor instanceof MatroskaExtractor) {
+      ((MatroskaExtractor) extractor).disableSeekForCues();
+    }
+  }
+
+  @Override
+  public boolean isSkippingSampleData() {
+    return extractor instanceof Mp4Extractor && ((Mp4Extractor) extractor).isSkippingSampleData();
+  }
+
   @Override
   public long getCurrentInputPosition() {
     return extractorInput != null ? extractorInput.getPosition() : C.INDEX_UNSET;
@@ -132,4 +180,47 @@ public final class BundledExtractorsAdapter implements ProgressiveMediaExtractor
     return Assertions.checkNotNull(extractor)
         .read(Assertions.checkNotNull(extractorInput), positionHolder);
   }
+
+  /**
+   * Moves the extractors for the file type inferred from the start of the input to the front, so
+   * that the matching extractor is usually the first one sniffed. The relative order of the
+   * extractors is otherwise unchanged.
+   */
+  private static Extractor[] sortExtractorsBySniffedFileType(
+      Extractor[] extractors, ExtractorInput extractorInput) throws IOException {
+    @FileTypes.Type int sniffedFileType = FileTypeSniffer.sniffFileType(extractorInput);
+    if (sniffedFileType == FileTypes.UNKNOWN) {
+      return extractors;
+    }
+    Extractor[] sortedExtractors = new Extractor[extractors.length];
+    int index = 0;
+    for (Extractor extractor : extractors) {
+      if (FileTypeSniffer.getFileType(extractor) == sniffedFileType) {
+        sortedExtractors[index++] = extractor;
+      }
+    }
+    for (Extractor extractor : extractors) {
+      if (FileTypeSniffer.getFileType(extractor) != sniffedFileType) {
+        sortedExtractors[index++] = extractor;
+      }
+    }
+    return sortedExtractors;
+  }
+
+  /** Records the furthest peek position reached before each reset of the peek position. */
+  private static final class PeekLengthTrackingExtractorInput extends ForwardingExtractorInput {
+
+    public long maxPeekPosition;
+
+    public PeekLengthTrackingExtractorInput(ExtractorInput input) {
+      super(input);
+      maxPeekPosition = input.getPeekPosition();
+    }
+
+    @Override
+    public void resetPeekPosition() {
+      maxPeekPosition = max(maxPeekPosition, getPeekPosition());
+      super.resetPeekPosition();
+    }
+  }
 }
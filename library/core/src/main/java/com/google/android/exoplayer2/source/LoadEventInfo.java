@@ -60,6 +60,21 @@ public final class LoadEventInfo {
   public final long loadDurationMs;
   /** The number of bytes that were loaded up to the event time. */
   public final long bytesLoaded;
+  /**
+   * The number of extractors that were sniffed to select the extractor of the loaded stream, or 0
+   * if the load didn't sniff extractors.
+   */
+  public final int sniffedExtractorCount;
+  /**
+   * The number of bytes peeked from the start of the stream to select its extractor, or 0 if the
+   * load didn't sniff extractors.
+   */
+  public final long sniffedByteCount;
+  /**
+   * The time spent selecting the extractor of the loaded stream, in milliseconds, or 0 if the load
+   * didn't sniff extractors.
+   */
+  public final long sniffDurationMs;
 
   /**
    * Equivalent to {@link #LoadEventInfo(long, DataSpec, Uri, Map, long, long, long)
@@ -77,6 +92,32 @@ public final class LoadEventInfo {
         /* bytesLoaded= */ 0);
   }
 
+  /**
+   * Equivalent to {@link #LoadEventInfo(long, DataSpec, Uri, Map, long, long, long, int, long,
+   * long) LoadEventInfo(loadTaskId, dataSpec, uri, responseHeaders, elapsedRealtimeMs,
+   * loadDurationMs, bytesLoaded, 0, 0, 0)}.
+   */
+  public LoadEventInfo(
+      long loadTaskId,
+      DataSpec dataSpec,
+      Uri uri,
+      Map<String, List<String>> responseHeaders,
+      long elapsedRealtimeMs,
+      long loadDurationMs,
+      long bytesLoaded) {
+    this(
+        loadTaskId,
+        dataSpec,
+        uri,
+        responseHeaders,
+        elapsedRealtimeMs,
+        loadDurationMs,
+        bytesLoaded,
+        /* sniffedExtractorCount= */ 0,
+        /* sniffedByteCount= */ 0,
+        /* sniffDurationMs= */ 0);
+  }
+
   /**
    * Creates load event info.
    *
@@ -87,6 +128,9 @@ public final class LoadEventInfo {
    * @param elapsedRealtimeMs See {@link #elapsedRealtimeMs}.
    * @param loadDurationMs See {@link #loadDurationMs}.
    * @param bytesLoaded See {@link #bytesLoaded}.
+   * @param sniffedExtractorCount See {@link #sniffedExtractorCount}.
+   * @param sniffedByteCount See {@link #sniffedByteCount}.
+   * @param sniffDurationMs See {@link #sniffDurationMs}.
    */
   public LoadEventInfo(
       long loadTaskId,
@@ -95,7 +139,10 @@ public final class LoadEventInfo {
       Map<String, List<String>> responseHeaders,
       long elapsedRealtimeMs,
       long loadDurationMs,
-      long bytesLoaded) {
+      long bytesLoaded,
+      int sniffedExtractorCount,
+      long sniffedByteCount,
+      long sniffDurationMs) {
     this.loadTaskId = loadTaskId;
     this.dataSpec = dataSpec;
     this.uri = uri;
@@ -103,5 +150,8 @@ public final class LoadEventInfo {
     this.elapsedRealtimeMs = elapsedRealtimeMs;
     this.loadDurationMs = loadDurationMs;
     this.bytesLoaded = bytesLoaded;
+    this.sniffedExtractorCount = sniffedExtractorCount;
+    this.sniffedByteCount = sniffedByteCount;
+    this.sniffDurationMs = sniffDurationMs;
   }
 }
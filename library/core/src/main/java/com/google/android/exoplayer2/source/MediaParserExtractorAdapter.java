@@ -116,6 +116,35 @@ public final class MediaParserExtractorAdapter implements ProgressiveMediaExtrac
     }
   }
 
+  @Override
+  public void disableSeekIndexLoading() {
+    // MediaParser doesn't allow skipping the seek index.
+  }
+
+  @Override
+  public boolean isSkippingSampleData() {
+    // MediaParser doesn't expose why it seeks.
+    return false;
+  }
+
+  @Override
+  public int getSniffedExtractorCount() {
+    // MediaParser doesn't expose how it selects the parser.
+    return 0;
+  }
+
+  @Override
+  public long getSniffedByteCount() {
+    // MediaParser doesn't expose how it selects the parser.
+    return 0;
+  }
+
+  @Override
+  public long getSniffDurationMs() {
+    // MediaParser doesn't expose how it selects the parser.
+    return 0;
+  }
+
   @Override
   public long getCurrentInputPosition() {
     return inputReaderAdapter.getPosition();
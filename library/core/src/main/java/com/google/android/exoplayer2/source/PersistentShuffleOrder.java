@@ -0,0 +1,569 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import java.util.Arrays;
+import java.util.Random;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * A {@link ShuffleOrder} for large playlists.
+ *
+ * <p>The order has the same semantics as {@link DefaultShuffleOrder}: inserted elements are placed
+ * at random positions of the shuffled order and the relative order of existing elements is kept.
+ * Unlike {@link DefaultShuffleOrder}, which copies the whole permutation on every edit, this
+ * implementation is backed by persistent balanced trees that share their unchanged parts between
+ * copies. {@link #cloneAndInsert(int, int)} and {@link #cloneAndRemove(int, int)} take O(k *
+ * log(n)) for k inserted or removed elements in a playlist of n elements, and {@link
+ * #getNextIndex(int)} and {@link #getPreviousIndex(int)} take O(log(n)).
+ *
+ * <p>Every element has a random shuffle key, which defines its position in the shuffled order, and
+ * a label, which increases with its index in the playlist. One tree orders the elements by label to
+ * look up playlist indices, the other one orders them by shuffle key to find the next and previous
+ * elements of the shuffled order.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class PersistentShuffleOrder implements ShuffleOrder {
+
+  /** The default distance between the labels of adjacent elements. */
+  private static final long DEFAULT_LABEL_SPACING = 1L << 32;
+
+  /**
+   * The minimum distance between the labels of adjacent elements after relabeling the smallest
+   * range of elements around an insertion point, as a power of two. The required distance doubles
+   * for every doubling of the range, so that large ranges are relabeled rarely.
+   */
+  private static final int MIN_RELABEL_SPACING_SHIFT = 8;
+
+  private final Random random;
+
+  /** Elements ordered by label, keyed by label, with their shuffle key as value. */
+  @Nullable private final Node elementsByLabel;
+
+  /** Elements ordered by shuffle key, keyed by shuffle key, with their label as value. */
+  @Nullable private final Node elementsByShuffleKey;
+
+  /**
+   * Creates an instance with a specified length.
+   *
+   * @param length The length of the shuffle order.
+   */
+  public PersistentShuffleOrder(int length) {
+    this(length, new Random());
+  }
+
+  /**
+   * Creates an instance with a specified length and the specified random seed. Shuffle orders of
+   * the same length initialized with the same random seed are guaranteed to be equal.
+   *
+   * @param length The length of the shuffle order.
+   * @param randomSeed A random seed.
+   */
+  public PersistentShuffleOrder(int length, long randomSeed) {
+    this(length, new Random(randomSeed));
+  }
+
+  /**
+   * Creates an instance with a specified shuffle order and the specified random seed. The random
+   * seed is used for {@link #cloneAndInsert(int, int)} invocations.
+   *
+   * @param shuffledIndices The shuffled indices to use as order.
+   * @param randomSeed A random seed.
+   */
+  public PersistentShuffleOrder(int[] shuffledIndices, long randomSeed) {
+    this(Arrays.copyOf(shuffledIndices, shuffledIndices.length), new Random(randomSeed));
+  }
+
+  private PersistentShuffleOrder(int length, Random random) {
+    this(createShuffledList(length, random), random);
+  }
+
+  private PersistentShuffleOrder(int[] shuffled, Random random) {
+    this.random = random;
+    int length = shuffled.length;
+    // Assign increasing shuffle keys along the shuffled order.
+    long[] shuffleKeys = createSortedDistinctKeys(length, random);
+    long[] labels = createLabels(length);
+    long[] shuffleKeysByIndex = new long[length];
+    long[] labelsByShuffledPosition = new long[length];
+    for (int i = 0; i < length; i++) {
+      shuffleKeysByIndex[shuffled[i]] = shuffleKeys[i];
+      labelsByShuffledPosition[i] = labels[shuffled[i]];
+    }
+    elementsByLabel = build(labels, shuffleKeysByIndex, /* from= */ 0, /* to= */ length);
+    elementsByShuffleKey =
+        build(shuffleKeys, labelsByShuffledPosition, /* from= */ 0, /* to= */ length);
+  }
+
+  private PersistentShuffleOrder(
+      @Nullable Node elementsByLabel, @Nullable Node elementsByShuffleKey, Random random) {
+    this.elementsByLabel = elementsByLabel;
+    this.elementsByShuffleKey = elementsByShuffleKey;
+    this.random = random;
+  }
+
+  @Override
+  public int getLength() {
+    return size(elementsByLabel);
+  }
+
+  @Override
+  public int getNextIndex(int index) {
+    long shuffleKey = select(elementsByLabel, index).value;
+    @Nullable Node next = higher(elementsByShuffleKey, shuffleKey);
+    return next != null ? rank(elementsByLabel, next.value) : C.INDEX_UNSET;
+  }
+
+  @Override
+  public int getPreviousIndex(int index) {
+    long shuffleKey = select(elementsByLabel, index).value;
+    @Nullable Node previous = lower(elementsByShuffleKey, shuffleKey);
+    return previous != null ? rank(elementsByLabel, previous.value) : C.INDEX_UNSET;
+  }
+
+  @Override
+  public int getLastIndex() {
+    @Nullable Node node = elementsByShuffleKey;
+    if (node == null) {
+      return C.INDEX_UNSET;
+    }
+    while (node.right != null) {
+      node = node.right;
+    }
+    return rank(elementsByLabel, node.value);
+  }
+
+  @Override
+  public int getFirstIndex() {
+    @Nullable Node node = elementsByShuffleKey;
+    if (node == null) {
+      return C.INDEX_UNSET;
+    }
+    while (node.left != null) {
+      node = node.left;
+    }
+    return rank(elementsByLabel, node.value);
+  }
+
+  @Override
+  public ShuffleOrder cloneAndInsert(int insertionIndex, int insertionCount) {
+    int length = getLength();
+    checkArgument(insertionIndex >= 0 && insertionIndex <= length && insertionCount >= 0);
+    Random newRandom = new Random(random.nextLong());
+    if (insertionCount == 0) {
+      return new PersistentShuffleOrder(elementsByLabel, elementsByShuffleKey, newRandom);
+    }
+    // Try to fit the new labels between the neighbors of the insertion point, and relabel a
+    // growing range of existing elements around the insertion point if there isn't enough room.
+    int relabelFrom = insertionIndex;
+    int relabelTo = insertionIndex;
+    long spacing = getLabelSpacing(relabelFrom, relabelTo, insertionCount);
+    for (int halfWidth = 1, level = 0;
+        spacing < 1
+            || (relabelFrom != relabelTo
+                && spacing < 1L << min(MIN_RELABEL_SPACING_SHIFT + level, 62));
+        halfWidth *= 2, level++) {
+      if (relabelFrom == 0 && relabelTo == length) {
+        // The whole playlist is relabeled, which always fits.
+        break;
+      }
+      relabelFrom = max(0, insertionIndex - halfWidth);
+      relabelTo = min(length, insertionIndex + halfWidth);
+      spacing = getLabelSpacing(relabelFrom, relabelTo, insertionCount);
+    }
+
+    Node[] parts = splitAt(elementsByLabel, relabelTo);
+    @Nullable Node tail = parts[1];
+    parts = splitAt(parts[0], relabelFrom);
+    @Nullable Node head = parts[0];
+    @Nullable Node relabeledRange = parts[1];
+
+    int rangeLength = relabelTo - relabelFrom + insertionCount;
+    long[] labels = new long[rangeLength];
+    long firstLabel = getFirstLabel(relabelFrom, relabelTo, rangeLength, spacing);
+    for (int i = 0; i < rangeLength; i++) {
+      labels[i] = firstLabel + i * spacing;
+    }
+    long[] shuffleKeys = new long[rangeLength];
+    @Nullable Node newElementsByShuffleKey = elementsByShuffleKey;
+    int insertionOffset = insertionIndex - relabelFrom;
+    long[] oldShuffleKeys = new long[relabelTo - relabelFrom];
+    collectValues(relabeledRange, oldShuffleKeys, /* offset= */ 0);
+    for (int i = 0; i < oldShuffleKeys.length; i++) {
+      int indexInRange = i < insertionOffset ? i : i + insertionCount;
+      shuffleKeys[indexInRange] = oldShuffleKeys[i];
+      newElementsByShuffleKey =
+          replaceValue(
+              checkNotNull(newElementsByShuffleKey), oldShuffleKeys[i], labels[indexInRange]);
+    }
+    for (int i = 0; i < insertionCount; i++) {
+      long shuffleKey = random.nextLong();
+      while (contains(newElementsByShuffleKey, shuffleKey)) {
+        shuffleKey = random.nextLong();
+      }
+      int indexInRange = insertionOffset + i;
+      shuffleKeys[indexInRange] = shuffleKey;
+      newElementsByShuffleKey =
+          insert(newElementsByShuffleKey, new Node(shuffleKey, labels[indexInRange]));
+    }
+    @Nullable
+    Node newElementsByLabel =
+        merge(merge(head, build(labels, shuffleKeys, /* from= */ 0, rangeLength)), tail);
+    return new PersistentShuffleOrder(newElementsByLabel, newElementsByShuffleKey, newRandom);
+  }
+
+  @Override
+  public ShuffleOrder cloneAndRemove(int indexFrom, int indexToExclusive) {
+    checkArgument(indexFrom >= 0 && indexFrom <= indexToExclusive);
+    checkArgument(indexToExclusive <= getLength());
+    Node[] parts = splitAt(elementsByLabel, indexToExclusive);
+    @Nullable Node tail = parts[1];
+    parts = splitAt(parts[0], indexFrom);
+    long[] removedShuffleKeys = new long[indexToExclusive - indexFrom];
+    collectValues(parts[1], removedShuffleKeys, /* offset= */ 0);
+    @Nullable Node newElementsByShuffleKey = elementsByShuffleKey;
+    for (long shuffleKey : removedShuffleKeys) {
+      newElementsByShuffleKey = delete(checkNotNull(newElementsByShuffleKey), shuffleKey);
+    }
+    return new PersistentShuffleOrder(
+        merge(parts[0], tail), newElementsByShuffleKey, new Random(random.nextLong()));
+  }
+
+  @Override
+  public ShuffleOrder cloneAndClear() {
+    return new PersistentShuffleOrder(
+        /* elementsByLabel= */ null,
+        /* elementsByShuffleKey= */ null,
+        new Random(random.nextLong()));
+  }
+
+  /**
+   * Returns the distance between the labels of {@code insertionCount} new elements and the existing
+   * elements in {@code [relabelFrom, relabelTo)} if they are all labeled evenly between the
+   * neighbors of that range. The result is smaller than 1 if the labels don't fit.
+   */
+  private long getLabelSpacing(int relabelFrom, int relabelTo, int insertionCount) {
+    int length = getLength();
+    long rangeLength = (long) relabelTo - relabelFrom + insertionCount;
+    if (relabelFrom == 0 && relabelTo == length) {
+      return getInitialLabelSpacing(rangeLength);
+    }
+    long lowerBound = relabelFrom > 0 ? select(elementsByLabel, relabelFrom - 1).key : 0;
+    long upperBound = relabelTo < length ? select(elementsByLabel, relabelTo).key : Long.MAX_VALUE;
+    long spacing = (upperBound - lowerBound) / (rangeLength + 1);
+    // Leave the remaining room at the start and the end of the playlist for later insertions.
+    return relabelFrom == 0 || relabelTo == length ? min(spacing, DEFAULT_LABEL_SPACING) : spacing;
+  }
+
+  private long getFirstLabel(int relabelFrom, int relabelTo, int rangeLength, long spacing) {
+    int length = getLength();
+    if (relabelFrom == 0 && relabelTo == length) {
+      return getInitialFirstLabel(rangeLength, spacing);
+    } else if (relabelFrom == 0) {
+      // Align the range with the element following it.
+      return select(elementsByLabel, relabelTo).key - rangeLength * spacing;
+    } else {
+      return select(elementsByLabel, relabelFrom - 1).key + spacing;
+    }
+  }
+
+  private static long getInitialLabelSpacing(long length) {
+    return min(DEFAULT_LABEL_SPACING, Long.MAX_VALUE / (length + 2));
+  }
+
+  /** Returns the first label of {@code length} elements centered in the range of labels. */
+  private static long getInitialFirstLabel(long length, long spacing) {
+    return (1L << 62) - (length / 2) * spacing;
+  }
+
+  private static long[] createLabels(int length) {
+    long spacing = getInitialLabelSpacing(length);
+    long firstLabel = getInitialFirstLabel(length, spacing);
+    long[] labels = new long[length];
+    for (int i = 0; i < length; i++) {
+      labels[i] = firstLabel + i * spacing;
+    }
+    return labels;
+  }
+
+  private static long[] createSortedDistinctKeys(int length, Random random) {
+    long[] keys = new long[length];
+    for (int i = 0; i < length; i++) {
+      keys[i] = random.nextLong();
+    }
+    Arrays.sort(keys);
+    boolean hasDuplicates = false;
+    for (int i = 1; i < length; i++) {
+      if (keys[i] == keys[i - 1]) {
+        hasDuplicates = true;
+        break;
+      }
+    }
+    return hasDuplicates ? createSortedDistinctKeys(length, random) : keys;
+  }
+
+  private static int[] createShuffledList(int length, Random random) {
+    int[] shuffled = new int[length];
+    for (int i = 0; i < length; i++) {
+      int swapIndex = random.nextInt(i + 1);
+      shuffled[i] = shuffled[swapIndex];
+      shuffled[swapIndex] = i;
+    }
+    return shuffled;
+  }
+
+  // Persistent treap operations. Nodes are immutable, so that copies can share unchanged subtrees.
+
+  private static final class Node {
+
+    public final long key;
+    public final long value;
+    public final int priority;
+    public final int size;
+    @Nullable public final Node left;
+    @Nullable public final Node right;
+
+    public Node(long key, long value) {
+      this(key, value, getPriority(key), /* left= */ null, /* right= */ null);
+    }
+
+    public Node(long key, long value, int priority, @Nullable Node left, @Nullable Node right) {
+      this.key = key;
+      this.value = value;
+      this.priority = priority;
+      this.left = left;
+      this.right = right;
+      size = 1 + size(left) + size(right);
+    }
+
+    public Node withChildren(@Nullable Node left, @Nullable Node right) {
+      return new Node(key, value, priority, left, right);
+    }
+
+    /** Derives a pseudo-random priority from the key, which keeps the tree balanced. */
+    private static int getPriority(long key) {
+      key = (key ^ (key >>> 30)) * 0xBF58476D1CE4E5B9L;
+      key = (key ^ (key >>> 27)) * 0x94D049BB133111EBL;
+      return (int) (key ^ (key >>> 31));
+    }
+  }
+
+  private static int size(@Nullable Node node) {
+    return node == null ? 0 : node.size;
+  }
+
+  /** Returns the node at {@code index} in key order. */
+  private static Node select(@Nullable Node node, int index) {
+    while (true) {
+      node = checkNotNull(node);
+      int leftSize = size(node.left);
+      if (index < leftSize) {
+        node = node.left;
+      } else if (index == leftSize) {
+        return node;
+      } else {
+        index -= leftSize + 1;
+        node = node.right;
+      }
+    }
+  }
+
+  /** Returns the number of nodes with a key smaller than {@code key}. */
+  private static int rank(@Nullable Node node, long key) {
+    int rank = 0;
+    while (node != null) {
+      if (key <= node.key) {
+        node = node.left;
+      } else {
+        rank += size(node.left) + 1;
+        node = node.right;
+      }
+    }
+    return rank;
+  }
+
+  private static boolean contains(@Nullable Node node, long key) {
+    while (node != null) {
+      if (key == node.key) {
+        return true;
+      }
+      node = key < node.key ? node.left : node.right;
+    }
+    return false;
+  }
+
+  /** Returns the node with the smallest key greater than {@code key}, or null. */
+  @Nullable
+  private static Node higher(@Nullable Node node, long key) {
+    @Nullable Node result = null;
+    while (node != null) {
+      if (node.key > key) {
+        result = node;
+        node = node.left;
+      } else {
+        node = node.right;
+      }
+    }
+    return result;
+  }
+
+  /** Returns the node with the largest key smaller than {@code key}, or null. */
+  @Nullable
+  private static Node lower(@Nullable Node node, long key) {
+    @Nullable Node result = null;
+    while (node != null) {
+      if (node.key < key) {
+        result = node;
+        node = node.right;
+      } else {
+        node = node.left;
+      }
+    }
+    return result;
+  }
+
+  /** Copies the values in key order into {@code values}, starting at {@code offset}. */
+  private static int collectValues(@Nullable Node node, long[] values, int offset) {
+    if (node == null) {
+      return offset;
+    }
+    offset = collectValues(node.left, values, offset);
+    values[offset++] = node.value;
+    return collectValues(node.right, values, offset);
+  }
+
+  /**
+   * Merges two trees, where all keys of {@code left} are smaller than the keys of {@code right}.
+   */
+  @Nullable
+  private static Node merge(@Nullable Node left, @Nullable Node right) {
+    if (left == null) {
+      return right;
+    } else if (right == null) {
+      return left;
+    } else if (left.priority > right.priority) {
+      return left.withChildren(left.left, merge(left.right, right));
+    } else {
+      return right.withChildren(merge(left, right.left), right.right);
+    }
+  }
+
+  /** Splits a tree into the first {@code count} nodes in key order and the remaining ones. */
+  private static @NullableType Node[] splitAt(@Nullable Node node, int count) {
+    if (node == null) {
+      return new Node[2];
+    }
+    int leftSize = size(node.left);
+    if (count <= leftSize) {
+      Node[] parts = splitAt(node.left, count);
+      parts[1] = node.withChildren(parts[1], node.right);
+      return parts;
+    } else {
+      Node[] parts = splitAt(node.right, count - leftSize - 1);
+      parts[0] = node.withChildren(node.left, parts[0]);
+      return parts;
+    }
+  }
+
+  /** Splits a tree into the nodes with a key smaller than {@code key} and the remaining ones. */
+  private static @NullableType Node[] splitByKey(@Nullable Node node, long key) {
+    if (node == null) {
+      return new Node[2];
+    }
+    if (key <= node.key) {
+      Node[] parts = splitByKey(node.left, key);
+      parts[1] = node.withChildren(parts[1], node.right);
+      return parts;
+    } else {
+      Node[] parts = splitByKey(node.right, key);
+      parts[0] = node.withChildren(node.left, parts[0]);
+      return parts;
+    }
+  }
+
+  /** Inserts a node with a key that isn't in the tree yet. */
+  private static Node insert(@Nullable Node node, Node newNode) {
+    if (node == null) {
+      return newNode;
+    } else if (newNode.priority > node.priority) {
+      Node[] parts = splitByKey(node, newNode.key);
+      return newNode.withChildren(parts[0], parts[1]);
+    } else if (newNode.key < node.key) {
+      return node.withChildren(insert(node.left, newNode), node.right);
+    } else {
+      return node.withChildren(node.left, insert(node.right, newNode));
+    }
+  }
+
+  /** Deletes the node with the specified key, which must be in the tree. */
+  @Nullable
+  private static Node delete(Node node, long key) {
+    if (key == node.key) {
+      return merge(node.left, node.right);
+    } else if (key < node.key) {
+      return node.withChildren(delete(checkNotNull(node.left), key), node.right);
+    } else {
+      return node.withChildren(node.left, delete(checkNotNull(node.right), key));
+    }
+  }
+
+  /** Replaces the value of the node with the specified key, which must be in the tree. */
+  private static Node replaceValue(Node node, long key, long value) {
+    if (key == node.key) {
+      return new Node(key, value, node.priority, node.left, node.right);
+    } else if (key < node.key) {
+      return node.withChildren(replaceValue(checkNotNull(node.left), key, value), node.right);
+    } else {
+      return node.withChildren(node.left, replaceValue(checkNotNull(node.right), key, value));
+    }
+  }
+
+  /**
+   * Builds a tree from nodes with increasing keys by merging them pairwise, which takes linear time
+   * in the number of nodes.
+   */
+  @Nullable
+  private static Node build(long[] keys, long[] values, int from, int to) {
+    int count = to - from;
+    if (count == 0) {
+      return null;
+    }
+    @NullableType Node[] nodes = new Node[count];
+    for (int i = 0; i < count; i++) {
+      nodes[i] = new Node(keys[from + i], values[from + i]);
+    }
+    while (count > 1) {
+      int mergedCount = 0;
+      for (int i = 0; i < count; i += 2) {
+        nodes[mergedCount++] = i + 1 < count ? merge(nodes[i], nodes[i + 1]) : nodes[i];
+      }
+      count = mergedCount;
+    }
+    return nodes[0];
+  }
+}
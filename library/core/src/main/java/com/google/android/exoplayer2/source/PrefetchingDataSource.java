@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import android.net.Uri;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.DataSource;
+import com.google.android.exoplayer2.upstream.DataSourceUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import com.google.android.exoplayer2.util.Util;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * A {@link DataSource} that can open the connection for a later {@link #open(DataSpec)} call in the
+ * background, while the current connection is still being read.
+ *
+ * <p>Two upstream {@link DataSource} instances are used in turns. A connection is {@linkplain
+ * #prefetch(DataSpec) prefetched} with the upstream that's currently unused, and becomes the
+ * current connection when a {@link DataSpec} for the same data is opened.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class PrefetchingDataSource implements DataSource {
+
+  private final ExecutorService executorService;
+
+  private DataSource upstream;
+  private DataSource spareUpstream;
+  @Nullable private DataSpec prefetchDataSpec;
+  @Nullable private Future<Long> prefetchResult;
+
+  /**
+   * Creates an instance.
+   *
+   * @param upstream The {@link DataSource} to read from.
+   * @param spareUpstream A second {@link DataSource} for the same data, used to prefetch
+   *     connections.
+   */
+  public PrefetchingDataSource(DataSource upstream, DataSource spareUpstream) {
+    this.upstream = upstream;
+    this.spareUpstream = spareUpstream;
+    executorService = Util.newSingleThreadExecutor("ExoPlayer:PrefetchingDataSource");
+  }
+
+  /**
+   * Starts opening a connection for the given {@link DataSpec} in the background. Any connection
+   * prefetched before is closed.
+   *
+   * @param dataSpec The {@link DataSpec} that's expected to be {@linkplain #open(DataSpec) opened}
+   *     later.
+   */
+  public void prefetch(DataSpec dataSpec) {
+    cancelPrefetch();
+    DataSource spareUpstream = this.spareUpstream;
+    prefetchDataSpec = dataSpec;
+    prefetchResult = executorService.submit(() -> spareUpstream.open(dataSpec));
+  }
+
+  /** Closes the prefetched connection, if any. */
+  public void cancelPrefetch() {
+    if (prefetchResult == null) {
+      return;
+    }
+    prefetchResult = null;
+    prefetchDataSpec = null;
+    // Closing is queued after the pending open, so the next prefetch can't overtake it.
+    DataSource spareUpstream = this.spareUpstream;
+    executorService.execute(() -> DataSourceUtil.closeQuietly(spareUpstream));
+  }
+
+  /** Closes the prefetched connection, if any, and releases the background thread. */
+  public void release() {
+    cancelPrefetch();
+    executorService.shutdown();
+  }
+
+  // DataSource implementation.
+
+  @Override
+  public void addTransferListener(TransferListener transferListener) {
+    upstream.addTransferListener(transferListener);
+    spareUpstream.addTransferListener(transferListener);
+  }
+
+  @Override
+  public long open(DataSpec dataSpec) throws IOException {
+    @Nullable Future<Long> prefetchResult = this.prefetchResult;
+    @Nullable DataSpec prefetchDataSpec = this.prefetchDataSpec;
+    if (prefetchResult != null
+        && prefetchDataSpec != null
+        && prefetchDataSpec.uri.equals(dataSpec.uri)
+        && prefetchDataSpec.position == dataSpec.position
+        && prefetchDataSpec.length == dataSpec.length) {
+      this.prefetchResult = null;
+      this.prefetchDataSpec = null;
+      try {
+        long length = prefetchResult.get();
+        DataSource previousUpstream = upstream;
+        upstream = spareUpstream;
+        spareUpstream = previousUpstream;
+        return length;
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        DataSource spareUpstream = this.spareUpstream;
+        executorService.execute(() -> DataSourceUtil.closeQuietly(spareUpstream));
+        throw new InterruptedIOException();
+      } catch (ExecutionException e) {
+        // Fall back to opening the connection again, which surfaces the error if it persists.
+        DataSource spareUpstream = this.spareUpstream;
+        executorService.execute(() -> DataSourceUtil.closeQuietly(spareUpstream));
+      }
+    }
+    return upstream.open(dataSpec);
+  }
+
+  @Override
+  public int read(byte[] buffer, int offset, int length) throws IOException {
+    return upstream.read(buffer, offset, length);
+  }
+
+  @Nullable
+  @Override
+  public Uri getUri() {
+    return upstream.getUri();
+  }
+
+  @Override
+  public Map<String, List<String>> getResponseHeaders() {
+    return upstream.getResponseHeaders();
+  }
+
+  @Override
+  public void close() throws IOException {
+    upstream.close();
+  }
+}
@@ -80,6 +80,40 @@ public interface ProgressiveMediaExtractor {
    */
   void disableSeekingOnMp3Streams();
 
+  /**
+   * Disables loading of seek indices that are stored apart from the media headers, such as the Cues
+   * element of Matroska streams.
+   *
+   * <p>Used when a {@link com.google.android.exoplayer2.extractor.SeekMap} for the stream is
+   * already known, to avoid the additional reads needed to load the index.
+   */
+  void disableSeekIndexLoading();
+
+  /**
+   * Returns whether the last {@link #read} that returned {@link Extractor#RESULT_SEEK} skipped over
+   * sample data that the extractor will seek back to once it has read the media headers that follow
+   * it, such as an MP4 {@code mdat} box that precedes the {@code moov} box.
+   */
+  boolean isSkippingSampleData();
+
+  /**
+   * Returns the number of extractors whose {@link Extractor#sniff} method was called to select the
+   * extractor in the last call to {@link #init}, or 0 if no extractor was sniffed.
+   */
+  int getSniffedExtractorCount();
+
+  /**
+   * Returns the number of bytes peeked from the start of the input to select the extractor in the
+   * last call to {@link #init}, or 0 if no extractor was sniffed.
+   */
+  long getSniffedByteCount();
+
+  /**
+   * Returns the time spent selecting the extractor in the last call to {@link #init}, in
+   * milliseconds, or 0 if no extractor was sniffed.
+   */
+  long getSniffDurationMs();
+
   /**
    * Returns the current read position in the input stream, or {@link C#INDEX_UNSET} if no input is
    * available.
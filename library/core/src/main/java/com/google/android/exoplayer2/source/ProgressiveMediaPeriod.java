@@ -119,6 +119,8 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   private final Allocator allocator;
   @Nullable private final String customCacheKey;
   private final long continueLoadingCheckIntervalBytes;
+  @Nullable private final SeekMapCache seekMapCache;
+  @Nullable private final PrefetchingDataSource prefetchingDataSource;
   private final Loader loader;
   private final ProgressiveMediaExtractor progressiveMediaExtractor;
   private final ConditionVariable loadCondition;
@@ -153,6 +155,14 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
   private boolean loadingFinished;
   private boolean released;
 
+  // Seek map cache state. Accessed by the loading thread only.
+  @Nullable private DataSpec seekMapCacheDataSpec;
+  private long seekMapCacheStreamLength;
+  private boolean isSeekMapFromCache;
+
+  // Whether the extractor has output a seek map. Accessed by the loading thread only.
+  private boolean hasOutputSeekMap;
+
   /**
    * @param uri The {@link Uri} of the media stream.
    * @param dataSource The data source to read the media.
@@ -169,6 +179,12 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
    *     indexing. May be null.
    * @param continueLoadingCheckIntervalBytes The number of bytes that should be loaded between each
    *     invocation of {@link Callback#onContinueLoadingRequested(SequenceableLoader)}.
+   * @param seekMapCache A {@link SeekMapCache} to restore and store the {@link SeekMap} of the
+   *     stream, or null.
+   * @param prefetchDataSource A second data source for the media, used to open the connection at
+   *     the position the extractor returns to while it's reading data it skipped to, or null. For
+   *     example, this lets the connection to the start of the samples in an MP4 stream with the
+   *     {@code moov} box at the end be opened while the {@code moov} box is being read.
    */
   // maybeFinishPrepare is not posted to the handler until initialization completes.
   @SuppressWarnings({"nullness:argument", "nullness:methodref.receiver.bound"})
@@ -183,9 +199,17 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       Listener listener,
       Allocator allocator,
       @Nullable String customCacheKey,
-      int continueLoadingCheckIntervalBytes) {
+      int continueLoadingCheckIntervalBytes,
+      @Nullable SeekMapCache seekMapCache,
+      @Nullable DataSource prefetchDataSource) {
     this.uri = uri;
-    this.dataSource = dataSource;
+    if (prefetchDataSource != null) {
+      prefetchingDataSource = new PrefetchingDataSource(dataSource, prefetchDataSource);
+      this.dataSource = prefetchingDataSource;
+    } else {
+      prefetchingDataSource = null;
+      this.dataSource = dataSource;
+    }
     this.drmSessionManager = drmSessionManager;
     this.drmEventDispatcher = drmEventDispatcher;
     this.loadErrorHandlingPolicy = loadErrorHandlingPolicy;
@@ -194,6 +218,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     this.allocator = allocator;
     this.customCacheKey = customCacheKey;
     this.continueLoadingCheckIntervalBytes = continueLoadingCheckIntervalBytes;
+    this.seekMapCache = seekMapCache;
     loader = new Loader("ProgressiveMediaPeriod");
     this.progressiveMediaExtractor = progressiveMediaExtractor;
     loadCondition = new ConditionVariable();
@@ -232,6 +257,9 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
       sampleQueue.release();
     }
     progressiveMediaExtractor.release();
+    if (prefetchingDataSource != null) {
+      prefetchingDataSource.release();
+    }
   }
 
   @Override
@@ -575,7 +603,10 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
             dataSource.getLastResponseHeaders(),
             elapsedRealtimeMs,
             loadDurationMs,
-            dataSource.getBytesRead());
+            dataSource.getBytesRead(),
+            loadable.sniffedExtractorCount,
+            loadable.sniffedByteCount,
+            loadable.sniffDurationMs);
     loadErrorHandlingPolicy.onLoadTaskConcluded(loadable.loadTaskId);
     mediaSourceEventDispatcher.loadCompleted(
         loadEventInfo,
@@ -602,7 +633,10 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
             dataSource.getLastResponseHeaders(),
             elapsedRealtimeMs,
             loadDurationMs,
-            dataSource.getBytesRead());
+            dataSource.getBytesRead(),
+            loadable.sniffedExtractorCount,
+            loadable.sniffedByteCount,
+            loadable.sniffDurationMs);
     loadErrorHandlingPolicy.onLoadTaskConcluded(loadable.loadTaskId);
     mediaSourceEventDispatcher.loadCanceled(
         loadEventInfo,
@@ -639,7 +673,10 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
             dataSource.getLastResponseHeaders(),
             elapsedRealtimeMs,
             loadDurationMs,
-            dataSource.getBytesRead());
+            dataSource.getBytesRead(),
+            loadable.sniffedExtractorCount,
+            loadable.sniffedByteCount,
+            loadable.sniffDurationMs);
     MediaLoadData mediaLoadData =
         new MediaLoadData(
             C.DATA_TYPE_MEDIA,
@@ -697,6 +734,14 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
   @Override
   public void seekMap(SeekMap seekMap) {
+    hasOutputSeekMap = true;
+    if (isSeekMapFromCache) {
+      // The extractor didn't load its seek index, so its seek map is less complete.
+      return;
+    }
+    if (seekMapCache != null && seekMapCacheDataSpec != null) {
+      seekMapCache.put(seekMapCacheDataSpec, seekMapCacheStreamLength, seekMap);
+    }
     handler.post(() -> setSeekMap(seekMap));
   }
 
@@ -715,6 +760,24 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
   // Internal methods.
 
+  /**
+   * Restores the seek map from the {@link #seekMapCache}, if available. Called by the loading
+   * thread.
+   */
+  private void maybeRestoreSeekMapFromCache(DataSpec dataSpec, long streamLength) {
+    if (seekMapCache == null || seekMapCacheDataSpec != null || streamLength == C.LENGTH_UNSET) {
+      return;
+    }
+    seekMapCacheDataSpec = dataSpec;
+    seekMapCacheStreamLength = streamLength;
+    @Nullable SeekMap cachedSeekMap = seekMapCache.get(dataSpec, streamLength);
+    if (cachedSeekMap != null) {
+      isSeekMapFromCache = true;
+      progressiveMediaExtractor.disableSeekIndexLoading();
+      handler.post(() -> setSeekMap(cachedSeekMap));
+    }
+  }
+
   private void onLengthKnown() {
     handler.post(() -> isLengthKnown = true);
   }
@@ -977,6 +1040,9 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
     private DataSpec dataSpec;
     @Nullable private TrackOutput icyTrackOutput;
     private boolean seenIcyMetadata;
+    private int sniffedExtractorCount;
+    private long sniffedByteCount;
+    private long sniffDurationMs;
 
     @SuppressWarnings("nullness:method.invocation")
     public ExtractingLoadable(
@@ -1022,16 +1088,24 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
             icyTrackOutput = icyTrack();
             icyTrackOutput.format(ICY_FORMAT);
           }
-          progressiveMediaExtractor.init(
-              extractorDataSource,
-              uri,
-              dataSource.getResponseHeaders(),
-              position,
-              length,
-              extractorOutput);
+          try {
+            progressiveMediaExtractor.init(
+                extractorDataSource,
+                uri,
+                dataSource.getResponseHeaders(),
+                position,
+                length,
+                extractorOutput);
+          } finally {
+            sniffedExtractorCount += progressiveMediaExtractor.getSniffedExtractorCount();
+            sniffedByteCount += progressiveMediaExtractor.getSniffedByteCount();
+            sniffDurationMs += progressiveMediaExtractor.getSniffDurationMs();
+          }
 
           if (icyHeaders != null) {
             progressiveMediaExtractor.disableSeekingOnMp3Streams();
+          } else {
+            maybeRestoreSeekMapFromCache(dataSpec, length);
           }
 
           if (pendingExtractorSeek) {
@@ -1055,6 +1129,7 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
         } finally {
           if (result == Extractor.RESULT_SEEK) {
             result = Extractor.RESULT_CONTINUE;
+            maybePrefetchSkippedData();
           } else if (progressiveMediaExtractor.getCurrentInputPosition() != C.INDEX_UNSET) {
             positionHolder.position = progressiveMediaExtractor.getCurrentInputPosition();
           }
@@ -1083,6 +1158,23 @@ import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
     // Internal methods.
 
+    /**
+     * Prefetches the connection at the current input position if the extractor is skipping over
+     * sample data that it will return to once it has read the media headers that follow it (for
+     * example, the {@code moov} box at the end of an MP4 file). Other seeks, such as skips over
+     * data that isn't needed or seeks to read the duration from the end of a stream, don't return
+     * to the current position, so nothing is prefetched for them.
+     */
+    private void maybePrefetchSkippedData() {
+      if (prefetchingDataSource == null || !progressiveMediaExtractor.isSkippingSampleData()) {
+        return;
+      }
+      long skippedPosition = progressiveMediaExtractor.getCurrentInputPosition();
+      if (skippedPosition != C.INDEX_UNSET && positionHolder.position > skippedPosition) {
+        prefetchingDataSource.prefetch(buildDataSpec(skippedPosition));
+      }
+    }
+
     private DataSpec buildDataSpec(long position) {
       // Disable caching if the content length cannot be resolved, since this is indicative of a
       // progressive live stream.
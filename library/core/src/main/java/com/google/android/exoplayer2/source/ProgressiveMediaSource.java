@@ -66,6 +66,8 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     private DrmSessionManagerProvider drmSessionManagerProvider;
     private LoadErrorHandlingPolicy loadErrorHandlingPolicy;
     private int continueLoadingCheckIntervalBytes;
+    @Nullable private SeekMapCache seekMapCache;
+    private boolean prefetchSkippedData;
 
     /**
      * Creates a new factory for {@link ProgressiveMediaSource}s.
@@ -186,6 +188,38 @@ public final class ProgressiveMediaSource extends BaseMediaSource
       return this;
     }
 
+    /**
+     * Sets a {@link SeekMapCache} to persist the seek maps of the streams, so that their seek
+     * indices don't need to be loaded again when the streams are reopened. The default value is
+     * {@code null}, in which case seek maps aren't persisted.
+     *
+     * @param seekMapCache A {@link SeekMapCache}, or {@code null}.
+     * @return This factory, for convenience.
+     */
+    @CanIgnoreReturnValue
+    public Factory setSeekMapCache(@Nullable SeekMapCache seekMapCache) {
+      this.seekMapCache = seekMapCache;
+      return this;
+    }
+
+    /**
+     * Sets whether to open a second connection to the stream in the background when the extractor
+     * skips forward to data it needs before it can start reading samples, such as the {@code moov}
+     * box at the end of an MP4 file. The connection is opened at the skipped position, so that
+     * reading the samples can start without waiting for a new connection. The default value is
+     * {@code false}.
+     *
+     * <p>This method is experimental, and will be renamed or removed in a future release.
+     *
+     * @param prefetchSkippedData Whether to prefetch the connection to skipped data.
+     * @return This factory, for convenience.
+     */
+    @CanIgnoreReturnValue
+    public Factory experimentalSetPrefetchSkippedDataEnabled(boolean prefetchSkippedData) {
+      this.prefetchSkippedData = prefetchSkippedData;
+      return this;
+    }
+
     @CanIgnoreReturnValue
     @Override
     public Factory setDrmSessionManagerProvider(
@@ -215,7 +249,9 @@ public final class ProgressiveMediaSource extends BaseMediaSource
           progressiveMediaExtractorFactory,
           drmSessionManagerProvider.get(mediaItem),
           loadErrorHandlingPolicy,
-          continueLoadingCheckIntervalBytes);
+          continueLoadingCheckIntervalBytes,
+          seekMapCache,
+          prefetchSkippedData);
     }
 
     @Override
@@ -237,6 +273,8 @@ public final class ProgressiveMediaSource extends BaseMediaSource
   private final DrmSessionManager drmSessionManager;
   private final LoadErrorHandlingPolicy loadableLoadErrorHandlingPolicy;
   private final int continueLoadingCheckIntervalBytes;
+  @Nullable private final SeekMapCache seekMapCache;
+  private final boolean prefetchSkippedData;
 
   private boolean timelineIsPlaceholder;
   private long timelineDurationUs;
@@ -250,7 +288,9 @@ public final class ProgressiveMediaSource extends BaseMediaSource
       ProgressiveMediaExtractor.Factory progressiveMediaExtractorFactory,
       DrmSessionManager drmSessionManager,
       LoadErrorHandlingPolicy loadableLoadErrorHandlingPolicy,
-      int continueLoadingCheckIntervalBytes) {
+      int continueLoadingCheckIntervalBytes,
+      @Nullable SeekMapCache seekMapCache,
+      boolean prefetchSkippedData) {
     this.localConfiguration = checkNotNull(mediaItem.localConfiguration);
     this.mediaItem = mediaItem;
     this.dataSourceFactory = dataSourceFactory;
@@ -258,6 +298,8 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     this.drmSessionManager = drmSessionManager;
     this.loadableLoadErrorHandlingPolicy = loadableLoadErrorHandlingPolicy;
     this.continueLoadingCheckIntervalBytes = continueLoadingCheckIntervalBytes;
+    this.seekMapCache = seekMapCache;
+    this.prefetchSkippedData = prefetchSkippedData;
     this.timelineIsPlaceholder = true;
     this.timelineDurationUs = C.TIME_UNSET;
   }
@@ -287,6 +329,13 @@ public final class ProgressiveMediaSource extends BaseMediaSource
     if (transferListener != null) {
       dataSource.addTransferListener(transferListener);
     }
+    @Nullable DataSource prefetchDataSource = null;
+    if (prefetchSkippedData) {
+      prefetchDataSource = dataSourceFactory.createDataSource();
+      if (transferListener != null) {
+        prefetchDataSource.addTransferListener(transferListener);
+      }
+    }
     return new ProgressiveMediaPeriod(
         localConfiguration.uri,
         dataSource,
@@ -298,7 +347,9 @@ public final class ProgressiveMediaSource extends BaseMediaSource
         this,
         allocator,
         localConfiguration.customCacheKey,
-        continueLoadingCheckIntervalBytes);
+        continueLoadingCheckIntervalBytes,
+        seekMapCache,
+        prefetchDataSource);
   }
 
   @Override
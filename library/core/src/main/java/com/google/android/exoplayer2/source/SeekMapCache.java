@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.ChunkIndex;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.Cache;
+import com.google.android.exoplayer2.upstream.cache.CacheKeyFactory;
+import com.google.android.exoplayer2.upstream.cache.ContentMetadataMutations;
+import com.google.android.exoplayer2.util.Log;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Persists {@link SeekMap SeekMaps} of progressive streams in the {@link
+ * com.google.android.exoplayer2.upstream.cache.ContentMetadata} of a {@link Cache}, so that seek
+ * indices that are expensive to load don't have to be loaded again when the stream is reopened.
+ *
+ * <p>Entries are keyed by the cache key of the stream and are only returned for a stream of the
+ * same length as the one they were stored for. Like other content metadata, an entry is removed
+ * when the cache no longer holds any data of the stream.
+ *
+ * <p>Only {@link ChunkIndex} seek maps are stored, which are used by Matroska streams with a Cues
+ * element, and by fragmented MP4 streams with a segment index. Other seek maps are either read from
+ * the media headers or computed from the stream, and wouldn't save any reads.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class SeekMapCache {
+
+  private static final String TAG = "SeekMapCache";
+
+  /** The {@link com.google.android.exoplayer2.upstream.cache.ContentMetadata} key. */
+  private static final String KEY_SEEK_MAP = "exo_seek";
+
+  private static final int VERSION = 1;
+
+  private final Cache cache;
+  private final CacheKeyFactory cacheKeyFactory;
+
+  /**
+   * Creates an instance using {@link CacheKeyFactory#DEFAULT}.
+   *
+   * @param cache The {@link Cache} in which to store the seek maps.
+   */
+  public SeekMapCache(Cache cache) {
+    this(cache, CacheKeyFactory.DEFAULT);
+  }
+
+  /**
+   * Creates an instance.
+   *
+   * @param cache The {@link Cache} in which to store the seek maps.
+   * @param cacheKeyFactory The {@link CacheKeyFactory} for building cache keys. Should be the same
+   *     as the one used to read the streams from the {@code cache}, if any.
+   */
+  public SeekMapCache(Cache cache, CacheKeyFactory cacheKeyFactory) {
+    this.cache = cache;
+    this.cacheKeyFactory = cacheKeyFactory;
+  }
+
+  /**
+   * Returns whether a {@link SeekMap} can be stored by this class.
+   *
+   * @param seekMap The {@link SeekMap}.
+   * @return Whether the {@link SeekMap} can be stored.
+   */
+  public static boolean isCacheable(SeekMap seekMap) {
+    return seekMap instanceof ChunkIndex && seekMap.isSeekable();
+  }
+
+  /**
+   * Returns the stored {@link SeekMap} for a stream, or null if none is stored for a stream of the
+   * given length.
+   *
+   * @param dataSpec A {@link DataSpec} of the stream.
+   * @param length The length of the stream, in bytes.
+   * @return The stored {@link SeekMap}, or null.
+   */
+  @Nullable
+  public SeekMap get(DataSpec dataSpec, long length) {
+    if (length == C.LENGTH_UNSET) {
+      return null;
+    }
+    @Nullable
+    byte[] data =
+        cache
+            .getContentMetadata(cacheKeyFactory.buildCacheKey(dataSpec))
+            .get(KEY_SEEK_MAP, /* defaultValue= */ (byte[]) null);
+    if (data == null) {
+      return null;
+    }
+    try {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(data));
+      if (input.readInt() != VERSION || input.readLong() != length) {
+        return null;
+      }
+      int chunkCount = input.readInt();
+      if (chunkCount <= 0 || chunkCount > data.length) {
+        return null;
+      }
+      int[] sizes = new int[chunkCount];
+      long[] offsets = new long[chunkCount];
+      long[] durationsUs = new long[chunkCount];
+      long[] timesUs = new long[chunkCount];
+      for (int i = 0; i < chunkCount; i++) {
+        sizes[i] = input.readInt();
+        offsets[i] = input.readLong();
+        durationsUs[i] = input.readLong();
+        timesUs[i] = input.readLong();
+      }
+      return new ChunkIndex(sizes, offsets, durationsUs, timesUs);
+    } catch (IOException e) {
+      Log.w(TAG, "Ignoring malformed seek map", e);
+      return null;
+    }
+  }
+
+  /**
+   * Stores the {@link SeekMap} for a stream, if it {@linkplain #isCacheable(SeekMap) can be
+   * stored}.
+   *
+   * <p>This method may be slow and shouldn't be called on the main thread.
+   *
+   * @param dataSpec A {@link DataSpec} of the stream.
+   * @param length The length of the stream, in bytes.
+   * @param seekMap The {@link SeekMap} of the stream.
+   * @return Whether the {@link SeekMap} was stored.
+   */
+  @WorkerThread
+  public boolean put(DataSpec dataSpec, long length, SeekMap seekMap) {
+    if (length == C.LENGTH_UNSET || !isCacheable(seekMap)) {
+      return false;
+    }
+    ChunkIndex chunkIndex = (ChunkIndex) seekMap;
+    ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(outputStream);
+    try {
+      output.writeInt(VERSION);
+      output.writeLong(length);
+      output.writeInt(chunkIndex.length);
+      for (int i = 0; i < chunkIndex.length; i++) {
+        output.writeInt(chunkIndex.sizes[i]);
+        output.writeLong(chunkIndex.offsets[i]);
+        output.writeLong(chunkIndex.durationsUs[i]);
+        output.writeLong(chunkIndex.timesUs[i]);
+      }
+      output.flush();
+      ContentMetadataMutations mutations = new ContentMetadataMutations();
+      mutations.set(KEY_SEEK_MAP, outputStream.toByteArray());
+      cache.applyContentMetadataMutations(cacheKeyFactory.buildCacheKey(dataSpec), mutations);
+      return true;
+    } catch (IOException e) {
+      Log.w(TAG, "Failed to store seek map", e);
+      return false;
+    }
+  }
+}
@@ -0,0 +1,485 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.preload;
+
+import static com.google.android.exoplayer2.util.Assertions.checkArgument;
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+import static com.google.android.exoplayer2.util.Assertions.checkState;
+
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.RendererCapabilities;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.trackselection.TrackSelector;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Preloads the {@link MediaItem media items} around the currently playing item of a list, for
+ * example a feed of short videos, so that they can be played without delay.
+ *
+ * <p>Each item added with {@link #add(MediaItem, int)} is wrapped in a {@link PreloadMediaSource}
+ * that should be set on the player with {@link ExoPlayer#setMediaSource(MediaSource)} once the item
+ * is played. Items are preloaded one at a time, ordered by their distance from the {@link
+ * #setCurrentPlayingIndex(int) currently playing index}, preferring upcoming over previous items.
+ * An item is preloaded until {@link Builder#setTargetPreloadDurationMs(int) the target duration} is
+ * buffered. Preloading pauses once the media preloaded into the {@link DefaultAllocator} exceeds
+ * {@link Builder#setTargetPreloadBytes(int) the target size}, and resumes once preloaded media is
+ * released or taken over by the player. Media the player loads doesn't count towards the target
+ * size. Items further than {@link Builder#setMaxPreloadDistance(int) the maximum distance} from the
+ * current item are evicted and their preloaded media is released.
+ *
+ * <p>The manager must be accessed on the thread it was built on, which must have a {@link Looper}.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class DefaultPreloadManager {
+
+  /** Builder for {@link DefaultPreloadManager}. */
+  public static final class Builder {
+
+    private final MediaSource.Factory mediaSourceFactory;
+    private final TrackSelector trackSelector;
+    private final BandwidthMeter bandwidthMeter;
+    private final RendererCapabilities[] rendererCapabilities;
+    private final Looper preloadLooper;
+    @Nullable private DefaultAllocator allocator;
+    private int targetPreloadDurationMs;
+    private int targetPreloadBytes;
+    private int maxPreloadDistance;
+    private boolean buildCalled;
+
+    /**
+     * Creates a builder.
+     *
+     * @param mediaSourceFactory The {@link MediaSource.Factory} to create the sources to preload.
+     * @param trackSelector The {@link TrackSelector} used to select the tracks to preload. This
+     *     must not be the instance used by the player, but it should be configured with the same
+     *     parameters.
+     * @param bandwidthMeter The {@link BandwidthMeter} used during preloading.
+     * @param rendererCapabilities The {@link RendererCapabilities} of the renderers of the player.
+     * @param preloadLooper The {@link Looper} on which preloading happens. This must be the
+     *     {@linkplain ExoPlayer.Builder#setPlaybackLooper(Looper) playback looper} of the player.
+     */
+    public Builder(
+        MediaSource.Factory mediaSourceFactory,
+        TrackSelector trackSelector,
+        BandwidthMeter bandwidthMeter,
+        RendererCapabilities[] rendererCapabilities,
+        Looper preloadLooper) {
+      this.mediaSourceFactory = mediaSourceFactory;
+      this.trackSelector = trackSelector;
+      this.bandwidthMeter = bandwidthMeter;
+      this.rendererCapabilities = rendererCapabilities;
+      this.preloadLooper = preloadLooper;
+      targetPreloadDurationMs = DEFAULT_TARGET_PRELOAD_DURATION_MS;
+      targetPreloadBytes = DEFAULT_TARGET_PRELOAD_BYTES;
+      maxPreloadDistance = DEFAULT_MAX_PRELOAD_DISTANCE;
+    }
+
+    /**
+     * Sets the {@link DefaultAllocator} into which media is preloaded. The allocator is used by the
+     * preloaded periods for as long as they exist, including after a player takes them over.
+     *
+     * @param allocator The {@link DefaultAllocator}.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setAllocator(DefaultAllocator allocator) {
+      checkState(!buildCalled);
+      this.allocator = allocator;
+      return this;
+    }
+
+    /**
+     * Sets the duration of media to buffer for each preloaded item. A value of zero only prepares
+     * the items without buffering media.
+     *
+     * @param targetPreloadDurationMs The target duration to preload, in milliseconds.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setTargetPreloadDurationMs(int targetPreloadDurationMs) {
+      checkState(!buildCalled);
+      checkArgument(targetPreloadDurationMs >= 0);
+      this.targetPreloadDurationMs = targetPreloadDurationMs;
+      return this;
+    }
+
+    /**
+     * Sets the maximum number of bytes allocated for preloading before preloading of further media
+     * pauses. Media loaded by the player, including media of preloaded items the player took over,
+     * isn't counted.
+     *
+     * @param targetPreloadBytes The target size, in bytes.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setTargetPreloadBytes(int targetPreloadBytes) {
+      checkState(!buildCalled);
+      checkArgument(targetPreloadBytes > 0);
+      this.targetPreloadBytes = targetPreloadBytes;
+      return this;
+    }
+
+    /**
+     * Sets the maximum distance between the index of a preloaded item and the currently playing
+     * index. Items further away are not preloaded, and their preloaded media is released.
+     *
+     * @param maxPreloadDistance The maximum preload distance.
+     * @return This builder, for convenience.
+     * @throws IllegalStateException If {@link #build()} has already been called.
+     */
+    @CanIgnoreReturnValue
+    public Builder setMaxPreloadDistance(int maxPreloadDistance) {
+      checkState(!buildCalled);
+      checkArgument(maxPreloadDistance > 0);
+      this.maxPreloadDistance = maxPreloadDistance;
+      return this;
+    }
+
+    /** Builds the {@link DefaultPreloadManager}. */
+    public DefaultPreloadManager build() {
+      checkState(!buildCalled);
+      buildCalled = true;
+      if (allocator == null) {
+        allocator = new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE);
+      }
+      return new DefaultPreloadManager(this);
+    }
+  }
+
+  /** The default target duration to preload per item, in milliseconds. */
+  public static final int DEFAULT_TARGET_PRELOAD_DURATION_MS = 5_000;
+
+  /** The default maximum size of preloaded media, in bytes. */
+  public static final int DEFAULT_TARGET_PRELOAD_BYTES = 500 * C.DEFAULT_BUFFER_SEGMENT_SIZE;
+
+  /** The default maximum distance of preloaded items from the currently playing item. */
+  public static final int DEFAULT_MAX_PRELOAD_DISTANCE = 3;
+
+  private static final String TAG = "DefaultPreloadManager";
+
+  private final PreloadMediaSource.Factory preloadMediaSourceFactory;
+  private final PreloadAllocator.Tracker preloadAllocatorTracker;
+  private final long targetPreloadDurationUs;
+  private final int targetPreloadBytes;
+  private final int maxPreloadDistance;
+  private final Handler applicationHandler;
+  private final Map<MediaItem, MediaSourceHolder> mediaSourceHolders;
+  private final AtomicBoolean waitingForPreloadedBytesRelease;
+
+  private int currentPlayingIndex;
+  @Nullable private MediaSourceHolder preloadingHolder;
+
+  private DefaultPreloadManager(Builder builder) {
+    targetPreloadDurationUs = Util.msToUs(builder.targetPreloadDurationMs);
+    targetPreloadBytes = builder.targetPreloadBytes;
+    maxPreloadDistance = builder.maxPreloadDistance;
+    applicationHandler = Util.createHandlerForCurrentLooper();
+    mediaSourceHolders = new HashMap<>();
+    currentPlayingIndex = C.INDEX_UNSET;
+    waitingForPreloadedBytesRelease = new AtomicBoolean();
+    preloadMediaSourceFactory =
+        new PreloadMediaSource.Factory(
+            builder.mediaSourceFactory,
+            new PreloadControlImpl(),
+            builder.trackSelector,
+            builder.bandwidthMeter,
+            builder.rendererCapabilities,
+            checkNotNull(builder.allocator),
+            builder.preloadLooper);
+    preloadAllocatorTracker = preloadMediaSourceFactory.getPreloadAllocatorTracker();
+    preloadAllocatorTracker.setBytesReleasedListener(this::onPreloadedBytesReleased);
+  }
+
+  /**
+   * Adds a {@link MediaItem} at the given index of the list. If the item was already added, its
+   * index is updated.
+   *
+   * <p>Call {@link #invalidate()} to start preloading newly added items.
+   *
+   * @param mediaItem The {@link MediaItem}.
+   * @param index The index of the item in the list.
+   */
+  public void add(MediaItem mediaItem, int index) {
+    @Nullable MediaSourceHolder holder = mediaSourceHolders.get(mediaItem);
+    if (holder != null) {
+      holder.index = index;
+      return;
+    }
+    mediaSourceHolders.put(
+        mediaItem,
+        new MediaSourceHolder(preloadMediaSourceFactory.createMediaSource(mediaItem), index));
+  }
+
+  /**
+   * Adds a {@link MediaSource} at the given index of the list. If a source for the same {@link
+   * MediaItem} was already added, only its index is updated.
+   *
+   * <p>Call {@link #invalidate()} to start preloading newly added items.
+   *
+   * @param mediaSource The {@link MediaSource}.
+   * @param index The index of the item in the list.
+   */
+  public void add(MediaSource mediaSource, int index) {
+    MediaItem mediaItem = mediaSource.getMediaItem();
+    @Nullable MediaSourceHolder holder = mediaSourceHolders.get(mediaItem);
+    if (holder != null) {
+      holder.index = index;
+      return;
+    }
+    mediaSourceHolders.put(
+        mediaItem,
+        new MediaSourceHolder(preloadMediaSourceFactory.createMediaSource(mediaSource), index));
+  }
+
+  /**
+   * Removes a {@link MediaItem} and releases its preloaded media.
+   *
+   * @param mediaItem The {@link MediaItem} to remove.
+   * @return Whether the item was removed.
+   */
+  public boolean remove(MediaItem mediaItem) {
+    @Nullable MediaSourceHolder holder = mediaSourceHolders.remove(mediaItem);
+    if (holder == null) {
+      return false;
+    }
+    releasePreload(holder);
+    return true;
+  }
+
+  /**
+   * Returns the {@link MediaSource} to set on the player to play the given {@link MediaItem}, or
+   * null if the item hasn't been {@link #add(MediaItem, int) added}.
+   */
+  @Nullable
+  public MediaSource getMediaSource(MediaItem mediaItem) {
+    @Nullable MediaSourceHolder holder = mediaSourceHolders.get(mediaItem);
+    return holder != null ? holder.mediaSource : null;
+  }
+
+  /** Returns the number of added items. */
+  public int getSourceCount() {
+    return mediaSourceHolders.size();
+  }
+
+  /**
+   * Sets the index of the currently playing item.
+   *
+   * <p>Call {@link #invalidate()} to update the preloaded items accordingly.
+   *
+   * @param currentPlayingIndex The index of the currently playing item.
+   */
+  public void setCurrentPlayingIndex(int currentPlayingIndex) {
+    for (MediaSourceHolder holder : mediaSourceHolders.values()) {
+      if (holder.index == this.currentPlayingIndex && holder.index != currentPlayingIndex) {
+        // The player consumed the preloaded media of the previously playing item.
+        releasePreload(holder);
+      } else if (holder.index == currentPlayingIndex && holder == preloadingHolder) {
+        // The player takes over the item that is being preloaded.
+        preloadingHolder = null;
+      }
+    }
+    this.currentPlayingIndex = currentPlayingIndex;
+  }
+
+  /**
+   * Updates the preloaded items after items were added or removed or the current index changed.
+   * Items outside of the preload window are evicted and the closest item that isn't preloaded yet
+   * starts preloading.
+   */
+  public void invalidate() {
+    for (MediaSourceHolder holder : mediaSourceHolders.values()) {
+      if (holder.preloadRequested && !isInPreloadWindow(holder)) {
+        releasePreload(holder);
+      }
+    }
+    maybePreloadNextItem();
+  }
+
+  /** Releases all preloaded media and removes all items. */
+  public void release() {
+    for (MediaSourceHolder holder : mediaSourceHolders.values()) {
+      releasePreload(holder);
+    }
+    mediaSourceHolders.clear();
+    preloadAllocatorTracker.setBytesReleasedListener(null);
+    applicationHandler.removeCallbacksAndMessages(/* token= */ null);
+  }
+
+  private void maybePreloadNextItem() {
+    if (preloadingHolder != null) {
+      return;
+    }
+    List<MediaSourceHolder> holders = new ArrayList<>(mediaSourceHolders.values());
+    Collections.sort(holders, this::compareByPreloadPriority);
+    for (int i = 0; i < holders.size(); i++) {
+      MediaSourceHolder holder = holders.get(i);
+      if (!isInPreloadWindow(holder) || holder.index == currentPlayingIndex) {
+        continue;
+      }
+      if (!holder.preloadCompleted) {
+        preloadingHolder = holder;
+        holder.preloadRequested = true;
+        holder.mediaSource.preload(/* startPositionUs= */ C.TIME_UNSET);
+        return;
+      }
+    }
+  }
+
+  private void onPreloadCompleted(PreloadMediaSource mediaSource) {
+    @Nullable MediaSourceHolder holder = preloadingHolder;
+    if (holder == null || holder.mediaSource != mediaSource) {
+      return;
+    }
+    holder.preloadCompleted = true;
+    preloadingHolder = null;
+    maybePreloadNextItem();
+  }
+
+  private void releasePreload(MediaSourceHolder holder) {
+    if (holder == preloadingHolder) {
+      preloadingHolder = null;
+    }
+    if (holder.preloadRequested) {
+      holder.mediaSource.releasePreloadMediaSource();
+    }
+    holder.preloadRequested = false;
+    holder.preloadCompleted = false;
+  }
+
+  private boolean isInPreloadWindow(MediaSourceHolder holder) {
+    return currentPlayingIndex != C.INDEX_UNSET
+        && Math.abs(holder.index - currentPlayingIndex) <= maxPreloadDistance;
+  }
+
+  private int compareByPreloadPriority(MediaSourceHolder holder1, MediaSourceHolder holder2) {
+    int distance1 = Math.abs(holder1.index - currentPlayingIndex);
+    int distance2 = Math.abs(holder2.index - currentPlayingIndex);
+    if (distance1 != distance2) {
+      return Integer.compare(distance1, distance2);
+    }
+    // Prefer upcoming items over previous items at the same distance.
+    return Integer.compare(holder2.index, holder1.index);
+  }
+
+  private void continuePreloading() {
+    if (preloadingHolder != null) {
+      preloadingHolder.mediaSource.continuePreloading();
+    }
+  }
+
+  private boolean isTargetPreloadSizeReached() {
+    return preloadAllocatorTracker.getPreloadedBytes() >= targetPreloadBytes;
+  }
+
+  /** Called on the preload looper when the target size stops preloading. */
+  private void waitForPreloadedBytesRelease() {
+    waitingForPreloadedBytesRelease.set(true);
+    // Bytes may have been released before the flag was set.
+    onPreloadedBytesReleased();
+  }
+
+  /** Called on any thread when bytes allocated for preloading are released. */
+  private void onPreloadedBytesReleased() {
+    if (!isTargetPreloadSizeReached()
+        && waitingForPreloadedBytesRelease.compareAndSet(true, false)) {
+      applicationHandler.post(this::continuePreloading);
+    }
+  }
+
+  private void postPreloadCompleted(PreloadMediaSource mediaSource) {
+    applicationHandler.post(() -> onPreloadCompleted(mediaSource));
+  }
+
+  private final class PreloadControlImpl implements PreloadMediaSource.PreloadControl {
+
+    @Override
+    public boolean onTimelineRefreshed(PreloadMediaSource mediaSource) {
+      return true;
+    }
+
+    @Override
+    public boolean onPrepared(PreloadMediaSource mediaSource) {
+      if (targetPreloadDurationUs == 0) {
+        postPreloadCompleted(mediaSource);
+        return false;
+      }
+      if (isTargetPreloadSizeReached()) {
+        waitForPreloadedBytesRelease();
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public boolean onContinueLoadingRequested(
+        PreloadMediaSource mediaSource, long bufferedDurationUs) {
+      if (bufferedDurationUs == C.TIME_END_OF_SOURCE
+          || bufferedDurationUs >= targetPreloadDurationUs) {
+        postPreloadCompleted(mediaSource);
+        return false;
+      }
+      if (isTargetPreloadSizeReached()) {
+        waitForPreloadedBytesRelease();
+        return false;
+      }
+      return true;
+    }
+
+    @Override
+    public void onPreloadError(PreloadMediaSource mediaSource, IOException error) {
+      Log.w(TAG, "Preloading failed", error);
+      postPreloadCompleted(mediaSource);
+    }
+  }
+
+  private static final class MediaSourceHolder {
+
+    public final PreloadMediaSource mediaSource;
+
+    public int index;
+    public boolean preloadRequested;
+    public boolean preloadCompleted;
+
+    public MediaSourceHolder(PreloadMediaSource mediaSource, int index) {
+      this.mediaSource = mediaSource;
+      this.index = index;
+    }
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.preload;
+
+import androidx.annotation.GuardedBy;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.upstream.Allocation;
+import com.google.android.exoplayer2.upstream.Allocator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * An {@link Allocator} used by a {@link PreloadMediaSource} that forwards to a shared allocator and
+ * counts the bytes allocated for preloading.
+ *
+ * <p>The bytes allocated through all instances sharing a {@link Tracker} are counted by the
+ * tracker, except while an instance is {@linkplain #setCountedAsPreload(boolean) not counted as
+ * preloading}, for example because a player took over the media it loaded.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class PreloadAllocator implements Allocator {
+
+  /** Counts the bytes allocated for preloading by the {@link PreloadAllocator} instances. */
+  public static final class Tracker {
+
+    private final AtomicLong preloadedBytes;
+    @Nullable private volatile Runnable bytesReleasedListener;
+
+    public Tracker() {
+      preloadedBytes = new AtomicLong();
+    }
+
+    /** Returns the number of bytes currently allocated for preloading. */
+    public long getPreloadedBytes() {
+      return preloadedBytes.get();
+    }
+
+    /**
+     * Sets a listener that's run whenever bytes allocated for preloading are released. The listener
+     * is run on the thread that released the bytes and must not block.
+     */
+    public void setBytesReleasedListener(@Nullable Runnable bytesReleasedListener) {
+      this.bytesReleasedListener = bytesReleasedListener;
+    }
+
+    private void add(long bytes) {
+      preloadedBytes.addAndGet(bytes);
+      @Nullable Runnable bytesReleasedListener = this.bytesReleasedListener;
+      if (bytes < 0 && bytesReleasedListener != null) {
+        bytesReleasedListener.run();
+      }
+    }
+  }
+
+  private final Allocator allocator;
+  private final Tracker tracker;
+
+  @GuardedBy("this")
+  private long allocatedBytes;
+
+  @GuardedBy("this")
+  private boolean countedAsPreload;
+
+  /**
+   * Creates an instance.
+   *
+   * @param allocator The {@link Allocator} to forward to.
+   * @param tracker The {@link Tracker} counting the bytes allocated for preloading.
+   */
+  public PreloadAllocator(Allocator allocator, Tracker tracker) {
+    this.allocator = allocator;
+    this.tracker = tracker;
+    countedAsPreload = true;
+  }
+
+  /**
+   * Sets whether the bytes allocated through this instance are counted by the {@link Tracker}. This
+   * applies to the bytes that are currently allocated as well as to later allocations.
+   */
+  public synchronized void setCountedAsPreload(boolean countedAsPreload) {
+    if (this.countedAsPreload == countedAsPreload) {
+      return;
+    }
+    this.countedAsPreload = countedAsPreload;
+    tracker.add(countedAsPreload ? allocatedBytes : -allocatedBytes);
+  }
+
+  @Override
+  public Allocation allocate() {
+    Allocation allocation = allocator.allocate();
+    onAllocationsChanged(getIndividualAllocationLength());
+    return allocation;
+  }
+
+  @Override
+  public void release(Allocation allocation) {
+    allocator.release(allocation);
+    onAllocationsChanged(-getIndividualAllocationLength());
+  }
+
+  @Override
+  public void release(AllocationNode allocationNode) {
+    int allocationCount = 0;
+    for (@Nullable AllocationNode node = allocationNode; node != null; node = node.next()) {
+      allocationCount++;
+    }
+    allocator.release(allocationNode);
+    onAllocationsChanged(-(long) allocationCount * getIndividualAllocationLength());
+  }
+
+  @Override
+  public void trim() {
+    allocator.trim();
+  }
+
+  /** Returns the number of bytes allocated through this instance. */
+  @Override
+  public synchronized int getTotalBytesAllocated() {
+    return (int) allocatedBytes;
+  }
+
+  @Override
+  public int getIndividualAllocationLength() {
+    return allocator.getIndividualAllocationLength();
+  }
+
+  private synchronized void onAllocationsChanged(long bytes) {
+    allocatedBytes += bytes;
+    if (countedAsPreload) {
+      tracker.add(bytes);
+    }
+  }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.preload;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.SeekParameters;
+import com.google.android.exoplayer2.offline.StreamKey;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.SampleStream;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import java.io.IOException;
+import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+
+/**
+ * A {@link MediaPeriod} that can be prepared, have its tracks selected and start loading before a
+ * player takes it over.
+ *
+ * <p>If the player selects the same tracks at the same position as the ones used for preloading,
+ * the {@link SampleStream SampleStreams} created during preloading, together with the media they
+ * have already buffered, are handed to the player. Otherwise the preloaded selection is discarded
+ * and the wrapped period performs a regular track selection.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class PreloadMediaPeriod implements MediaPeriod, MediaPeriod.Callback {
+
+  /** The {@link MediaPeriod} wrapped by this preload media period. */
+  public final MediaPeriod mediaPeriod;
+
+  @Nullable private Callback callback;
+  private boolean prepareInternalCalled;
+  private boolean prepared;
+  @Nullable private PreloadTrackSelectionHolder preloadTrackSelectionHolder;
+
+  /**
+   * Creates the preload media period.
+   *
+   * @param mediaPeriod The wrapped {@link MediaPeriod}.
+   */
+  public PreloadMediaPeriod(MediaPeriod mediaPeriod) {
+    this.mediaPeriod = mediaPeriod;
+  }
+
+  /**
+   * Prepares the wrapped media period for preloading.
+   *
+   * <p>The {@code callback} receives {@link Callback#onPrepared} and {@link
+   * Callback#onContinueLoadingRequested} until the period is {@link #prepare prepared} by the
+   * player, after which the player's callback is used instead.
+   *
+   * @param callback The {@link Callback} used while preloading.
+   * @param positionUs The position from which to start preloading, in microseconds.
+   */
+  public void preload(Callback callback, long positionUs) {
+    this.callback = callback;
+    if (prepared) {
+      callback.onPrepared(this);
+    }
+    if (!prepareInternalCalled) {
+      prepareInternalCalled = true;
+      mediaPeriod.prepare(this, positionUs);
+    }
+  }
+
+  /**
+   * Selects the tracks used for preloading.
+   *
+   * @param selections The track selections, one per renderer.
+   * @param positionUs The position from which to start loading the selected tracks, in
+   *     microseconds.
+   * @return The actual position at which the tracks were enabled, in microseconds.
+   */
+  public long selectTracksForPreloading(
+      @NullableType ExoTrackSelection[] selections, long positionUs) {
+    @NullableType SampleStream[] streams = new SampleStream[selections.length];
+    boolean[] streamResetFlags = new boolean[selections.length];
+    @Nullable PreloadTrackSelectionHolder holder = preloadTrackSelectionHolder;
+    if (holder != null) {
+      // Replace the previous preload selection, releasing streams that are no longer needed.
+      System.arraycopy(holder.streams, 0, streams, 0, Math.min(streams.length, holder.length()));
+    }
+    long trackSelectionPositionUs =
+        mediaPeriod.selectTracks(
+            selections,
+            /* mayRetainStreamFlags= */ new boolean[selections.length],
+            streams,
+            streamResetFlags,
+            positionUs);
+    preloadTrackSelectionHolder =
+        new PreloadTrackSelectionHolder(
+            selections, streams, /* requestedPositionUs= */ positionUs, trackSelectionPositionUs);
+    return trackSelectionPositionUs;
+  }
+
+  @Override
+  public void prepare(Callback callback, long positionUs) {
+    this.callback = callback;
+    if (prepared) {
+      callback.onPrepared(this);
+      return;
+    }
+    if (!prepareInternalCalled) {
+      prepareInternalCalled = true;
+      mediaPeriod.prepare(this, positionUs);
+    }
+  }
+
+  @Override
+  public void maybeThrowPrepareError() throws IOException {
+    mediaPeriod.maybeThrowPrepareError();
+  }
+
+  @Override
+  public TrackGroupArray getTrackGroups() {
+    return mediaPeriod.getTrackGroups();
+  }
+
+  @Override
+  public List<StreamKey> getStreamKeys(List<ExoTrackSelection> trackSelections) {
+    return mediaPeriod.getStreamKeys(trackSelections);
+  }
+
+  @Override
+  public long selectTracks(
+      @NullableType ExoTrackSelection[] selections,
+      boolean[] mayRetainStreamFlags,
+      @NullableType SampleStream[] streams,
+      boolean[] streamResetFlags,
+      long positionUs) {
+    @Nullable PreloadTrackSelectionHolder holder = preloadTrackSelectionHolder;
+    if (holder == null) {
+      return mediaPeriod.selectTracks(
+          selections, mayRetainStreamFlags, streams, streamResetFlags, positionUs);
+    }
+    preloadTrackSelectionHolder = null;
+    if (positionUs == holder.requestedPositionUs
+        && holder.length() == selections.length
+        && holder.matches(selections)) {
+      for (int i = 0; i < streams.length; i++) {
+        streams[i] = holder.streams[i];
+        // The streams are new to the caller, so the consuming renderers need to be reset.
+        streamResetFlags[i] = holder.streams[i] != null;
+      }
+      return holder.trackSelectionPositionUs;
+    }
+    // Hand the preloaded streams to the wrapped period so that it can release them.
+    @NullableType SampleStream[] preloadedStreams = holder.streams;
+    for (int i = 0; i < streams.length; i++) {
+      if (streams[i] == null && i < preloadedStreams.length) {
+        streams[i] = preloadedStreams[i];
+        mayRetainStreamFlags[i] = false;
+      }
+    }
+    return mediaPeriod.selectTracks(
+        selections, mayRetainStreamFlags, streams, streamResetFlags, positionUs);
+  }
+
+  @Override
+  public void discardBuffer(long positionUs, boolean toKeyframe) {
+    mediaPeriod.discardBuffer(positionUs, toKeyframe);
+  }
+
+  @Override
+  public long readDiscontinuity() {
+    return mediaPeriod.readDiscontinuity();
+  }
+
+  @Override
+  public long seekToUs(long positionUs) {
+    return mediaPeriod.seekToUs(positionUs);
+  }
+
+  @Override
+  public long getAdjustedSeekPositionUs(long positionUs, SeekParameters seekParameters) {
+    return mediaPeriod.getAdjustedSeekPositionUs(positionUs, seekParameters);
+  }
+
+  @Override
+  public long getBufferedPositionUs() {
+    return mediaPeriod.getBufferedPositionUs();
+  }
+
+  @Override
+  public long getNextLoadPositionUs() {
+    return mediaPeriod.getNextLoadPositionUs();
+  }
+
+  @Override
+  public boolean continueLoading(long positionUs) {
+    return mediaPeriod.continueLoading(positionUs);
+  }
+
+  @Override
+  public boolean isLoading() {
+    return mediaPeriod.isLoading();
+  }
+
+  @Override
+  public void reevaluateBuffer(long positionUs) {
+    mediaPeriod.reevaluateBuffer(positionUs);
+  }
+
+  // MediaPeriod.Callback implementation
+
+  @Override
+  public void onPrepared(MediaPeriod mediaPeriod) {
+    prepared = true;
+    checkNotNull(callback).onPrepared(/* mediaPeriod= */ this);
+  }
+
+  @Override
+  public void onContinueLoadingRequested(MediaPeriod source) {
+    checkNotNull(callback).onContinueLoadingRequested(/* source= */ this);
+  }
+
+  private static final class PreloadTrackSelectionHolder {
+
+    public final @NullableType ExoTrackSelection[] selections;
+    public final @NullableType SampleStream[] streams;
+    public final long requestedPositionUs;
+    public final long trackSelectionPositionUs;
+
+    public PreloadTrackSelectionHolder(
+        @NullableType ExoTrackSelection[] selections,
+        @NullableType SampleStream[] streams,
+        long requestedPositionUs,
+        long trackSelectionPositionUs) {
+      this.selections = selections;
+      this.streams = streams;
+      this.requestedPositionUs = requestedPositionUs;
+      this.trackSelectionPositionUs = trackSelectionPositionUs;
+    }
+
+    public int length() {
+      return selections.length;
+    }
+
+    public boolean matches(@NullableType ExoTrackSelection[] otherSelections) {
+      for (int i = 0; i < selections.length; i++) {
+        if (!isSameSelection(selections[i], otherSelections[i])) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private static boolean isSameSelection(
+        @Nullable ExoTrackSelection selection, @Nullable ExoTrackSelection otherSelection) {
+      if (selection == null || otherSelection == null) {
+        return selection == otherSelection;
+      }
+      if (!selection.getTrackGroup().equals(otherSelection.getTrackGroup())
+          || selection.length() != otherSelection.length()) {
+        return false;
+      }
+      for (int i = 0; i < selection.length(); i++) {
+        if (selection.getIndexInTrackGroup(i) != otherSelection.getIndexInTrackGroup(i)) {
+          return false;
+        }
+      }
+      return true;
+    }
+  }
+}
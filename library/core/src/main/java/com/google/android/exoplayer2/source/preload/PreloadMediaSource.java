@@ -0,0 +1,577 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.preload;
+
+import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Pair;
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.ExoPlaybackException;
+import com.google.android.exoplayer2.ExoPlayer;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.RendererCapabilities;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.analytics.PlayerId;
+import com.google.android.exoplayer2.drm.DrmSessionManagerProvider;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.MediaSource;
+import com.google.android.exoplayer2.source.WrappingMediaSource;
+import com.google.android.exoplayer2.trackselection.TrackSelector;
+import com.google.android.exoplayer2.trackselection.TrackSelectorResult;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.BandwidthMeter;
+import com.google.android.exoplayer2.upstream.LoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.util.Log;
+import com.google.android.exoplayer2.util.Util;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.io.IOException;
+
+/**
+ * A {@link MediaSource} that can be prepared and start loading media before it is set on a player.
+ *
+ * <p>Calling {@link #preload(long)} prepares the wrapped source, creates and prepares the {@link
+ * MediaPeriod} at the requested position, selects tracks with the provided {@link TrackSelector}
+ * and loads media into the period's sample queues for as long as the {@link PreloadControl}
+ * permits. When an {@link ExoPlayer} later plays this source and requests the same period at the
+ * same position, the already prepared period and its buffered media are handed to the player
+ * instead of creating a new one.
+ *
+ * <p>Preloading happens on the {@code preloadLooper} passed to the {@link Factory}. This must be
+ * the same looper as the {@linkplain ExoPlayer.Builder#setPlaybackLooper(Looper) playback looper}
+ * of the player that plays the source, because media sources can only be used on a single thread.
+ * Sharing the playback thread between several players allows preloading without blocking the
+ * application thread.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class PreloadMediaSource extends WrappingMediaSource {
+
+  /**
+   * Controls the preloading of a {@link PreloadMediaSource}.
+   *
+   * <p>All methods are called on the preload looper.
+   */
+  public interface PreloadControl {
+
+    /**
+     * Called when the {@link Timeline} of the source is refreshed while preloading.
+     *
+     * @param mediaSource The {@link PreloadMediaSource}.
+     * @return Whether the source should continue preloading by creating and preparing the period.
+     */
+    boolean onTimelineRefreshed(PreloadMediaSource mediaSource);
+
+    /**
+     * Called when the preloaded {@link MediaPeriod} is prepared and its tracks are selected.
+     *
+     * @param mediaSource The {@link PreloadMediaSource}.
+     * @return Whether the source should continue preloading by loading media.
+     */
+    boolean onPrepared(PreloadMediaSource mediaSource);
+
+    /**
+     * Called when the preloaded {@link MediaPeriod} requests to continue loading.
+     *
+     * @param mediaSource The {@link PreloadMediaSource}.
+     * @param bufferedDurationUs The duration of media buffered from the preload position, in
+     *     microseconds, or {@link C#TIME_END_OF_SOURCE} if the period is fully buffered.
+     * @return Whether the period should continue loading.
+     */
+    boolean onContinueLoadingRequested(PreloadMediaSource mediaSource, long bufferedDurationUs);
+
+    /**
+     * Called when preloading fails. Preloading stops, and the error is thrown again when a player
+     * plays the source.
+     *
+     * @param mediaSource The {@link PreloadMediaSource}.
+     * @param error The error.
+     */
+    void onPreloadError(PreloadMediaSource mediaSource, IOException error);
+  }
+
+  /** Factory for {@link PreloadMediaSource}. */
+  public static final class Factory implements MediaSource.Factory {
+
+    private final MediaSource.Factory mediaSourceFactory;
+    private final PreloadControl preloadControl;
+    private final TrackSelector trackSelector;
+    private final BandwidthMeter bandwidthMeter;
+    private final RendererCapabilities[] rendererCapabilities;
+    private final Allocator allocator;
+    private final Looper preloadLooper;
+    private final PreloadAllocator.Tracker preloadAllocatorTracker;
+
+    /**
+     * Creates a new factory for {@link PreloadMediaSource}.
+     *
+     * @param mediaSourceFactory The {@link MediaSource.Factory} to create the wrapped {@link
+     *     MediaSource}.
+     * @param preloadControl The {@link PreloadControl} that controls the preloading.
+     * @param trackSelector The {@link TrackSelector} used to select the tracks to preload. This
+     *     must not be the instance used by the player, but it should be configured with the same
+     *     parameters so that the player selects the same tracks.
+     * @param bandwidthMeter The {@link BandwidthMeter} used during preloading.
+     * @param rendererCapabilities The {@link RendererCapabilities} of the renderers of the player
+     *     that plays the created sources.
+     * @param allocator The {@link Allocator} into which preloaded media is loaded. This should be
+     *     the {@link com.google.android.exoplayer2.LoadControl#getAllocator() allocator} of the
+     *     player that plays the created sources.
+     * @param preloadLooper The {@link Looper} on which preloading happens. This must be the
+     *     playback looper of the player that plays the created sources.
+     */
+    public Factory(
+        MediaSource.Factory mediaSourceFactory,
+        PreloadControl preloadControl,
+        TrackSelector trackSelector,
+        BandwidthMeter bandwidthMeter,
+        RendererCapabilities[] rendererCapabilities,
+        Allocator allocator,
+        Looper preloadLooper) {
+      this.mediaSourceFactory = mediaSourceFactory;
+      this.preloadControl = preloadControl;
+      this.trackSelector = trackSelector;
+      this.bandwidthMeter = bandwidthMeter;
+      this.rendererCapabilities = rendererCapabilities;
+      this.allocator = allocator;
+      this.preloadLooper = preloadLooper;
+      preloadAllocatorTracker = new PreloadAllocator.Tracker();
+      trackSelector.init(/* listener= */ () -> {}, bandwidthMeter);
+    }
+
+    @CanIgnoreReturnValue
+    @Override
+    public Factory setDrmSessionManagerProvider(
+        DrmSessionManagerProvider drmSessionManagerProvider) {
+      mediaSourceFactory.setDrmSessionManagerProvider(drmSessionManagerProvider);
+      return this;
+    }
+
+    @CanIgnoreReturnValue
+    @Override
+    public Factory setLoadErrorHandlingPolicy(LoadErrorHandlingPolicy loadErrorHandlingPolicy) {
+      mediaSourceFactory.setLoadErrorHandlingPolicy(loadErrorHandlingPolicy);
+      return this;
+    }
+
+    @Override
+    public @C.ContentType int[] getSupportedTypes() {
+      return mediaSourceFactory.getSupportedTypes();
+    }
+
+    @Override
+    public PreloadMediaSource createMediaSource(MediaItem mediaItem) {
+      return createMediaSource(mediaSourceFactory.createMediaSource(mediaItem));
+    }
+
+    /**
+     * Creates a {@link PreloadMediaSource} wrapping the given {@link MediaSource}.
+     *
+     * @param mediaSource The {@link MediaSource} to wrap.
+     * @return The new {@link PreloadMediaSource}.
+     */
+    public PreloadMediaSource createMediaSource(MediaSource mediaSource) {
+      return new PreloadMediaSource(
+          mediaSource,
+          preloadControl,
+          trackSelector,
+          bandwidthMeter,
+          rendererCapabilities,
+          new PreloadAllocator(allocator, preloadAllocatorTracker),
+          preloadLooper);
+    }
+
+    /**
+     * Returns the {@link PreloadAllocator.Tracker} counting the bytes allocated for preloading by
+     * the sources created by this factory.
+     */
+    /* package */ PreloadAllocator.Tracker getPreloadAllocatorTracker() {
+      return preloadAllocatorTracker;
+    }
+  }
+
+  private static final String TAG = "PreloadMediaSource";
+  private static final long CHECK_FOR_PRELOAD_ERROR_INTERVAL_MS = 100;
+
+  private final PreloadControl preloadControl;
+  private final TrackSelector trackSelector;
+  private final BandwidthMeter bandwidthMeter;
+  private final RendererCapabilities[] rendererCapabilities;
+  private final PreloadAllocator allocator;
+  private final Handler preloadHandler;
+  private final Runnable checkForPreloadErrorRunnable;
+
+  private boolean preloadCalled;
+  private boolean prepareChildSourceCalled;
+  private long startPositionUs;
+  @Nullable private Timeline timeline;
+  @Nullable private Pair<PreloadMediaPeriod, MediaPeriodKey> preloadingMediaPeriodAndKey;
+  @Nullable private PreloadMediaPeriodCallback preloadMediaPeriodCallback;
+
+  private PreloadMediaSource(
+      MediaSource mediaSource,
+      PreloadControl preloadControl,
+      TrackSelector trackSelector,
+      BandwidthMeter bandwidthMeter,
+      RendererCapabilities[] rendererCapabilities,
+      PreloadAllocator allocator,
+      Looper preloadLooper) {
+    super(mediaSource);
+    this.preloadControl = preloadControl;
+    this.trackSelector = trackSelector;
+    this.bandwidthMeter = bandwidthMeter;
+    this.rendererCapabilities = rendererCapabilities;
+    this.allocator = allocator;
+    preloadHandler = Util.createHandler(preloadLooper, /* callback= */ null);
+    checkForPreloadErrorRunnable = this::checkForPreloadError;
+    startPositionUs = C.TIME_UNSET;
+  }
+
+  /**
+   * Starts preloading the source. Does nothing if the source is already used by a player.
+   *
+   * <p>Can be called from any thread.
+   *
+   * @param startPositionUs The position in the first window at which to start preloading, in
+   *     microseconds, or {@link C#TIME_UNSET} to preload from the default position.
+   */
+  public void preload(long startPositionUs) {
+    preloadHandler.post(
+        () -> {
+          preloadCalled = true;
+          this.startPositionUs = startPositionUs;
+          if (isUsedByPlayer()) {
+            return;
+          }
+          setPlayerId(PlayerId.UNSET);
+          startCheckingForPreloadError();
+          prepareSourceInternal(bandwidthMeter.getTransferListener());
+        });
+  }
+
+  /**
+   * Continues loading the preloaded {@link MediaPeriod} after the {@link PreloadControl} stopped
+   * it, if the period is prepared. The {@link PreloadControl} is asked again whether loading should
+   * continue. Does nothing if the source is used by a player.
+   *
+   * <p>Can be called from any thread.
+   */
+  public void continuePreloading() {
+    preloadHandler.post(
+        () -> {
+          if (isUsedByPlayer()
+              || preloadingMediaPeriodAndKey == null
+              || preloadMediaPeriodCallback == null) {
+            return;
+          }
+          startCheckingForPreloadError();
+          preloadMediaPeriodCallback.maybeContinueLoading(preloadingMediaPeriodAndKey.first);
+        });
+  }
+
+  /**
+   * Stops preloading and releases the preloaded {@link MediaPeriod}. The wrapped source is released
+   * as well unless it is used by a player, in which case it's released once the player releases it.
+   *
+   * <p>Can be called from any thread.
+   */
+  public void releasePreloadMediaSource() {
+    preloadHandler.post(
+        () -> {
+          preloadCalled = false;
+          startPositionUs = C.TIME_UNSET;
+          // Only remove the callbacks of this source, as preload() may have been called again
+          // since.
+          stopCheckingForPreloadError();
+          if (isUsedByPlayer()) {
+            return;
+          }
+          releasePreloadingMediaPeriod();
+          if (prepareChildSourceCalled) {
+            releaseSourceInternal();
+          }
+        });
+  }
+
+  @Override
+  protected void prepareSourceInternal() {
+    if (timeline != null) {
+      onChildSourceInfoRefreshed(timeline);
+    } else if (!prepareChildSourceCalled) {
+      prepareChildSourceCalled = true;
+      prepareChildSource();
+      if (!isUsedByPlayer()) {
+        // The child source is only enabled by the player once it creates a period, but preloading
+        // creates a period before that.
+        enableChildSource();
+      }
+    }
+  }
+
+  @Override
+  protected void onChildSourceInfoRefreshed(Timeline newTimeline) {
+    timeline = newTimeline;
+    refreshSourceInfo(newTimeline);
+    if (isUsedByPlayer() || !preloadCalled || preloadingMediaPeriodAndKey != null) {
+      return;
+    }
+    if (!preloadControl.onTimelineRefreshed(/* mediaSource= */ this)) {
+      stopCheckingForPreloadError();
+      return;
+    }
+    Pair<Object, Long> periodPosition =
+        newTimeline.getPeriodPositionUs(
+            new Timeline.Window(),
+            new Timeline.Period(),
+            /* windowIndex= */ 0,
+            /* windowPositionUs= */ startPositionUs);
+    MediaPeriodId mediaPeriodId = new MediaPeriodId(periodPosition.first);
+    long periodPositionUs = periodPosition.second;
+    PreloadMediaPeriod mediaPeriod = createPeriod(mediaPeriodId, allocator, periodPositionUs);
+    PreloadMediaPeriodCallback callback = new PreloadMediaPeriodCallback(periodPositionUs);
+    preloadMediaPeriodCallback = callback;
+    mediaPeriod.preload(callback, periodPositionUs);
+  }
+
+  @Override
+  public PreloadMediaPeriod createPeriod(
+      MediaPeriodId id, Allocator allocator, long startPositionUs) {
+    MediaPeriodKey key = new MediaPeriodKey(id, startPositionUs);
+    @Nullable
+    Pair<PreloadMediaPeriod, MediaPeriodKey> preloadingMediaPeriodAndKey =
+        this.preloadingMediaPeriodAndKey;
+    if (preloadingMediaPeriodAndKey != null) {
+      if (preloadingMediaPeriodAndKey.second.equals(key)) {
+        PreloadMediaPeriod mediaPeriod = preloadingMediaPeriodAndKey.first;
+        if (isUsedByPlayer()) {
+          // The player takes over the preloaded period, and the media it loads is no longer counted
+          // as preloaded.
+          this.preloadingMediaPeriodAndKey = null;
+          preloadMediaPeriodCallback = null;
+          this.allocator.setCountedAsPreload(false);
+        }
+        return mediaPeriod;
+      }
+      releasePreloadingMediaPeriod();
+    }
+    PreloadMediaPeriod mediaPeriod =
+        new PreloadMediaPeriod(mediaSource.createPeriod(id, allocator, startPositionUs));
+    if (!isUsedByPlayer()) {
+      this.preloadingMediaPeriodAndKey = Pair.create(mediaPeriod, key);
+      this.allocator.setCountedAsPreload(true);
+    }
+    return mediaPeriod;
+  }
+
+  @Override
+  public void releasePeriod(MediaPeriod mediaPeriod) {
+    PreloadMediaPeriod preloadMediaPeriod = (PreloadMediaPeriod) mediaPeriod;
+    if (preloadingMediaPeriodAndKey != null
+        && preloadMediaPeriod == preloadingMediaPeriodAndKey.first) {
+      preloadingMediaPeriodAndKey = null;
+      preloadMediaPeriodCallback = null;
+    }
+    mediaSource.releasePeriod(preloadMediaPeriod.mediaPeriod);
+  }
+
+  @Override
+  protected void releaseSourceInternal() {
+    if (preloadCalled) {
+      // Keep the wrapped source prepared and preload the period again, as the player released the
+      // one it took over.
+      setPlayerId(PlayerId.UNSET);
+      if (timeline != null) {
+        Timeline timeline = this.timeline;
+        preloadHandler.post(() -> onChildSourceInfoRefreshed(timeline));
+      }
+      startCheckingForPreloadError();
+      return;
+    }
+    timeline = null;
+    prepareChildSourceCalled = false;
+    super.releaseSourceInternal();
+  }
+
+  private boolean isUsedByPlayer() {
+    return prepareSourceCalled();
+  }
+
+  private void releasePreloadingMediaPeriod() {
+    if (preloadingMediaPeriodAndKey != null) {
+      mediaSource.releasePeriod(preloadingMediaPeriodAndKey.first.mediaPeriod);
+      preloadingMediaPeriodAndKey = null;
+      preloadMediaPeriodCallback = null;
+    }
+  }
+
+  private void startCheckingForPreloadError() {
+    preloadHandler.removeCallbacks(checkForPreloadErrorRunnable);
+    preloadHandler.post(checkForPreloadErrorRunnable);
+  }
+
+  /**
+   * Stops checking for errors while preloading is idle, that is when it completed or the {@link
+   * PreloadControl} stopped it, so that idle sources don't keep waking up the preload looper.
+   */
+  private void stopCheckingForPreloadError() {
+    preloadHandler.removeCallbacks(checkForPreloadErrorRunnable);
+  }
+
+  private void checkForPreloadError() {
+    if (isUsedByPlayer()) {
+      // The player checks for errors of the sources it uses.
+      return;
+    }
+    try {
+      maybeThrowSourceInfoRefreshError();
+      if (preloadingMediaPeriodAndKey != null) {
+        preloadingMediaPeriodAndKey.first.maybeThrowPrepareError();
+      }
+      preloadHandler.postDelayed(checkForPreloadErrorRunnable, CHECK_FOR_PRELOAD_ERROR_INTERVAL_MS);
+    } catch (IOException e) {
+      preloadControl.onPreloadError(/* mediaSource= */ this, e);
+    }
+  }
+
+  @Nullable
+  private TrackSelectorResult selectTracks(PreloadMediaPeriod mediaPeriod, MediaPeriodId id) {
+    try {
+      return trackSelector.selectTracks(
+          rendererCapabilities, mediaPeriod.getTrackGroups(), id, checkNotNull(timeline));
+    } catch (ExoPlaybackException e) {
+      Log.e(TAG, "Failed to select tracks for preloading", e);
+      return null;
+    }
+  }
+
+  private final class PreloadMediaPeriodCallback implements MediaPeriod.Callback {
+
+    private final long periodStartPositionUs;
+    private boolean prepared;
+    private boolean tracksSelected;
+
+    public PreloadMediaPeriodCallback(long periodStartPositionUs) {
+      this.periodStartPositionUs = periodStartPositionUs;
+    }
+
+    @Override
+    public void onPrepared(MediaPeriod mediaPeriod) {
+      prepared = true;
+      if (isUsedByPlayer() || preloadingMediaPeriodAndKey == null) {
+        return;
+      }
+      PreloadMediaPeriod preloadMediaPeriod = (PreloadMediaPeriod) mediaPeriod;
+      @Nullable
+      TrackSelectorResult trackSelectorResult =
+          selectTracks(preloadMediaPeriod, preloadingMediaPeriodAndKey.second.mediaPeriodId);
+      if (trackSelectorResult == null) {
+        stopCheckingForPreloadError();
+        return;
+      }
+      preloadMediaPeriod.selectTracksForPreloading(
+          trackSelectorResult.selections, periodStartPositionUs);
+      tracksSelected = true;
+      boolean continueLoading = preloadControl.onPrepared(PreloadMediaSource.this);
+      if (continueLoading) {
+        preloadMediaPeriod.continueLoading(periodStartPositionUs);
+      }
+      if (!continueLoading || preloadMediaPeriod.getBufferedPositionUs() == C.TIME_END_OF_SOURCE) {
+        stopCheckingForPreloadError();
+      }
+    }
+
+    @Override
+    public void onContinueLoadingRequested(MediaPeriod source) {
+      if (isUsedByPlayer() || preloadingMediaPeriodAndKey == null) {
+        return;
+      }
+      if (!prepared) {
+        // Loading must continue until the period is prepared.
+        source.continueLoading(periodStartPositionUs);
+        return;
+      }
+      maybeContinueLoading(source);
+    }
+
+    public void maybeContinueLoading(MediaPeriod source) {
+      if (!tracksSelected) {
+        return;
+      }
+      long bufferedPositionUs = source.getBufferedPositionUs();
+      long bufferedDurationUs =
+          bufferedPositionUs == C.TIME_END_OF_SOURCE
+              ? C.TIME_END_OF_SOURCE
+              : bufferedPositionUs - periodStartPositionUs;
+      boolean continueLoading =
+          preloadControl.onContinueLoadingRequested(PreloadMediaSource.this, bufferedDurationUs);
+      if (continueLoading) {
+        source.continueLoading(periodStartPositionUs);
+      }
+      if (!continueLoading || bufferedDurationUs == C.TIME_END_OF_SOURCE) {
+        // Preloading is stopped or completed until continuePreloading() is called.
+        stopCheckingForPreloadError();
+      }
+    }
+  }
+
+  /**
+   * Identifies a period request independently of the window sequence number, which is only assigned
+   * by the player.
+   */
+  private static final class MediaPeriodKey {
+
+    public final MediaPeriodId mediaPeriodId;
+    private final long startPositionUs;
+
+    public MediaPeriodKey(MediaPeriodId mediaPeriodId, long startPositionUs) {
+      this.mediaPeriodId = mediaPeriodId;
+      this.startPositionUs = startPositionUs;
+    }
+
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof MediaPeriodKey)) {
+        return false;
+      }
+      MediaPeriodKey other = (MediaPeriodKey) obj;
+      return startPositionUs == other.startPositionUs
+          && mediaPeriodId.periodUid.equals(other.mediaPeriodId.periodUid)
+          && mediaPeriodId.adGroupIndex == other.mediaPeriodId.adGroupIndex
+          && mediaPeriodId.adIndexInAdGroup == other.mediaPeriodId.adIndexInAdGroup
+          && mediaPeriodId.nextAdGroupIndex == other.mediaPeriodId.nextAdGroupIndex;
+    }
+
+    @Override
+    public int hashCode() {
+      int result = 17;
+      result = 31 * result + mediaPeriodId.periodUid.hashCode();
+      result = 31 * result + mediaPeriodId.adGroupIndex;
+      result = 31 * result + mediaPeriodId.adIndexInAdGroup;
+      result = 31 * result + mediaPeriodId.nextAdGroupIndex;
+      result = 31 * result + (int) startPositionUs;
+      return result;
+    }
+  }
+}
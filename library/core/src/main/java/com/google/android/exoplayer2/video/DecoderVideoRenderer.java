@@ -52,6 +52,7 @@ import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Log;
 import com.google.android.exoplayer2.util.TimedValueQueue;
 import com.google.android.exoplayer2.util.TraceUtil;
+import com.google.android.exoplayer2.util.Util;
 import com.google.android.exoplayer2.video.VideoRendererEventListener.EventDispatcher;
 import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
@@ -83,6 +84,9 @@ public abstract class DecoderVideoRenderer extends BaseRenderer {
 
   private static final String TAG = "DecoderVideoRenderer";
 
+  private static final int MIN_BUFFER_COUNT = 4;
+  private static final int MAX_BUFFER_COUNT = 8;
+
   /** Decoder reinitialization states. */
   @Documented
   @Retention(RetentionPolicy.SOURCE)
@@ -183,6 +187,21 @@ public abstract class DecoderVideoRenderer extends BaseRenderer {
     outputMode = C.VIDEO_OUTPUT_MODE_NONE;
   }
 
+  /**
+   * Returns the number of input buffers and of output buffers to use for a software video decoder
+   * that decodes each frame with {@code threadCount} threads.
+   *
+   * <p>The more threads a decoder uses, the further it can run ahead of playback between frames
+   * that take long to decode, such as keyframes. Each additional thread keeps one more frame in
+   * flight, within bounds that keep the memory used by decoded frames reasonable.
+   *
+   * @param threadCount The number of threads used by the decoder.
+   * @return The number of input buffers and of output buffers.
+   */
+  public static int getBufferCountForThreadCount(int threadCount) {
+    return Util.constrainValue(threadCount + 2, MIN_BUFFER_COUNT, MAX_BUFFER_COUNT);
+  }
+
   // BaseRenderer implementation.
 
   @Override
@@ -794,6 +813,10 @@ public abstract class DecoderVideoRenderer extends BaseRenderer {
       }
       decoderCounters.skippedOutputBufferCount += outputBuffer.skippedOutputBufferCount;
       buffersInCodecCount -= outputBuffer.skippedOutputBufferCount;
+      if (outputBuffer.decodeTimeUs > 0 && !outputBuffer.isEndOfStream()) {
+        decoderCounters.addDecodeTime(
+            outputBuffer.decodeTimeUs, /* count= */ outputBuffer.skippedOutputBufferCount + 1);
+      }
     }
 
     if (outputBuffer.isEndOfStream()) {
@@ -144,11 +144,18 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   /** The minimum input buffer size for HEVC. */
   private static final int HEVC_MAX_INPUT_SIZE_THRESHOLD = 2 * 1024 * 1024;
 
+  /**
+   * The number of frames ahead for which lateness is predicted when deciding whether to drop
+   * buffers to a keyframe predictively.
+   */
+  private static final int KEYFRAME_DROP_PREDICTION_FRAME_COUNT = 30;
+
   private static boolean evaluatedDeviceNeedsSetOutputSurfaceWorkaround;
   private static boolean deviceNeedsSetOutputSurfaceWorkaround;
 
   private final Context context;
   private final VideoFrameReleaseHelper frameReleaseHelper;
+  private final VideoFrameDropPredictor frameDropPredictor;
   private final EventDispatcher eventDispatcher;
   private final VideoFrameProcessorManager videoFrameProcessorManager;
   private final long allowedJoiningTimeMs;
@@ -177,6 +184,9 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   private long totalVideoFrameProcessingOffsetUs;
   private int videoFrameProcessingOffsetCount;
   private long lastFrameReleaseTimeNs;
+  private long totalVideoJudderUs;
+  private int videoJudderFrameCount;
+  private boolean predictiveFrameDroppingEnabled;
 
   private VideoSize decodedVideoSize;
   @Nullable private VideoSize reportedVideoSize;
@@ -354,6 +364,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     this.maxDroppedFramesToNotify = maxDroppedFramesToNotify;
     this.context = context.getApplicationContext();
     frameReleaseHelper = new VideoFrameReleaseHelper(this.context);
+    frameDropPredictor = new VideoFrameDropPredictor();
     eventDispatcher = new EventDispatcher(eventHandler, eventListener);
     videoFrameProcessorManager =
         new VideoFrameProcessorManager(frameReleaseHelper, /* renderer= */ this);
@@ -370,6 +381,26 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     return TAG;
   }
 
+  /**
+   * Sets whether frames are dropped when they're predicted to be late, rather than only once they
+   * are late.
+   *
+   * <p>When enabled, the renderer learns how quickly frames are getting later while they're decoded
+   * and rendered. Frames that are behind schedule are dropped if the next frame is predicted to be
+   * late, which gives the decoder time to catch up. Late frames cause all frames to the next
+   * keyframe to be dropped if the renderer is predicted to keep falling behind, rather than once
+   * it's far behind. These drops are reported in {@link
+   * DecoderCounters#predictedDroppedBufferCount} and {@link
+   * DecoderCounters#predictedDroppedToKeyframeCount}.
+   *
+   * <p>This method is experimental, and will be renamed or removed in a future release.
+   *
+   * @param enabled Whether predictive frame dropping is enabled.
+   */
+  public void experimentalSetPredictiveFrameDroppingEnabled(boolean enabled) {
+    predictiveFrameDroppingEnabled = enabled;
+  }
+
   @Override
   protected @Capabilities int supportsFormat(MediaCodecSelector mediaCodecSelector, Format format)
       throws DecoderQueryException {
@@ -563,6 +594,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     }
     clearRenderedFirstFrame();
     frameReleaseHelper.onPositionReset();
+    frameDropPredictor.reset();
     lastBufferPresentationTimeUs = C.TIME_UNSET;
     initialPositionUs = C.TIME_UNSET;
     consecutiveDroppedFrameCount = 0;
@@ -614,7 +646,10 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     lastRenderRealtimeUs = SystemClock.elapsedRealtime() * 1000;
     totalVideoFrameProcessingOffsetUs = 0;
     videoFrameProcessingOffsetCount = 0;
+    totalVideoJudderUs = 0;
+    videoJudderFrameCount = 0;
     frameReleaseHelper.onStarted();
+    frameDropPredictor.reset();
   }
 
   @Override
@@ -622,6 +657,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     joiningDeadlineMs = C.TIME_UNSET;
     maybeNotifyDroppedFrames();
     maybeNotifyVideoFrameProcessingOffset();
+    maybeNotifyVideoJudder();
     frameReleaseHelper.onStopped();
     super.onStopped();
   }
@@ -869,6 +905,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
       throws ExoPlaybackException {
     super.setPlaybackSpeed(currentPlaybackSpeed, targetPlaybackSpeed);
     frameReleaseHelper.onPlaybackSpeed(currentPlaybackSpeed);
+    frameDropPredictor.reset();
   }
 
   /**
@@ -1206,14 +1243,33 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     } // else, use the unadjusted earlyUs in previewing use cases.
 
     boolean treatDroppedBuffersAsSkipped = joiningDeadlineMs != C.TIME_UNSET;
-    if (shouldDropBuffersToKeyframe(earlyUs, elapsedRealtimeUs, isLastBuffer)
+    // The drop policies are evaluated in their original order and short-circuited as before. The
+    // predictor is only consulted when the corresponding policy hasn't decided to drop.
+    boolean dropBuffersToKeyframe =
+        shouldDropBuffersToKeyframe(earlyUs, elapsedRealtimeUs, isLastBuffer);
+    if (dropBuffersToKeyframe
+        && maybeDropBuffersToKeyframe(positionUs, treatDroppedBuffersAsSkipped)) {
+      return false;
+    } else if (!dropBuffersToKeyframe
+        && shouldPredictivelyDropBuffersToKeyframe(earlyUs, elapsedRealtimeUs, isLastBuffer)
         && maybeDropBuffersToKeyframe(positionUs, treatDroppedBuffersAsSkipped)) {
+      if (!treatDroppedBuffersAsSkipped) {
+        decoderCounters.predictedDroppedToKeyframeCount++;
+      }
       return false;
-    } else if (shouldDropOutputBuffer(earlyUs, elapsedRealtimeUs, isLastBuffer)) {
+    }
+    boolean dropOutputBuffer = shouldDropOutputBuffer(earlyUs, elapsedRealtimeUs, isLastBuffer);
+    boolean predictedDropOutputBuffer =
+        !dropOutputBuffer
+            && shouldPredictivelyDropOutputBuffer(earlyUs, elapsedRealtimeUs, isLastBuffer);
+    if (dropOutputBuffer || predictedDropOutputBuffer) {
       if (treatDroppedBuffersAsSkipped) {
         skipOutputBuffer(codec, bufferIndex, presentationTimeUs);
       } else {
         dropOutputBuffer(codec, bufferIndex, presentationTimeUs);
+        if (predictedDropOutputBuffer) {
+          decoderCounters.predictedDroppedBufferCount++;
+        }
       }
       updateVideoFrameProcessingOffsetCounters(earlyUs);
       return true;
@@ -1245,6 +1301,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
         } else {
           notifyFrameMetadataListener(presentationTimeUs, adjustedReleaseTimeNs, format);
           renderOutputBufferV21(codec, bufferIndex, presentationTimeUs, adjustedReleaseTimeNs);
+          updateVideoJudderCounters(adjustedReleaseTimeNs);
         }
         updateVideoFrameProcessingOffsetCounters(earlyUs);
         lastFrameReleaseTimeNs = adjustedReleaseTimeNs;
@@ -1266,6 +1323,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
         }
         notifyFrameMetadataListener(presentationTimeUs, adjustedReleaseTimeNs, format);
         renderOutputBuffer(codec, bufferIndex, presentationTimeUs);
+        updateVideoJudderCounters(adjustedReleaseTimeNs);
         updateVideoFrameProcessingOffsetCounters(earlyUs);
         return true;
       }
@@ -1361,11 +1419,16 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
   protected void onProcessedStreamChange() {
     super.onProcessedStreamChange();
     clearRenderedFirstFrame();
+    frameDropPredictor.reset();
   }
 
   /**
    * Returns whether the buffer being processed should be dropped.
    *
+   * <p>If predictive frame dropping is enabled, this method is also called with the predicted time
+   * until the next buffer should be presented, to decide whether to drop a buffer that's already
+   * behind schedule before the next one is late.
+   *
    * @param earlyUs The time until the buffer should be presented in microseconds. A negative value
    *     indicates that the buffer is late.
    * @param elapsedRealtimeUs {@link android.os.SystemClock#elapsedRealtime()} in microseconds,
@@ -1381,6 +1444,10 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
    * Returns whether to drop all buffers from the buffer being processed to the keyframe at or after
    * the current playback position, if possible.
    *
+   * <p>If predictive frame dropping is enabled, this method is also called for late buffers with
+   * the time until a buffer some frames ahead is predicted to be presented, to decide whether to
+   * drop to the keyframe before the stream falls that far behind.
+   *
    * @param earlyUs The time until the current buffer should be presented in microseconds. A
    *     negative value indicates that the buffer is late.
    * @param elapsedRealtimeUs {@link android.os.SystemClock#elapsedRealtime()} in microseconds,
@@ -1392,6 +1459,29 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     return isBufferVeryLate(earlyUs) && !isLastBuffer;
   }
 
+  private boolean shouldPredictivelyDropOutputBuffer(
+      long earlyUs, long elapsedRealtimeUs, boolean isLastBuffer) {
+    // Only drop frames that are already behind schedule, to give the decoder time to catch up.
+    return predictiveFrameDroppingEnabled
+        && frameDropPredictor.canPredict()
+        && earlyUs < 0
+        && shouldDropOutputBuffer(
+            frameDropPredictor.predictEarlyUs(earlyUs, /* frameCount= */ 1),
+            elapsedRealtimeUs,
+            isLastBuffer);
+  }
+
+  private boolean shouldPredictivelyDropBuffersToKeyframe(
+      long earlyUs, long elapsedRealtimeUs, boolean isLastBuffer) {
+    return predictiveFrameDroppingEnabled
+        && frameDropPredictor.canPredict()
+        && isBufferLate(earlyUs)
+        && shouldDropBuffersToKeyframe(
+            frameDropPredictor.predictEarlyUs(earlyUs, KEYFRAME_DROP_PREDICTION_FRAME_COUNT),
+            elapsedRealtimeUs,
+            isLastBuffer);
+  }
+
   /**
    * Returns whether to force rendering an output buffer.
    *
@@ -1462,6 +1552,7 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
       updateDroppedBufferCounters(
           droppedSourceBufferCount, /* droppedDecoderBufferCount= */ buffersInCodecCount);
     }
+    frameDropPredictor.reset();
     flushOrReinitializeCodec();
     if (videoFrameProcessorManager.isEnabled()) {
       videoFrameProcessorManager.flush();
@@ -1500,6 +1591,17 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     decoderCounters.addVideoFrameProcessingOffset(processingOffsetUs);
     totalVideoFrameProcessingOffsetUs += processingOffsetUs;
     videoFrameProcessingOffsetCount++;
+    frameDropPredictor.onFrameReleased(processingOffsetUs);
+  }
+
+  private void updateVideoJudderCounters(long releaseTimeNs) {
+    long judderNs = frameReleaseHelper.onFrameReleased(releaseTimeNs);
+    if (judderNs > 0) {
+      long judderUs = judderNs / 1000;
+      decoderCounters.addVideoJudder(judderUs);
+      totalVideoJudderUs += judderUs;
+      videoJudderFrameCount++;
+    }
   }
 
   /**
@@ -1558,6 +1660,9 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     } else {
       renderOutputBuffer(codec, index, presentationTimeUs);
     }
+    if (!videoFrameProcessorManager.isEnabled()) {
+      updateVideoJudderCounters(releaseTimeNs);
+    }
   }
 
   /**
@@ -1703,6 +1808,14 @@ public class MediaCodecVideoRenderer extends MediaCodecRenderer {
     }
   }
 
+  private void maybeNotifyVideoJudder() {
+    if (videoJudderFrameCount != 0) {
+      eventDispatcher.reportVideoJudder(totalVideoJudderUs, videoJudderFrameCount);
+      totalVideoJudderUs = 0;
+      videoJudderFrameCount = 0;
+    }
+  }
+
   private static boolean isBufferLate(long earlyUs) {
     // Class a buffer as late if it should have been presented more than 30 ms ago.
     return earlyUs < -30000;
@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.video;
+
+import androidx.annotation.VisibleForTesting;
+
+/**
+ * Predicts whether video frames will be late, based on how the lateness of recently released frames
+ * has been changing.
+ *
+ * <p>The change in the early time of consecutively released frames is the difference between the
+ * duration of a frame and the real time the renderer took to produce it, which includes the time
+ * spent decoding and rendering it. A stream for which the change is consistently negative is
+ * decoded or rendered more slowly than real time, and its frames will keep getting later. The
+ * predictor tracks a smoothed mean and mean deviation of the change, in the same way as round trip
+ * time estimators, and extrapolates the early time of future frames from them.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class VideoFrameDropPredictor {
+
+  /** The number of released frames required before predictions are made. */
+  @VisibleForTesting static final int MIN_SAMPLE_COUNT = 10;
+  /** The weight of the latest change in the smoothed mean and mean deviation. */
+  private static final double SMOOTHING_FACTOR = 0.125;
+  /** The number of deviations subtracted from the predicted change, to predict conservatively. */
+  private static final int DEVIATION_FACTOR = 2;
+
+  private int sampleCount;
+  private long lastEarlyUs;
+  private double meanEarlyChangeUs;
+  private double earlyChangeDeviationUs;
+
+  /** Resets the predictor. */
+  public void reset() {
+    sampleCount = 0;
+    meanEarlyChangeUs = 0;
+    earlyChangeDeviationUs = 0;
+  }
+
+  /**
+   * Called for each frame that's released, whether it's rendered, skipped or dropped.
+   *
+   * @param earlyUs The time until the frame should have been presented when it was released, in
+   *     microseconds. A negative value indicates that the frame was late.
+   */
+  public void onFrameReleased(long earlyUs) {
+    if (sampleCount > 0) {
+      long earlyChangeUs = earlyUs - lastEarlyUs;
+      if (sampleCount == 1) {
+        meanEarlyChangeUs = earlyChangeUs;
+        earlyChangeDeviationUs = 0;
+      } else {
+        earlyChangeDeviationUs +=
+            SMOOTHING_FACTOR
+                * (Math.abs(earlyChangeUs - meanEarlyChangeUs) - earlyChangeDeviationUs);
+        meanEarlyChangeUs += SMOOTHING_FACTOR * (earlyChangeUs - meanEarlyChangeUs);
+      }
+    }
+    lastEarlyUs = earlyUs;
+    sampleCount++;
+  }
+
+  /** Returns whether enough frames have been released for predictions to be made. */
+  public boolean canPredict() {
+    return sampleCount >= MIN_SAMPLE_COUNT;
+  }
+
+  /**
+   * Returns a conservative prediction of the early time of a future frame.
+   *
+   * @param earlyUs The current early time of the frame being processed, in microseconds.
+   * @param frameCount The number of frames after the frame being processed to predict the early
+   *     time of.
+   * @return The predicted early time, in microseconds.
+   */
+  public long predictEarlyUs(long earlyUs, int frameCount) {
+    return earlyUs
+        + (long) (frameCount * meanEarlyChangeUs - DEVIATION_FACTOR * earlyChangeDeviationUs);
+  }
+}
@@ -95,6 +95,13 @@ public final class VideoFrameReleaseHelper {
    * VSYNC_OFFSET_PERCENTAGE) / 100)}.
    */
   private static final long VSYNC_OFFSET_PERCENTAGE = 80;
+  /**
+   * The percentage of a vsync duration, or of a frame duration if the vsync duration is unknown, by
+   * which the release time of a frame needs to deviate from the expected time to count as judder.
+   * Media with a frame rate that isn't a divisor of the refresh rate deviates by up to half a vsync
+   * duration without judder.
+   */
+  private static final long JUDDER_THRESHOLD_PERCENTAGE = 75;
 
   private final FixedFrameRateEstimator frameRateEstimator;
   @Nullable private final DisplayHelper displayHelper;
@@ -126,6 +133,10 @@ public final class VideoFrameReleaseHelper {
   private long lastAdjustedFrameIndex;
   private long lastAdjustedReleaseTimeNs;
 
+  private long judderFrameIndex;
+  private long lastReleasedJudderFrameIndex;
+  private long lastReleaseTimeNs;
+
   /**
    * Constructs an instance.
    *
@@ -140,6 +151,7 @@ public final class VideoFrameReleaseHelper {
     formatFrameRate = Format.NO_VALUE;
     playbackSpeed = 1f;
     changeFrameRateStrategy = C.VIDEO_CHANGE_FRAME_RATE_STRATEGY_ONLY_IF_SEAMLESS;
+    lastReleasedJudderFrameIndex = C.INDEX_UNSET;
   }
 
   /**
@@ -159,6 +171,7 @@ public final class VideoFrameReleaseHelper {
   public void onStarted() {
     started = true;
     resetAdjustment();
+    resetJudderMeasurement();
     if (displayHelper != null) {
       checkNotNull(vsyncSampler).addObserver();
       displayHelper.register(this::updateDefaultDisplayRefreshRateParams);
@@ -187,6 +200,7 @@ public final class VideoFrameReleaseHelper {
   /** Called when the renderer's position is reset. */
   public void onPositionReset() {
     resetAdjustment();
+    resetJudderMeasurement();
   }
 
   /**
@@ -197,6 +211,7 @@ public final class VideoFrameReleaseHelper {
   public void onPlaybackSpeed(float playbackSpeed) {
     this.playbackSpeed = playbackSpeed;
     resetAdjustment();
+    resetJudderMeasurement();
     updateSurfacePlaybackFrameRate(/* forceUpdate= */ false);
   }
 
@@ -208,6 +223,7 @@ public final class VideoFrameReleaseHelper {
   public void onFormatChanged(float formatFrameRate) {
     this.formatFrameRate = formatFrameRate;
     frameRateEstimator.reset();
+    resetJudderMeasurement();
     updateSurfaceMediaFrameRate();
   }
 
@@ -222,6 +238,7 @@ public final class VideoFrameReleaseHelper {
       lastAdjustedReleaseTimeNs = pendingLastAdjustedReleaseTimeNs;
     }
     frameIndex++;
+    judderFrameIndex++;
     frameRateEstimator.onNextFrame(framePresentationTimeUs * 1000);
     updateSurfaceMediaFrameRate();
   }
@@ -294,6 +311,45 @@ public final class VideoFrameReleaseHelper {
     return Math.abs(unadjustedReleaseTimeNs - adjustedReleaseTimeNs) <= MAX_ALLOWED_ADJUSTMENT_NS;
   }
 
+  // Judder measurement.
+
+  /**
+   * Called by the renderer when the frame whose presentation timestamp was most recently passed to
+   * {@link #onNextFrame} is released for rendering.
+   *
+   * <p>The judder of the frame is how far its release time deviates from the time expected from the
+   * previously released frame and the media frame rate. Deviations of less than three quarters of a
+   * vsync duration are ignored.
+   *
+   * @param releaseTimeNs The time at which the frame is scheduled to be displayed, as returned by
+   *     {@link #adjustReleaseTime} and passed to the codec, in nanoseconds and in the same time
+   *     base as {@link System#nanoTime()}.
+   * @return The judder of the frame in nanoseconds, 0 if the frame was released without visible
+   *     judder, or {@link C#TIME_UNSET} if the judder can't be measured.
+   */
+  public long onFrameReleased(long releaseTimeNs) {
+    long judderNs = C.TIME_UNSET;
+    if (lastReleasedJudderFrameIndex != C.INDEX_UNSET && frameRateEstimator.isSynced()) {
+      long frameDurationNs = (long) (frameRateEstimator.getFrameDurationNs() / playbackSpeed);
+      long expectedReleaseTimeNs =
+          lastReleaseTimeNs + frameDurationNs * (judderFrameIndex - lastReleasedJudderFrameIndex);
+      long deviationNs = Math.abs(releaseTimeNs - expectedReleaseTimeNs);
+      long thresholdNs =
+          (vsyncDurationNs != C.TIME_UNSET ? vsyncDurationNs : frameDurationNs)
+              * JUDDER_THRESHOLD_PERCENTAGE
+              / 100;
+      judderNs = deviationNs > thresholdNs ? deviationNs : 0;
+    }
+    lastReleasedJudderFrameIndex = judderFrameIndex;
+    lastReleaseTimeNs = releaseTimeNs;
+    return judderNs;
+  }
+
+  private void resetJudderMeasurement() {
+    judderFrameIndex = 0;
+    lastReleasedJudderFrameIndex = C.INDEX_UNSET;
+  }
+
   // Surface frame rate adjustment.
 
   /**
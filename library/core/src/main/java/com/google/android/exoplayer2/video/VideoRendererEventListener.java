@@ -111,6 +111,21 @@ public interface VideoRendererEventListener {
    */
   default void onVideoFrameProcessingOffset(long totalProcessingOffsetUs, int frameCount) {}
 
+  /**
+   * Called to report the judder of video frames rendered by the video renderer.
+   *
+   * <p>The judder of a video frame is how far its scheduled release time deviates from the time
+   * expected from the previously released frame and the frame rate of the media. The scheduled
+   * release time is the vsync-adjusted time at which the renderer asks the platform to display the
+   * frame, not the time at which the frame is actually displayed. The renderer only reports frames
+   * with judder that's large enough to be visible.
+   *
+   * @param totalJudderUs The sum of the judder of the video frames with visible judder, in
+   *     microseconds.
+   * @param frameCount The number of video frames included in {@code totalJudderUs}.
+   */
+  default void onVideoJudder(long totalJudderUs, int frameCount) {}
+
   /**
    * Called before a frame is rendered for the first time since setting the surface, and each time
    * there's a change in the size, rotation or pixel aspect ratio of the video being rendered.
@@ -227,6 +242,13 @@ public interface VideoRendererEventListener {
       }
     }
 
+    /** Invokes {@link VideoRendererEventListener#onVideoJudder}. */
+    public void reportVideoJudder(long totalJudderUs, int frameCount) {
+      if (handler != null) {
+        handler.post(() -> castNonNull(listener).onVideoJudder(totalJudderUs, frameCount));
+      }
+    }
+
     /** Invokes {@link VideoRendererEventListener#onVideoSizeChanged(VideoSize)}. */
     public void videoSizeChanged(VideoSize videoSize) {
       if (handler != null) {
@@ -342,6 +342,38 @@ public final class ExoPlayerTest {
     player.release();
   }
 
+  @Test
+  public void play_withDynamicSchedulingAndShortDurationToProgress_rendersEveryMillisecond()
+      throws Exception {
+    List<Long> renderIntervalsUs =
+        getRenderIntervalsWhilePlaying(
+            /* dynamicSchedulingEnabled= */ true, /* durationToProgressUs= */ 1_000);
+
+    assertThat(renderIntervalsUs).isNotEmpty();
+    assertThat(Collections.max(renderIntervalsUs)).isEqualTo(1_000);
+  }
+
+  @Test
+  public void play_withDynamicSchedulingAndLongDurationToProgress_rendersEveryTenMilliseconds()
+      throws Exception {
+    List<Long> renderIntervalsUs =
+        getRenderIntervalsWhilePlaying(
+            /* dynamicSchedulingEnabled= */ true, /* durationToProgressUs= */ 50_000);
+
+    assertThat(renderIntervalsUs).isNotEmpty();
+    assertThat(Collections.max(renderIntervalsUs)).isEqualTo(10_000);
+  }
+
+  @Test
+  public void play_withoutDynamicScheduling_ignoresDurationToProgress() throws Exception {
+    List<Long> renderIntervalsUs =
+        getRenderIntervalsWhilePlaying(
+            /* dynamicSchedulingEnabled= */ false, /* durationToProgressUs= */ 1_000);
+
+    assertThat(renderIntervalsUs).isNotEmpty();
+    assertThat(Collections.max(renderIntervalsUs)).isEqualTo(10_000);
+  }
+
   @Test
   public void play_audioVideoAudioVideoTransition_videoSizeChangedCalledCorrectly()
       throws Exception {
@@ -13149,6 +13181,48 @@ public final class ExoPlayerTest {
         new FakeTimeline(new TimelineWindowDefinition(/* periodCount= */ 1, id)));
   }
 
+  /**
+   * Plays a video with a renderer that reports {@code durationToProgressUs}, and returns the
+   * intervals between calls to {@link Renderer#render} while the renderer is started.
+   */
+  private List<Long> getRenderIntervalsWhilePlaying(
+      boolean dynamicSchedulingEnabled, long durationToProgressUs) throws Exception {
+    List<Long> renderTimesUs = new ArrayList<>();
+    FakeRenderer renderer =
+        new FakeRenderer(C.TRACK_TYPE_VIDEO) {
+          @Override
+          public void render(long positionUs, long elapsedRealtimeUs) throws ExoPlaybackException {
+            if (getState() == STATE_STARTED) {
+              renderTimesUs.add(elapsedRealtimeUs);
+            }
+            super.render(positionUs, elapsedRealtimeUs);
+          }
+
+          @Override
+          public long getDurationToProgressUs(long positionUs, long elapsedRealtimeUs) {
+            return durationToProgressUs;
+          }
+        };
+    ExoPlayer player =
+        new TestExoPlayerBuilder(context)
+            .setRenderers(renderer)
+            .experimentalSetDynamicSchedulingEnabled(dynamicSchedulingEnabled)
+            .build();
+
+    player.setMediaSource(
+        new FakeMediaSource(new FakeTimeline(), ExoPlayerTestRunner.VIDEO_FORMAT));
+    player.prepare();
+    player.play();
+    runUntilPlaybackState(player, Player.STATE_ENDED);
+    player.release();
+
+    List<Long> renderIntervalsUs = new ArrayList<>();
+    for (int i = 1; i < renderTimesUs.size(); i++) {
+      renderIntervalsUs.add(renderTimesUs.get(i) - renderTimesUs.get(i - 1));
+    }
+    return renderIntervalsUs;
+  }
+
   private static void deliverBroadcast(Intent intent) {
     ApplicationProvider.getApplicationContext().sendBroadcast(intent);
     shadowOf(Looper.getMainLooper()).idle();
@@ -24,6 +24,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
+import static org.robolectric.Shadows.shadowOf;
 
 import android.os.Looper;
 import androidx.test.core.app.ApplicationProvider;
@@ -35,6 +36,7 @@ import com.google.android.exoplayer2.source.MediaSource;
 import com.google.android.exoplayer2.source.ShuffleOrder;
 import com.google.android.exoplayer2.testutil.FakeMediaSource;
 import com.google.android.exoplayer2.testutil.FakeShuffleOrder;
+import com.google.android.exoplayer2.testutil.FakeTimeline;
 import com.google.android.exoplayer2.util.Clock;
 import com.google.android.exoplayer2.util.Util;
 import java.util.ArrayList;
@@ -276,6 +278,89 @@ public class MediaSourceListTest {
             any(MediaSource.MediaSourceCaller.class), /* mediaTransferListener= */ isNull(), any());
   }
 
+  @Test
+  public void addAndRemoveMediaSourceRanges_withMultiWindowSources_updatesFirstWindowIndices() {
+    mediaSourceList.prepare(/* mediaTransferListener= */ null);
+    List<MediaSourceList.MediaSourceHolder> holders =
+        createFakeHoldersWithSources(
+            /* useLazyPreparation= */ false,
+            new FakeMediaSource(new FakeTimeline(/* windowCount= */ 2)),
+            new FakeMediaSource(new FakeTimeline(/* windowCount= */ 2)),
+            new FakeMediaSource(new FakeTimeline(/* windowCount= */ 2)));
+    mediaSourceList.addMediaSources(
+        /* index= */ 0, holders, new ShuffleOrder.DefaultShuffleOrder(/* length= */ 3));
+    List<MediaSourceList.MediaSourceHolder> moreHolders =
+        createFakeHoldersWithSources(
+            /* useLazyPreparation= */ false,
+            new FakeMediaSource(new FakeTimeline(/* windowCount= */ 3)),
+            new FakeMediaSource(new FakeTimeline(/* windowCount= */ 1)));
+
+    Timeline timeline =
+        mediaSourceList.addMediaSources(
+            /* index= */ 1, moreHolders, new ShuffleOrder.DefaultShuffleOrder(/* length= */ 5));
+
+    assertThat(timeline.getWindowCount()).isEqualTo(10);
+    holders.addAll(/* index= */ 1, moreHolders);
+    assertFirstWindowInChildIndices(holders, 0, 2, 5, 6, 8);
+
+    timeline =
+        mediaSourceList.removeMediaSourceRange(
+            /* fromIndex= */ 0, /* toIndex= */ 2, new ShuffleOrder.DefaultShuffleOrder(3));
+
+    assertThat(timeline.getWindowCount()).isEqualTo(5);
+    assertThat(holders.get(0).isRemoved).isTrue();
+    assertThat(holders.get(1).isRemoved).isTrue();
+    assertFirstWindowInChildIndices(holders.subList(/* fromIndex= */ 2, /* toIndex= */ 5), 0, 1, 3);
+  }
+
+  @Test
+  public void createTimeline_afterReportedTimelineUpdate_updatesFirstWindowIndices() {
+    mediaSourceList.prepare(/* mediaTransferListener= */ null);
+    FakeMediaSource fakeMediaSource = new FakeMediaSource();
+    List<MediaSourceList.MediaSourceHolder> holders =
+        createFakeHoldersWithSources(
+            /* useLazyPreparation= */ false,
+            new FakeMediaSource(),
+            fakeMediaSource,
+            new FakeMediaSource(),
+            new FakeMediaSource());
+    mediaSourceList.addMediaSources(
+        /* index= */ 0, holders, new ShuffleOrder.DefaultShuffleOrder(/* length= */ 4));
+    shadowOf(Looper.getMainLooper()).idle();
+    assertThat(mediaSourceList.createTimeline().getWindowCount()).isEqualTo(4);
+
+    fakeMediaSource.setNewSourceInfo(new FakeTimeline(/* windowCount= */ 3));
+    shadowOf(Looper.getMainLooper()).idle();
+    Timeline timeline = mediaSourceList.createTimeline();
+
+    assertThat(timeline.getWindowCount()).isEqualTo(6);
+    assertFirstWindowInChildIndices(holders, 0, 1, 4, 5);
+  }
+
+  @Test
+  public void addMediaSources_afterReportedTimelineUpdate_includesUpdatedTimeline() {
+    mediaSourceList.prepare(/* mediaTransferListener= */ null);
+    FakeMediaSource fakeMediaSource = new FakeMediaSource();
+    List<MediaSourceList.MediaSourceHolder> holders =
+        createFakeHoldersWithSources(
+            /* useLazyPreparation= */ false, fakeMediaSource, new FakeMediaSource());
+    mediaSourceList.addMediaSources(
+        /* index= */ 0, holders, new ShuffleOrder.DefaultShuffleOrder(/* length= */ 2));
+    shadowOf(Looper.getMainLooper()).idle();
+    fakeMediaSource.setNewSourceInfo(new FakeTimeline(/* windowCount= */ 2));
+    shadowOf(Looper.getMainLooper()).idle();
+    List<MediaSourceList.MediaSourceHolder> moreHolders =
+        createFakeHoldersWithSources(/* useLazyPreparation= */ false, new FakeMediaSource());
+
+    Timeline timeline =
+        mediaSourceList.addMediaSources(
+            /* index= */ 2, moreHolders, new ShuffleOrder.DefaultShuffleOrder(/* length= */ 3));
+
+    assertThat(timeline.getWindowCount()).isEqualTo(4);
+    holders.addAll(moreHolders);
+    assertFirstWindowInChildIndices(holders, 0, 2, 3);
+  }
+
   @Test
   public void moveMediaSources() {
     ShuffleOrder.DefaultShuffleOrder shuffleOrder =
@@ -34,6 +34,7 @@ import com.google.android.exoplayer2.source.TrackGroupArray;
 import com.google.android.exoplayer2.testutil.FakeClock;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
 import com.google.common.util.concurrent.ListenableFuture;
 import java.util.ArrayList;
 import java.util.List;
@@ -109,6 +110,54 @@ public class MetadataRetrieverTest {
     assertThat(trackGroups2.get(0).getFormat(0).sampleMimeType).isEqualTo(MimeTypes.AUDIO_MPEG);
   }
 
+  @Test
+  public void retrieveMetadata_mediaItemList_outputsExpectedMetadataInOrder() throws Exception {
+    ImmutableList<MediaItem> mediaItems =
+        ImmutableList.of(
+            MediaItem.fromUri(Uri.parse("asset://android_asset/media/mp4/sample.mp4")),
+            MediaItem.fromUri(Uri.parse("asset://android_asset/media/mp3/bear-id3.mp3")),
+            MediaItem.fromUri(Uri.parse("asset://android_asset/media/mkv/sample.mkv")),
+            MediaItem.fromUri(Uri.parse("asset://android_asset/media/ts/sample_ac3.ts")),
+            MediaItem.fromUri(Uri.parse("asset://android_asset/media/flac/bear.flac")));
+
+    List<ListenableFuture<TrackGroupArray>> trackGroupsFutures =
+        retrieveMetadata(context, mediaItems, /* maxParallelRetrievals= */ 2, clock);
+    ShadowLooper.idleMainLooper();
+    List<String> sampleMimeTypes = new ArrayList<>();
+    for (ListenableFuture<TrackGroupArray> trackGroupsFuture : trackGroupsFutures) {
+      TrackGroupArray trackGroups = trackGroupsFuture.get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+      sampleMimeTypes.add(trackGroups.get(0).getFormat(0).sampleMimeType);
+    }
+
+    assertThat(sampleMimeTypes)
+        .containsExactly(
+            MimeTypes.VIDEO_H264,
+            MimeTypes.AUDIO_MPEG,
+            MimeTypes.VIDEO_H264,
+            MimeTypes.AUDIO_AC3,
+            MimeTypes.AUDIO_FLAC)
+        .inOrder();
+  }
+
+  @Test
+  public void retrieveMetadata_mediaItemListWithInvalidItem_outputsOtherItemsMetadata()
+      throws Exception {
+    ImmutableList<MediaItem> mediaItems =
+        ImmutableList.of(
+            MediaItem.fromUri(Uri.parse("asset://android_asset/media/does_not_exist")),
+            MediaItem.fromUri(Uri.parse("asset://android_asset/media/mp3/bear-id3.mp3")));
+
+    List<ListenableFuture<TrackGroupArray>> trackGroupsFutures =
+        retrieveMetadata(context, mediaItems, /* maxParallelRetrievals= */ 1, clock);
+    ShadowLooper.idleMainLooper();
+
+    assertThrows(
+        ExecutionException.class,
+        () -> trackGroupsFutures.get(0).get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS));
+    TrackGroupArray trackGroups = trackGroupsFutures.get(1).get(TEST_TIMEOUT_SEC, TimeUnit.SECONDS);
+    assertThat(trackGroups.get(0).getFormat(0).sampleMimeType).isEqualTo(MimeTypes.AUDIO_MPEG);
+  }
+
   @Test
   public void retrieveMetadata_heicMotionPhoto_outputsExpectedMetadata() throws Exception {
     MediaItem mediaItem =
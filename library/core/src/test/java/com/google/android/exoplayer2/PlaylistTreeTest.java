@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.source.ShuffleOrder;
+import com.google.android.exoplayer2.testutil.FakeTimeline;
+import com.google.android.exoplayer2.util.Util;
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link PlaylistTree}. */
+@RunWith(AndroidJUnit4.class)
+public final class PlaylistTreeTest {
+
+  // Timelines with 0 to 3 windows, shared by the items.
+  private static final Timeline[] TIMELINES =
+      new Timeline[] {
+        Timeline.EMPTY,
+        new FakeTimeline(/* windowCount= */ 1),
+        new FakeTimeline(/* windowCount= */ 2),
+        new FakeTimeline(/* windowCount= */ 3)
+      };
+
+  @Test
+  public void create_returnsItemsInOrder() {
+    List<Holder> holders = createHolders(new Random(/* seed= */ 0), /* count= */ 100);
+
+    PlaylistTree playlistTree = PlaylistTree.create(holders);
+
+    assertMatches(playlistTree, holders);
+  }
+
+  @Test
+  public void edits_matchEditsOfList() {
+    Random random = new Random(/* seed= */ 0);
+    List<Holder> holders = createHolders(random, /* count= */ 20);
+    PlaylistTree playlistTree = PlaylistTree.create(holders);
+
+    for (int i = 0; i < 1000; i++) {
+      int size = holders.size();
+      switch (random.nextInt(4)) {
+        case 0:
+          int insertionIndex = random.nextInt(size + 1);
+          List<Holder> insertedHolders = createHolders(random, /* count= */ random.nextInt(5));
+          playlistTree = playlistTree.insert(insertionIndex, insertedHolders);
+          holders.addAll(insertionIndex, insertedHolders);
+          break;
+        case 1:
+          int fromIndex = random.nextInt(size + 1);
+          int toIndex = fromIndex + random.nextInt(Math.min(size - fromIndex, 3) + 1);
+          playlistTree = playlistTree.remove(fromIndex, toIndex);
+          holders.subList(fromIndex, toIndex).clear();
+          break;
+        case 2:
+          int moveFromIndex = random.nextInt(size + 1);
+          int moveToIndex = moveFromIndex + random.nextInt(size - moveFromIndex + 1);
+          int newFromIndex = random.nextInt(size + 1);
+          playlistTree = playlistTree.move(moveFromIndex, moveToIndex, newFromIndex);
+          Util.moveItems(holders, moveFromIndex, moveToIndex, newFromIndex);
+          break;
+        default:
+          if (size > 0) {
+            int index = random.nextInt(size);
+            Timeline timeline = TIMELINES[random.nextInt(TIMELINES.length)];
+            playlistTree = playlistTree.setTimeline(index, timeline);
+            holders.set(index, new Holder(holders.get(index).uid, timeline));
+          }
+          break;
+      }
+      assertMatches(playlistTree, holders);
+    }
+  }
+
+  @Test
+  public void edits_doNotChangePreviousInstance() {
+    Random random = new Random(/* seed= */ 0);
+    List<Holder> holders = createHolders(random, /* count= */ 50);
+    PlaylistTree playlistTree = PlaylistTree.create(holders);
+
+    PlaylistTree editedPlaylistTree =
+        playlistTree
+            .insert(/* index= */ 10, createHolders(random, /* count= */ 5))
+            .remove(/* fromIndex= */ 0, /* toIndex= */ 3)
+            .move(/* fromIndex= */ 5, /* toIndex= */ 10, /* newFromIndex= */ 30)
+            .setTimeline(/* index= */ 0, TIMELINES[3]);
+
+    assertMatches(playlistTree, holders);
+    assertThat(editedPlaylistTree.size()).isEqualTo(52);
+  }
+
+  @Test
+  public void insert_repeatedlyAtSameIndex_relabelsItemsInOrder() {
+    List<Holder> holders = createHolders(new Random(/* seed= */ 0), /* count= */ 2);
+    PlaylistTree playlistTree = PlaylistTree.create(holders);
+
+    // Each insertion halves the label gap at the insertion point, which forces relabeling.
+    for (int i = 0; i < 1000; i++) {
+      Holder holder = new Holder(new Object(), TIMELINES[i % TIMELINES.length]);
+      playlistTree = playlistTree.insert(/* index= */ 1, ImmutableList.of(holder));
+      holders.add(/* index= */ 1, holder);
+    }
+
+    assertMatches(playlistTree, holders);
+  }
+
+  @Test
+  public void getIndexOfUid_withEqualHashCodes_returnsIndexOfEqualUid() {
+    List<Holder> holders = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      holders.add(new Holder(new CollidingUid(i), TIMELINES[1]));
+    }
+
+    PlaylistTree playlistTree =
+        PlaylistTree.create(holders).remove(/* fromIndex= */ 2, /* toIndex= */ 4);
+    holders.subList(2, 4).clear();
+
+    assertMatches(playlistTree, holders);
+    assertThat(playlistTree.getIndexOfUid(new CollidingUid(2))).isEqualTo(C.INDEX_UNSET);
+    assertThat(playlistTree.getIndexOfUid(new CollidingUid(9))).isEqualTo(7);
+  }
+
+  @Test
+  public void playlistTimeline_fromEditedTree_equalsTimelineFromHolders() {
+    Random random = new Random(/* seed= */ 0);
+    List<Holder> holders = createHolders(random, /* count= */ 10);
+    List<Holder> insertedHolders = createHolders(random, /* count= */ 3);
+    PlaylistTree playlistTree =
+        PlaylistTree.create(holders)
+            .insert(/* index= */ 4, insertedHolders)
+            .move(/* fromIndex= */ 0, /* toIndex= */ 2, /* newFromIndex= */ 8);
+    holders.addAll(/* index= */ 4, insertedHolders);
+    Util.moveItems(holders, /* fromIndex= */ 0, /* toIndex= */ 2, /* newFromIndex= */ 8);
+    ShuffleOrder shuffleOrder = new ShuffleOrder.DefaultShuffleOrder(holders.size());
+
+    assertThat(new PlaylistTimeline(playlistTree, shuffleOrder))
+        .isEqualTo(new PlaylistTimeline(holders, shuffleOrder));
+  }
+
+  @Test
+  public void largePlaylist_editsAndLookupsWithoutCopying() {
+    Random random = new Random(/* seed= */ 0);
+    List<Holder> holders = createHolders(random, /* count= */ 100_000);
+    PlaylistTree playlistTree = PlaylistTree.create(holders);
+
+    // Each of these edits and lookups is O(log n), so they don't scale with the playlist size.
+    for (int i = 0; i < 10_000; i++) {
+      int index = random.nextInt(playlistTree.size());
+      switch (i % 4) {
+        case 0:
+          Holder holder = new Holder(new Object(), TIMELINES[random.nextInt(TIMELINES.length)]);
+          playlistTree = playlistTree.insert(index, ImmutableList.of(holder));
+          holders.add(index, holder);
+          break;
+        case 1:
+          playlistTree = playlistTree.remove(index, index + 1);
+          holders.remove(index);
+          break;
+        case 2:
+          Timeline timeline = TIMELINES[random.nextInt(TIMELINES.length)];
+          playlistTree = playlistTree.setTimeline(index, timeline);
+          holders.set(index, new Holder(holders.get(index).uid, timeline));
+          break;
+        default:
+          assertThat(playlistTree.getIndexOfUid(holders.get(index).uid)).isEqualTo(index);
+          int windowIndex = random.nextInt(playlistTree.getWindowCount());
+          int itemIndex = playlistTree.getIndexByWindowIndex(windowIndex);
+          assertThat(playlistTree.getFirstWindowIndex(itemIndex)).isAtMost(windowIndex);
+          assertThat(
+                  playlistTree.getFirstWindowIndex(itemIndex)
+                      + playlistTree.getTimeline(itemIndex).getWindowCount())
+              .isGreaterThan(windowIndex);
+          break;
+      }
+    }
+
+    assertMatches(playlistTree, holders);
+  }
+
+  private static void assertMatches(PlaylistTree playlistTree, List<Holder> holders) {
+    assertThat(playlistTree.size()).isEqualTo(holders.size());
+    assertThat(playlistTree.isEmpty()).isEqualTo(holders.isEmpty());
+    int windowCount = 0;
+    int periodCount = 0;
+    List<Object> uids = new ArrayList<>();
+    List<Timeline> timelines = new ArrayList<>();
+    for (int i = 0; i < holders.size(); i++) {
+      Holder holder = holders.get(i);
+      uids.add(holder.uid);
+      timelines.add(holder.timeline);
+      assertThat(playlistTree.getUid(i)).isSameInstanceAs(holder.uid);
+      assertThat(playlistTree.getTimeline(i)).isSameInstanceAs(holder.timeline);
+      assertThat(playlistTree.getIndexOfUid(holder.uid)).isEqualTo(i);
+      assertThat(playlistTree.getFirstWindowIndex(i)).isEqualTo(windowCount);
+      assertThat(playlistTree.getFirstPeriodIndex(i)).isEqualTo(periodCount);
+      for (int j = 0; j < holder.timeline.getWindowCount(); j++) {
+        assertThat(playlistTree.getIndexByWindowIndex(windowCount + j)).isEqualTo(i);
+      }
+      for (int j = 0; j < holder.timeline.getPeriodCount(); j++) {
+        assertThat(playlistTree.getIndexByPeriodIndex(periodCount + j)).isEqualTo(i);
+      }
+      windowCount += holder.timeline.getWindowCount();
+      periodCount += holder.timeline.getPeriodCount();
+    }
+    assertThat(playlistTree.getWindowCount()).isEqualTo(windowCount);
+    assertThat(playlistTree.getPeriodCount()).isEqualTo(periodCount);
+    assertThat(playlistTree.getUids()).containsExactlyElementsIn(uids).inOrder();
+    assertThat(playlistTree.getTimelines()).containsExactlyElementsIn(timelines).inOrder();
+    assertThat(playlistTree.getIndexOfUid(new Object())).isEqualTo(C.INDEX_UNSET);
+  }
+
+  private static List<Holder> createHolders(Random random, int count) {
+    List<Holder> holders = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      holders.add(new Holder(new Object(), TIMELINES[random.nextInt(TIMELINES.length)]));
+    }
+    return holders;
+  }
+
+  private static final class Holder implements MediaSourceInfoHolder {
+
+    private final Object uid;
+    private final Timeline timeline;
+
+    public Holder(Object uid, Timeline timeline) {
+      this.uid = uid;
+      this.timeline = timeline;
+    }
+
+    @Override
+    public Object getUid() {
+      return uid;
+    }
+
+    @Override
+    public Timeline getTimeline() {
+      return timeline;
+    }
+  }
+
+  /** A uid with a constant hash code. */
+  private static final class CollidingUid {
+
+    private final int id;
+
+    public CollidingUid(int id) {
+      this.id = id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof CollidingUid && ((CollidingUid) o).id == id;
+    }
+
+    @Override
+    public int hashCode() {
+      return 0;
+    }
+  }
+}
@@ -138,6 +138,27 @@ public final class PlaybackStatsListenerTest {
     assertThat(playbackStats.endedCount).isEqualTo(1);
   }
 
+  @Test
+  public void playback_withoutKeepHistory_updatesQuantileSketches() throws Exception {
+    PlaybackStatsListener playbackStatsListener =
+        new PlaybackStatsListener(/* keepHistory= */ false, /* callback= */ null);
+    player.addAnalyticsListener(playbackStatsListener);
+
+    player.setMediaSource(new FakeMediaSource(new FakeTimeline(/* windowCount= */ 1)));
+    player.prepare();
+    player.play();
+    TestPlayerRunHelper.runUntilPlaybackState(player, Player.STATE_ENDED);
+    runUntilPendingCommandsAreFullyHandled(player);
+
+    @Nullable PlaybackStats playbackStats = playbackStatsListener.getPlaybackStats();
+    assertThat(playbackStats).isNotNull();
+    assertThat(playbackStats.playbackStateHistory).isEmpty();
+    assertThat(playbackStats.joinTimeMsSketch.count).isEqualTo(1);
+    assertThat(playbackStats.joinTimeMsSketch.getMax())
+        .isEqualTo(playbackStats.totalValidJoinTimeMs);
+    assertThat(playbackStats.droppedFramesSketch.count).isEqualTo(1);
+  }
+
   @Test
   public void finishedSession_callsCallback() throws Exception {
     PlaybackStatsListener.Callback callback = mock(PlaybackStatsListener.Callback.class);
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.analytics;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link QuantileSketch}. */
+@RunWith(AndroidJUnit4.class)
+public final class QuantileSketchTest {
+
+  @Test
+  public void emptySketch_returnsUnsetValues() {
+    QuantileSketch sketch = QuantileSketch.EMPTY;
+
+    assertThat(sketch.count).isEqualTo(0);
+    assertThat(sketch.getMin()).isEqualTo(C.LENGTH_UNSET);
+    assertThat(sketch.getMax()).isEqualTo(C.LENGTH_UNSET);
+    assertThat(sketch.getMean()).isEqualTo(C.LENGTH_UNSET);
+    assertThat(sketch.getQuantile(0.5)).isEqualTo(C.LENGTH_UNSET);
+  }
+
+  @Test
+  public void getQuantile_withSmallValues_isExact() {
+    QuantileSketch.Builder builder = new QuantileSketch.Builder();
+    for (int i = 1; i <= 20; i++) {
+      builder.add(i);
+    }
+    QuantileSketch sketch = builder.build();
+
+    assertThat(sketch.count).isEqualTo(20);
+    assertThat(sketch.getMin()).isEqualTo(1);
+    assertThat(sketch.getMax()).isEqualTo(20);
+    assertThat(sketch.getMean()).isEqualTo(10.5f);
+    assertThat(sketch.getQuantile(0)).isEqualTo(1);
+    assertThat(sketch.getQuantile(0.5)).isEqualTo(10);
+    assertThat(sketch.getQuantile(0.95)).isEqualTo(19);
+    assertThat(sketch.getQuantile(1)).isEqualTo(20);
+  }
+
+  @Test
+  public void getQuantile_withRandomValues_isWithinRelativeError() {
+    Random random = new Random(/* seed= */ 0);
+    long[] values = new long[10_000];
+    QuantileSketch.Builder builder = new QuantileSketch.Builder();
+    for (int i = 0; i < values.length; i++) {
+      values[i] = (long) Math.exp(random.nextDouble() * 40);
+      builder.add(values[i]);
+    }
+    QuantileSketch sketch = builder.build();
+    Arrays.sort(values);
+
+    for (double quantile : new double[] {0.01, 0.25, 0.5, 0.75, 0.95, 0.99}) {
+      long expected = values[(int) Math.ceil(quantile * values.length) - 1];
+      assertThat((double) sketch.getQuantile(quantile))
+          .isWithin(expected * 0.035)
+          .of((double) expected);
+    }
+    assertThat(sketch.getMin()).isEqualTo(values[0]);
+    assertThat(sketch.getMax()).isEqualTo(values[values.length - 1]);
+  }
+
+  @Test
+  public void add_withWeight_weightsQuantiles() {
+    QuantileSketch.Builder builder = new QuantileSketch.Builder();
+    builder.add(/* value= */ 1_000_000, /* weight= */ 9_000);
+    builder.add(/* value= */ 4_000_000, /* weight= */ 1_000);
+    QuantileSketch sketch = builder.build();
+
+    assertThat(sketch.count).isEqualTo(10_000);
+    assertThat(sketch.getMean()).isEqualTo(1_300_000f);
+    assertThat((double) sketch.getQuantile(0.5)).isWithin(30_000).of(1_000_000);
+    assertThat((double) sketch.getQuantile(0.95)).isWithin(120_000).of(4_000_000);
+    assertThat(sketch.getQuantile(1)).isEqualTo(4_000_000);
+  }
+
+  @Test
+  public void merge_equalsSketchOfAllValues() {
+    Random random = new Random(/* seed= */ 0);
+    QuantileSketch.Builder firstBuilder = new QuantileSketch.Builder();
+    QuantileSketch.Builder secondBuilder = new QuantileSketch.Builder();
+    QuantileSketch.Builder combinedBuilder = new QuantileSketch.Builder();
+    for (int i = 0; i < 1000; i++) {
+      long value = random.nextInt(100_000);
+      (i % 3 == 0 ? firstBuilder : secondBuilder).add(value);
+      combinedBuilder.add(value);
+    }
+
+    QuantileSketch merged =
+        QuantileSketch.merge(firstBuilder.build(), QuantileSketch.EMPTY, secondBuilder.build());
+
+    assertThat(merged).isEqualTo(combinedBuilder.build());
+  }
+
+  @Test
+  public void add_withHugeValues_usesBoundedMemory() {
+    QuantileSketch.Builder builder = new QuantileSketch.Builder();
+    builder.add(Long.MAX_VALUE);
+    builder.add(0);
+    QuantileSketch sketch = builder.build();
+
+    assertThat(sketch.toByteArray().length).isAtMost(40 + 8 * QuantileSketch.MAX_BUCKET_COUNT);
+    assertThat(sketch.getQuantile(1)).isEqualTo(Long.MAX_VALUE);
+    assertThat(sketch.getQuantile(0.5)).isEqualTo(0);
+  }
+
+  @Test
+  public void toByteArray_fromByteArray_restoresSketch() {
+    QuantileSketch.Builder builder = new QuantileSketch.Builder();
+    builder.add(/* value= */ 5);
+    builder.add(/* value= */ 12_345, /* weight= */ 3);
+    QuantileSketch sketch = builder.build();
+
+    QuantileSketch restoredSketch = QuantileSketch.fromByteArray(sketch.toByteArray());
+
+    assertThat(restoredSketch).isEqualTo(sketch);
+    assertThat(QuantileSketch.fromByteArray(QuantileSketch.EMPTY.toByteArray()))
+        .isEqualTo(QuantileSketch.EMPTY);
+  }
+
+  @Test
+  public void fromByteArray_withInvalidData_throwsIllegalArgumentException() {
+    byte[] data = QuantileSketch.EMPTY.toByteArray();
+
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> QuantileSketch.fromByteArray(Arrays.copyOf(data, data.length - 1)));
+    assertThrows(IllegalArgumentException.class, () -> QuantileSketch.fromByteArray(new byte[0]));
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link AudioTrackBufferSizeController}. */
+@RunWith(AndroidJUnit4.class)
+public final class AudioTrackBufferSizeControllerTest {
+
+  private static final int MIN_BUFFER_SIZE_FRAMES = 1_000;
+  private static final int MAX_BUFFER_SIZE_FRAMES = 16_000;
+  private static final int SAMPLE_RATE = 48_000;
+
+  private final AudioTrackBufferSizeController controller =
+      new AudioTrackBufferSizeController(
+          MIN_BUFFER_SIZE_FRAMES, MAX_BUFFER_SIZE_FRAMES, SAMPLE_RATE);
+
+  @Test
+  public void getBufferSizeFrames_initially_returnsMultipleOfMinBufferSize() {
+    assertThat(controller.getBufferSizeFrames())
+        .isEqualTo(
+            MIN_BUFFER_SIZE_FRAMES
+                * AudioTrackBufferSizeController.INITIAL_MIN_BUFFER_SIZE_MULTIPLIER);
+  }
+
+  @Test
+  public void getBufferSizeFrames_withSmallCapacity_returnsCapacity() {
+    AudioTrackBufferSizeController controller =
+        new AudioTrackBufferSizeController(
+            MIN_BUFFER_SIZE_FRAMES, /* maxBufferSizeFrames= */ 1_500, SAMPLE_RATE);
+
+    assertThat(controller.getBufferSizeFrames()).isEqualTo(1_500);
+  }
+
+  @Test
+  public void onUnderrun_doublesBufferSizeUpToCapacity() {
+    assertThat(controller.onUnderrun(/* nowMs= */ 0)).isTrue();
+    assertThat(controller.getBufferSizeFrames()).isEqualTo(4_000);
+
+    controller.onUnderrun(/* nowMs= */ 1);
+    assertThat(controller.onUnderrun(/* nowMs= */ 2)).isTrue();
+    assertThat(controller.getBufferSizeFrames()).isEqualTo(MAX_BUFFER_SIZE_FRAMES);
+    assertThat(controller.onUnderrun(/* nowMs= */ 3)).isFalse();
+  }
+
+  @Test
+  public void onWrite_withLongWriteInterval_growsBufferToCoverInterval() {
+    assertThat(controller.onWrite(/* nowMs= */ 0)).isFalse();
+    assertThat(controller.onWrite(/* nowMs= */ 50)).isTrue();
+
+    assertThat(controller.getBufferSizeFrames())
+        .isEqualTo(
+            50 * AudioTrackBufferSizeController.WRITE_INTERVAL_MULTIPLIER * SAMPLE_RATE / 1000);
+  }
+
+  @Test
+  public void onWrite_withShortWriteIntervals_shrinksBufferAfterShrinkInterval() {
+    controller.onUnderrun(/* nowMs= */ 0);
+
+    for (long nowMs = 0; nowMs < AudioTrackBufferSizeController.SHRINK_INTERVAL_MS; nowMs += 5) {
+      assertThat(controller.onWrite(nowMs)).isFalse();
+    }
+    assertThat(controller.onWrite(AudioTrackBufferSizeController.SHRINK_INTERVAL_MS)).isTrue();
+
+    assertThat(controller.getBufferSizeFrames()).isEqualTo(3_000);
+  }
+
+  @Test
+  public void onWrite_afterPause_ignoresPausedTime() {
+    controller.onWrite(/* nowMs= */ 0);
+    controller.onPaused();
+
+    assertThat(controller.onWrite(/* nowMs= */ 5_000)).isFalse();
+    assertThat(controller.getBufferSizeFrames())
+        .isEqualTo(
+            MIN_BUFFER_SIZE_FRAMES
+                * AudioTrackBufferSizeController.INITIAL_MIN_BUFFER_SIZE_MULTIPLIER);
+  }
+}
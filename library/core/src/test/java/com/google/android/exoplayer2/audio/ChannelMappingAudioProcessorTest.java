@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.audio;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.audio.AudioProcessor.AudioFormat;
+import com.google.common.collect.ImmutableList;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link ChannelMappingAudioProcessor}. */
+@RunWith(AndroidJUnit4.class)
+public final class ChannelMappingAudioProcessorTest {
+
+  private static final AudioFormat AUDIO_FORMAT_16_BIT =
+      new AudioFormat(/* sampleRate= */ 44100, /* channelCount= */ 3, C.ENCODING_PCM_16BIT);
+  private static final AudioFormat AUDIO_FORMAT_32_BIT =
+      new AudioFormat(/* sampleRate= */ 44100, /* channelCount= */ 3, C.ENCODING_PCM_32BIT);
+
+  @Test
+  public void queueInput_withoutPreviousProcessor_mapsChannelsWithoutOverwritingInput()
+      throws Exception {
+    ChannelMappingAudioProcessor channelMappingAudioProcessor = new ChannelMappingAudioProcessor();
+    channelMappingAudioProcessor.setChannelMap(new int[] {2, 0});
+    AudioProcessingPipeline audioProcessingPipeline =
+        new AudioProcessingPipeline(ImmutableList.of(channelMappingAudioProcessor));
+    audioProcessingPipeline.configure(AUDIO_FORMAT_16_BIT);
+    audioProcessingPipeline.flush();
+    ByteBuffer inputBuffer = createBuffer(/* bytesPerSample= */ 2, 1, 2, 3, 4, 5, 6);
+
+    audioProcessingPipeline.queueInput(inputBuffer);
+    ByteBuffer outputBuffer = audioProcessingPipeline.getOutput();
+
+    assertThat(getShorts(outputBuffer)).isEqualTo(new short[] {3, 1, 6, 4});
+    assertThat(inputBuffer.getShort(0)).isEqualTo((short) 1);
+    assertThat(inputBuffer.getShort(2)).isEqualTo((short) 2);
+  }
+
+  @Test
+  public void queueInput_afterProcessorAllowingOverwrite_mapsChannelsInPlace() throws Exception {
+    ChannelMappingAudioProcessor channelMappingAudioProcessor = new ChannelMappingAudioProcessor();
+    channelMappingAudioProcessor.setChannelMap(new int[] {2, 0});
+    AudioProcessingPipeline audioProcessingPipeline =
+        new AudioProcessingPipeline(
+            ImmutableList.of(new ToInt16PcmAudioProcessor(), channelMappingAudioProcessor));
+    audioProcessingPipeline.configure(AUDIO_FORMAT_32_BIT);
+    audioProcessingPipeline.flush();
+    ByteBuffer inputBuffer =
+        createBuffer(/* bytesPerSample= */ 4, 1 << 16, 2 << 16, 3 << 16, 4 << 16, 5 << 16, 6 << 16);
+    ByteBuffer nextInputBuffer = createBuffer(/* bytesPerSample= */ 4, 0, 0, 0);
+
+    audioProcessingPipeline.queueInput(inputBuffer);
+    ByteBuffer outputBuffer = audioProcessingPipeline.getOutput();
+    audioProcessingPipeline.queueInput(nextInputBuffer);
+
+    assertThat(getShorts(outputBuffer)).isEqualTo(new short[] {3, 1, 6, 4});
+    // The output was written over the output of the previous processor, which is held back until
+    // the output is consumed.
+    assertThat(nextInputBuffer.hasRemaining()).isTrue();
+  }
+
+  private static ByteBuffer createBuffer(int bytesPerSample, int... samples) {
+    ByteBuffer buffer =
+        ByteBuffer.allocateDirect(samples.length * bytesPerSample).order(ByteOrder.nativeOrder());
+    for (int sample : samples) {
+      if (bytesPerSample == 2) {
+        buffer.putShort((short) sample);
+      } else {
+        buffer.putInt(sample);
+      }
+    }
+    buffer.flip();
+    return buffer;
+  }
+
+  private static short[] getShorts(ByteBuffer buffer) {
+    short[] shorts = new short[buffer.remaining() / 2];
+    for (int i = 0; i < shorts.length; i++) {
+      shorts[i] = buffer.getShort(buffer.position() + 2 * i);
+    }
+    return shorts;
+  }
+}
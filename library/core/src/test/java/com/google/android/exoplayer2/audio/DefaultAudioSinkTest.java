@@ -20,6 +20,7 @@ import static com.google.android.exoplayer2.audio.AudioSink.SINK_FORMAT_SUPPORTE
 import static com.google.android.exoplayer2.audio.AudioSink.SINK_FORMAT_SUPPORTED_WITH_TRANSCODING;
 import static com.google.common.truth.Truth.assertThat;
 
+import android.media.AudioTrack;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
@@ -28,13 +29,19 @@ import com.google.android.exoplayer2.audio.DefaultAudioSink.DefaultAudioProcesso
 import com.google.android.exoplayer2.util.MimeTypes;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowAudioTrack;
 
 /** Unit tests for {@link DefaultAudioSink}. */
 @RunWith(AndroidJUnit4.class)
@@ -59,6 +66,7 @@ public final class DefaultAudioSinkTest {
 
   @Before
   public void setUp() {
+    ShadowAudioTrackWithBufferSize.bufferSizesInFrames.clear();
     // For capturing output.
     arrayAudioBufferSink = new ArrayAudioBufferSink();
     TeeAudioProcessor teeAudioProcessor = new TeeAudioProcessor(arrayAudioBufferSink);
@@ -290,6 +298,50 @@ public final class DefaultAudioSinkTest {
         .isEqualTo(SINK_FORMAT_SUPPORTED_DIRECTLY);
   }
 
+  @Test
+  public void handleBuffer_withFloatOutputAndPlaybackSpeed_speedsUpFloatAudio() throws Exception {
+    AtomicInteger writtenBytes = new AtomicInteger();
+    ShadowAudioTrack.OnAudioDataWrittenListener audioDataWrittenListener =
+        (audioTrack, audioData, format) -> writtenBytes.addAndGet(audioData.length);
+    ShadowAudioTrack.addAudioDataListener(audioDataWrittenListener);
+    try {
+      defaultAudioSink = new DefaultAudioSink.Builder().setEnableFloatOutput(true).build();
+      defaultAudioSink.setPlaybackParameters(new PlaybackParameters(/* speed= */ 2f));
+      defaultAudioSink.setSkipSilenceEnabled(true);
+      Format floatFormat =
+          STEREO_44_1_FORMAT
+              .buildUpon()
+              .setSampleMimeType(MimeTypes.AUDIO_RAW)
+              .setPcmEncoding(C.ENCODING_PCM_FLOAT)
+              .build();
+      defaultAudioSink.configure(
+          floatFormat, /* specifiedBufferSize= */ 0, /* outputChannels= */ null);
+      // One second of float PCM silence.
+      ByteBuffer inputBuffer =
+          ByteBuffer.allocateDirect(SAMPLE_RATE_44_1 * CHANNEL_COUNT_STEREO * 4)
+              .order(ByteOrder.nativeOrder());
+
+      retryUntilTrue(
+          () ->
+              defaultAudioSink.handleBuffer(
+                  inputBuffer, /* presentationTimeUs= */ 0, /* encodedAccessUnitCount= */ 1));
+      // Like a renderer, call playToEndOfStream repeatedly while the processors are drained.
+      for (int i = 0; i < 10; i++) {
+        defaultAudioSink.playToEndOfStream();
+      }
+
+      // The speed is applied to the float audio, but silence skipping isn't supported for it.
+      assertThat(defaultAudioSink.getPlaybackParameters().speed).isEqualTo(2f);
+      assertThat(defaultAudioSink.getSkipSilenceEnabled()).isFalse();
+      int expectedWrittenBytes = SAMPLE_RATE_44_1 * CHANNEL_COUNT_STEREO * 4 / 2;
+      assertThat((double) writtenBytes.get())
+          .isWithin(0.01 * expectedWrittenBytes)
+          .of(expectedWrittenBytes);
+    } finally {
+      ShadowAudioTrack.removeAudioDataListener(audioDataWrittenListener);
+    }
+  }
+
   @Test
   public void supportsFloatPcm() {
     Format floatFormat =
@@ -380,6 +432,43 @@ public final class DefaultAudioSinkTest {
     assertThat(defaultAudioSink.getPlaybackParameters().speed).isEqualTo(1);
   }
 
+  @Config(shadows = {ShadowAudioTrackWithBufferSize.class})
+  @Test
+  public void handleBuffer_withAdaptiveBufferSizing_setsInitialBufferSizeOnAudioTrack()
+      throws Exception {
+    // 1000 frames of 16-bit stereo audio.
+    ShadowAudioTrack.setMinBufferSize(4000);
+    defaultAudioSink =
+        new DefaultAudioSink.Builder().setExperimentalAdaptiveBufferSizingEnabled(true).build();
+    configureDefaultAudioSink(CHANNEL_COUNT_STEREO);
+
+    assertThat(
+            defaultAudioSink.handleBuffer(
+                createDefaultSilenceBuffer(),
+                /* presentationTimeUs= */ 0,
+                /* encodedAccessUnitCount= */ 1))
+        .isTrue();
+
+    assertThat(ShadowAudioTrackWithBufferSize.bufferSizesInFrames)
+        .containsExactly(1000 * AudioTrackBufferSizeController.INITIAL_MIN_BUFFER_SIZE_MULTIPLIER);
+  }
+
+  @Config(shadows = {ShadowAudioTrackWithBufferSize.class})
+  @Test
+  public void handleBuffer_withoutAdaptiveBufferSizing_doesNotSetBufferSizeOnAudioTrack()
+      throws Exception {
+    configureDefaultAudioSink(CHANNEL_COUNT_STEREO);
+
+    assertThat(
+            defaultAudioSink.handleBuffer(
+                createDefaultSilenceBuffer(),
+                /* presentationTimeUs= */ 0,
+                /* encodedAccessUnitCount= */ 1))
+        .isTrue();
+
+    assertThat(ShadowAudioTrackWithBufferSize.bufferSizesInFrames).isEmpty();
+  }
+
   private void configureDefaultAudioSink(int channelCount) throws AudioSink.ConfigurationException {
     configureDefaultAudioSink(channelCount, /* trimStartFrames= */ 0, /* trimEndFrames= */ 0);
   }
@@ -440,4 +529,24 @@ public final class DefaultAudioSinkTest {
       buffer.position(position);
     }
   }
+
+  /** A {@link ShadowAudioTrack} that records the buffer sizes set on the track. */
+  @Implements(AudioTrack.class)
+  public static final class ShadowAudioTrackWithBufferSize extends ShadowAudioTrack {
+
+    public static final List<Integer> bufferSizesInFrames = new ArrayList<>();
+
+    private static final int BUFFER_CAPACITY_FRAMES = 100_000;
+
+    @Implementation(minSdk = 24)
+    protected int getBufferCapacityInFrames() {
+      return BUFFER_CAPACITY_FRAMES;
+    }
+
+    @Implementation(minSdk = 24)
+    protected int setBufferSizeInFrames(int bufferSizeInFrames) {
+      bufferSizesInFrames.add(bufferSizeInFrames);
+      return bufferSizeInFrames;
+    }
+  }
 }
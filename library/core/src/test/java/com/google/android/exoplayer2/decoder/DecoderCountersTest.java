@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.decoder;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link DecoderCounters}. */
+@RunWith(AndroidJUnit4.class)
+public final class DecoderCountersTest {
+
+  @Test
+  public void addDecodeTime_accumulatesTimeAndCount() {
+    DecoderCounters decoderCounters = new DecoderCounters();
+
+    decoderCounters.addDecodeTime(/* decodeTimeUs= */ 1_000, /* count= */ 1);
+    decoderCounters.addDecodeTime(/* decodeTimeUs= */ 2_500, /* count= */ 3);
+
+    assertThat(decoderCounters.totalDecodeTimeUs).isEqualTo(3_500);
+    assertThat(decoderCounters.decodeTimeCount).isEqualTo(4);
+  }
+
+  @Test
+  public void merge_addsDecodeTimeOfOtherCounters() {
+    DecoderCounters decoderCounters = new DecoderCounters();
+    decoderCounters.addDecodeTime(/* decodeTimeUs= */ 1_000, /* count= */ 2);
+    DecoderCounters otherDecoderCounters = new DecoderCounters();
+    otherDecoderCounters.addDecodeTime(/* decodeTimeUs= */ 4_000, /* count= */ 5);
+
+    decoderCounters.merge(otherDecoderCounters);
+
+    assertThat(decoderCounters.totalDecodeTimeUs).isEqualTo(5_000);
+    assertThat(decoderCounters.decodeTimeCount).isEqualTo(7);
+    assertThat(otherDecoderCounters.totalDecodeTimeUs).isEqualTo(4_000);
+    assertThat(otherDecoderCounters.decodeTimeCount).isEqualTo(5);
+  }
+}
@@ -18,6 +18,7 @@ package com.google.android.exoplayer2.mediacodec;
 
 import static com.google.android.exoplayer2.decoder.DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_DIRECT;
 import static com.google.android.exoplayer2.mediacodec.BatchBuffer.DEFAULT_MAX_SAMPLE_COUNT;
+import static com.google.android.exoplayer2.mediacodec.BatchBuffer.MAX_ADAPTIVE_SAMPLE_COUNT;
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertThrows;
 
@@ -251,6 +252,101 @@ public final class BatchBufferTest {
     assertThat(batchBuffer.append(sampleBuffer)).isTrue();
   }
 
+  @Test
+  public void onBatchConsumed_notAdaptive_keepsMaxSampleCount() {
+    fillAndConsumeBatch(/* sampleSizeBytes= */ Long.BYTES, /* consumedImmediately= */ true);
+
+    assertThat(batchBuffer.getMaxSampleCount()).isEqualTo(DEFAULT_MAX_SAMPLE_COUNT);
+  }
+
+  @Test
+  public void onBatchConsumed_adaptiveAndConsumedImmediately_growsUpToMaxAdaptiveSampleCount() {
+    batchBuffer.setAdaptive(true);
+
+    fillAndConsumeBatch(/* sampleSizeBytes= */ Long.BYTES, /* consumedImmediately= */ true);
+    assertThat(batchBuffer.getMaxSampleCount()).isEqualTo(DEFAULT_MAX_SAMPLE_COUNT * 2);
+    for (int i = 0; i < 10; i++) {
+      fillAndConsumeBatch(/* sampleSizeBytes= */ Long.BYTES, /* consumedImmediately= */ true);
+    }
+
+    assertThat(batchBuffer.getMaxSampleCount()).isEqualTo(MAX_ADAPTIVE_SAMPLE_COUNT);
+  }
+
+  @Test
+  public void onBatchConsumed_adaptiveAndNotConsumedImmediately_shrinksToInitialMaxSampleCount() {
+    batchBuffer.setAdaptive(true);
+    fillAndConsumeBatch(/* sampleSizeBytes= */ Long.BYTES, /* consumedImmediately= */ true);
+    fillAndConsumeBatch(/* sampleSizeBytes= */ Long.BYTES, /* consumedImmediately= */ true);
+
+    fillAndConsumeBatch(/* sampleSizeBytes= */ Long.BYTES, /* consumedImmediately= */ false);
+    assertThat(batchBuffer.getMaxSampleCount()).isEqualTo(DEFAULT_MAX_SAMPLE_COUNT * 2);
+    fillAndConsumeBatch(/* sampleSizeBytes= */ Long.BYTES, /* consumedImmediately= */ false);
+    fillAndConsumeBatch(/* sampleSizeBytes= */ Long.BYTES, /* consumedImmediately= */ false);
+
+    assertThat(batchBuffer.getMaxSampleCount()).isEqualTo(DEFAULT_MAX_SAMPLE_COUNT);
+  }
+
+  @Test
+  public void onBatchConsumed_adaptiveWithLargeSamples_limitsMaxSampleCountToMaxSize() {
+    batchBuffer.setAdaptive(true);
+    int sampleSizeBytes = BatchBuffer.MAX_SIZE_BYTES / (DEFAULT_MAX_SAMPLE_COUNT + 1);
+
+    fillAndConsumeBatch(sampleSizeBytes, /* consumedImmediately= */ true);
+
+    assertThat(batchBuffer.getMaxSampleCount()).isEqualTo(DEFAULT_MAX_SAMPLE_COUNT + 1);
+  }
+
+  @Test
+  public void onBatchConsumed_adaptiveAfterLargeSamples_limitsMaxSampleCountToAverageSize() {
+    batchBuffer.setAdaptive(true);
+    int largeSampleSizeBytes = BatchBuffer.MAX_SIZE_BYTES / 40;
+    // Batches of 32, 40 and 40 large samples. The count is limited to 40 by the sample size.
+    fillAndConsumeBatch(largeSampleSizeBytes, /* consumedImmediately= */ true);
+    fillAndConsumeBatch(largeSampleSizeBytes, /* consumedImmediately= */ true);
+    fillAndConsumeBatch(largeSampleSizeBytes, /* consumedImmediately= */ true);
+
+    // A batch of 40 small samples doesn't lift the limit of the large samples seen before.
+    fillAndConsumeBatch(/* sampleSizeBytes= */ Long.BYTES, /* consumedImmediately= */ true);
+
+    long averageSampleSizeBytes = (112L * largeSampleSizeBytes + 40L * Long.BYTES) / 152;
+    assertThat(batchBuffer.getMaxSampleCount())
+        .isEqualTo(BatchBuffer.MAX_SIZE_BYTES / averageSampleSizeBytes);
+  }
+
+  @Test
+  public void setAdaptive_resetsAverageSampleSize() {
+    batchBuffer.setAdaptive(true);
+    fillAndConsumeBatch(BatchBuffer.MAX_SIZE_BYTES / 40, /* consumedImmediately= */ true);
+
+    batchBuffer.setAdaptive(true);
+    fillAndConsumeBatch(/* sampleSizeBytes= */ Long.BYTES, /* consumedImmediately= */ true);
+
+    assertThat(batchBuffer.getMaxSampleCount()).isEqualTo(80);
+  }
+
+  @Test
+  public void setAdaptive_false_restoresMaxSampleCount() {
+    batchBuffer.setAdaptive(true);
+    fillAndConsumeBatch(/* sampleSizeBytes= */ Long.BYTES, /* consumedImmediately= */ true);
+
+    batchBuffer.setAdaptive(false);
+
+    assertThat(batchBuffer.getMaxSampleCount()).isEqualTo(DEFAULT_MAX_SAMPLE_COUNT);
+  }
+
+  private void fillAndConsumeBatch(int sampleSizeBytes, boolean consumedImmediately) {
+    batchBuffer.clear();
+    do {
+      sampleBuffer.clear();
+      sampleBuffer.ensureSpaceForWrite(sampleSizeBytes);
+      sampleBuffer.data.position(sampleSizeBytes);
+      sampleBuffer.flip();
+    } while (batchBuffer.append(sampleBuffer));
+    batchBuffer.flip();
+    batchBuffer.onBatchConsumed(consumedImmediately);
+    batchBuffer.clear();
+  }
+
   private void initSampleBuffer() {
     initSampleBuffer(/* timeUs= */ 0);
   }
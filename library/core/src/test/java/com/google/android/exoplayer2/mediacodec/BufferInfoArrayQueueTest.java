@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import android.media.MediaCodec;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.NoSuchElementException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests for {@link BufferInfoArrayQueue}. */
+@RunWith(AndroidJUnit4.class)
+public final class BufferInfoArrayQueueTest {
+
+  private final BufferInfoArrayQueue queue = new BufferInfoArrayQueue();
+
+  @Test
+  public void isEmpty_afterConstruction_returnsTrue() {
+    assertThat(queue.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void remove_copiesBufferInfo() {
+    MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    info.set(/* newOffset= */ 1, /* newSize= */ 2, /* newTimeUs= */ 3, /* newFlags= */ 4);
+    queue.add(/* index= */ 5, info);
+    info.set(/* newOffset= */ 0, /* newSize= */ 0, /* newTimeUs= */ 0, /* newFlags= */ 0);
+    MediaCodec.BufferInfo outInfo = new MediaCodec.BufferInfo();
+
+    assertThat(queue.remove(outInfo)).isEqualTo(5);
+    assertThat(outInfo.offset).isEqualTo(1);
+    assertThat(outInfo.size).isEqualTo(2);
+    assertThat(outInfo.presentationTimeUs).isEqualTo(3);
+    assertThat(outInfo.flags).isEqualTo(4);
+    assertThat(queue.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void remove_negativeIndex_leavesBufferInfoUnchanged() {
+    queue.add(MediaCodec.INFO_OUTPUT_FORMAT_CHANGED);
+    MediaCodec.BufferInfo outInfo = new MediaCodec.BufferInfo();
+    outInfo.set(/* newOffset= */ 1, /* newSize= */ 2, /* newTimeUs= */ 3, /* newFlags= */ 4);
+
+    assertThat(queue.remove(outInfo)).isEqualTo(MediaCodec.INFO_OUTPUT_FORMAT_CHANGED);
+    assertThat(outInfo.presentationTimeUs).isEqualTo(3);
+  }
+
+  @Test
+  public void remove_afterGrowing_returnsBuffersInOrder() {
+    MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    // Wrap around the ring before it grows.
+    queue.add(/* index= */ -1);
+    queue.remove(/* info= */ null);
+    for (int i = 0; i < 100; i++) {
+      info.set(/* newOffset= */ 0, /* newSize= */ 0, /* newTimeUs= */ i, /* newFlags= */ 0);
+      queue.add(/* index= */ i, info);
+    }
+
+    for (int i = 0; i < 100; i++) {
+      assertThat(queue.remove(info)).isEqualTo(i);
+      assertThat(info.presentationTimeUs).isEqualTo(i);
+    }
+    assertThat(queue.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void skipTo_discardsBuffersAddedBefore() {
+    queue.add(/* index= */ 0);
+    queue.add(/* index= */ 1);
+    long addedCount = queue.getAddedCount();
+    queue.add(/* index= */ 2);
+
+    queue.skipTo(addedCount);
+
+    assertThat(queue.remove(/* info= */ null)).isEqualTo(2);
+    assertThat(queue.isEmpty()).isTrue();
+  }
+
+  @Test
+  public void remove_onEmptyQueue_throws() {
+    assertThrows(NoSuchElementException.class, () -> queue.remove(/* info= */ null));
+  }
+}
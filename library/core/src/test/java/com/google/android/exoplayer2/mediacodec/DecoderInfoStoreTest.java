@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link DecoderInfoStore}. */
+@RunWith(AndroidJUnit4.class)
+public final class DecoderInfoStoreTest {
+
+  private static final String BUILD_FINGERPRINT = "build/fingerprint";
+
+  @Rule public final TemporaryFolder tempFolder = new TemporaryFolder();
+
+  private File file;
+
+  @Before
+  public void setUp() throws Exception {
+    file = new File(tempFolder.getRoot(), "decoders");
+  }
+
+  @Test
+  public void read_withoutFile_returnsEmptyList() {
+    DecoderInfoStore store = new DecoderInfoStore(file, BUILD_FINGERPRINT);
+
+    assertThat(store.read()).isEmpty();
+  }
+
+  @Test
+  public void read_afterWrite_returnsWrittenEntries() throws Exception {
+    ImmutableList<DecoderInfoStore.Entry> entries =
+        ImmutableList.of(
+            new DecoderInfoStore.Entry(
+                MimeTypes.VIDEO_H264,
+                /* secure= */ false,
+                /* tunneling= */ false,
+                ImmutableList.of("c2.decoder.avc", "c2.android.avc.decoder")),
+            new DecoderInfoStore.Entry(
+                MimeTypes.VIDEO_AV1,
+                /* secure= */ true,
+                /* tunneling= */ true,
+                /* decoderNames= */ ImmutableList.of()));
+    new DecoderInfoStore(file, BUILD_FINGERPRINT).write(entries);
+
+    assertThat(new DecoderInfoStore(file, BUILD_FINGERPRINT).read())
+        .containsExactlyElementsIn(entries)
+        .inOrder();
+  }
+
+  @Test
+  public void read_afterWriteOnDifferentBuild_returnsEmptyList() throws Exception {
+    new DecoderInfoStore(file, BUILD_FINGERPRINT)
+        .write(
+            ImmutableList.of(
+                new DecoderInfoStore.Entry(
+                    MimeTypes.AUDIO_AAC,
+                    /* secure= */ false,
+                    /* tunneling= */ false,
+                    ImmutableList.of("c2.android.aac.decoder"))));
+
+    assertThat(new DecoderInfoStore(file, "other/fingerprint").read()).isEmpty();
+  }
+}
@@ -25,6 +25,10 @@ import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.android.exoplayer2.video.ColorInfo;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -149,6 +153,57 @@ public final class MediaCodecUtilTest {
     assertThat(MediaCodecUtil.getCodecProfileAndLevel(format)).isNull();
   }
 
+  @Test
+  public void getDecoderInfos_concurrentQueries_shareOneQueryOfPlatform() throws Exception {
+    MediaCodecUtil.clearDecoderInfoCache();
+    AtomicInteger platformQueryCount = new AtomicInteger();
+    CountDownLatch allowPlatformQuery = new CountDownLatch(1);
+    MediaCodecUtil.setPlatformQueryHook(
+        () -> {
+          platformQueryCount.incrementAndGet();
+          try {
+            allowPlatformQuery.await();
+          } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+          }
+        });
+    List<Object> results = new CopyOnWriteArrayList<>();
+    Runnable query =
+        () -> {
+          try {
+            results.add(
+                MediaCodecUtil.getDecoderInfos(
+                    MimeTypes.VIDEO_H264, /* secure= */ false, /* tunneling= */ false));
+          } catch (MediaCodecUtil.DecoderQueryException e) {
+            throw new IllegalStateException(e);
+          }
+        };
+    Thread firstThread = new Thread(query);
+    Thread secondThread = new Thread(query);
+
+    try {
+      firstThread.start();
+      while (platformQueryCount.get() == 0) {
+        Thread.sleep(/* millis= */ 1);
+      }
+      secondThread.start();
+      // The second thread waits for the query of the first thread, or is blocked in its own query.
+      while (secondThread.getState() != Thread.State.WAITING) {
+        Thread.sleep(/* millis= */ 1);
+      }
+      allowPlatformQuery.countDown();
+      firstThread.join();
+      secondThread.join();
+    } finally {
+      MediaCodecUtil.setPlatformQueryHook(null);
+      MediaCodecUtil.clearDecoderInfoCache();
+    }
+
+    assertThat(platformQueryCount.get()).isEqualTo(1);
+    assertThat(results).hasSize(2);
+    assertThat(results.get(0)).isSameInstanceAs(results.get(1));
+  }
+
   private static void assertCodecProfileAndLevelForCodecsString(
       String sampleMimeType, String codecs, int profile, int level) {
     Format format =
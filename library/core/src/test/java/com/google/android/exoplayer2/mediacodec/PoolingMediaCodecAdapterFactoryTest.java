@@ -0,0 +1,433 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.mediacodec;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.graphics.SurfaceTexture;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.PersistableBundle;
+import android.view.Surface;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.decoder.CryptoInfo;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.common.collect.ImmutableList;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link PoolingMediaCodecAdapterFactory}. */
+@RunWith(AndroidJUnit4.class)
+public final class PoolingMediaCodecAdapterFactoryTest {
+
+  private static final Format AAC_FORMAT =
+      new Format.Builder()
+          .setSampleMimeType(MimeTypes.AUDIO_AAC)
+          .setSampleRate(44_100)
+          .setChannelCount(2)
+          .setInitializationData(ImmutableList.of(new byte[] {1, 2}))
+          .build();
+  private static final Format H264_FORMAT =
+      new Format.Builder()
+          .setSampleMimeType(MimeTypes.VIDEO_H264)
+          .setWidth(1280)
+          .setHeight(720)
+          .build();
+
+  private final List<FakeAdapter> createdAdapters = new ArrayList<>();
+  private final List<String> events = new ArrayList<>();
+
+  @Test
+  public void createAdapter_afterRelease_reusesAdapter() throws Exception {
+    PoolingMediaCodecAdapterFactory factory = createFactory(/* maxIdleAdapterCount= */ 1);
+
+    MediaCodecAdapter adapter = factory.createAdapter(createConfiguration(AAC_FORMAT));
+    adapter.release();
+    MediaCodecAdapter reusedAdapter = factory.createAdapter(createConfiguration(AAC_FORMAT));
+
+    assertThat(createdAdapters).hasSize(1);
+    assertThat(createdAdapters.get(0).flushCount).isEqualTo(1);
+    assertThat(createdAdapters.get(0).released).isFalse();
+    assertThat(reusedAdapter).isSameInstanceAs(adapter);
+    assertThat(events).containsExactly("created", "reused").inOrder();
+  }
+
+  @Test
+  public void createAdapter_withDifferentInitializationData_createsNewAdapter() throws Exception {
+    PoolingMediaCodecAdapterFactory factory = createFactory(/* maxIdleAdapterCount= */ 1);
+    Format otherFormat =
+        AAC_FORMAT.buildUpon().setInitializationData(ImmutableList.of(new byte[] {3, 4})).build();
+
+    factory.createAdapter(createConfiguration(AAC_FORMAT)).release();
+    factory.createAdapter(createConfiguration(otherFormat));
+
+    assertThat(createdAdapters).hasSize(2);
+    assertThat(factory.getIdleAdapterCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void createAdapter_withVideoResolutionAboveConfiguredMaximum_createsNewAdapter()
+      throws Exception {
+    PoolingMediaCodecAdapterFactory factory = createFactory(/* maxIdleAdapterCount= */ 2);
+    MediaFormat mediaFormat = new MediaFormat();
+    mediaFormat.setInteger(MediaFormat.KEY_MAX_WIDTH, 1920);
+    mediaFormat.setInteger(MediaFormat.KEY_MAX_HEIGHT, 1080);
+
+    factory
+        .createAdapter(
+            createVideoConfiguration(
+                H264_FORMAT, mediaFormat, /* surface= */ null, /* adaptive= */ true))
+        .release();
+    factory
+        .createAdapter(
+            createVideoConfiguration(
+                H264_FORMAT.buildUpon().setWidth(1920).setHeight(1080).build(),
+                new MediaFormat(),
+                /* surface= */ null,
+                /* adaptive= */ true))
+        .release();
+    factory.createAdapter(
+        createVideoConfiguration(
+            H264_FORMAT.buildUpon().setWidth(3840).setHeight(2160).build(),
+            new MediaFormat(),
+            /* surface= */ null,
+            /* adaptive= */ true));
+
+    assertThat(createdAdapters).hasSize(2);
+  }
+
+  @Test
+  public void createAdapter_withDifferentVideoResolutionForNonAdaptiveCodec_createsNewAdapter()
+      throws Exception {
+    PoolingMediaCodecAdapterFactory factory = createFactory(/* maxIdleAdapterCount= */ 1);
+    MediaFormat mediaFormat = new MediaFormat();
+    mediaFormat.setInteger(MediaFormat.KEY_MAX_WIDTH, 1920);
+    mediaFormat.setInteger(MediaFormat.KEY_MAX_HEIGHT, 1080);
+
+    factory
+        .createAdapter(
+            createVideoConfiguration(
+                H264_FORMAT, mediaFormat, /* surface= */ null, /* adaptive= */ false))
+        .release();
+    factory.createAdapter(
+        createVideoConfiguration(
+            H264_FORMAT.buildUpon().setWidth(640).setHeight(360).build(),
+            new MediaFormat(),
+            /* surface= */ null,
+            /* adaptive= */ false));
+
+    assertThat(createdAdapters).hasSize(2);
+  }
+
+  @Test
+  public void createAdapter_withLargerMaxInputSize_createsNewAdapter() throws Exception {
+    PoolingMediaCodecAdapterFactory factory = createFactory(/* maxIdleAdapterCount= */ 1);
+    MediaFormat mediaFormat = new MediaFormat();
+    mediaFormat.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, 1000);
+    MediaFormat smallerInputSizeMediaFormat = new MediaFormat();
+    smallerInputSizeMediaFormat.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, 500);
+    MediaFormat largerInputSizeMediaFormat = new MediaFormat();
+    largerInputSizeMediaFormat.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, 2000);
+
+    factory.createAdapter(createConfiguration(AAC_FORMAT, mediaFormat)).release();
+    factory.createAdapter(createConfiguration(AAC_FORMAT, smallerInputSizeMediaFormat)).release();
+    factory.createAdapter(createConfiguration(AAC_FORMAT, largerInputSizeMediaFormat));
+
+    assertThat(createdAdapters).hasSize(2);
+    assertThat(events).containsExactly("created", "reused", "created").inOrder();
+  }
+
+  @Test
+  public void createAdapter_withDifferentPcmEncoding_createsNewAdapter() throws Exception {
+    PoolingMediaCodecAdapterFactory factory = createFactory(/* maxIdleAdapterCount= */ 1);
+    MediaFormat floatOutputMediaFormat = new MediaFormat();
+    floatOutputMediaFormat.setInteger(MediaFormat.KEY_PCM_ENCODING, C.ENCODING_PCM_FLOAT);
+
+    factory.createAdapter(createConfiguration(AAC_FORMAT)).release();
+    factory.createAdapter(createConfiguration(AAC_FORMAT, floatOutputMediaFormat));
+
+    assertThat(createdAdapters).hasSize(2);
+  }
+
+  @Test
+  public void release_withSurface_detachesAdapterFromSurface() throws Exception {
+    PoolingMediaCodecAdapterFactory factory = createFactory(/* maxIdleAdapterCount= */ 1);
+    Surface surface1 = new Surface(new SurfaceTexture(/* texName= */ 0));
+    Surface surface2 = new Surface(new SurfaceTexture(/* texName= */ 0));
+    MediaCodecAdapter adapter =
+        factory.createAdapter(
+            createVideoConfiguration(
+                H264_FORMAT, new MediaFormat(), surface1, /* adaptive= */ false));
+
+    adapter.release();
+    @Nullable Surface surfaceWhilePooled = createdAdapters.get(0).outputSurface;
+    factory.createAdapter(
+        createVideoConfiguration(H264_FORMAT, new MediaFormat(), surface2, /* adaptive= */ false));
+
+    assertThat(surfaceWhilePooled).isNotNull();
+    assertThat(surfaceWhilePooled).isNotSameInstanceAs(surface1);
+    assertThat(createdAdapters).hasSize(1);
+    assertThat(createdAdapters.get(0).outputSurface).isSameInstanceAs(surface2);
+  }
+
+  @Test
+  public void release_withSurfaceAfterFactoryReleased_releasesAdapter() throws Exception {
+    PoolingMediaCodecAdapterFactory factory = createFactory(/* maxIdleAdapterCount= */ 1);
+    Surface surface = new Surface(new SurfaceTexture(/* texName= */ 0));
+    MediaCodecAdapter adapter =
+        factory.createAdapter(
+            createVideoConfiguration(
+                H264_FORMAT, new MediaFormat(), surface, /* adaptive= */ false));
+
+    factory.release();
+    adapter.release();
+
+    assertThat(createdAdapters.get(0).released).isTrue();
+    assertThat(createdAdapters.get(0).outputSurface).isNull();
+  }
+
+  @Test
+  public void release_whenPoolIsFull_evictsLeastRecentlyReleasedAdapter() throws Exception {
+    PoolingMediaCodecAdapterFactory factory = createFactory(/* maxIdleAdapterCount= */ 1);
+    MediaCodecAdapter adapter1 = factory.createAdapter(createConfiguration(AAC_FORMAT));
+    MediaCodecAdapter adapter2 = factory.createAdapter(createConfiguration(AAC_FORMAT));
+
+    adapter1.release();
+    adapter2.release();
+
+    assertThat(createdAdapters.get(0).released).isTrue();
+    assertThat(createdAdapters.get(1).released).isFalse();
+    assertThat(factory.getIdleAdapterCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void release_afterCodecFailure_releasesAdapter() throws Exception {
+    PoolingMediaCodecAdapterFactory factory = createFactory(/* maxIdleAdapterCount= */ 1);
+    MediaCodecAdapter adapter = factory.createAdapter(createConfiguration(AAC_FORMAT));
+    createdAdapters.get(0).failed = true;
+
+    adapter.release();
+
+    assertThat(createdAdapters.get(0).released).isTrue();
+    assertThat(factory.getIdleAdapterCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void prewarm_addsAdapterToPool() throws Exception {
+    PoolingMediaCodecAdapterFactory factory = createFactory(/* maxIdleAdapterCount= */ 1);
+
+    assertThat(factory.prewarm(createConfiguration(AAC_FORMAT))).isTrue();
+    factory.createAdapter(createConfiguration(AAC_FORMAT));
+
+    assertThat(createdAdapters).hasSize(1);
+    assertThat(events).containsExactly("prewarmed", "reused").inOrder();
+  }
+
+  @Test
+  public void releaseIdleAdapters_releasesPooledAdapters() throws Exception {
+    PoolingMediaCodecAdapterFactory factory = createFactory(/* maxIdleAdapterCount= */ 1);
+    factory.prewarm(createConfiguration(AAC_FORMAT));
+
+    factory.releaseIdleAdapters();
+
+    assertThat(createdAdapters.get(0).released).isTrue();
+    assertThat(factory.getIdleAdapterCount()).isEqualTo(0);
+    assertThat(events).containsExactly("prewarmed", "evicted").inOrder();
+  }
+
+  @Test
+  public void dequeueOutputBufferIndex_afterReuse_reportsOutputFormatChange() throws Exception {
+    PoolingMediaCodecAdapterFactory factory = createFactory(/* maxIdleAdapterCount= */ 1);
+    MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
+    MediaCodecAdapter adapter = factory.createAdapter(createConfiguration(AAC_FORMAT));
+    createdAdapters.get(0).nextOutputBufferIndex = MediaCodec.INFO_OUTPUT_FORMAT_CHANGED;
+    adapter.dequeueOutputBufferIndex(bufferInfo);
+    adapter.release();
+    createdAdapters.get(0).nextOutputBufferIndex = MediaCodec.INFO_TRY_AGAIN_LATER;
+
+    MediaCodecAdapter reusedAdapter = factory.createAdapter(createConfiguration(AAC_FORMAT));
+
+    assertThat(reusedAdapter.dequeueOutputBufferIndex(bufferInfo))
+        .isEqualTo(MediaCodec.INFO_OUTPUT_FORMAT_CHANGED);
+    assertThat(reusedAdapter.dequeueOutputBufferIndex(bufferInfo))
+        .isEqualTo(MediaCodec.INFO_TRY_AGAIN_LATER);
+  }
+
+  private PoolingMediaCodecAdapterFactory createFactory(int maxIdleAdapterCount) {
+    return new PoolingMediaCodecAdapterFactory(
+        configuration -> {
+          FakeAdapter adapter = new FakeAdapter();
+          createdAdapters.add(adapter);
+          return adapter;
+        },
+        maxIdleAdapterCount,
+        new PoolingMediaCodecAdapterFactory.Listener() {
+          @Override
+          public void onAdapterCreated(
+              String codecName, long creationDurationMs, boolean prewarmed) {
+            events.add(prewarmed ? "prewarmed" : "created");
+          }
+
+          @Override
+          public void onAdapterReused(String codecName, long reuseDurationMs) {
+            events.add("reused");
+          }
+
+          @Override
+          public void onAdapterEvicted(String codecName) {
+            events.add("evicted");
+          }
+        });
+  }
+
+  private static MediaCodecAdapter.Configuration createConfiguration(Format format) {
+    return createConfiguration(format, new MediaFormat());
+  }
+
+  private static MediaCodecAdapter.Configuration createConfiguration(
+      Format format, MediaFormat mediaFormat) {
+    MediaCodecInfo codecInfo =
+        MediaCodecInfo.newInstance(
+            /* name= */ "name",
+            /* mimeType= */ format.sampleMimeType,
+            /* codecMimeType= */ format.sampleMimeType,
+            /* capabilities= */ null,
+            /* hardwareAccelerated= */ false,
+            /* softwareOnly= */ true,
+            /* vendor= */ false,
+            /* forceDisableAdaptive= */ false,
+            /* forceSecure= */ false);
+    return MediaCodecAdapter.Configuration.createForAudioDecoding(
+        codecInfo, mediaFormat, format, /* crypto= */ null);
+  }
+
+  private static MediaCodecAdapter.Configuration createVideoConfiguration(
+      Format format, MediaFormat mediaFormat, @Nullable Surface surface, boolean adaptive) {
+    MediaCodecInfo codecInfo =
+        new MediaCodecInfo(
+            /* name= */ "name",
+            /* mimeType= */ format.sampleMimeType,
+            /* codecMimeType= */ format.sampleMimeType,
+            /* capabilities= */ null,
+            /* hardwareAccelerated= */ false,
+            /* softwareOnly= */ true,
+            /* vendor= */ false,
+            adaptive,
+            /* tunneling= */ false,
+            /* secure= */ false);
+    return MediaCodecAdapter.Configuration.createForVideoDecoding(
+        codecInfo, mediaFormat, format, surface, /* crypto= */ null);
+  }
+
+  private static final class FakeAdapter implements MediaCodecAdapter {
+
+    public int flushCount;
+    public boolean released;
+    public boolean failed;
+    public int nextOutputBufferIndex;
+    @Nullable public Surface outputSurface;
+
+    public FakeAdapter() {
+      nextOutputBufferIndex = MediaCodec.INFO_TRY_AGAIN_LATER;
+    }
+
+    @Override
+    public int dequeueInputBufferIndex() {
+      return MediaCodec.INFO_TRY_AGAIN_LATER;
+    }
+
+    @Override
+    public int dequeueOutputBufferIndex(MediaCodec.BufferInfo bufferInfo) {
+      return nextOutputBufferIndex;
+    }
+
+    @Override
+    public MediaFormat getOutputFormat() {
+      return new MediaFormat();
+    }
+
+    @Nullable
+    @Override
+    public ByteBuffer getInputBuffer(int index) {
+      return null;
+    }
+
+    @Nullable
+    @Override
+    public ByteBuffer getOutputBuffer(int index) {
+      return null;
+    }
+
+    @Override
+    public void queueInputBuffer(
+        int index, int offset, int size, long presentationTimeUs, int flags) {}
+
+    @Override
+    public void queueSecureInputBuffer(
+        int index, int offset, CryptoInfo info, long presentationTimeUs, int flags) {}
+
+    @Override
+    public void releaseOutputBuffer(int index, boolean render) {}
+
+    @Override
+    public void releaseOutputBuffer(int index, long renderTimeStampNs) {}
+
+    @Override
+    public void flush() {
+      if (failed) {
+        throw new IllegalStateException();
+      }
+      flushCount++;
+    }
+
+    @Override
+    public void release() {
+      released = true;
+    }
+
+    @Override
+    public void setOnFrameRenderedListener(OnFrameRenderedListener listener, Handler handler) {}
+
+    @Override
+    public void setOutputSurface(Surface surface) {
+      outputSurface = surface;
+    }
+
+    @Override
+    public void setParameters(Bundle params) {}
+
+    @Override
+    public void setVideoScalingMode(int scalingMode) {}
+
+    @Override
+    public boolean needsReconfiguration() {
+      return false;
+    }
+
+    @Override
+    public PersistableBundle getMetrics() {
+      return new PersistableBundle();
+    }
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.common.truth.Truth.assertThat;
+import static com.google.common.truth.Truth.assertWithMessage;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.FileTypeSniffer;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.common.collect.ImmutableMap;
+import java.io.IOException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link BundledExtractorsAdapter}. */
+@RunWith(AndroidJUnit4.class)
+public final class BundledExtractorsAdapterTest {
+
+  @Test
+  public void init_withoutFileTypeHints_sniffsExtractorOfDetectedFileTypeFirst()
+      throws IOException {
+    BundledExtractorsAdapter adapter = initAdapter("media/ts/sample_ac3.ts");
+
+    assertThat(adapter.getSniffedExtractorCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void init_withoutFileTypeHints_sniffsOnlyExtractorOfDetectedContainerFormat()
+      throws IOException {
+    String[] files = {
+      "media/mkv/sample.mkv",
+      "media/mp4/sample_ac3_fragmented.mp4",
+      "media/flac/bear.flac",
+      "media/ogg/bear.opus",
+      "media/wav/sample.wav",
+      "media/amr/sample_nb.amr",
+      "media/flv/sample.flv",
+      "media/avi/sample.avi",
+      "media/mp3/bear-vbr-xing-header.mp3"
+    };
+
+    for (String file : files) {
+      assertWithMessage(file).that(initAdapter(file).getSniffedExtractorCount()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  public void init_withUnfragmentedMp4_sniffsBothMp4ExtractorsInFactoryOrder() throws IOException {
+    // FragmentedMp4Extractor comes before Mp4Extractor in the factory, and both read MP4 files.
+    BundledExtractorsAdapter adapter = initAdapter("media/mp4/sample.mp4");
+
+    assertThat(adapter.getSniffedExtractorCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void init_withUndetectedFileType_sniffsExtractorsInFactoryOrder() throws IOException {
+    // The stream doesn't start with a TS sync byte, so only the TS extractor can read it.
+    BundledExtractorsAdapter adapter = initAdapter("media/ts/sample_with_junk");
+
+    assertThat(adapter.getSniffedExtractorCount()).isGreaterThan(1);
+  }
+
+  @Test
+  public void init_withDetectedFileType_reportsSniffedByteCount() throws IOException {
+    BundledExtractorsAdapter adapter = initAdapter("media/mkv/sample.mkv");
+
+    assertThat(adapter.getSniffedByteCount()).isGreaterThan(0);
+    assertThat(adapter.getSniffedByteCount()).isAtMost(FileTypeSniffer.SNIFF_BYTE_COUNT);
+  }
+
+  @Test
+  public void init_withSingleExtractor_reportsNoSniffing() throws IOException {
+    BundledExtractorsAdapter adapter =
+        initAdapter(new BundledExtractorsAdapter(Mp4Extractor.FACTORY), "media/mp4/sample.mp4");
+
+    assertThat(adapter.getSniffedExtractorCount()).isEqualTo(0);
+    assertThat(adapter.getSniffedByteCount()).isEqualTo(0);
+    assertThat(adapter.getSniffDurationMs()).isEqualTo(0);
+  }
+
+  @Test
+  public void init_withExtractorAlreadySelected_resetsSniffStats() throws IOException {
+    BundledExtractorsAdapter adapter = initAdapter("media/mkv/sample.mkv");
+
+    initAdapter(adapter, "media/mkv/sample.mkv");
+
+    assertThat(adapter.getSniffedExtractorCount()).isEqualTo(0);
+    assertThat(adapter.getSniffedByteCount()).isEqualTo(0);
+  }
+
+  private static BundledExtractorsAdapter initAdapter(String file) throws IOException {
+    return initAdapter(new BundledExtractorsAdapter(new DefaultExtractorsFactory()), file);
+  }
+
+  private static BundledExtractorsAdapter initAdapter(BundledExtractorsAdapter adapter, String file)
+      throws IOException {
+    byte[] data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), file);
+    Uri uri = Uri.parse("test://media");
+    FakeDataSource dataSource = new FakeDataSource(new FakeDataSet().setData(uri, data));
+    dataSource.open(new DataSpec(uri));
+    try {
+      adapter.init(
+          dataSource,
+          uri,
+          /* responseHeaders= */ ImmutableMap.of(),
+          /* position= */ 0,
+          /* length= */ data.length,
+          new FakeExtractorOutput());
+    } finally {
+      dataSource.close();
+    }
+    return adapter;
+  }
+}
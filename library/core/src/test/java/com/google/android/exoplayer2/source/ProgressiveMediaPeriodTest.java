@@ -19,19 +19,37 @@ import static com.google.android.exoplayer2.robolectric.RobolectricUtil.runMainL
 import static com.google.common.truth.Truth.assertThat;
 
 import android.net.Uri;
+import androidx.annotation.Nullable;
 import androidx.test.core.app.ApplicationProvider;
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.SeekParameters;
 import com.google.android.exoplayer2.analytics.PlayerId;
 import com.google.android.exoplayer2.drm.DrmSessionEventListener;
 import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.extractor.DefaultExtractorsFactory;
+import com.google.android.exoplayer2.extractor.ExtractorsFactory;
+import com.google.android.exoplayer2.extractor.FileTypeSniffer;
+import com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor;
 import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
 import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
+import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.android.exoplayer2.upstream.AssetDataSource;
+import com.google.android.exoplayer2.upstream.DataSpec;
 import com.google.android.exoplayer2.upstream.DefaultAllocator;
 import com.google.android.exoplayer2.upstream.DefaultLoadErrorHandlingPolicy;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.IOException;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -53,6 +71,245 @@ public final class ProgressiveMediaPeriodTest {
         new MediaParserExtractorAdapter(PlayerId.UNSET));
   }
 
+  @Test
+  public void prepareWithSeekMapCache_restoresSeekMapWithoutLoadingCues() throws Exception {
+    byte[] data =
+        TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), "media/mkv/sample.mkv");
+    Uri uri = Uri.parse("test://sample.mkv");
+    FakeDataSet fakeDataSet = new FakeDataSet().setData(uri, data);
+    File testDir =
+        Util.createTempDirectory(ApplicationProvider.getApplicationContext(), "ExoPlayerTest");
+    SimpleCache cache =
+        new SimpleCache(testDir, new NoOpCacheEvictor(), TestUtil.getInMemoryDatabaseProvider());
+    SeekMapCache seekMapCache = new SeekMapCache(cache);
+    try {
+      FakeDataSource firstDataSource = new FakeDataSource(fakeDataSet);
+      ProgressiveMediaPeriod firstMediaPeriod =
+          prepareMediaPeriod(
+              uri,
+              firstDataSource,
+              MatroskaExtractor.FACTORY,
+              seekMapCache,
+              (durationUs, isSeekable, isLive) -> {});
+      long firstAdjustedSeekPositionUs =
+          firstMediaPeriod.getAdjustedSeekPositionUs(
+              /* positionUs= */ 1_050_000, SeekParameters.PREVIOUS_SYNC);
+      firstMediaPeriod.release();
+      FakeDataSource secondDataSource = new FakeDataSource(fakeDataSet);
+      AtomicLong restoredDurationUs = new AtomicLong(C.TIME_UNSET);
+      AtomicBoolean restoredIsSeekable = new AtomicBoolean();
+      ProgressiveMediaPeriod secondMediaPeriod =
+          prepareMediaPeriod(
+              uri,
+              secondDataSource,
+              MatroskaExtractor.FACTORY,
+              seekMapCache,
+              (durationUs, isSeekable, isLive) -> {
+                restoredDurationUs.set(durationUs);
+                restoredIsSeekable.set(isSeekable);
+              });
+      long secondAdjustedSeekPositionUs =
+          secondMediaPeriod.getAdjustedSeekPositionUs(
+              /* positionUs= */ 1_050_000, SeekParameters.PREVIOUS_SYNC);
+      secondMediaPeriod.release();
+
+      // The first preparation seeks to the Cues and back, the second one reads sequentially.
+      assertThat(firstDataSource.getAndClearOpenedDataSpecs()).hasLength(3);
+      assertThat(secondDataSource.getAndClearOpenedDataSpecs()).hasLength(1);
+      assertThat(restoredDurationUs.get()).isEqualTo(1_104_000);
+      assertThat(restoredIsSeekable.get()).isTrue();
+      // Both seek maps snap to the cue point at 1.035s.
+      assertThat(firstAdjustedSeekPositionUs).isEqualTo(1_035_000);
+      assertThat(secondAdjustedSeekPositionUs).isEqualTo(1_035_000);
+    } finally {
+      cache.release();
+      Util.recursiveDelete(testDir);
+    }
+  }
+
+  @Test
+  public void loadWithPrefetchDataSource_opensSkippedDataWhileReadingMoovAtEnd() throws Exception {
+    // The moov box of this file follows the mdat box, whose payload starts at position 48.
+    Uri uri = Uri.parse("test://sample.mp4");
+    FakeDataSet fakeDataSet =
+        createFakeDataSet(uri, "media/mp4/sample_with_colr_mdcv_and_clli.mp4");
+    FakeDataSource dataSource = new FakeDataSource(fakeDataSet);
+    FakeDataSource prefetchDataSource = new FakeDataSource(fakeDataSet);
+
+    loadWithPrefetchDataSource(uri, dataSource, prefetchDataSource, Mp4Extractor.FACTORY);
+
+    DataSpec[] openedDataSpecs = dataSource.getAndClearOpenedDataSpecs();
+    DataSpec[] prefetchedDataSpecs = prefetchDataSource.getAndClearOpenedDataSpecs();
+    assertThat(openedDataSpecs).hasLength(2);
+    assertThat(openedDataSpecs[0].position).isEqualTo(0);
+    assertThat(openedDataSpecs[1].position).isEqualTo(282_777);
+    assertThat(prefetchedDataSpecs).hasLength(1);
+    assertThat(prefetchedDataSpecs[0].position).isEqualTo(48);
+  }
+
+  @Test
+  public void loadWithPrefetchDataSource_doesNotPrefetchWhenSeekingToReadTsDuration()
+      throws Exception {
+    Uri uri = Uri.parse("test://sample.ts");
+    FakeDataSet fakeDataSet = createFakeDataSet(uri, "media/ts/bbb_2500ms.ts");
+    FakeDataSource dataSource = new FakeDataSource(fakeDataSet);
+    FakeDataSource prefetchDataSource = new FakeDataSource(fakeDataSet);
+
+    loadWithPrefetchDataSource(uri, dataSource, prefetchDataSource, TsExtractor.FACTORY);
+
+    // The extractor seeks to the end of the stream to read the duration and then back to the start,
+    // so the position it skipped from isn't read again.
+    assertThat(dataSource.getAndClearOpenedDataSpecs().length).isGreaterThan(1);
+    assertThat(prefetchDataSource.getAndClearOpenedDataSpecs()).isEmpty();
+  }
+
+  @Test
+  public void load_withUnknownFileType_reportsSniffStatsOnLoadCompleted() throws Exception {
+    Uri uri = Uri.parse("test://media");
+    FakeDataSource dataSource = new FakeDataSource(createFakeDataSet(uri, "media/mkv/sample.mkv"));
+    MediaPeriodId mediaPeriodId = new MediaPeriodId(/* periodUid= */ new Object());
+    MediaSourceEventListener.EventDispatcher mediaSourceEventDispatcher =
+        new MediaSourceEventListener.EventDispatcher()
+            .withParameters(/* windowIndex= */ 0, mediaPeriodId);
+    AtomicReference<LoadEventInfo> completedLoadEventInfo = new AtomicReference<>();
+    mediaSourceEventDispatcher.addEventListener(
+        Util.createHandlerForCurrentOrMainLooper(),
+        new MediaSourceEventListener() {
+          @Override
+          public void onLoadCompleted(
+              int windowIndex,
+              @Nullable MediaPeriodId mediaPeriodId,
+              LoadEventInfo loadEventInfo,
+              MediaLoadData mediaLoadData) {
+            completedLoadEventInfo.set(loadEventInfo);
+          }
+        });
+    ProgressiveMediaPeriod mediaPeriod =
+        new ProgressiveMediaPeriod(
+            uri,
+            dataSource,
+            new BundledExtractorsAdapter(new DefaultExtractorsFactory()),
+            DrmSessionManager.DRM_UNSUPPORTED,
+            new DrmSessionEventListener.EventDispatcher()
+                .withParameters(/* windowIndex= */ 0, mediaPeriodId),
+            new DefaultLoadErrorHandlingPolicy(),
+            mediaSourceEventDispatcher,
+            (durationUs, isSeekable, isLive) -> {},
+            new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+            /* customCacheKey= */ null,
+            ProgressiveMediaSource.DEFAULT_LOADING_CHECK_INTERVAL_BYTES,
+            /* seekMapCache= */ null,
+            /* prefetchDataSource= */ null);
+
+    mediaPeriod.prepare(
+        new MediaPeriod.Callback() {
+          @Override
+          public void onPrepared(MediaPeriod mediaPeriod) {}
+
+          @Override
+          public void onContinueLoadingRequested(MediaPeriod source) {
+            source.continueLoading(/* positionUs= */ 0);
+          }
+        },
+        /* positionUs= */ 0);
+    runMainLooperUntil(() -> completedLoadEventInfo.get() != null);
+    mediaPeriod.release();
+
+    LoadEventInfo loadEventInfo = completedLoadEventInfo.get();
+    assertThat(loadEventInfo.sniffedExtractorCount).isEqualTo(1);
+    assertThat(loadEventInfo.sniffedByteCount).isGreaterThan(0);
+    assertThat(loadEventInfo.sniffedByteCount).isAtMost(FileTypeSniffer.SNIFF_BYTE_COUNT);
+    assertThat(loadEventInfo.sniffDurationMs).isAtLeast(0);
+  }
+
+  private static FakeDataSet createFakeDataSet(Uri uri, String assetPath) throws IOException {
+    byte[] data = TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), assetPath);
+    return new FakeDataSet().setData(uri, data);
+  }
+
+  private static void loadWithPrefetchDataSource(
+      Uri uri,
+      FakeDataSource dataSource,
+      FakeDataSource prefetchDataSource,
+      ExtractorsFactory extractorsFactory)
+      throws TimeoutException {
+    MediaPeriodId mediaPeriodId = new MediaPeriodId(/* periodUid= */ new Object());
+    ProgressiveMediaPeriod mediaPeriod =
+        new ProgressiveMediaPeriod(
+            uri,
+            dataSource,
+            new BundledExtractorsAdapter(extractorsFactory),
+            DrmSessionManager.DRM_UNSUPPORTED,
+            new DrmSessionEventListener.EventDispatcher()
+                .withParameters(/* windowIndex= */ 0, mediaPeriodId),
+            new DefaultLoadErrorHandlingPolicy(),
+            new MediaSourceEventListener.EventDispatcher()
+                .withParameters(/* windowIndex= */ 0, mediaPeriodId),
+            (durationUs, isSeekable, isLive) -> {},
+            new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+            /* customCacheKey= */ null,
+            ProgressiveMediaSource.DEFAULT_LOADING_CHECK_INTERVAL_BYTES,
+            /* seekMapCache= */ null,
+            prefetchDataSource);
+    AtomicBoolean prepareCallbackCalled = new AtomicBoolean(false);
+    mediaPeriod.prepare(
+        new MediaPeriod.Callback() {
+          @Override
+          public void onPrepared(MediaPeriod mediaPeriod) {
+            prepareCallbackCalled.set(true);
+          }
+
+          @Override
+          public void onContinueLoadingRequested(MediaPeriod source) {
+            source.continueLoading(/* positionUs= */ 0);
+          }
+        },
+        /* positionUs= */ 0);
+    runMainLooperUntil(() -> prepareCallbackCalled.get() && !mediaPeriod.isLoading());
+    mediaPeriod.release();
+  }
+
+  private static ProgressiveMediaPeriod prepareMediaPeriod(
+      Uri uri,
+      FakeDataSource dataSource,
+      ExtractorsFactory extractorsFactory,
+      SeekMapCache seekMapCache,
+      ProgressiveMediaPeriod.Listener sourceInfoRefreshListener)
+      throws TimeoutException {
+    MediaPeriodId mediaPeriodId = new MediaPeriodId(/* periodUid= */ new Object());
+    ProgressiveMediaPeriod mediaPeriod =
+        new ProgressiveMediaPeriod(
+            uri,
+            dataSource,
+            new BundledExtractorsAdapter(extractorsFactory),
+            DrmSessionManager.DRM_UNSUPPORTED,
+            new DrmSessionEventListener.EventDispatcher()
+                .withParameters(/* windowIndex= */ 0, mediaPeriodId),
+            new DefaultLoadErrorHandlingPolicy(),
+            new MediaSourceEventListener.EventDispatcher()
+                .withParameters(/* windowIndex= */ 0, mediaPeriodId),
+            sourceInfoRefreshListener,
+            new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
+            /* customCacheKey= */ null,
+            ProgressiveMediaSource.DEFAULT_LOADING_CHECK_INTERVAL_BYTES,
+            seekMapCache,
+            /* prefetchDataSource= */ null);
+    AtomicBoolean prepareCallbackCalled = new AtomicBoolean(false);
+    mediaPeriod.prepare(
+        new MediaPeriod.Callback() {
+          @Override
+          public void onPrepared(MediaPeriod mediaPeriod) {
+            prepareCallbackCalled.set(true);
+          }
+
+          @Override
+          public void onContinueLoadingRequested(MediaPeriod source) {}
+        },
+        /* positionUs= */ 0);
+    runMainLooperUntil(prepareCallbackCalled::get);
+    return mediaPeriod;
+  }
+
   private static void testExtractorsUpdatesSourceInfoBeforeOnPreparedCallback(
       ProgressiveMediaExtractor extractor) throws TimeoutException {
     AtomicBoolean sourceInfoRefreshCalled = new AtomicBoolean(false);
@@ -73,7 +330,9 @@ public final class ProgressiveMediaPeriodTest {
             sourceInfoRefreshListener,
             new DefaultAllocator(/* trimOnReset= */ true, C.DEFAULT_BUFFER_SEGMENT_SIZE),
             /* customCacheKey= */ null,
-            ProgressiveMediaSource.DEFAULT_LOADING_CHECK_INTERVAL_BYTES);
+            ProgressiveMediaSource.DEFAULT_LOADING_CHECK_INTERVAL_BYTES,
+            /* seekMapCache= */ null,
+            /* prefetchDataSource= */ null);
 
     AtomicBoolean prepareCallbackCalled = new AtomicBoolean(false);
     AtomicBoolean sourceInfoRefreshCalledBeforeOnPrepared = new AtomicBoolean(false);
@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.net.Uri;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.database.DatabaseProvider;
+import com.google.android.exoplayer2.extractor.ChunkIndex;
+import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataSpec;
+import com.google.android.exoplayer2.upstream.cache.CacheSpan;
+import com.google.android.exoplayer2.upstream.cache.NoOpCacheEvictor;
+import com.google.android.exoplayer2.upstream.cache.SimpleCache;
+import com.google.android.exoplayer2.util.Util;
+import java.io.File;
+import java.io.FileOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link SeekMapCache}. */
+@RunWith(AndroidJUnit4.class)
+public final class SeekMapCacheTest {
+
+  private static final DataSpec DATA_SPEC = new DataSpec(Uri.parse("https://test.test/media"));
+  private static final ChunkIndex CHUNK_INDEX =
+      new ChunkIndex(
+          /* sizes= */ new int[] {100, 200, 300},
+          /* offsets= */ new long[] {1000, 1100, 1300},
+          /* durationsUs= */ new long[] {1_000_000, 1_000_000, 500_000},
+          /* timesUs= */ new long[] {0, 1_000_000, 2_000_000});
+
+  private File testDir;
+  private DatabaseProvider databaseProvider;
+  private SimpleCache cache;
+  private SeekMapCache seekMapCache;
+
+  @Before
+  public void setUp() throws Exception {
+    testDir =
+        Util.createTempDirectory(ApplicationProvider.getApplicationContext(), "SeekMapCacheTest");
+    databaseProvider = TestUtil.getInMemoryDatabaseProvider();
+    cache = new SimpleCache(testDir, new NoOpCacheEvictor(), databaseProvider);
+    seekMapCache = new SeekMapCache(cache);
+  }
+
+  @After
+  public void tearDown() {
+    cache.release();
+    Util.recursiveDelete(testDir);
+  }
+
+  @Test
+  public void putAndGet_withChunkIndex_restoresSeekMap() {
+    assertThat(seekMapCache.put(DATA_SPEC, /* length= */ 1600, CHUNK_INDEX)).isTrue();
+
+    ChunkIndex restoredChunkIndex = (ChunkIndex) seekMapCache.get(DATA_SPEC, /* length= */ 1600);
+
+    assertThat(restoredChunkIndex.sizes).isEqualTo(CHUNK_INDEX.sizes);
+    assertThat(restoredChunkIndex.offsets).isEqualTo(CHUNK_INDEX.offsets);
+    assertThat(restoredChunkIndex.durationsUs).isEqualTo(CHUNK_INDEX.durationsUs);
+    assertThat(restoredChunkIndex.timesUs).isEqualTo(CHUNK_INDEX.timesUs);
+    assertThat(restoredChunkIndex.getDurationUs()).isEqualTo(CHUNK_INDEX.getDurationUs());
+  }
+
+  @Test
+  public void get_withDifferentLength_returnsNull() {
+    seekMapCache.put(DATA_SPEC, /* length= */ 1600, CHUNK_INDEX);
+
+    assertThat(seekMapCache.get(DATA_SPEC, /* length= */ 1601)).isNull();
+    assertThat(seekMapCache.get(DATA_SPEC, C.LENGTH_UNSET)).isNull();
+  }
+
+  @Test
+  public void get_withDifferentKey_returnsNull() {
+    seekMapCache.put(DATA_SPEC, /* length= */ 1600, CHUNK_INDEX);
+
+    assertThat(seekMapCache.get(DATA_SPEC.buildUpon().setKey("other").build(), /* length= */ 1600))
+        .isNull();
+  }
+
+  @Test
+  public void get_withCachedDataAfterReloadingCache_restoresSeekMap() throws Exception {
+    String key = DATA_SPEC.uri.toString();
+    CacheSpan holeSpan = cache.startReadWrite(key, /* position= */ 0, C.LENGTH_UNSET);
+    File file = cache.startFile(key, /* position= */ 0, /* length= */ 10);
+    try (FileOutputStream outputStream = new FileOutputStream(file)) {
+      outputStream.write(new byte[10]);
+    }
+    cache.commitFile(file, /* length= */ 10);
+    cache.releaseHoleSpan(holeSpan);
+    seekMapCache.put(DATA_SPEC, /* length= */ 1600, CHUNK_INDEX);
+    cache.release();
+    cache = new SimpleCache(testDir, new NoOpCacheEvictor(), databaseProvider);
+
+    SeekMap restoredSeekMap = new SeekMapCache(cache).get(DATA_SPEC, /* length= */ 1600);
+
+    assertThat(restoredSeekMap).isInstanceOf(ChunkIndex.class);
+  }
+
+  @Test
+  public void put_withUnsupportedSeekMap_returnsFalse() {
+    assertThat(
+            seekMapCache.put(
+                DATA_SPEC, /* length= */ 1600, new SeekMap.Unseekable(/* durationUs= */ 1000)))
+        .isFalse();
+    assertThat(seekMapCache.get(DATA_SPEC, /* length= */ 1600)).isNull();
+  }
+}
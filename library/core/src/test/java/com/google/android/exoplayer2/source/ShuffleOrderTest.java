@@ -17,11 +17,14 @@ package com.google.android.exoplayer2.source;
 
 import static com.google.android.exoplayer2.C.INDEX_UNSET;
 import static com.google.common.truth.Truth.assertThat;
+import static java.lang.Math.min;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.source.ShuffleOrder.DefaultShuffleOrder;
 import com.google.android.exoplayer2.source.ShuffleOrder.UnshuffledShuffleOrder;
+import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import java.util.Random;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -71,6 +74,86 @@ public final class ShuffleOrderTest {
     assertThat(shuffleOrder.getPreviousIndex(2)).isEqualTo(C.INDEX_UNSET);
   }
 
+  @Test
+  public void persistentShuffleOrder() {
+    assertShuffleOrderCorrectness(new PersistentShuffleOrder(0, RANDOM_SEED), 0);
+    assertShuffleOrderCorrectness(new PersistentShuffleOrder(1, RANDOM_SEED), 1);
+    assertShuffleOrderCorrectness(new PersistentShuffleOrder(5, RANDOM_SEED), 5);
+    for (int initialLength = 0; initialLength < 4; initialLength++) {
+      for (int insertionPoint = 0; insertionPoint <= initialLength; insertionPoint += 2) {
+        testCloneAndInsert(
+            new PersistentShuffleOrder(initialLength, RANDOM_SEED), insertionPoint, 0);
+        testCloneAndInsert(
+            new PersistentShuffleOrder(initialLength, RANDOM_SEED), insertionPoint, 1);
+        testCloneAndInsert(
+            new PersistentShuffleOrder(initialLength, RANDOM_SEED), insertionPoint, 5);
+      }
+    }
+    testCloneAndRemove(new PersistentShuffleOrder(5, RANDOM_SEED), 0, 1);
+    testCloneAndRemove(new PersistentShuffleOrder(5, RANDOM_SEED), 2, 3);
+    testCloneAndRemove(new PersistentShuffleOrder(5, RANDOM_SEED), 4, 5);
+    testCloneAndRemove(new PersistentShuffleOrder(1, RANDOM_SEED), 0, 1);
+    testCloneAndRemove(new PersistentShuffleOrder(1000, RANDOM_SEED), 0, 1000);
+    testCloneAndRemove(new PersistentShuffleOrder(1000, RANDOM_SEED), 0, 999);
+    testCloneAndRemove(new PersistentShuffleOrder(1000, RANDOM_SEED), 0, 500);
+    testCloneAndRemove(new PersistentShuffleOrder(1000, RANDOM_SEED), 100, 600);
+    testCloneAndRemove(new PersistentShuffleOrder(1000, RANDOM_SEED), 500, 1000);
+  }
+
+  @Test
+  public void persistentShuffleOrderSideloaded() {
+    int[] shuffledIndices = new int[] {2, 1, 0, 4, 3};
+    ShuffleOrder shuffleOrder = new PersistentShuffleOrder(shuffledIndices, RANDOM_SEED);
+    assertThat(shuffleOrder.getFirstIndex()).isEqualTo(2);
+    assertThat(shuffleOrder.getLastIndex()).isEqualTo(3);
+    for (int i = 0; i < 4; i++) {
+      assertThat(shuffleOrder.getNextIndex(shuffledIndices[i])).isEqualTo(shuffledIndices[i + 1]);
+    }
+    assertThat(shuffleOrder.getNextIndex(3)).isEqualTo(C.INDEX_UNSET);
+    for (int i = 4; i > 0; i--) {
+      assertThat(shuffleOrder.getPreviousIndex(shuffledIndices[i]))
+          .isEqualTo(shuffledIndices[i - 1]);
+    }
+    assertThat(shuffleOrder.getPreviousIndex(2)).isEqualTo(C.INDEX_UNSET);
+  }
+
+  @Test
+  public void persistentShuffleOrder_repeatedInsertionsAtSamePosition_keepsRelativeOrder() {
+    ShuffleOrder startOrder = new PersistentShuffleOrder(/* length= */ 10, RANDOM_SEED);
+    ShuffleOrder middleOrder = startOrder;
+    ShuffleOrder endOrder = startOrder;
+    // Inserting many times at the same position exhausts the room between adjacent elements and
+    // requires relabeling the elements around the insertion point.
+    for (int i = 0; i < 100; i++) {
+      startOrder = testCloneAndInsert(startOrder, /* position= */ 0, /* count= */ 1);
+      middleOrder = testCloneAndInsert(middleOrder, /* position= */ 5, /* count= */ 2);
+      endOrder = testCloneAndInsert(endOrder, /* position= */ endOrder.getLength(), /* count= */ 1);
+    }
+  }
+
+  @Test
+  public void persistentShuffleOrder_randomEdits_keepsRelativeOrder() {
+    Random random = new Random(RANDOM_SEED);
+    ShuffleOrder shuffleOrder = new PersistentShuffleOrder(/* length= */ 50, RANDOM_SEED);
+    for (int i = 0; i < 300; i++) {
+      int length = shuffleOrder.getLength();
+      if (random.nextBoolean() || length == 0) {
+        shuffleOrder =
+            testCloneAndInsert(
+                shuffleOrder,
+                /* position= */ random.nextInt(length + 1),
+                /* count= */ random.nextInt(5));
+      } else {
+        int indexFrom = random.nextInt(length);
+        shuffleOrder =
+            testCloneAndRemove(
+                shuffleOrder,
+                indexFrom,
+                indexFrom + random.nextInt(min(5, length - indexFrom) + 1));
+      }
+    }
+  }
+
   @Test
   public void unshuffledShuffleOrder() {
     assertShuffleOrderCorrectness(new UnshuffledShuffleOrder(0), 0);
@@ -129,7 +212,9 @@ public final class ShuffleOrderTest {
     }
   }
 
-  private static void testCloneAndInsert(ShuffleOrder shuffleOrder, int position, int count) {
+  @CanIgnoreReturnValue
+  private static ShuffleOrder testCloneAndInsert(
+      ShuffleOrder shuffleOrder, int position, int count) {
     ShuffleOrder newOrder = shuffleOrder.cloneAndInsert(position, count);
     assertShuffleOrderCorrectness(newOrder, shuffleOrder.getLength() + count);
     // Assert all elements still have the relative same order
@@ -144,9 +229,11 @@ public final class ShuffleOrderTest {
       }
       assertThat(newNextIndex).isEqualTo(expectedNextIndex);
     }
+    return newOrder;
   }
 
-  private static void testCloneAndRemove(
+  @CanIgnoreReturnValue
+  private static ShuffleOrder testCloneAndRemove(
       ShuffleOrder shuffleOrder, int indexFrom, int indexToExclusive) {
     int numberOfElementsToRemove = indexToExclusive - indexFrom;
     ShuffleOrder newOrder = shuffleOrder.cloneAndRemove(indexFrom, indexToExclusive);
@@ -166,5 +253,6 @@ public final class ShuffleOrderTest {
       int newNextIndex = newOrder.getNextIndex(i < indexFrom ? i : i - numberOfElementsToRemove);
       assertThat(newNextIndex).isEqualTo(expectedNextIndex);
     }
+    return newOrder;
   }
 }
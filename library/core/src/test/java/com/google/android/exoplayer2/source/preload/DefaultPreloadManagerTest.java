@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.preload;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Handler;
+import android.os.Looper;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.MediaItem;
+import com.google.android.exoplayer2.RendererCapabilities;
+import com.google.android.exoplayer2.drm.DrmSessionEventListener;
+import com.google.android.exoplayer2.drm.DrmSessionManager;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.MediaSourceEventListener;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.testutil.ExoPlayerTestRunner;
+import com.google.android.exoplayer2.testutil.FakeMediaPeriod;
+import com.google.android.exoplayer2.testutil.FakeMediaSource;
+import com.google.android.exoplayer2.testutil.FakeMediaSourceFactory;
+import com.google.android.exoplayer2.testutil.FakeRenderer;
+import com.google.android.exoplayer2.testutil.FakeTimeline;
+import com.google.android.exoplayer2.testutil.FakeTimeline.TimelineWindowDefinition;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.upstream.Allocator;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import com.google.android.exoplayer2.upstream.TransferListener;
+import java.util.ArrayList;
+import java.util.List;
+import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link DefaultPreloadManager}. */
+@RunWith(AndroidJUnit4.class)
+public final class DefaultPreloadManagerTest {
+
+  private static final int ALLOCATION_LENGTH = 1024;
+
+  private DefaultAllocator allocator;
+  private List<String> loadedMediaIds;
+  private @MonotonicNonNull DefaultPreloadManager preloadManager;
+
+  @Before
+  public void setUp() {
+    allocator = new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_LENGTH);
+    loadedMediaIds = new ArrayList<>();
+  }
+
+  @After
+  public void tearDown() {
+    if (preloadManager != null) {
+      preloadManager.release();
+    }
+  }
+
+  @Test
+  public void invalidate_preloadsItemsInPreloadWindowByDistance() {
+    preloadManager =
+        createPreloadManagerBuilder().setMaxPreloadDistance(/* maxPreloadDistance= */ 2).build();
+    for (int i = 0; i < 5; i++) {
+      preloadManager.add(new LoadingFakeMediaSource("item" + i), /* index= */ i);
+    }
+
+    preloadManager.setCurrentPlayingIndex(2);
+    preloadManager.invalidate();
+    shadowOf(Looper.getMainLooper()).idle();
+
+    // Upcoming items are preferred over previous items at the same distance.
+    assertThat(loadedMediaIds).containsExactly("item3", "item1", "item4", "item0").inOrder();
+  }
+
+  @Test
+  public void invalidate_afterCurrentIndexChanged_releasesItemsOutsidePreloadWindow() {
+    preloadManager =
+        createPreloadManagerBuilder().setMaxPreloadDistance(/* maxPreloadDistance= */ 1).build();
+    LoadingFakeMediaSource mediaSource0 = new LoadingFakeMediaSource("item0");
+    LoadingFakeMediaSource mediaSource1 = new LoadingFakeMediaSource("item1");
+    LoadingFakeMediaSource mediaSource2 = new LoadingFakeMediaSource("item2");
+    preloadManager.add(mediaSource0, /* index= */ 0);
+    preloadManager.add(mediaSource1, /* index= */ 1);
+    preloadManager.add(mediaSource2, /* index= */ 2);
+    preloadManager.setCurrentPlayingIndex(1);
+    preloadManager.invalidate();
+    shadowOf(Looper.getMainLooper()).idle();
+
+    preloadManager.setCurrentPlayingIndex(2);
+    preloadManager.invalidate();
+    shadowOf(Looper.getMainLooper()).idle();
+
+    assertThat(mediaSource0.isPrepared()).isFalse();
+    mediaSource0.assertReleased();
+    assertThat(mediaSource2.isPrepared()).isTrue();
+  }
+
+  @Test
+  public void targetPreloadBytesReached_pausesPreloadingUntilPreloadedMediaIsReleased() {
+    preloadManager = createPreloadManagerBuilder().setTargetPreloadBytes(ALLOCATION_LENGTH).build();
+    LoadingFakeMediaSource mediaSource1 = new LoadingFakeMediaSource("item1");
+    LoadingFakeMediaSource mediaSource2 = new LoadingFakeMediaSource("item2");
+    preloadManager.add(new LoadingFakeMediaSource("item0"), /* index= */ 0);
+    preloadManager.add(mediaSource1, /* index= */ 1);
+    preloadManager.add(mediaSource2, /* index= */ 2);
+    preloadManager.setCurrentPlayingIndex(0);
+    preloadManager.invalidate();
+    shadowOf(Looper.getMainLooper()).idle();
+    List<String> loadedMediaIdsBeforeRelease = new ArrayList<>(loadedMediaIds);
+
+    preloadManager.remove(mediaSource1.getMediaItem());
+    shadowOf(Looper.getMainLooper()).idle();
+
+    assertThat(loadedMediaIdsBeforeRelease).containsExactly("item1");
+    assertThat(mediaSource2.isPrepared()).isTrue();
+    assertThat(loadedMediaIds).containsExactly("item1", "item2").inOrder();
+  }
+
+  @Test
+  public void targetPreloadBytes_doesNotCountMediaAllocatedByPlayer() {
+    preloadManager = createPreloadManagerBuilder().setTargetPreloadBytes(ALLOCATION_LENGTH).build();
+    // Media buffered by the player in the same allocator.
+    for (int i = 0; i < 10; i++) {
+      allocator.allocate();
+    }
+    preloadManager.add(new LoadingFakeMediaSource("item0"), /* index= */ 0);
+    preloadManager.add(new LoadingFakeMediaSource("item1"), /* index= */ 1);
+
+    preloadManager.setCurrentPlayingIndex(0);
+    preloadManager.invalidate();
+    shadowOf(Looper.getMainLooper()).idle();
+
+    assertThat(loadedMediaIds).containsExactly("item1");
+  }
+
+  private DefaultPreloadManager.Builder createPreloadManagerBuilder() {
+    return new DefaultPreloadManager.Builder(
+            new FakeMediaSourceFactory(),
+            new DefaultTrackSelector(ApplicationProvider.getApplicationContext()),
+            DefaultBandwidthMeter.getSingletonInstance(ApplicationProvider.getApplicationContext()),
+            new RendererCapabilities[] {new FakeRenderer(C.TRACK_TYPE_VIDEO).getCapabilities()},
+            Looper.getMainLooper())
+        .setAllocator(allocator);
+  }
+
+  /** A {@link FakeMediaSource} whose periods request to continue loading after each load. */
+  private final class LoadingFakeMediaSource extends FakeMediaSource {
+
+    private final MediaItem mediaItem;
+
+    public LoadingFakeMediaSource(String mediaId) {
+      super(new FakeTimeline(), ExoPlayerTestRunner.VIDEO_FORMAT);
+      mediaItem = new MediaItem.Builder().setMediaId(mediaId).build();
+    }
+
+    @Override
+    public MediaItem getMediaItem() {
+      return mediaItem;
+    }
+
+    @Override
+    protected MediaPeriod createMediaPeriod(
+        MediaPeriodId id,
+        TrackGroupArray trackGroupArray,
+        Allocator allocator,
+        MediaSourceEventListener.EventDispatcher mediaSourceEventDispatcher,
+        DrmSessionManager drmSessionManager,
+        DrmSessionEventListener.EventDispatcher drmEventDispatcher,
+        @Nullable TransferListener transferListener) {
+      return new FakeMediaPeriod(
+          trackGroupArray,
+          allocator,
+          FakeMediaPeriod.TrackDataFactory.singleSampleWithTimeUs(
+              TimelineWindowDefinition.DEFAULT_WINDOW_OFFSET_IN_FIRST_PERIOD_US),
+          mediaSourceEventDispatcher,
+          drmSessionManager,
+          drmEventDispatcher,
+          /* deferOnPrepared= */ false) {
+
+        private final Handler handler = new Handler(Looper.myLooper());
+        @Nullable private Callback callback;
+
+        @Override
+        public synchronized void prepare(Callback callback, long positionUs) {
+          this.callback = callback;
+          super.prepare(callback, positionUs);
+        }
+
+        @Override
+        public boolean continueLoading(long positionUs) {
+          boolean continuedLoading = super.continueLoading(positionUs);
+          loadedMediaIds.add(mediaItem.mediaId);
+          MediaPeriod mediaPeriod = this;
+          handler.post(
+              () -> {
+                if (callback != null) {
+                  callback.onContinueLoadingRequested(mediaPeriod);
+                }
+              });
+          return continuedLoading;
+        }
+      };
+    }
+  }
+}
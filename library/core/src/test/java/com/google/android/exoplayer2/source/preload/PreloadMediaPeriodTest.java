@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.preload;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.source.MediaSourceEventListener.EventDispatcher;
+import com.google.android.exoplayer2.source.SampleStream;
+import com.google.android.exoplayer2.source.TrackGroup;
+import com.google.android.exoplayer2.source.TrackGroupArray;
+import com.google.android.exoplayer2.testutil.FakeMediaPeriod;
+import com.google.android.exoplayer2.trackselection.ExoTrackSelection;
+import com.google.android.exoplayer2.trackselection.FixedTrackSelection;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.util.MimeTypes;
+import java.util.ArrayList;
+import java.util.List;
+import org.checkerframework.checker.nullness.compatqual.NullableType;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link PreloadMediaPeriod}. */
+@RunWith(AndroidJUnit4.class)
+public final class PreloadMediaPeriodTest {
+
+  private static final Format VIDEO_FORMAT =
+      new Format.Builder().setId("video").setSampleMimeType(MimeTypes.VIDEO_H264).build();
+  private static final Format AUDIO_FORMAT =
+      new Format.Builder().setId("audio").setSampleMimeType(MimeTypes.AUDIO_AAC).build();
+
+  private TrackGroupArray trackGroups;
+  private RecordingFakeMediaPeriod wrappedMediaPeriod;
+  private PreloadMediaPeriod preloadMediaPeriod;
+
+  @Before
+  public void setUp() {
+    trackGroups = new TrackGroupArray(new TrackGroup(VIDEO_FORMAT), new TrackGroup(AUDIO_FORMAT));
+    wrappedMediaPeriod = new RecordingFakeMediaPeriod(trackGroups);
+    preloadMediaPeriod = new PreloadMediaPeriod(wrappedMediaPeriod);
+  }
+
+  @Test
+  public void prepare_afterPreloadPrepared_notifiesPlayerCallbackWithoutPreparingAgain() {
+    RecordingCallback preloadCallback = new RecordingCallback();
+    RecordingCallback playerCallback = new RecordingCallback();
+
+    preloadMediaPeriod.preload(preloadCallback, /* positionUs= */ 0);
+    preloadMediaPeriod.prepare(playerCallback, /* positionUs= */ 0);
+
+    assertThat(preloadCallback.preparedPeriods).containsExactly(preloadMediaPeriod);
+    assertThat(playerCallback.preparedPeriods).containsExactly(preloadMediaPeriod);
+  }
+
+  @Test
+  public void selectTracks_withSelectionUsedForPreloading_returnsPreloadedStreams() {
+    preloadMediaPeriod.preload(new RecordingCallback(), /* positionUs= */ 0);
+    preloadMediaPeriod.selectTracksForPreloading(
+        createSelections(/* videoTrack= */ true, /* audioTrack= */ true), /* positionUs= */ 0);
+    List<SampleStream> preloadedStreams = new ArrayList<>(wrappedMediaPeriod.createdStreams);
+    preloadMediaPeriod.prepare(new RecordingCallback(), /* positionUs= */ 0);
+
+    SampleStream[] streams = new SampleStream[2];
+    boolean[] streamResetFlags = new boolean[2];
+    preloadMediaPeriod.selectTracks(
+        createSelections(/* videoTrack= */ true, /* audioTrack= */ true),
+        /* mayRetainStreamFlags= */ new boolean[2],
+        streams,
+        streamResetFlags,
+        /* positionUs= */ 0);
+
+    assertThat(streams).asList().containsExactlyElementsIn(preloadedStreams).inOrder();
+    assertThat(streamResetFlags).asList().containsExactly(true, true);
+    assertThat(wrappedMediaPeriod.createdStreams).hasSize(2);
+    assertThat(wrappedMediaPeriod.releasedStreams).isEmpty();
+  }
+
+  @Test
+  public void selectTracks_withDifferentSelection_releasesPreloadedStreams() {
+    preloadMediaPeriod.preload(new RecordingCallback(), /* positionUs= */ 0);
+    preloadMediaPeriod.selectTracksForPreloading(
+        createSelections(/* videoTrack= */ true, /* audioTrack= */ true), /* positionUs= */ 0);
+    List<SampleStream> preloadedStreams = new ArrayList<>(wrappedMediaPeriod.createdStreams);
+    preloadMediaPeriod.prepare(new RecordingCallback(), /* positionUs= */ 0);
+
+    SampleStream[] streams = new SampleStream[2];
+    preloadMediaPeriod.selectTracks(
+        createSelections(/* videoTrack= */ true, /* audioTrack= */ false),
+        /* mayRetainStreamFlags= */ new boolean[2],
+        streams,
+        /* streamResetFlags= */ new boolean[2],
+        /* positionUs= */ 0);
+
+    assertThat(streams[0]).isNotNull();
+    assertThat(streams[1]).isNull();
+    assertThat(preloadedStreams).doesNotContain(streams[0]);
+    assertThat(wrappedMediaPeriod.releasedStreams).containsExactlyElementsIn(preloadedStreams);
+  }
+
+  @Test
+  public void selectTracks_atDifferentPosition_doesNotReusePreloadedStreams() {
+    preloadMediaPeriod.preload(new RecordingCallback(), /* positionUs= */ 0);
+    preloadMediaPeriod.selectTracksForPreloading(
+        createSelections(/* videoTrack= */ true, /* audioTrack= */ true), /* positionUs= */ 0);
+    List<SampleStream> preloadedStreams = new ArrayList<>(wrappedMediaPeriod.createdStreams);
+    preloadMediaPeriod.prepare(new RecordingCallback(), /* positionUs= */ 0);
+
+    SampleStream[] streams = new SampleStream[2];
+    preloadMediaPeriod.selectTracks(
+        createSelections(/* videoTrack= */ true, /* audioTrack= */ true),
+        /* mayRetainStreamFlags= */ new boolean[2],
+        streams,
+        /* streamResetFlags= */ new boolean[2],
+        /* positionUs= */ 1000);
+
+    assertThat(streams).asList().containsNoneIn(preloadedStreams);
+    assertThat(wrappedMediaPeriod.releasedStreams).containsExactlyElementsIn(preloadedStreams);
+  }
+
+  private ExoTrackSelection[] createSelections(boolean videoTrack, boolean audioTrack) {
+    return new ExoTrackSelection[] {
+      videoTrack ? new FixedTrackSelection(trackGroups.get(0), /* track= */ 0) : null,
+      audioTrack ? new FixedTrackSelection(trackGroups.get(1), /* track= */ 0) : null
+    };
+  }
+
+  private static final class RecordingFakeMediaPeriod extends FakeMediaPeriod {
+
+    public final List<SampleStream> createdStreams;
+    public final List<SampleStream> releasedStreams;
+
+    public RecordingFakeMediaPeriod(TrackGroupArray trackGroups) {
+      super(
+          trackGroups,
+          new DefaultAllocator(/* trimOnReset= */ false, /* individualAllocationSize= */ 1024),
+          /* singleSampleTimeUs= */ 0,
+          new EventDispatcher()
+              .withParameters(/* windowIndex= */ 0, new MediaPeriodId(/* periodUid= */ 0)));
+      createdStreams = new ArrayList<>();
+      releasedStreams = new ArrayList<>();
+    }
+
+    @Override
+    public long selectTracks(
+        @NullableType ExoTrackSelection[] selections,
+        boolean[] mayRetainStreamFlags,
+        @NullableType SampleStream[] streams,
+        boolean[] streamResetFlags,
+        long positionUs) {
+      for (int i = 0; i < streams.length; i++) {
+        if (streams[i] != null && (selections[i] == null || !mayRetainStreamFlags[i])) {
+          releasedStreams.add(streams[i]);
+        }
+      }
+      long trackSelectionPositionUs =
+          super.selectTracks(
+              selections, mayRetainStreamFlags, streams, streamResetFlags, positionUs);
+      for (int i = 0; i < streams.length; i++) {
+        if (streamResetFlags[i] && streams[i] != null && !createdStreams.contains(streams[i])) {
+          createdStreams.add(streams[i]);
+        }
+      }
+      return trackSelectionPositionUs;
+    }
+  }
+
+  private static final class RecordingCallback implements MediaPeriod.Callback {
+
+    public final List<MediaPeriod> preparedPeriods;
+
+    public RecordingCallback() {
+      preparedPeriods = new ArrayList<>();
+    }
+
+    @Override
+    public void onPrepared(MediaPeriod mediaPeriod) {
+      preparedPeriods.add(mediaPeriod);
+    }
+
+    @Override
+    public void onContinueLoadingRequested(MediaPeriod source) {}
+  }
+}
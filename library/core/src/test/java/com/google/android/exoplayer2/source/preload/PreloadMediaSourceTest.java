@@ -0,0 +1,255 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.source.preload;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.os.Looper;
+import android.util.Pair;
+import androidx.annotation.Nullable;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.RendererCapabilities;
+import com.google.android.exoplayer2.Timeline;
+import com.google.android.exoplayer2.analytics.PlayerId;
+import com.google.android.exoplayer2.source.MediaPeriod;
+import com.google.android.exoplayer2.source.MediaSource.MediaPeriodId;
+import com.google.android.exoplayer2.testutil.ExoPlayerTestRunner;
+import com.google.android.exoplayer2.testutil.FakeMediaSource;
+import com.google.android.exoplayer2.testutil.FakeMediaSourceFactory;
+import com.google.android.exoplayer2.testutil.FakeRenderer;
+import com.google.android.exoplayer2.testutil.FakeTimeline;
+import com.google.android.exoplayer2.trackselection.DefaultTrackSelector;
+import com.google.android.exoplayer2.upstream.DefaultAllocator;
+import com.google.android.exoplayer2.upstream.DefaultBandwidthMeter;
+import java.io.IOException;
+import java.time.Duration;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link PreloadMediaSource}. */
+@RunWith(AndroidJUnit4.class)
+public final class PreloadMediaSourceTest {
+
+  private static final int ALLOCATION_LENGTH = 1024;
+
+  private Timeline timeline;
+  private FakeMediaSourceWithError wrappedMediaSource;
+  private RecordingPreloadControl preloadControl;
+  private PreloadMediaSource.Factory preloadMediaSourceFactory;
+
+  @Before
+  public void setUp() {
+    timeline = new FakeTimeline();
+    wrappedMediaSource = new FakeMediaSourceWithError(timeline);
+    preloadControl = new RecordingPreloadControl();
+    preloadMediaSourceFactory =
+        new PreloadMediaSource.Factory(
+            new FakeMediaSourceFactory(),
+            preloadControl,
+            new DefaultTrackSelector(ApplicationProvider.getApplicationContext()),
+            DefaultBandwidthMeter.getSingletonInstance(ApplicationProvider.getApplicationContext()),
+            new RendererCapabilities[] {new FakeRenderer(C.TRACK_TYPE_VIDEO).getCapabilities()},
+            new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_LENGTH),
+            Looper.getMainLooper());
+  }
+
+  @Test
+  public void preload_preparesWrappedSourceAndLoadsPeriod() {
+    PreloadMediaSource preloadMediaSource =
+        preloadMediaSourceFactory.createMediaSource(wrappedMediaSource);
+
+    preloadMediaSource.preload(/* startPositionUs= */ C.TIME_UNSET);
+    shadowOf(Looper.getMainLooper()).idle();
+
+    assertThat(wrappedMediaSource.isPrepared()).isTrue();
+    assertThat(wrappedMediaSource.getCreatedMediaPeriods()).hasSize(1);
+    assertThat(preloadControl.timelineRefreshedCount).isEqualTo(1);
+    assertThat(preloadControl.preparedCount).isEqualTo(1);
+    assertThat(getPreloadedBytes()).isEqualTo(ALLOCATION_LENGTH);
+  }
+
+  @Test
+  public void createPeriod_byPlayerAtPreloadedPosition_handsOverPreloadedPeriod() {
+    PreloadMediaSource preloadMediaSource =
+        preloadMediaSourceFactory.createMediaSource(wrappedMediaSource);
+    preloadMediaSource.preload(/* startPositionUs= */ C.TIME_UNSET);
+    shadowOf(Looper.getMainLooper()).idle();
+
+    preloadMediaSource.prepareSource(
+        (source, timeline) -> {}, /* mediaTransferListener= */ null, PlayerId.UNSET);
+    shadowOf(Looper.getMainLooper()).idle();
+    Pair<Object, Long> periodPosition =
+        timeline.getPeriodPositionUs(
+            new Timeline.Window(),
+            new Timeline.Period(),
+            /* windowIndex= */ 0,
+            /* windowPositionUs= */ C.TIME_UNSET);
+    MediaPeriod mediaPeriod =
+        preloadMediaSource.createPeriod(
+            new MediaPeriodId(periodPosition.first, /* windowSequenceNumber= */ 0),
+            new DefaultAllocator(/* trimOnReset= */ true, ALLOCATION_LENGTH),
+            /* startPositionUs= */ periodPosition.second);
+
+    assertThat(mediaPeriod.getBufferedPositionUs()).isEqualTo(C.TIME_END_OF_SOURCE);
+    assertThat(wrappedMediaSource.getCreatedMediaPeriods()).hasSize(1);
+    // Media of the period the player took over no longer counts as preloaded.
+    assertThat(getPreloadedBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void continuePreloading_afterControlStoppedLoading_loadsPeriod() {
+    preloadControl.continueLoading = false;
+    PreloadMediaSource preloadMediaSource =
+        preloadMediaSourceFactory.createMediaSource(wrappedMediaSource);
+    preloadMediaSource.preload(/* startPositionUs= */ C.TIME_UNSET);
+    shadowOf(Looper.getMainLooper()).idle();
+    long preloadedBytesBeforeContinuing = getPreloadedBytes();
+
+    preloadControl.continueLoading = true;
+    preloadMediaSource.continuePreloading();
+    shadowOf(Looper.getMainLooper()).idle();
+
+    assertThat(preloadedBytesBeforeContinuing).isEqualTo(0);
+    assertThat(preloadControl.continueLoadingRequestedCount).isEqualTo(1);
+    assertThat(getPreloadedBytes()).isEqualTo(ALLOCATION_LENGTH);
+  }
+
+  @Test
+  public void releasePreloadMediaSource_releasesPeriodAndWrappedSource() {
+    PreloadMediaSource preloadMediaSource =
+        preloadMediaSourceFactory.createMediaSource(wrappedMediaSource);
+    preloadMediaSource.preload(/* startPositionUs= */ C.TIME_UNSET);
+    shadowOf(Looper.getMainLooper()).idle();
+
+    preloadMediaSource.releasePreloadMediaSource();
+    shadowOf(Looper.getMainLooper()).idle();
+
+    assertThat(wrappedMediaSource.isPrepared()).isFalse();
+    wrappedMediaSource.assertReleased();
+    assertThat(getPreloadedBytes()).isEqualTo(0);
+  }
+
+  @Test
+  public void releasePreloadMediaSource_followedByPreload_preloadsAgain() {
+    PreloadMediaSource preloadMediaSource =
+        preloadMediaSourceFactory.createMediaSource(wrappedMediaSource);
+    preloadMediaSource.preload(/* startPositionUs= */ C.TIME_UNSET);
+    shadowOf(Looper.getMainLooper()).idle();
+
+    preloadMediaSource.releasePreloadMediaSource();
+    preloadMediaSource.preload(/* startPositionUs= */ C.TIME_UNSET);
+    shadowOf(Looper.getMainLooper()).idle();
+
+    assertThat(wrappedMediaSource.isPrepared()).isTrue();
+    assertThat(wrappedMediaSource.getCreatedMediaPeriods()).hasSize(2);
+    assertThat(preloadControl.preparedCount).isEqualTo(2);
+    assertThat(getPreloadedBytes()).isEqualTo(ALLOCATION_LENGTH);
+  }
+
+  @Test
+  public void preload_afterPreloadCompleted_stopsCheckingForErrors() {
+    PreloadMediaSource preloadMediaSource =
+        preloadMediaSourceFactory.createMediaSource(wrappedMediaSource);
+    preloadMediaSource.preload(/* startPositionUs= */ C.TIME_UNSET);
+    shadowOf(Looper.getMainLooper()).idle();
+
+    wrappedMediaSource.sourceInfoRefreshError = new IOException();
+    shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(1));
+
+    assertThat(preloadControl.preloadErrorCount).isEqualTo(0);
+  }
+
+  @Test
+  public void continuePreloading_afterControlStoppedLoading_checksForErrorsAgain() {
+    preloadControl.continueLoading = false;
+    PreloadMediaSource preloadMediaSource =
+        preloadMediaSourceFactory.createMediaSource(wrappedMediaSource);
+    preloadMediaSource.preload(/* startPositionUs= */ C.TIME_UNSET);
+    shadowOf(Looper.getMainLooper()).idle();
+    wrappedMediaSource.sourceInfoRefreshError = new IOException();
+    shadowOf(Looper.getMainLooper()).idleFor(Duration.ofSeconds(1));
+    int preloadErrorCountWhileStopped = preloadControl.preloadErrorCount;
+
+    preloadControl.continueLoading = true;
+    preloadMediaSource.continuePreloading();
+    shadowOf(Looper.getMainLooper()).idle();
+
+    assertThat(preloadErrorCountWhileStopped).isEqualTo(0);
+    assertThat(preloadControl.preloadErrorCount).isEqualTo(1);
+  }
+
+  private long getPreloadedBytes() {
+    return preloadMediaSourceFactory.getPreloadAllocatorTracker().getPreloadedBytes();
+  }
+
+  private static final class RecordingPreloadControl implements PreloadMediaSource.PreloadControl {
+
+    public boolean continueLoading;
+    public int timelineRefreshedCount;
+    public int preparedCount;
+    public int continueLoadingRequestedCount;
+    public int preloadErrorCount;
+
+    public RecordingPreloadControl() {
+      continueLoading = true;
+    }
+
+    @Override
+    public boolean onTimelineRefreshed(PreloadMediaSource mediaSource) {
+      timelineRefreshedCount++;
+      return true;
+    }
+
+    @Override
+    public boolean onPrepared(PreloadMediaSource mediaSource) {
+      preparedCount++;
+      return continueLoading;
+    }
+
+    @Override
+    public boolean onContinueLoadingRequested(
+        PreloadMediaSource mediaSource, long bufferedDurationUs) {
+      continueLoadingRequestedCount++;
+      return continueLoading;
+    }
+
+    @Override
+    public void onPreloadError(PreloadMediaSource mediaSource, IOException error) {
+      preloadErrorCount++;
+    }
+  }
+
+  private static final class FakeMediaSourceWithError extends FakeMediaSource {
+
+    @Nullable public IOException sourceInfoRefreshError;
+
+    public FakeMediaSourceWithError(Timeline timeline) {
+      super(timeline, ExoPlayerTestRunner.VIDEO_FORMAT);
+    }
+
+    @Override
+    public void maybeThrowSourceInfoRefreshError() throws IOException {
+      super.maybeThrowSourceInfoRefreshError();
+      if (sourceInfoRefreshError != null) {
+        throw sourceInfoRefreshError;
+      }
+    }
+  }
+}
@@ -17,6 +17,7 @@ package com.google.android.exoplayer2.video;
 
 import static com.google.android.exoplayer2.testutil.FakeSampleStream.FakeSampleStreamItem.END_OF_STREAM_ITEM;
 import static com.google.android.exoplayer2.testutil.FakeSampleStream.FakeSampleStreamItem.oneByteSample;
+import static com.google.common.truth.Truth.assertThat;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
@@ -62,6 +63,9 @@ import org.robolectric.shadows.ShadowLooper;
 public final class DecoderVideoRendererTest {
   @Rule public final MockitoRule mockito = MockitoJUnit.rule();
 
+  // Each frame takes at least this long to decode, so that decode times are never zero.
+  private static final long DECODE_TIME_MS = 1;
+
   private static final Format H264_FORMAT =
       new Format.Builder()
           .setSampleMimeType(MimeTypes.VIDEO_H264)
@@ -159,6 +163,11 @@ public final class DecoderVideoRendererTest {
                   DecoderInputBuffer inputBuffer,
                   VideoDecoderOutputBuffer outputBuffer,
                   boolean reset) {
+                try {
+                  Thread.sleep(DECODE_TIME_MS);
+                } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+                }
                 outputBuffer.init(inputBuffer.timeUs, outputMode, /* supplementalData= */ null);
                 return null;
               }
@@ -276,6 +285,57 @@ public final class DecoderVideoRendererTest {
     verify(eventListener).onRenderedFirstFrame(eq(surface), /* renderTimeMs= */ anyLong());
   }
 
+  @Test
+  public void render_withSimpleDecoder_addsDecodeTimeOfRenderedFrames() throws Exception {
+    FakeSampleStream fakeSampleStream =
+        new FakeSampleStream(
+            new DefaultAllocator(/* trimOnReset= */ true, /* individualAllocationSize= */ 1024),
+            /* mediaSourceEventDispatcher= */ null,
+            DrmSessionManager.DRM_UNSUPPORTED,
+            new DrmSessionEventListener.EventDispatcher(),
+            /* initialFormat= */ H264_FORMAT,
+            ImmutableList.of(
+                oneByteSample(/* timeUs= */ 0, C.BUFFER_FLAG_KEY_FRAME),
+                oneByteSample(/* timeUs= */ 10),
+                oneByteSample(/* timeUs= */ 20),
+                END_OF_STREAM_ITEM));
+    fakeSampleStream.writeData(/* startPositionUs= */ 0);
+    renderer.enable(
+        RendererConfiguration.DEFAULT,
+        new Format[] {H264_FORMAT},
+        fakeSampleStream,
+        /* positionUs= */ 0,
+        /* joining= */ false,
+        /* mayRenderStartOfStream= */ true,
+        /* startPositionUs= */ 0,
+        /* offsetUs */ 0);
+    renderer.start();
+
+    for (int i = 0; i < 10; i++) {
+      renderer.render(/* positionUs= */ i * 10, SystemClock.elapsedRealtime() * 1000);
+      // Ensure pending messages are delivered.
+      ShadowLooper.idleMainLooper();
+    }
+
+    assertThat(renderer.decoderCounters.renderedOutputBufferCount).isEqualTo(3);
+    assertThat(renderer.decoderCounters.decodeTimeCount).isEqualTo(3);
+    assertThat(renderer.decoderCounters.totalDecodeTimeUs).isAtLeast(3 * DECODE_TIME_MS * 1000);
+  }
+
+  @Test
+  public void getBufferCountForThreadCount_addsTwoBuffersToThreadCountWithinBounds() {
+    assertThat(DecoderVideoRenderer.getBufferCountForThreadCount(/* threadCount= */ 1))
+        .isEqualTo(4);
+    assertThat(DecoderVideoRenderer.getBufferCountForThreadCount(/* threadCount= */ 2))
+        .isEqualTo(4);
+    assertThat(DecoderVideoRenderer.getBufferCountForThreadCount(/* threadCount= */ 3))
+        .isEqualTo(5);
+    assertThat(DecoderVideoRenderer.getBufferCountForThreadCount(/* threadCount= */ 6))
+        .isEqualTo(8);
+    assertThat(DecoderVideoRenderer.getBufferCountForThreadCount(/* threadCount= */ 16))
+        .isEqualTo(8);
+  }
+
   // TODO: Fix rendering of first frame at stream transition.
   @Ignore
   @Test
@@ -66,6 +66,7 @@ import com.google.android.exoplayer2.util.MimeTypes;
 import com.google.common.collect.ImmutableList;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
@@ -216,6 +217,130 @@ public class MediaCodecVideoRendererTest {
     verify(eventListener).onDroppedFrames(eq(1), anyLong());
   }
 
+  @Test
+  public void render_withIncreasingLateness_dropsLateBuffers() throws Exception {
+    DecoderCounters decoderCounters = renderWithIncreasingLateness(mediaCodecVideoRenderer);
+
+    // Buffers 30 to 35 are late. The last buffer is rendered.
+    assertThat(decoderCounters.droppedBufferCount).isEqualTo(6);
+    assertThat(decoderCounters.predictedDroppedBufferCount).isEqualTo(0);
+  }
+
+  @Test
+  public void render_withPredictiveFrameDropping_dropsBuffersBeforeTheyAreLate() throws Exception {
+    mediaCodecVideoRenderer.experimentalSetPredictiveFrameDroppingEnabled(true);
+
+    DecoderCounters decoderCounters = renderWithIncreasingLateness(mediaCodecVideoRenderer);
+
+    // Buffers that are behind schedule are dropped before they're late, because the next buffer is
+    // predicted to be late.
+    assertThat(decoderCounters.predictedDroppedBufferCount).isGreaterThan(0);
+    assertThat(decoderCounters.droppedBufferCount)
+        .isEqualTo(6 + decoderCounters.predictedDroppedBufferCount);
+    assertThat(decoderCounters.predictedDroppedToKeyframeCount).isEqualTo(0);
+  }
+
+  @Test
+  public void render_withPredictiveFrameDroppingAndOverriddenDropPolicy_usesOverriddenPolicy()
+      throws Exception {
+    mediaCodecVideoRenderer =
+        new MediaCodecVideoRenderer(
+            ApplicationProvider.getApplicationContext(),
+            mediaCodecSelector,
+            /* allowedJoiningTimeMs= */ 0,
+            /* eventHandler= */ new Handler(testMainLooper),
+            /* eventListener= */ eventListener,
+            /* maxDroppedFramesToNotify= */ 1) {
+          @Override
+          protected @Capabilities int supportsFormat(
+              MediaCodecSelector mediaCodecSelector, Format format) {
+            return RendererCapabilities.create(C.FORMAT_HANDLED);
+          }
+
+          @Override
+          protected boolean shouldDropOutputBuffer(
+              long earlyUs, long elapsedRealtimeUs, boolean isLastBuffer) {
+            return false;
+          }
+
+          @Override
+          protected boolean shouldDropBuffersToKeyframe(
+              long earlyUs, long elapsedRealtimeUs, boolean isLastBuffer) {
+            return false;
+          }
+        };
+    mediaCodecVideoRenderer.handleMessage(Renderer.MSG_SET_VIDEO_OUTPUT, surface);
+    mediaCodecVideoRenderer.experimentalSetPredictiveFrameDroppingEnabled(true);
+
+    DecoderCounters decoderCounters = renderWithIncreasingLateness(mediaCodecVideoRenderer);
+
+    assertThat(decoderCounters.predictedDroppedBufferCount).isEqualTo(0);
+    assertThat(decoderCounters.droppedBufferCount).isEqualTo(0);
+    // Depending on wall clock timing, a buffer may be skipped because it's due on the same vsync as
+    // the previous one, but none are dropped.
+    assertThat(decoderCounters.renderedOutputBufferCount + decoderCounters.skippedOutputBufferCount)
+        .isEqualTo(37);
+  }
+
+  @Test
+  public void render_droppingToKeyframe_doesNotEvaluateDropOutputBufferPolicy() throws Exception {
+    List<String> dropPolicyCalls = new ArrayList<>();
+    mediaCodecVideoRenderer =
+        new MediaCodecVideoRenderer(
+            ApplicationProvider.getApplicationContext(),
+            mediaCodecSelector,
+            /* allowedJoiningTimeMs= */ 0,
+            /* eventHandler= */ new Handler(testMainLooper),
+            /* eventListener= */ eventListener,
+            /* maxDroppedFramesToNotify= */ 1) {
+          @Override
+          protected @Capabilities int supportsFormat(
+              MediaCodecSelector mediaCodecSelector, Format format) {
+            return RendererCapabilities.create(C.FORMAT_HANDLED);
+          }
+
+          @Override
+          protected boolean shouldDropBuffersToKeyframe(
+              long earlyUs, long elapsedRealtimeUs, boolean isLastBuffer) {
+            dropPolicyCalls.add("shouldDropBuffersToKeyframe");
+            // Drop to the keyframe as soon as a buffer is late.
+            return earlyUs < -30_000 && !isLastBuffer;
+          }
+
+          @Override
+          protected boolean maybeDropBuffersToKeyframe(
+              long positionUs, boolean treatDroppedBuffersAsSkipped) {
+            // The source has no later keyframe, so report the first drop as successful. The output
+            // buffer stays queued and is processed again by the next render call.
+            boolean dropped = !dropPolicyCalls.contains("maybeDropBuffersToKeyframe");
+            dropPolicyCalls.add("maybeDropBuffersToKeyframe");
+            return dropped;
+          }
+
+          @Override
+          protected boolean shouldDropOutputBuffer(
+              long earlyUs, long elapsedRealtimeUs, boolean isLastBuffer) {
+            dropPolicyCalls.add("shouldDropOutputBuffer");
+            return super.shouldDropOutputBuffer(earlyUs, elapsedRealtimeUs, isLastBuffer);
+          }
+        };
+    mediaCodecVideoRenderer.handleMessage(Renderer.MSG_SET_VIDEO_OUTPUT, surface);
+
+    renderWithIncreasingLateness(mediaCodecVideoRenderer);
+
+    // The buffer dropped to the keyframe is not passed to shouldDropOutputBuffer, but the same
+    // buffer is when it's processed again and dropping to the keyframe fails.
+    int firstDropIndex = dropPolicyCalls.indexOf("maybeDropBuffersToKeyframe");
+    assertThat(dropPolicyCalls.subList(firstDropIndex - 1, firstDropIndex + 4))
+        .containsExactly(
+            "shouldDropBuffersToKeyframe",
+            "maybeDropBuffersToKeyframe",
+            "shouldDropBuffersToKeyframe",
+            "maybeDropBuffersToKeyframe",
+            "shouldDropOutputBuffer")
+        .inOrder();
+  }
+
   @Test
   public void render_withBufferLimitEqualToNumberOfSamples_rendersLastFrameAfterEndOfStream()
       throws Exception {
@@ -897,6 +1022,60 @@ public class MediaCodecVideoRendererTest {
         .isEqualTo(RendererCapabilities.DECODER_SUPPORT_PRIMARY);
   }
 
+  /**
+   * Renders 37 buffers that are 100ms apart at positions that are 101ms apart, so that buffer
+   * {@code i} is {@code i + 0.5} ms behind schedule, and returns the renderer's {@link
+   * DecoderCounters}.
+   */
+  private DecoderCounters renderWithIncreasingLateness(MediaCodecVideoRenderer renderer)
+      throws Exception {
+    ImmutableList.Builder<FakeSampleStream.FakeSampleStreamItem> samples = ImmutableList.builder();
+    samples.add(oneByteSample(/* timeUs= */ 0, C.BUFFER_FLAG_KEY_FRAME));
+    for (int i = 1; i < 37; i++) {
+      samples.add(oneByteSample(/* timeUs= */ i * 100_000L));
+    }
+    samples.add(END_OF_STREAM_ITEM);
+    FakeSampleStream fakeSampleStream =
+        new FakeSampleStream(
+            new DefaultAllocator(/* trimOnReset= */ true, /* individualAllocationSize= */ 1024),
+            /* mediaSourceEventDispatcher= */ null,
+            DrmSessionManager.DRM_UNSUPPORTED,
+            new DrmSessionEventListener.EventDispatcher(),
+            /* initialFormat= */ VIDEO_H264,
+            samples.build());
+    fakeSampleStream.writeData(/* startPositionUs= */ 0);
+    // Use a vsync duration of 0.1ms, so that release times snapped to vsync stay 1ms apart.
+    Context context = ApplicationProvider.getApplicationContext();
+    DisplayManager displayManager =
+        (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+    Shadows.shadowOf(displayManager.getDisplay(DEFAULT_DISPLAY)).setRefreshRate(10_000f);
+    renderer.enable(
+        RendererConfiguration.DEFAULT,
+        new Format[] {VIDEO_H264},
+        fakeSampleStream,
+        /* positionUs= */ 0,
+        /* joining= */ false,
+        /* mayRenderStartOfStream= */ true,
+        /* startPositionUs= */ 0,
+        /* offsetUs= */ 0);
+    renderer.setCurrentStreamFinal();
+    renderer.start();
+    // Let the codec output the first buffers, so that each later call processes the buffer that's
+    // due. The next buffer is more than 50ms early, so it's left for the next call.
+    long positionUs = 500;
+    renderer.render(positionUs, SystemClock.elapsedRealtime() * 1000);
+    while (!renderer.isEnded()) {
+      renderer.render(positionUs, SystemClock.elapsedRealtime() * 1000);
+      positionUs += 101_000;
+    }
+    renderer.stop();
+    shadowOf(testMainLooper).idle();
+    ArgumentCaptor<DecoderCounters> decoderCounters =
+        ArgumentCaptor.forClass(DecoderCounters.class);
+    verify(eventListener).onVideoEnabled(decoderCounters.capture());
+    return decoderCounters.getValue();
+  }
+
   private static CodecCapabilities createCodecCapabilities(int profile, int level) {
     CodecCapabilities capabilities = new CodecCapabilities();
     capabilities.profileLevels = new CodecProfileLevel[] {new CodecProfileLevel()};
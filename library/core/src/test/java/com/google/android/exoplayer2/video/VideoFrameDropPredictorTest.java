@@ -0,0 +1,84 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.video;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link VideoFrameDropPredictor}. */
+@RunWith(AndroidJUnit4.class)
+public final class VideoFrameDropPredictorTest {
+
+  private final VideoFrameDropPredictor predictor = new VideoFrameDropPredictor();
+
+  @Test
+  public void canPredict_beforeMinSampleCount_returnsFalse() {
+    for (int i = 0; i < VideoFrameDropPredictor.MIN_SAMPLE_COUNT - 1; i++) {
+      predictor.onFrameReleased(/* earlyUs= */ 40_000);
+    }
+
+    assertThat(predictor.canPredict()).isFalse();
+  }
+
+  @Test
+  public void predictEarlyUs_withSteadyEarlyTimes_predictsSameEarlyTime() {
+    for (int i = 0; i < VideoFrameDropPredictor.MIN_SAMPLE_COUNT; i++) {
+      predictor.onFrameReleased(/* earlyUs= */ 40_000);
+    }
+
+    assertThat(predictor.canPredict()).isTrue();
+    assertThat(predictor.predictEarlyUs(/* earlyUs= */ 40_000, /* frameCount= */ 30))
+        .isEqualTo(40_000);
+  }
+
+  @Test
+  public void predictEarlyUs_whenFallingBehind_extrapolatesLateness() {
+    // Each frame takes 10ms longer to produce than its duration.
+    for (int i = 0; i < VideoFrameDropPredictor.MIN_SAMPLE_COUNT; i++) {
+      predictor.onFrameReleased(/* earlyUs= */ -10_000L * i);
+    }
+
+    assertThat(predictor.predictEarlyUs(/* earlyUs= */ -90_000, /* frameCount= */ 1))
+        .isEqualTo(-100_000);
+    assertThat(predictor.predictEarlyUs(/* earlyUs= */ -90_000, /* frameCount= */ 30))
+        .isEqualTo(-390_000);
+  }
+
+  @Test
+  public void predictEarlyUs_withJitter_predictsConservatively() {
+    for (int i = 0; i < VideoFrameDropPredictor.MIN_SAMPLE_COUNT * 2; i++) {
+      predictor.onFrameReleased(/* earlyUs= */ i % 2 == 0 ? 30_000 : 40_000);
+    }
+
+    assertThat(predictor.predictEarlyUs(/* earlyUs= */ 30_000, /* frameCount= */ 1))
+        .isLessThan(30_000);
+  }
+
+  @Test
+  public void reset_requiresNewSamplesBeforePredicting() {
+    for (int i = 0; i < VideoFrameDropPredictor.MIN_SAMPLE_COUNT; i++) {
+      predictor.onFrameReleased(/* earlyUs= */ -10_000L * i);
+    }
+
+    predictor.reset();
+
+    assertThat(predictor.canPredict()).isFalse();
+    assertThat(predictor.predictEarlyUs(/* earlyUs= */ 0, /* frameCount= */ 30)).isEqualTo(0);
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.video;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for the judder measurement of {@link VideoFrameReleaseHelper}. */
+@RunWith(AndroidJUnit4.class)
+public final class VideoFrameReleaseHelperTest {
+
+  private static final long FRAME_DURATION_US = 40_000;
+  private static final long FRAME_DURATION_NS = FRAME_DURATION_US * 1000;
+
+  private VideoFrameReleaseHelper frameReleaseHelper;
+  private long nextFramePresentationTimeUs;
+  private long nextFrameReleaseTimeNs;
+
+  @Before
+  public void setUp() {
+    // Without a context, the vsync duration is unknown and the judder threshold is three quarters
+    // of the frame duration.
+    frameReleaseHelper = new VideoFrameReleaseHelper(/* context= */ null);
+    frameReleaseHelper.onStarted();
+    nextFrameReleaseTimeNs = 1_000_000_000;
+  }
+
+  @Test
+  public void onFrameReleased_beforeFrameRateIsKnown_returnsTimeUnset() {
+    assertThat(releaseNextFrame(/* deviationNs= */ 0)).isEqualTo(C.TIME_UNSET);
+    assertThat(releaseNextFrame(/* deviationNs= */ 0)).isEqualTo(C.TIME_UNSET);
+  }
+
+  @Test
+  public void onFrameReleased_atFrameRate_returnsZero() {
+    syncFrameRate();
+
+    for (int i = 0; i < 10; i++) {
+      assertThat(releaseNextFrame(/* deviationNs= */ 0)).isEqualTo(0);
+    }
+  }
+
+  @Test
+  public void onFrameReleased_withDeviationBelowThreshold_returnsZero() {
+    syncFrameRate();
+
+    assertThat(releaseNextFrame(/* deviationNs= */ 20_000_000)).isEqualTo(0);
+    assertThat(releaseNextFrame(/* deviationNs= */ 0)).isEqualTo(0);
+  }
+
+  @Test
+  public void onFrameReleased_withDeviationAboveThreshold_returnsDeviation() {
+    syncFrameRate();
+
+    assertThat(releaseNextFrame(/* deviationNs= */ 35_000_000)).isEqualTo(35_000_000);
+    // The next frame is released on schedule, which is 35ms earlier than expected from the late
+    // frame.
+    assertThat(releaseNextFrame(/* deviationNs= */ 0)).isEqualTo(35_000_000);
+    assertThat(releaseNextFrame(/* deviationNs= */ 0)).isEqualTo(0);
+  }
+
+  @Test
+  public void onFrameReleased_afterDroppedFrame_expectsReleaseOfFollowingFrameTwoFramesLater() {
+    syncFrameRate();
+
+    frameReleaseHelper.onNextFrame(nextFramePresentationTimeUs);
+    nextFramePresentationTimeUs += FRAME_DURATION_US;
+    nextFrameReleaseTimeNs += FRAME_DURATION_NS;
+
+    assertThat(releaseNextFrame(/* deviationNs= */ 0)).isEqualTo(0);
+  }
+
+  @Test
+  public void onFrameReleased_afterPositionReset_returnsTimeUnsetForFirstFrame() {
+    syncFrameRate();
+
+    frameReleaseHelper.onPositionReset();
+
+    assertThat(releaseNextFrame(/* deviationNs= */ 50_000_000)).isEqualTo(C.TIME_UNSET);
+    assertThat(releaseNextFrame(/* deviationNs= */ 50_000_000)).isEqualTo(0);
+  }
+
+  /** Releases frames at the frame rate until the frame rate is known. */
+  private void syncFrameRate() {
+    int frameCount = FixedFrameRateEstimator.CONSECUTIVE_MATCHING_FRAME_DURATIONS_FOR_SYNC + 1;
+    for (int i = 0; i < frameCount; i++) {
+      releaseNextFrame(/* deviationNs= */ 0);
+    }
+  }
+
+  /**
+   * Releases the next frame {@code deviationNs} after its scheduled release time, and returns the
+   * judder reported for it.
+   */
+  private long releaseNextFrame(long deviationNs) {
+    frameReleaseHelper.onNextFrame(nextFramePresentationTimeUs);
+    long judderNs = frameReleaseHelper.onFrameReleased(nextFrameReleaseTimeNs + deviationNs);
+    nextFramePresentationTimeUs += FRAME_DURATION_US;
+    nextFrameReleaseTimeNs += FRAME_DURATION_NS;
+    return judderNs;
+  }
+}
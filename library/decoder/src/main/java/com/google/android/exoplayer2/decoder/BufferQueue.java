@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.decoder;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.util.Assertions;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded lock-free FIFO queue of buffers, used to hand buffers over to a single consumer thread.
+ *
+ * <p>Buffers are stored in a ring. Producers claim a slot by advancing the producer index, and
+ * publish the buffer by writing it into the slot. The consumer takes the buffer out of the slot at
+ * the consumer index, so an empty slot at the consumer index means that the queue is empty. Each
+ * buffer can be added with a tag, which is read by the consumer together with the buffer.
+ *
+ * <p>{@link #add} may be called from any thread. {@link #poll()}, {@link #isEmpty()} and {@link
+ * #getLastPolledTag()} must only be called from the consumer thread. The number of buffers in the
+ * queue must never exceed the capacity, which is the case if the capacity is at least the number of
+ * buffers that exist.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class BufferQueue<T> {
+
+  private final AtomicReferenceArray<T> buffers;
+  private final long[] tags;
+  private final int mask;
+  private final AtomicLong producerIndex;
+
+  private volatile long consumerIndex;
+  private long lastPolledTag;
+
+  /**
+   * Creates an instance.
+   *
+   * @param capacity The maximum number of buffers in the queue.
+   */
+  public BufferQueue(int capacity) {
+    int ringSize = Integer.highestOneBit(Math.max(1, capacity - 1)) << 1;
+    buffers = new AtomicReferenceArray<>(ringSize);
+    tags = new long[ringSize];
+    mask = ringSize - 1;
+    producerIndex = new AtomicLong();
+  }
+
+  /**
+   * Adds a buffer to the end of the queue.
+   *
+   * @param buffer The buffer to add.
+   * @param tag A tag that's returned by {@link #getLastPolledTag()} when the buffer is polled.
+   */
+  public void add(T buffer, long tag) {
+    long index;
+    do {
+      index = producerIndex.get();
+      Assertions.checkState(index - consumerIndex <= mask);
+    } while (!producerIndex.compareAndSet(index, index + 1));
+    int slot = (int) index & mask;
+    tags[slot] = tag;
+    // The volatile write publishes the tag and the contents of the buffer to the consumer.
+    buffers.set(slot, buffer);
+  }
+
+  /** Removes and returns the buffer at the start of the queue, or null if the queue is empty. */
+  @Nullable
+  public T poll() {
+    long index = consumerIndex;
+    int slot = (int) index & mask;
+    @Nullable T buffer = buffers.get(slot);
+    if (buffer == null) {
+      // The queue is empty, or the next buffer hasn't been published yet.
+      return null;
+    }
+    lastPolledTag = tags[slot];
+    buffers.lazySet(slot, null);
+    consumerIndex = index + 1;
+    return buffer;
+  }
+
+  /** Returns whether {@link #poll()} would return null. */
+  public boolean isEmpty() {
+    return buffers.get((int) consumerIndex & mask) == null;
+  }
+
+  /** Returns the tag of the buffer that was last returned by {@link #poll()}. */
+  public long getLastPolledTag() {
+    return lastPolledTag;
+  }
+}
@@ -45,6 +45,12 @@ public abstract class DecoderOutputBuffer extends Buffer {
    */
   public int skippedOutputBufferCount;
 
+  /**
+   * The time spent decoding this buffer and the {@link #skippedOutputBufferCount} buffers prior to
+   * it, in microseconds, or 0 if the {@link Decoder} doesn't measure it.
+   */
+  public long decodeTimeUs;
+
   /** Releases the output buffer for reuse. Must be called when the buffer is no longer needed. */
   public abstract void release();
 }
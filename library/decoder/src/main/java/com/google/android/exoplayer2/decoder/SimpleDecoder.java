@@ -19,12 +19,15 @@ import androidx.annotation.CallSuper;
 import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
-import java.util.ArrayDeque;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * Base class for {@link Decoder}s that use their own decode thread and decode each input buffer
  * immediately into a corresponding output buffer.
  *
+ * <p>Buffers are handed over to and from the decode thread through lock-free queues, and the decode
+ * thread is parked while it has nothing to decode or nothing to decode into.
+ *
  * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
  *     contains the same ExoPlayer code). See <a
  *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
@@ -38,20 +41,31 @@ public abstract class SimpleDecoder<
 
   private final Thread decodeThread;
 
-  private final Object lock;
-  private final ArrayDeque<I> queuedInputBuffers;
-  private final ArrayDeque<O> queuedOutputBuffers;
-  private final I[] availableInputBuffers;
-  private final O[] availableOutputBuffers;
+  /** Input buffers queued for decoding, tagged with the flush count when they were queued. */
+  private final BufferQueue<I> queuedInputBuffers;
+  /** Decoded output buffers, tagged with the flush count of their input buffer. */
+  private final BufferQueue<O> queuedOutputBuffers;
+  /** Input buffers that the decode thread has finished with. */
+  private final BufferQueue<I> releasedInputBuffers;
+  /** Output buffers released by threads other than the decode thread. */
+  private final BufferQueue<O> releasedOutputBuffers;
 
+  // Only accessed on the thread that uses the decoder.
+  private final I[] availableInputBuffers;
   private int availableInputBufferCount;
-  private int availableOutputBufferCount;
   @Nullable private I dequeuedInputBuffer;
 
-  @Nullable private E exception;
-  private boolean flushed;
-  private boolean released;
+  // Only accessed on the decode thread, once it's started.
+  private final O[] availableOutputBuffers;
+  private int availableOutputBufferCount;
+  private long decodedFlushCount;
   private int skippedOutputBufferCount;
+  private long skippedDecodeTimeUs;
+
+  private volatile int flushCount;
+  private volatile boolean decodeThreadWaiting;
+  @Nullable private volatile E exception;
+  private volatile boolean released;
 
   /**
    * @param inputBuffers An array of nulls that will be used to store references to input buffers.
@@ -59,9 +73,10 @@ public abstract class SimpleDecoder<
    */
   @SuppressWarnings("nullness:method.invocation")
   protected SimpleDecoder(I[] inputBuffers, O[] outputBuffers) {
-    lock = new Object();
-    queuedInputBuffers = new ArrayDeque<>();
-    queuedOutputBuffers = new ArrayDeque<>();
+    queuedInputBuffers = new BufferQueue<>(inputBuffers.length);
+    queuedOutputBuffers = new BufferQueue<>(outputBuffers.length);
+    releasedInputBuffers = new BufferQueue<>(inputBuffers.length);
+    releasedOutputBuffers = new BufferQueue<>(outputBuffers.length);
     availableInputBuffers = inputBuffers;
     availableInputBufferCount = inputBuffers.length;
     for (int i = 0; i < availableInputBufferCount; i++) {
@@ -100,38 +115,41 @@ public abstract class SimpleDecoder<
   @Override
   @Nullable
   public final I dequeueInputBuffer() throws E {
-    synchronized (lock) {
-      maybeThrowException();
-      Assertions.checkState(dequeuedInputBuffer == null);
-      dequeuedInputBuffer =
-          availableInputBufferCount == 0
-              ? null
-              : availableInputBuffers[--availableInputBufferCount];
-      return dequeuedInputBuffer;
+    maybeThrowException();
+    Assertions.checkState(dequeuedInputBuffer == null);
+    if (availableInputBufferCount == 0) {
+      @Nullable I inputBuffer;
+      while ((inputBuffer = releasedInputBuffers.poll()) != null) {
+        availableInputBuffers[availableInputBufferCount++] = inputBuffer;
+      }
     }
+    dequeuedInputBuffer =
+        availableInputBufferCount == 0 ? null : availableInputBuffers[--availableInputBufferCount];
+    return dequeuedInputBuffer;
   }
 
   @Override
   public final void queueInputBuffer(I inputBuffer) throws E {
-    synchronized (lock) {
-      maybeThrowException();
-      Assertions.checkArgument(inputBuffer == dequeuedInputBuffer);
-      queuedInputBuffers.addLast(inputBuffer);
-      maybeNotifyDecodeLoop();
-      dequeuedInputBuffer = null;
-    }
+    maybeThrowException();
+    Assertions.checkArgument(inputBuffer == dequeuedInputBuffer);
+    queuedInputBuffers.add(inputBuffer, flushCount);
+    maybeNotifyDecodeLoop();
+    dequeuedInputBuffer = null;
   }
 
   @Override
   @Nullable
   public final O dequeueOutputBuffer() throws E {
-    synchronized (lock) {
-      maybeThrowException();
-      if (queuedOutputBuffers.isEmpty()) {
-        return null;
+    maybeThrowException();
+    @Nullable O outputBuffer;
+    while ((outputBuffer = queuedOutputBuffers.poll()) != null) {
+      if (queuedOutputBuffers.getLastPolledTag() == flushCount) {
+        return outputBuffer;
       }
-      return queuedOutputBuffers.removeFirst();
+      // The output buffer was queued by the decode thread after the decoder was flushed.
+      outputBuffer.release();
     }
+    return null;
   }
 
   /**
@@ -141,37 +159,37 @@ public abstract class SimpleDecoder<
    */
   @CallSuper
   protected void releaseOutputBuffer(O outputBuffer) {
-    synchronized (lock) {
-      releaseOutputBufferInternal(outputBuffer);
+    outputBuffer.clear();
+    if (Thread.currentThread() == decodeThread) {
+      availableOutputBuffers[availableOutputBufferCount++] = outputBuffer;
+    } else {
+      releasedOutputBuffers.add(outputBuffer, /* tag= */ 0);
       maybeNotifyDecodeLoop();
     }
   }
 
   @Override
   public final void flush() {
-    synchronized (lock) {
-      flushed = true;
-      skippedOutputBufferCount = 0;
-      if (dequeuedInputBuffer != null) {
-        releaseInputBufferInternal(dequeuedInputBuffer);
-        dequeuedInputBuffer = null;
-      }
-      while (!queuedInputBuffers.isEmpty()) {
-        releaseInputBufferInternal(queuedInputBuffers.removeFirst());
-      }
-      while (!queuedOutputBuffers.isEmpty()) {
-        queuedOutputBuffers.removeFirst().release();
-      }
+    // Buffers queued before the flush are released by the thread that polls them.
+    flushCount++;
+    if (dequeuedInputBuffer != null) {
+      dequeuedInputBuffer.clear();
+      availableInputBuffers[availableInputBufferCount++] = dequeuedInputBuffer;
+      dequeuedInputBuffer = null;
+    }
+    @Nullable O outputBuffer;
+    while ((outputBuffer = queuedOutputBuffers.poll()) != null) {
+      outputBuffer.release();
     }
+    // Wake the decode thread so that it releases the input buffers that were queued.
+    LockSupport.unpark(decodeThread);
   }
 
   @CallSuper
   @Override
   public void release() {
-    synchronized (lock) {
-      released = true;
-      lock.notify();
-    }
+    released = true;
+    LockSupport.unpark(decodeThread);
     try {
       decodeThread.join();
     } catch (InterruptedException e) {
@@ -192,14 +210,16 @@ public abstract class SimpleDecoder<
   }
 
   /**
-   * Notifies the decode loop if there exists a queued input buffer and an available output buffer
-   * to decode into.
+   * Wakes the decode loop if it's waiting for an input buffer to decode or an output buffer to
+   * decode into.
    *
-   * <p>Should only be called whilst synchronized on the lock object.
+   * <p>Should be called after adding a buffer to a queue that's polled by the decode thread. The
+   * decode thread sets {@link #decodeThreadWaiting} before it checks the queues for the last time,
+   * so either it finds the buffer or it's woken here.
    */
   private void maybeNotifyDecodeLoop() {
-    if (canDecodeBuffer()) {
-      lock.notify();
+    if (decodeThreadWaiting) {
+      LockSupport.unpark(decodeThread);
     }
   }
 
@@ -215,36 +235,61 @@ public abstract class SimpleDecoder<
   }
 
   private boolean decode() throws InterruptedException {
-    I inputBuffer;
-    O outputBuffer;
-    boolean resetDecoder;
+    @Nullable I inputBuffer = null;
+    @Nullable O outputBuffer = null;
+    long inputFlushCount = 0;
 
     // Wait until we have an input buffer to decode, and an output buffer to decode into.
-    synchronized (lock) {
-      while (!released && !canDecodeBuffer()) {
-        lock.wait();
-      }
+    while (outputBuffer == null) {
       if (released) {
         return false;
       }
-      inputBuffer = queuedInputBuffers.removeFirst();
-      outputBuffer = availableOutputBuffers[--availableOutputBufferCount];
-      resetDecoder = flushed;
-      flushed = false;
+      if (inputBuffer == null) {
+        inputBuffer = queuedInputBuffers.poll();
+        inputFlushCount = queuedInputBuffers.getLastPolledTag();
+      }
+      if (inputBuffer != null && inputFlushCount != flushCount) {
+        // The input buffer was queued before the decoder was flushed.
+        releaseInputBufferInternal(inputBuffer);
+        inputBuffer = null;
+        continue;
+      }
+      if (inputBuffer != null) {
+        outputBuffer = maybeTakeAvailableOutputBuffer();
+      }
+      if (outputBuffer == null) {
+        decodeThreadWaiting = true;
+        if (!released && !canDecodeBuffer(inputBuffer)) {
+          LockSupport.park(this);
+        }
+        decodeThreadWaiting = false;
+        if (Thread.interrupted()) {
+          throw new InterruptedException();
+        }
+      }
+    }
+    I decodeInputBuffer = Assertions.checkNotNull(inputBuffer);
+    boolean resetDecoder = inputFlushCount != decodedFlushCount;
+    if (resetDecoder) {
+      decodedFlushCount = inputFlushCount;
+      skippedOutputBufferCount = 0;
+      skippedDecodeTimeUs = 0;
     }
+    long decodeTimeUs = 0;
 
-    if (inputBuffer.isEndOfStream()) {
+    if (decodeInputBuffer.isEndOfStream()) {
       outputBuffer.addFlag(C.BUFFER_FLAG_END_OF_STREAM);
     } else {
-      if (inputBuffer.isDecodeOnly()) {
+      if (decodeInputBuffer.isDecodeOnly()) {
         outputBuffer.addFlag(C.BUFFER_FLAG_DECODE_ONLY);
       }
-      if (inputBuffer.isFirstSample()) {
+      if (decodeInputBuffer.isFirstSample()) {
         outputBuffer.addFlag(C.BUFFER_FLAG_FIRST_SAMPLE);
       }
       @Nullable E exception;
+      long decodeStartTimeNs = System.nanoTime();
       try {
-        exception = decode(inputBuffer, outputBuffer, resetDecoder);
+        exception = decode(decodeInputBuffer, outputBuffer, resetDecoder);
       } catch (RuntimeException e) {
         // This can occur if a sample is malformed in a way that the decoder is not robust against.
         // We don't want the process to die in this case, but we do want to propagate the error.
@@ -256,43 +301,64 @@ public abstract class SimpleDecoder<
         exception = createUnexpectedDecodeException(e);
       }
       if (exception != null) {
-        synchronized (lock) {
-          this.exception = exception;
-        }
+        this.exception = exception;
         return false;
       }
+      decodeTimeUs = (System.nanoTime() - decodeStartTimeNs) / 1000;
     }
 
-    synchronized (lock) {
-      if (flushed) {
-        outputBuffer.release();
-      } else if (outputBuffer.isDecodeOnly()) {
-        skippedOutputBufferCount++;
-        outputBuffer.release();
-      } else {
-        outputBuffer.skippedOutputBufferCount = skippedOutputBufferCount;
-        skippedOutputBufferCount = 0;
-        queuedOutputBuffers.addLast(outputBuffer);
-      }
-      // Make the input buffer available again.
-      releaseInputBufferInternal(inputBuffer);
+    if (inputFlushCount != flushCount) {
+      outputBuffer.release();
+    } else if (outputBuffer.isDecodeOnly()) {
+      skippedOutputBufferCount++;
+      skippedDecodeTimeUs += decodeTimeUs;
+      outputBuffer.release();
+    } else {
+      outputBuffer.skippedOutputBufferCount = skippedOutputBufferCount;
+      outputBuffer.decodeTimeUs = skippedDecodeTimeUs + decodeTimeUs;
+      skippedOutputBufferCount = 0;
+      skippedDecodeTimeUs = 0;
+      // If the decoder is flushed after this check, the output buffer is released when it's
+      // dequeued or when the flush polls it.
+      queuedOutputBuffers.add(outputBuffer, inputFlushCount);
     }
+    // Make the input buffer available again.
+    releaseInputBufferInternal(decodeInputBuffer);
 
     return true;
   }
 
-  private boolean canDecodeBuffer() {
-    return !queuedInputBuffers.isEmpty() && availableOutputBufferCount > 0;
+  /**
+   * Returns whether the decode thread can make progress without waiting, given the input buffer it
+   * has already polled, if any.
+   */
+  private boolean canDecodeBuffer(@Nullable I inputBuffer) {
+    if (inputBuffer == null) {
+      return !queuedInputBuffers.isEmpty();
+    }
+    return availableOutputBufferCount > 0 || !releasedOutputBuffers.isEmpty();
   }
 
-  private void releaseInputBufferInternal(I inputBuffer) {
-    inputBuffer.clear();
-    availableInputBuffers[availableInputBufferCount++] = inputBuffer;
+  /**
+   * Returns an output buffer to decode into, or null if all output buffers are in use. Must only be
+   * called on the decode thread.
+   */
+  @Nullable
+  private O maybeTakeAvailableOutputBuffer() {
+    if (availableOutputBufferCount == 0) {
+      @Nullable O outputBuffer;
+      while ((outputBuffer = releasedOutputBuffers.poll()) != null) {
+        availableOutputBuffers[availableOutputBufferCount++] = outputBuffer;
+      }
+    }
+    return availableOutputBufferCount == 0
+        ? null
+        : availableOutputBuffers[--availableOutputBufferCount];
   }
 
-  private void releaseOutputBufferInternal(O outputBuffer) {
-    outputBuffer.clear();
-    availableOutputBuffers[availableOutputBufferCount++] = outputBuffer;
+  private void releaseInputBufferInternal(I inputBuffer) {
+    inputBuffer.clear();
+    releasedInputBuffers.add(inputBuffer, /* tag= */ 0);
   }
 
   /** Creates a new input buffer. */
@@ -0,0 +1,133 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.decoder;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link BufferQueue}. */
+@RunWith(AndroidJUnit4.class)
+public final class BufferQueueTest {
+
+  private static final long TIMEOUT_MS = 10_000;
+
+  @Test
+  public void poll_emptyQueue_returnsNull() {
+    BufferQueue<Object> queue = new BufferQueue<>(/* capacity= */ 4);
+
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(queue.poll()).isNull();
+  }
+
+  @Test
+  public void poll_returnsBuffersInOrderWithTags() {
+    BufferQueue<Object> queue = new BufferQueue<>(/* capacity= */ 4);
+    Object buffer1 = new Object();
+    Object buffer2 = new Object();
+
+    queue.add(buffer1, /* tag= */ 1);
+    queue.add(buffer2, /* tag= */ 2);
+
+    assertThat(queue.isEmpty()).isFalse();
+    assertThat(queue.poll()).isSameInstanceAs(buffer1);
+    assertThat(queue.getLastPolledTag()).isEqualTo(1);
+    assertThat(queue.poll()).isSameInstanceAs(buffer2);
+    assertThat(queue.getLastPolledTag()).isEqualTo(2);
+    assertThat(queue.isEmpty()).isTrue();
+    assertThat(queue.poll()).isNull();
+  }
+
+  @Test
+  public void add_moreBuffersThanRingSizeOverTime_wrapsAround() {
+    BufferQueue<Integer> queue = new BufferQueue<>(/* capacity= */ 3);
+
+    for (int i = 0; i < 100; i += 3) {
+      queue.add(i, /* tag= */ i);
+      queue.add(i + 1, /* tag= */ i + 1);
+      queue.add(i + 2, /* tag= */ i + 2);
+      for (int j = i; j < i + 3; j++) {
+        assertThat(queue.poll()).isEqualTo(j);
+        assertThat(queue.getLastPolledTag()).isEqualTo(j);
+      }
+      assertThat(queue.isEmpty()).isTrue();
+    }
+  }
+
+  @Test
+  public void add_moreBuffersThanRingSize_throws() {
+    // A capacity of three is rounded up to a ring of four slots.
+    BufferQueue<Object> queue = new BufferQueue<>(/* capacity= */ 3);
+    for (int i = 0; i < 4; i++) {
+      queue.add(new Object(), /* tag= */ i);
+    }
+
+    assertThrows(IllegalStateException.class, () -> queue.add(new Object(), /* tag= */ 4));
+  }
+
+  @Test
+  public void add_fromMultipleThreads_pollsEachProducersBuffersInOrder() throws Exception {
+    int producerCount = 4;
+    int buffersPerProducer = 20_000;
+    int capacity = 8;
+    BufferQueue<Integer> queue = new BufferQueue<>(capacity);
+    // Limits the number of buffers in the queue to its capacity, like a fixed pool of buffers.
+    Semaphore availableSlots = new Semaphore(capacity);
+    List<Thread> producers = new ArrayList<>();
+    for (int producer = 0; producer < producerCount; producer++) {
+      long tag = producer;
+      Thread thread =
+          new Thread(
+              () -> {
+                for (int i = 0; i < buffersPerProducer; i++) {
+                  availableSlots.acquireUninterruptibly();
+                  queue.add(i, tag);
+                }
+              });
+      producers.add(thread);
+      thread.start();
+    }
+
+    int[] nextBufferByProducer = new int[producerCount];
+    long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+    for (int polledCount = 0; polledCount < producerCount * buffersPerProducer; ) {
+      @Nullable Integer buffer = queue.poll();
+      if (buffer == null) {
+        assertThat(System.currentTimeMillis()).isLessThan(deadlineMs);
+        Thread.yield();
+        continue;
+      }
+      int producer = (int) queue.getLastPolledTag();
+      assertThat(buffer).isEqualTo(nextBufferByProducer[producer]);
+      nextBufferByProducer[producer]++;
+      polledCount++;
+      availableSlots.release();
+    }
+    for (Thread producer : producers) {
+      producer.join(TIMEOUT_MS);
+    }
+
+    assertThat(nextBufferByProducer).asList().containsExactly(20_000, 20_000, 20_000, 20_000);
+    assertThat(queue.isEmpty()).isTrue();
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.decoder;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
+
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link SimpleDecoder}. */
+@RunWith(AndroidJUnit4.class)
+public final class SimpleDecoderTest {
+
+  private static final long TIMEOUT_MS = 5_000;
+
+  private FakeDecoder decoder;
+
+  @Before
+  public void setUp() {
+    decoder = new FakeDecoder();
+  }
+
+  @After
+  public void tearDown() {
+    decoder.release();
+  }
+
+  @Test
+  public void decode_moreBuffersThanExist_outputsAllBuffersInOrder() throws Exception {
+    List<Long> outputTimesUs = new ArrayList<>();
+
+    for (long timeUs = 0; timeUs < 20; timeUs++) {
+      @Nullable DecoderInputBuffer inputBuffer;
+      while ((inputBuffer = decoder.dequeueInputBuffer()) == null) {
+        outputTimesUs.add(dequeueAndReleaseOutputBuffer());
+      }
+      inputBuffer.timeUs = timeUs;
+      decoder.queueInputBuffer(inputBuffer);
+    }
+    while (outputTimesUs.size() < 20) {
+      outputTimesUs.add(dequeueAndReleaseOutputBuffer());
+    }
+
+    assertThat(outputTimesUs)
+        .containsExactly(
+            0L, 1L, 2L, 3L, 4L, 5L, 6L, 7L, 8L, 9L, 10L, 11L, 12L, 13L, 14L, 15L, 16L, 17L, 18L,
+            19L)
+        .inOrder();
+  }
+
+  @Test
+  public void flush_dropsBuffersQueuedBeforeFlushAndResetsDecoder() throws Exception {
+    queueInputBuffer(/* timeUs= */ 1, /* flags= */ 0);
+    queueInputBuffer(/* timeUs= */ 2, /* flags= */ 0);
+
+    decoder.flush();
+    queueInputBuffer(/* timeUs= */ 3, /* flags= */ 0);
+
+    assertThat(dequeueAndReleaseOutputBuffer()).isEqualTo(3);
+    assertThat(decoder.dequeueOutputBuffer()).isNull();
+    assertThat(decoder.resetTimesUs).containsExactly(3L);
+  }
+
+  @Test
+  public void decodeOnlyBuffers_areSkippedAndCounted() throws Exception {
+    queueInputBuffer(/* timeUs= */ 1, C.BUFFER_FLAG_DECODE_ONLY);
+    queueInputBuffer(/* timeUs= */ 2, C.BUFFER_FLAG_DECODE_ONLY);
+    queueInputBuffer(/* timeUs= */ 3, /* flags= */ 0);
+
+    SimpleDecoderOutputBuffer outputBuffer = dequeueOutputBuffer();
+
+    assertThat(outputBuffer.timeUs).isEqualTo(3);
+    assertThat(outputBuffer.skippedOutputBufferCount).isEqualTo(2);
+  }
+
+  @Test
+  public void decodeTime_includesSkippedBuffers() throws Exception {
+    queueInputBuffer(/* timeUs= */ 1, C.BUFFER_FLAG_DECODE_ONLY);
+    queueInputBuffer(/* timeUs= */ 2, /* flags= */ 0);
+
+    SimpleDecoderOutputBuffer outputBuffer = dequeueOutputBuffer();
+
+    assertThat(outputBuffer.timeUs).isEqualTo(2);
+    assertThat(outputBuffer.decodeTimeUs).isAtLeast(2 * FakeDecoder.DECODE_TIME_MS * 1000);
+  }
+
+  @Test
+  public void decodeError_isThrownOnCallingThread() throws Exception {
+    queueInputBuffer(/* timeUs= */ FakeDecoder.ERROR_TIME_US, /* flags= */ 0);
+
+    assertThrows(DecoderException.class, this::dequeueOutputBuffer);
+    assertThrows(DecoderException.class, decoder::dequeueInputBuffer);
+  }
+
+  private void queueInputBuffer(long timeUs, @C.BufferFlags int flags) throws DecoderException {
+    @Nullable DecoderInputBuffer inputBuffer = decoder.dequeueInputBuffer();
+    assertThat(inputBuffer).isNotNull();
+    inputBuffer.timeUs = timeUs;
+    inputBuffer.setFlags(flags);
+    decoder.queueInputBuffer(inputBuffer);
+  }
+
+  private SimpleDecoderOutputBuffer dequeueOutputBuffer() throws Exception {
+    long deadlineMs = System.currentTimeMillis() + TIMEOUT_MS;
+    @Nullable SimpleDecoderOutputBuffer outputBuffer;
+    while ((outputBuffer = decoder.dequeueOutputBuffer()) == null) {
+      assertThat(System.currentTimeMillis()).isLessThan(deadlineMs);
+      Thread.sleep(1);
+    }
+    return outputBuffer;
+  }
+
+  private long dequeueAndReleaseOutputBuffer() throws Exception {
+    SimpleDecoderOutputBuffer outputBuffer = dequeueOutputBuffer();
+    long timeUs = outputBuffer.timeUs;
+    outputBuffer.release();
+    return timeUs;
+  }
+
+  private static final class FakeDecoder
+      extends SimpleDecoder<DecoderInputBuffer, SimpleDecoderOutputBuffer, DecoderException> {
+
+    public static final long ERROR_TIME_US = -1;
+    public static final long DECODE_TIME_MS = 1;
+
+    public final ConcurrentLinkedQueue<Long> resetTimesUs;
+
+    public FakeDecoder() {
+      super(new DecoderInputBuffer[4], new SimpleDecoderOutputBuffer[2]);
+      resetTimesUs = new ConcurrentLinkedQueue<>();
+    }
+
+    @Override
+    public String getName() {
+      return "FakeDecoder";
+    }
+
+    @Override
+    protected DecoderInputBuffer createInputBuffer() {
+      return new DecoderInputBuffer(DecoderInputBuffer.BUFFER_REPLACEMENT_MODE_NORMAL);
+    }
+
+    @Override
+    protected SimpleDecoderOutputBuffer createOutputBuffer() {
+      return new SimpleDecoderOutputBuffer(this::releaseOutputBuffer);
+    }
+
+    @Override
+    protected DecoderException createUnexpectedDecodeException(Throwable error) {
+      return new DecoderException(error);
+    }
+
+    @Nullable
+    @Override
+    protected DecoderException decode(
+        DecoderInputBuffer inputBuffer, SimpleDecoderOutputBuffer outputBuffer, boolean reset) {
+      if (reset) {
+        resetTimesUs.add(inputBuffer.timeUs);
+      }
+      try {
+        Thread.sleep(DECODE_TIME_MS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      if (inputBuffer.timeUs == ERROR_TIME_US) {
+        return new DecoderException("Decode error");
+      }
+      outputBuffer.init(inputBuffer.timeUs, /* size= */ 0);
+      return null;
+    }
+  }
+}
@@ -27,6 +27,7 @@ import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
+import java.util.Arrays;
 
 /**
  * A seeker that supports seeking within a stream by searching for the target frame using binary
@@ -38,6 +39,10 @@ import java.lang.annotation.Target;
  * operation within the stream to identify the target frame and return the byte position in the
  * stream of the target frame.
  *
+ * <p>The timestamps and byte positions found while searching are kept as anchors, which narrow the
+ * initial search range of later seeks. Extractors can add further anchors for positions they read
+ * during playback with {@link #addTimestampAnchor(long, long)}.
+ *
  * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
  *     contains the same ExoPlayer code). See <a
  *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
@@ -97,11 +102,16 @@ public abstract class BinarySearchSeeker {
    */
   private static final long MAX_SKIP_BYTES = 256 * 1024;
 
+  /** The maximum number of timestamp anchors kept for narrowing the range of later seeks. */
+  private static final int MAX_TIMESTAMP_ANCHOR_COUNT = 64;
+
   protected final BinarySearchSeekMap seekMap;
   protected final TimestampSeeker timestampSeeker;
   @Nullable protected SeekOperationParams seekOperationParams;
 
   private final int minimumSearchRange;
+  private final TimestampAnchors floorAnchors;
+  private final TimestampAnchors ceilingAnchors;
 
   /**
    * Constructs an instance.
@@ -135,6 +145,8 @@ public abstract class BinarySearchSeeker {
       int minimumSearchRange) {
     this.timestampSeeker = timestampSeeker;
     this.minimumSearchRange = minimumSearchRange;
+    floorAnchors = new TimestampAnchors();
+    ceilingAnchors = new TimestampAnchors();
     this.seekMap =
         new BinarySearchSeekMap(
             seekTimestampConverter,
@@ -163,6 +175,23 @@ public abstract class BinarySearchSeeker {
     seekOperationParams = createSeekParamsForTargetTimeUs(timeUs);
   }
 
+  /**
+   * Adds a known timestamp and the byte position of the frame it belongs to, which is used to
+   * narrow the initial search range of later seeks.
+   *
+   * <p>If the maximum number of anchors is reached, the existing anchor closest to the new one is
+   * replaced.
+   *
+   * @param timestamp The timestamp, in the same unit as the target timestamps of this seeker.
+   * @param bytePosition The byte position in the stream of the frame with the given timestamp.
+   */
+  public final void addTimestampAnchor(long timestamp, long bytePosition) {
+    if (isValidAnchor(timestamp, bytePosition)) {
+      floorAnchors.add(timestamp, bytePosition);
+      ceilingAnchors.add(timestamp, bytePosition);
+    }
+  }
+
   /** Returns whether the last operation set by {@link #setSeekTargetUs(long)} is still pending. */
   public final boolean isSeeking() {
     return seekOperationParams != null;
@@ -204,10 +233,23 @@ public abstract class BinarySearchSeeker {
         case TimestampSearchResult.TYPE_POSITION_OVERESTIMATED:
           seekOperationParams.updateSeekCeiling(
               timestampSearchResult.timestampToUpdate, timestampSearchResult.bytePositionToUpdate);
+          // The position precedes the frame with the timestamp, so it's a floor for later targets
+          // at or after the timestamp as well.
+          addTimestampAnchor(
+              timestampSearchResult.timestampToUpdate, timestampSearchResult.bytePositionToUpdate);
           break;
         case TimestampSearchResult.TYPE_POSITION_UNDERESTIMATED:
           seekOperationParams.updateSeekFloor(
               timestampSearchResult.timestampToUpdate, timestampSearchResult.bytePositionToUpdate);
+          // The position may follow the frame with the timestamp, in which case it's only a valid
+          // ceiling for later targets before the timestamp.
+          if (isValidAnchor(
+              timestampSearchResult.timestampToUpdate,
+              timestampSearchResult.bytePositionToUpdate)) {
+            ceilingAnchors.add(
+                timestampSearchResult.timestampToUpdate,
+                timestampSearchResult.bytePositionToUpdate);
+          }
           break;
         case TimestampSearchResult.TYPE_TARGET_TIMESTAMP_FOUND:
           skipInputUntilPosition(input, timestampSearchResult.bytePositionToUpdate);
@@ -227,14 +269,46 @@ public abstract class BinarySearchSeeker {
   }
 
   protected SeekOperationParams createSeekParamsForTargetTimeUs(long timeUs) {
-    return new SeekOperationParams(
-        timeUs,
-        seekMap.timeUsToTargetTime(timeUs),
-        seekMap.floorTimePosition,
-        seekMap.ceilingTimePosition,
-        seekMap.floorBytePosition,
-        seekMap.ceilingBytePosition,
-        seekMap.approxBytesPerFrame);
+    long targetTimePosition = seekMap.timeUsToTargetTime(timeUs);
+    long floorTimePosition = seekMap.floorTimePosition;
+    long ceilingTimePosition = seekMap.ceilingTimePosition;
+    long floorBytePosition = seekMap.floorBytePosition;
+    long ceilingBytePosition = seekMap.ceilingBytePosition;
+    // Narrow the search range to the closest anchors around the target.
+    int floorIndex = floorAnchors.getFloorIndex(targetTimePosition);
+    if (floorIndex != C.INDEX_UNSET && floorAnchors.timestamps[floorIndex] > floorTimePosition) {
+      floorTimePosition = floorAnchors.timestamps[floorIndex];
+      floorBytePosition = floorAnchors.bytePositions[floorIndex];
+    }
+    int ceilingIndex = ceilingAnchors.getFloorIndex(targetTimePosition) + 1;
+    if (ceilingIndex < ceilingAnchors.count
+        && ceilingAnchors.timestamps[ceilingIndex] < ceilingTimePosition) {
+      ceilingTimePosition = ceilingAnchors.timestamps[ceilingIndex];
+      ceilingBytePosition = ceilingAnchors.bytePositions[ceilingIndex];
+    }
+    if (floorBytePosition >= ceilingBytePosition) {
+      // The anchors are inconsistent, for example after a timestamp discontinuity.
+      floorTimePosition = seekMap.floorTimePosition;
+      ceilingTimePosition = seekMap.ceilingTimePosition;
+      floorBytePosition = seekMap.floorBytePosition;
+      ceilingBytePosition = seekMap.ceilingBytePosition;
+    }
+    SeekOperationParams seekOperationParams =
+        new SeekOperationParams(
+            timeUs,
+            targetTimePosition,
+            floorTimePosition,
+            ceilingTimePosition,
+            floorBytePosition,
+            ceilingBytePosition,
+            seekMap.approxBytesPerFrame);
+    // Search the position given by the seek map first if it's in range, as that's where the input
+    // is opened.
+    long seekMapPosition = seekMap.getSeekPoints(timeUs).first.position;
+    if (seekMapPosition >= floorBytePosition && seekMapPosition < ceilingBytePosition) {
+      seekOperationParams.nextSearchBytePosition = seekMapPosition;
+    }
+    return seekOperationParams;
   }
 
   protected final void markSeekOperationFinished(boolean foundTargetFrame, long resultPosition) {
@@ -257,6 +331,12 @@ public abstract class BinarySearchSeeker {
     return false;
   }
 
+  private boolean isValidAnchor(long timestamp, long bytePosition) {
+    return timestamp != C.TIME_UNSET
+        && bytePosition >= seekMap.floorBytePosition
+        && bytePosition < seekMap.ceilingBytePosition;
+  }
+
   protected final int seekToPosition(
       ExtractorInput input, long position, PositionHolder seekPositionHolder) {
     if (position == input.getPosition()) {
@@ -483,6 +563,60 @@ public abstract class BinarySearchSeeker {
     }
   }
 
+  /** Known timestamps and byte positions in the stream, sorted by timestamp. */
+  private static final class TimestampAnchors {
+
+    public final long[] timestamps;
+    public final long[] bytePositions;
+    public int count;
+
+    public TimestampAnchors() {
+      timestamps = new long[MAX_TIMESTAMP_ANCHOR_COUNT];
+      bytePositions = new long[MAX_TIMESTAMP_ANCHOR_COUNT];
+    }
+
+    /**
+     * Adds an anchor. If the maximum number of anchors is reached, the existing anchor closest to
+     * the new one is replaced.
+     */
+    public void add(long timestamp, long bytePosition) {
+      int index = Arrays.binarySearch(timestamps, /* fromIndex= */ 0, count, timestamp);
+      if (index >= 0) {
+        bytePositions[index] = bytePosition;
+        return;
+      }
+      index = -index - 1;
+      if (count == MAX_TIMESTAMP_ANCHOR_COUNT) {
+        int replacedIndex;
+        if (index == 0) {
+          replacedIndex = 0;
+        } else if (index == count) {
+          replacedIndex = count - 1;
+        } else {
+          replacedIndex =
+              timestamp - timestamps[index - 1] < timestamps[index] - timestamp ? index - 1 : index;
+        }
+        timestamps[replacedIndex] = timestamp;
+        bytePositions[replacedIndex] = bytePosition;
+        return;
+      }
+      System.arraycopy(timestamps, index, timestamps, index + 1, count - index);
+      System.arraycopy(bytePositions, index, bytePositions, index + 1, count - index);
+      timestamps[index] = timestamp;
+      bytePositions[index] = bytePosition;
+      count++;
+    }
+
+    /**
+     * Returns the index of the last anchor whose timestamp is at most {@code timestamp}, or {@link
+     * C#INDEX_UNSET} if there's none.
+     */
+    public int getFloorIndex(long timestamp) {
+      int index = Arrays.binarySearch(timestamps, /* fromIndex= */ 0, count, timestamp);
+      return index >= 0 ? index : -index - 2;
+    }
+  }
+
   /**
    * A {@link SeekMap} implementation that returns the estimated byte location from {@link
    * SeekOperationParams#calculateNextSearchBytePosition(long, long, long, long, long, long)} for
@@ -137,6 +137,7 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
   // TODO (b/260245332): Initialize tsSubtitleFormats in constructor once shrinking bug is fixed.
   @Nullable private ImmutableList<Format> tsSubtitleFormats;
   private int tsTimestampSearchBytes;
+  private boolean tsParallelDemuxingEnabled;
 
   public DefaultExtractorsFactory() {
     tsMode = TsExtractor.MODE_SINGLE_PMT;
@@ -340,6 +341,23 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
     return this;
   }
 
+  /**
+   * Sets whether {@link TsExtractor} instances created by the factory demultiplex the programs of
+   * multi-program streams in parallel. Only applies in {@link TsExtractor#MODE_MULTI_PMT}.
+   *
+   * <p>This method is experimental and will be renamed or removed in a future release.
+   *
+   * @see TsExtractor#experimentalSetParallelDemuxingEnabled(boolean)
+   * @param parallelDemuxingEnabled Whether to demultiplex programs in parallel.
+   * @return The factory, for convenience.
+   */
+  @CanIgnoreReturnValue
+  public synchronized DefaultExtractorsFactory experimentalSetTsExtractorParallelDemuxingEnabled(
+      boolean parallelDemuxingEnabled) {
+    tsParallelDemuxingEnabled = parallelDemuxingEnabled;
+    return this;
+  }
+
   @Override
   public synchronized Extractor[] createExtractors() {
     return createExtractors(Uri.EMPTY, new HashMap<>());
@@ -441,12 +459,16 @@ public final class DefaultExtractorsFactory implements ExtractorsFactory {
         if (tsSubtitleFormats == null) {
           tsSubtitleFormats = ImmutableList.of();
         }
-        extractors.add(
+        TsExtractor tsExtractor =
             new TsExtractor(
                 tsMode,
                 new TimestampAdjuster(0),
                 new DefaultTsPayloadReaderFactory(tsFlags, tsSubtitleFormats),
-                tsTimestampSearchBytes));
+                tsTimestampSearchBytes);
+        if (tsParallelDemuxingEnabled) {
+          tsExtractor.experimentalSetParallelDemuxingEnabled(true);
+        }
+        extractors.add(tsExtractor);
         break;
       case FileTypes.WAV:
         extractors.add(new WavExtractor());
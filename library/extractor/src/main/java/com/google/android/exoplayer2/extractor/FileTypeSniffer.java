@@ -0,0 +1,277 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor;
+
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.extractor.amr.AmrExtractor;
+import com.google.android.exoplayer2.extractor.avi.AviExtractor;
+import com.google.android.exoplayer2.extractor.flac.FlacExtractor;
+import com.google.android.exoplayer2.extractor.flv.FlvExtractor;
+import com.google.android.exoplayer2.extractor.jpeg.JpegExtractor;
+import com.google.android.exoplayer2.extractor.mkv.MatroskaExtractor;
+import com.google.android.exoplayer2.extractor.mp3.Mp3Extractor;
+import com.google.android.exoplayer2.extractor.mp4.FragmentedMp4Extractor;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.extractor.ogg.OggExtractor;
+import com.google.android.exoplayer2.extractor.ts.Ac3Extractor;
+import com.google.android.exoplayer2.extractor.ts.Ac4Extractor;
+import com.google.android.exoplayer2.extractor.ts.AdtsExtractor;
+import com.google.android.exoplayer2.extractor.ts.PsExtractor;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
+import com.google.android.exoplayer2.extractor.wav.WavExtractor;
+import com.google.android.exoplayer2.util.FileTypes;
+import java.io.IOException;
+
+/**
+ * Infers the {@link FileTypes.Type file type} of a stream from the signatures at its start.
+ *
+ * <p>All the supported container signatures are checked against the same peeked bytes, which makes
+ * it much cheaper than calling {@link Extractor#sniff(ExtractorInput)} on each extractor in turn.
+ * Bytes are peeked as they become available, and peeking stops as soon as they determine the file
+ * type, so that a slow stream doesn't block until {@link #SNIFF_BYTE_COUNT} bytes have arrived. The
+ * result is only a hint for the order in which extractors are sniffed, and the extractor of the
+ * inferred type must still successfully sniff the stream.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+public final class FileTypeSniffer {
+
+  /** The maximum number of bytes peeked from the start of the stream. */
+  public static final int SNIFF_BYTE_COUNT = 4096;
+
+  private static final int TS_PACKET_SIZE = 188;
+  private static final int TS_SYNC_BYTE = 0x47;
+  private static final int ID3_HEADER_LENGTH = 10;
+  // The length of the longest signature at the start of a container, "RIFF....WAVE".
+  private static final int MAX_CONTAINER_SIGNATURE_LENGTH = 12;
+  // Returned internally when the peeked bytes are too few to infer the file type.
+  private static final int RESULT_NEED_MORE_DATA = -2;
+
+  private FileTypeSniffer() {}
+
+  /**
+   * Peeks the start of the input and infers its file type. The peek position is reset afterwards.
+   *
+   * <p>Bytes are peeked until they determine the file type, up to {@link #SNIFF_BYTE_COUNT} bytes
+   * or the end of the input.
+   *
+   * @param input The {@link ExtractorInput} to peek from, whose peek position must be at the start
+   *     of the stream.
+   * @return The inferred {@link FileTypes.Type}, or {@link FileTypes#UNKNOWN} if it couldn't be
+   *     inferred.
+   * @throws IOException If an error occurs peeking from the input.
+   */
+  public static @FileTypes.Type int sniffFileType(ExtractorInput input) throws IOException {
+    byte[] data = new byte[SNIFF_BYTE_COUNT];
+    int length = 0;
+    try {
+      while (length < SNIFF_BYTE_COUNT) {
+        int bytesPeeked = input.peek(data, length, SNIFF_BYTE_COUNT - length);
+        if (bytesPeeked == C.RESULT_END_OF_INPUT) {
+          break;
+        }
+        length += bytesPeeked;
+        int fileType = sniffFileType(data, length, /* mayHaveMoreData= */ true);
+        if (fileType != RESULT_NEED_MORE_DATA) {
+          return fileType;
+        }
+      }
+    } finally {
+      input.resetPeekPosition();
+    }
+    return sniffFileType(data, length);
+  }
+
+  /**
+   * Infers the file type of a stream from its first bytes.
+   *
+   * @param data The first bytes of the stream.
+   * @param length The number of valid bytes in {@code data}.
+   * @return The inferred {@link FileTypes.Type}, or {@link FileTypes#UNKNOWN} if it couldn't be
+   *     inferred.
+   */
+  public static @FileTypes.Type int sniffFileType(byte[] data, int length) {
+    return sniffFileType(data, length, /* mayHaveMoreData= */ false);
+  }
+
+  /**
+   * Infers the file type of a stream from its first bytes.
+   *
+   * @param data The first bytes of the stream.
+   * @param length The number of valid bytes in {@code data}.
+   * @param mayHaveMoreData Whether more bytes of the stream may follow {@code data}.
+   * @return The inferred {@link FileTypes.Type}, {@link FileTypes#UNKNOWN} if it couldn't be
+   *     inferred, or {@link #RESULT_NEED_MORE_DATA} if {@code mayHaveMoreData} is true and more
+   *     bytes may allow inferring it.
+   */
+  private static int sniffFileType(byte[] data, int length, boolean mayHaveMoreData) {
+    // Container formats with a unique signature at the start of the stream.
+    if (startsWith(data, length, /* offset= */ 0, "FLV")) {
+      return FileTypes.FLV;
+    } else if (startsWith(data, length, /* offset= */ 0, "fLaC")) {
+      return FileTypes.FLAC;
+    } else if (startsWith(data, length, /* offset= */ 0, "RIFF")
+        || startsWith(data, length, /* offset= */ 0, "RF64")) {
+      if (startsWith(data, length, /* offset= */ 8, "WAVE")) {
+        return FileTypes.WAV;
+      } else if (startsWith(data, length, /* offset= */ 8, "AVI ")) {
+        return FileTypes.AVI;
+      }
+      return FileTypes.UNKNOWN;
+    } else if (isMp4BoxType(data, length)) {
+      return FileTypes.MP4;
+    } else if (startsWith(data, length, /* offset= */ 0, "#!AMR")) {
+      return FileTypes.AMR;
+    } else if (startsWith(data, length, /* offset= */ 0, "OggS")) {
+      return FileTypes.OGG;
+    } else if (length >= 4
+        && data[0] == 0x1A
+        && data[1] == 0x45
+        && data[2] == (byte) 0xDF
+        && data[3] == (byte) 0xA3) {
+      return FileTypes.MATROSKA;
+    } else if (length >= 4
+        && data[0] == 0
+        && data[1] == 0
+        && data[2] == 1
+        && data[3] == (byte) 0xBA) {
+      return FileTypes.PS;
+    } else if (startsWith(data, length, /* offset= */ 0, "MThd")) {
+      return FileTypes.MIDI;
+    } else if (isTsStream(data, length)) {
+      return FileTypes.TS;
+    } else if (length >= 2 && data[0] == (byte) 0xFF && data[1] == (byte) 0xD8) {
+      return FileTypes.JPEG;
+    } else if (mayHaveMoreData
+        && (length < MAX_CONTAINER_SIGNATURE_LENGTH
+            || (length <= TS_PACKET_SIZE && data[0] == TS_SYNC_BYTE))) {
+      return RESULT_NEED_MORE_DATA;
+    }
+    // Elementary audio streams, which may start with ID3 tags.
+    int position = 0;
+    while (startsWith(data, length, position, "ID3")) {
+      if (position + ID3_HEADER_LENGTH > length) {
+        return mayHaveMoreData ? RESULT_NEED_MORE_DATA : FileTypes.UNKNOWN;
+      }
+      int tagLength =
+          ((data[position + 6] & 0x7F) << 21)
+              | ((data[position + 7] & 0x7F) << 14)
+              | ((data[position + 8] & 0x7F) << 7)
+              | (data[position + 9] & 0x7F);
+      position += ID3_HEADER_LENGTH + tagLength;
+    }
+    if (mayHaveMoreData && position + 4 > length) {
+      // Another ID3 tag or a FLAC signature may follow.
+      return RESULT_NEED_MORE_DATA;
+    } else if (position + 2 > length) {
+      return FileTypes.UNKNOWN;
+    }
+    int syncWord = ((data[position] & 0xFF) << 8) | (data[position + 1] & 0xFF);
+    if (startsWith(data, length, position, "fLaC")) {
+      return FileTypes.FLAC;
+    } else if (syncWord == 0x0B77) {
+      return FileTypes.AC3;
+    } else if (syncWord == 0xAC40 || syncWord == 0xAC41) {
+      return FileTypes.AC4;
+    } else if ((syncWord & 0xFFF6) == 0xFFF0) {
+      // MPEG sync word with layer 0.
+      return FileTypes.ADTS;
+    } else if ((syncWord & 0xFFE0) == 0xFFE0 && (syncWord & 0x06) != 0) {
+      return FileTypes.MP3;
+    }
+    return FileTypes.UNKNOWN;
+  }
+
+  /**
+   * Returns the {@link FileTypes.Type} read by an extractor from this module, or {@link
+   * FileTypes#UNKNOWN} for other extractors.
+   */
+  public static @FileTypes.Type int getFileType(Extractor extractor) {
+    if (extractor instanceof FlvExtractor) {
+      return FileTypes.FLV;
+    } else if (extractor instanceof FlacExtractor) {
+      return FileTypes.FLAC;
+    } else if (extractor instanceof WavExtractor) {
+      return FileTypes.WAV;
+    } else if (extractor instanceof FragmentedMp4Extractor || extractor instanceof Mp4Extractor) {
+      return FileTypes.MP4;
+    } else if (extractor instanceof AmrExtractor) {
+      return FileTypes.AMR;
+    } else if (extractor instanceof PsExtractor) {
+      return FileTypes.PS;
+    } else if (extractor instanceof OggExtractor) {
+      return FileTypes.OGG;
+    } else if (extractor instanceof TsExtractor) {
+      return FileTypes.TS;
+    } else if (extractor instanceof MatroskaExtractor) {
+      return FileTypes.MATROSKA;
+    } else if (extractor instanceof AdtsExtractor) {
+      return FileTypes.ADTS;
+    } else if (extractor instanceof Ac3Extractor) {
+      return FileTypes.AC3;
+    } else if (extractor instanceof Ac4Extractor) {
+      return FileTypes.AC4;
+    } else if (extractor instanceof Mp3Extractor) {
+      return FileTypes.MP3;
+    } else if (extractor instanceof AviExtractor) {
+      return FileTypes.AVI;
+    } else if (extractor instanceof JpegExtractor) {
+      return FileTypes.JPEG;
+    }
+    return FileTypes.UNKNOWN;
+  }
+
+  private static boolean isMp4BoxType(byte[] data, int length) {
+    return startsWith(data, length, /* offset= */ 4, "ftyp")
+        || startsWith(data, length, /* offset= */ 4, "styp")
+        || startsWith(data, length, /* offset= */ 4, "moov")
+        || startsWith(data, length, /* offset= */ 4, "mdat")
+        || startsWith(data, length, /* offset= */ 4, "sidx")
+        || startsWith(data, length, /* offset= */ 4, "moof")
+        || startsWith(data, length, /* offset= */ 4, "free")
+        || startsWith(data, length, /* offset= */ 4, "skip")
+        || startsWith(data, length, /* offset= */ 4, "wide");
+  }
+
+  private static boolean isTsStream(byte[] data, int length) {
+    // Require a sync byte at the start of at least two consecutive packets.
+    if (length < TS_PACKET_SIZE + 1) {
+      return false;
+    }
+    for (int position = 0; position < length; position += TS_PACKET_SIZE) {
+      if (data[position] != TS_SYNC_BYTE) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean startsWith(byte[] data, int length, int offset, String signature) {
+    if (offset < 0 || offset + signature.length() > length) {
+      return false;
+    }
+    for (int i = 0; i < signature.length(); i++) {
+      if (data[offset + i] != signature.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -305,6 +305,11 @@ public final class FlacExtractor implements Extractor {
       outputSampleMetadata();
       currentFrameBytesWritten = 0;
       currentFrameFirstSampleNumber = nextFrameFirstSampleNumber;
+      if (binarySearchSeeker != null) {
+        binarySearchSeeker.addTimestampAnchor(
+            currentFrameFirstSampleNumber,
+            /* bytePosition= */ input.getPosition() - buffer.bytesLeft());
+      }
     }
 
     if (buffer.bytesLeft() < FlacConstants.MAX_FRAME_HEADER_SIZE) {
@@ -21,6 +21,7 @@ import androidx.annotation.IntDef;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.ParserException;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
+import com.google.android.exoplayer2.extractor.ExtractorUtil;
 import com.google.android.exoplayer2.util.Assertions;
 import java.io.EOFException;
 import java.io.IOException;
@@ -70,7 +71,7 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
   private long elementContentSize;
 
   public DefaultEbmlReader() {
-    scratch = new byte[8];
+    scratch = new byte[MAX_ID_BYTES + MAX_LENGTH_BYTES];
     masterElementsStack = new ArrayDeque<>();
     varintReader = new VarintReader();
   }
@@ -98,6 +99,41 @@ import org.checkerframework.checker.nullness.qual.RequiresNonNull;
       }
 
       if (elementState == ELEMENT_STATE_READ_ID) {
+        // Peek the ID and the content size together, so that they're usually read in one go.
+        input.resetPeekPosition();
+        int bytesPeeked =
+            ExtractorUtil.peekToLength(
+                input, scratch, /* offset= */ 0, MAX_ID_BYTES + MAX_LENGTH_BYTES);
+        if (bytesPeeked == 0) {
+          return false;
+        }
+        int idLength = VarintReader.parseUnsignedVarintLength(scratch[0]);
+        if (idLength != C.LENGTH_UNSET && idLength <= MAX_ID_BYTES) {
+          if (idLength >= bytesPeeked) {
+            throw new EOFException();
+          }
+          int sizeLength = VarintReader.parseUnsignedVarintLength(scratch[idLength]);
+          if (sizeLength == C.LENGTH_UNSET) {
+            throw new IllegalStateException("No valid varint length mask found");
+          }
+          if (idLength + sizeLength > bytesPeeked) {
+            throw new EOFException();
+          }
+          input.skipFully(idLength + sizeLength);
+          // Element IDs are at most 4 bytes, so we can cast to integers.
+          elementId =
+              (int)
+                  VarintReader.assembleVarint(
+                      scratch, /* offset= */ 0, idLength, /* removeLengthMask= */ false);
+          elementContentSize =
+              VarintReader.assembleVarint(
+                  scratch, idLength, sizeLength, /* removeLengthMask= */ true);
+          elementState = ELEMENT_STATE_READ_CONTENT;
+        }
+      }
+
+      if (elementState == ELEMENT_STATE_READ_ID) {
+        // The element ID is invalid, so resync to the next valid level 1 element.
         long result = varintReader.readUnsignedVarint(input, true, false, MAX_ID_BYTES);
         if (result == C.RESULT_MAX_LENGTH_EXCEEDED) {
           result = maybeResyncToNextLevel1Element(input);
@@ -39,6 +39,7 @@ import com.google.android.exoplayer2.extractor.ChunkIndex;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.ExtractorUtil;
 import com.google.android.exoplayer2.extractor.ExtractorsFactory;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.SeekMap;
@@ -55,6 +56,7 @@ import com.google.android.exoplayer2.video.ColorInfo;
 import com.google.android.exoplayer2.video.DolbyVisionConfig;
 import com.google.android.exoplayer2.video.HevcConfig;
 import com.google.common.collect.ImmutableList;
+import java.io.EOFException;
 import java.io.IOException;
 import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
@@ -115,8 +117,10 @@ public class MatroskaExtractor implements Extractor {
   private static final int UNSET_ENTRY_ID = -1;
 
   private static final int BLOCK_STATE_START = 0;
-  private static final int BLOCK_STATE_HEADER = 1;
-  private static final int BLOCK_STATE_DATA = 2;
+  private static final int BLOCK_STATE_DATA = 1;
+
+  /** The number of bytes peeked ahead when reading a block header. */
+  private static final int BLOCK_HEADER_PEEK_LENGTH = 32;
 
   private static final String DOC_TYPE_MATROSKA = "matroska";
   private static final String DOC_TYPE_WEBM = "webm";
@@ -384,9 +388,8 @@ public class MatroskaExtractor implements Extractor {
   }
 
   private final EbmlReader reader;
-  private final VarintReader varintReader;
   private final SparseArray<Track> tracks;
-  private final boolean seekForCuesEnabled;
+  private boolean seekForCuesEnabled;
 
   // Temporary arrays.
   private final ParsableByteArray nalStartCode;
@@ -469,9 +472,8 @@ public class MatroskaExtractor implements Extractor {
     this.reader = reader;
     this.reader.init(new InnerEbmlProcessor());
     seekForCuesEnabled = (flags & FLAG_DISABLE_SEEK_FOR_CUES) == 0;
-    varintReader = new VarintReader();
     tracks = new SparseArray<>();
-    scratch = new ParsableByteArray(4);
+    scratch = new ParsableByteArray(BLOCK_HEADER_PEEK_LENGTH);
     vorbisNumPageSamples = new ParsableByteArray(ByteBuffer.allocate(4).putInt(-1).array());
     seekEntryIdBytes = new ParsableByteArray(4);
     nalStartCode = new ParsableByteArray(NalUnitUtil.NAL_START_CODE);
@@ -500,7 +502,6 @@ public class MatroskaExtractor implements Extractor {
     clusterTimecodeUs = C.TIME_UNSET;
     blockState = BLOCK_STATE_START;
     reader.reset();
-    varintReader.reset();
     resetWriteSampleData();
     for (int i = 0; i < tracks.size(); i++) {
       tracks.valueAt(i).reset();
@@ -512,6 +513,16 @@ public class MatroskaExtractor implements Extractor {
     // Do nothing
   }
 
+  /**
+   * Disables seeking to the Cues element, for example because the seek index is already known.
+   * Equivalent to {@link #FLAG_DISABLE_SEEK_FOR_CUES}.
+   *
+   * <p>Please note that this needs to be called before {@link #read}.
+   */
+  public final void disableSeekForCues() {
+    seekForCuesEnabled = false;
+  }
+
   @Override
   public final int read(ExtractorInput input, PositionHolder seekPosition) throws IOException {
     haveOutputSample = false;
@@ -1189,111 +1200,36 @@ public class MatroskaExtractor implements Extractor {
         // differ only in the way flags are specified.
 
         if (blockState == BLOCK_STATE_START) {
-          blockTrackNumber = (int) varintReader.readUnsignedVarint(input, false, true, 8);
-          blockTrackNumberLength = varintReader.getLastLength();
-          blockDurationUs = C.TIME_UNSET;
-          blockState = BLOCK_STATE_HEADER;
+          // The block header is peeked in as few calls as possible, and only skipped once it's been
+          // fully parsed. If reading fails, parsing restarts from the start of the block.
+          input.resetPeekPosition();
           scratch.reset(/* limit= */ 0);
+          peekScratch(input, /* requiredLength= */ 1, /* maxLength= */ contentSize);
+          blockTrackNumberLength = VarintReader.parseUnsignedVarintLength(scratch.getData()[0]);
+          if (blockTrackNumberLength == C.LENGTH_UNSET) {
+            throw new IllegalStateException("No valid varint length mask found");
+          }
+          peekScratch(input, blockTrackNumberLength, /* maxLength= */ contentSize);
+          blockTrackNumber =
+              (int)
+                  VarintReader.assembleVarint(
+                      scratch.getData(), blockTrackNumberLength, /* removeLengthMask= */ true);
+          blockDurationUs = C.TIME_UNSET;
         }
 
         Track track = tracks.get(blockTrackNumber);
 
         // Ignore the block if we don't know about the track to which it belongs.
         if (track == null) {
-          input.skipFully(contentSize - blockTrackNumberLength);
+          input.skipFully(contentSize);
           blockState = BLOCK_STATE_START;
           return;
         }
 
         track.assertOutputInitialized();
 
-        if (blockState == BLOCK_STATE_HEADER) {
-          // Read the relative timecode (2 bytes) and flags (1 byte).
-          readScratch(input, 3);
-          int lacing = (scratch.getData()[2] & 0x06) >> 1;
-          if (lacing == LACING_NONE) {
-            blockSampleCount = 1;
-            blockSampleSizes = ensureArrayCapacity(blockSampleSizes, 1);
-            blockSampleSizes[0] = contentSize - blockTrackNumberLength - 3;
-          } else {
-            // Read the sample count (1 byte).
-            readScratch(input, 4);
-            blockSampleCount = (scratch.getData()[3] & 0xFF) + 1;
-            blockSampleSizes = ensureArrayCapacity(blockSampleSizes, blockSampleCount);
-            if (lacing == LACING_FIXED_SIZE) {
-              int blockLacingSampleSize =
-                  (contentSize - blockTrackNumberLength - 4) / blockSampleCount;
-              Arrays.fill(blockSampleSizes, 0, blockSampleCount, blockLacingSampleSize);
-            } else if (lacing == LACING_XIPH) {
-              int totalSamplesSize = 0;
-              int headerSize = 4;
-              for (int sampleIndex = 0; sampleIndex < blockSampleCount - 1; sampleIndex++) {
-                blockSampleSizes[sampleIndex] = 0;
-                int byteValue;
-                do {
-                  readScratch(input, ++headerSize);
-                  byteValue = scratch.getData()[headerSize - 1] & 0xFF;
-                  blockSampleSizes[sampleIndex] += byteValue;
-                } while (byteValue == 0xFF);
-                totalSamplesSize += blockSampleSizes[sampleIndex];
-              }
-              blockSampleSizes[blockSampleCount - 1] =
-                  contentSize - blockTrackNumberLength - headerSize - totalSamplesSize;
-            } else if (lacing == LACING_EBML) {
-              int totalSamplesSize = 0;
-              int headerSize = 4;
-              for (int sampleIndex = 0; sampleIndex < blockSampleCount - 1; sampleIndex++) {
-                blockSampleSizes[sampleIndex] = 0;
-                readScratch(input, ++headerSize);
-                if (scratch.getData()[headerSize - 1] == 0) {
-                  throw ParserException.createForMalformedContainer(
-                      "No valid varint length mask found", /* cause= */ null);
-                }
-                long readValue = 0;
-                for (int i = 0; i < 8; i++) {
-                  int lengthMask = 1 << (7 - i);
-                  if ((scratch.getData()[headerSize - 1] & lengthMask) != 0) {
-                    int readPosition = headerSize - 1;
-                    headerSize += i;
-                    readScratch(input, headerSize);
-                    readValue = (scratch.getData()[readPosition++] & 0xFF) & ~lengthMask;
-                    while (readPosition < headerSize) {
-                      readValue <<= 8;
-                      readValue |= (scratch.getData()[readPosition++] & 0xFF);
-                    }
-                    // The first read value is the first size. Later values are signed offsets.
-                    if (sampleIndex > 0) {
-                      readValue -= (1L << (6 + i * 7)) - 1;
-                    }
-                    break;
-                  }
-                }
-                if (readValue < Integer.MIN_VALUE || readValue > Integer.MAX_VALUE) {
-                  throw ParserException.createForMalformedContainer(
-                      "EBML lacing sample size out of range.", /* cause= */ null);
-                }
-                int intReadValue = (int) readValue;
-                blockSampleSizes[sampleIndex] =
-                    sampleIndex == 0
-                        ? intReadValue
-                        : blockSampleSizes[sampleIndex - 1] + intReadValue;
-                totalSamplesSize += blockSampleSizes[sampleIndex];
-              }
-              blockSampleSizes[blockSampleCount - 1] =
-                  contentSize - blockTrackNumberLength - headerSize - totalSamplesSize;
-            } else {
-              // Lacing is always in the range 0--3.
-              throw ParserException.createForMalformedContainer(
-                  "Unexpected lacing value: " + lacing, /* cause= */ null);
-            }
-          }
-
-          int timecode = (scratch.getData()[0] << 8) | (scratch.getData()[1] & 0xFF);
-          blockTimeUs = clusterTimecodeUs + scaleTimecodeToUs(timecode);
-          boolean isKeyframe =
-              track.type == TRACK_TYPE_AUDIO
-                  || (id == ID_SIMPLE_BLOCK && (scratch.getData()[2] & 0x80) == 0x80);
-          blockFlags = isKeyframe ? C.BUFFER_FLAG_KEY_FRAME : 0;
+        if (blockState == BLOCK_STATE_START) {
+          input.skipFully(peekBlockHeader(input, id, contentSize, track));
           blockState = BLOCK_STATE_DATA;
           blockSampleIndex = 0;
         }
@@ -1441,18 +1377,117 @@ public class MatroskaExtractor implements Extractor {
   }
 
   /**
-   * Ensures {@link #scratch} contains at least {@code requiredLength} bytes of data, reading from
-   * the extractor input if necessary.
+   * Peeks and parses the header of a SimpleBlock or Block element, following the track number
+   * that's already in {@link #scratch}.
+   *
+   * @param input The input from which to peek the block header.
+   * @param id The ID of the block element.
+   * @param contentSize The size of the block element's content.
+   * @param track The track to which the block belongs.
+   * @return The size of the block header, including the track number.
+   * @throws IOException If an error occurs peeking from the input.
+   */
+  private int peekBlockHeader(ExtractorInput input, int id, int contentSize, Track track)
+      throws IOException {
+    // Read the relative timecode (2 bytes) and flags (1 byte).
+    int timecodeOffset = blockTrackNumberLength;
+    int headerSize = timecodeOffset + 3;
+    peekScratch(input, headerSize, /* maxLength= */ contentSize);
+    int flags = scratch.getData()[timecodeOffset + 2];
+    int lacing = (flags & 0x06) >> 1;
+    if (lacing == LACING_NONE) {
+      blockSampleCount = 1;
+      blockSampleSizes = ensureArrayCapacity(blockSampleSizes, 1);
+      blockSampleSizes[0] = contentSize - headerSize;
+    } else {
+      // Read the sample count (1 byte).
+      peekScratch(input, ++headerSize, /* maxLength= */ contentSize);
+      blockSampleCount = (scratch.getData()[headerSize - 1] & 0xFF) + 1;
+      blockSampleSizes = ensureArrayCapacity(blockSampleSizes, blockSampleCount);
+      if (lacing == LACING_FIXED_SIZE) {
+        int blockLacingSampleSize = (contentSize - headerSize) / blockSampleCount;
+        Arrays.fill(blockSampleSizes, 0, blockSampleCount, blockLacingSampleSize);
+      } else if (lacing == LACING_XIPH) {
+        int totalSamplesSize = 0;
+        for (int sampleIndex = 0; sampleIndex < blockSampleCount - 1; sampleIndex++) {
+          blockSampleSizes[sampleIndex] = 0;
+          int byteValue;
+          do {
+            peekScratch(input, ++headerSize, /* maxLength= */ contentSize);
+            byteValue = scratch.getData()[headerSize - 1] & 0xFF;
+            blockSampleSizes[sampleIndex] += byteValue;
+          } while (byteValue == 0xFF);
+          totalSamplesSize += blockSampleSizes[sampleIndex];
+        }
+        blockSampleSizes[blockSampleCount - 1] = contentSize - headerSize - totalSamplesSize;
+      } else if (lacing == LACING_EBML) {
+        int totalSamplesSize = 0;
+        for (int sampleIndex = 0; sampleIndex < blockSampleCount - 1; sampleIndex++) {
+          peekScratch(input, ++headerSize, /* maxLength= */ contentSize);
+          int varintLength =
+              VarintReader.parseUnsignedVarintLength(scratch.getData()[headerSize - 1]);
+          if (varintLength == C.LENGTH_UNSET) {
+            throw ParserException.createForMalformedContainer(
+                "No valid varint length mask found", /* cause= */ null);
+          }
+          int readPosition = headerSize - 1;
+          headerSize += varintLength - 1;
+          peekScratch(input, headerSize, /* maxLength= */ contentSize);
+          long readValue =
+              VarintReader.assembleVarint(
+                  scratch.getData(), readPosition, varintLength, /* removeLengthMask= */ true);
+          // The first read value is the first size. Later values are signed offsets.
+          if (sampleIndex > 0) {
+            readValue -= (1L << (6 + (varintLength - 1) * 7)) - 1;
+          }
+          if (readValue < Integer.MIN_VALUE || readValue > Integer.MAX_VALUE) {
+            throw ParserException.createForMalformedContainer(
+                "EBML lacing sample size out of range.", /* cause= */ null);
+          }
+          int intReadValue = (int) readValue;
+          blockSampleSizes[sampleIndex] =
+              sampleIndex == 0 ? intReadValue : blockSampleSizes[sampleIndex - 1] + intReadValue;
+          totalSamplesSize += blockSampleSizes[sampleIndex];
+        }
+        blockSampleSizes[blockSampleCount - 1] = contentSize - headerSize - totalSamplesSize;
+      } else {
+        // Lacing is always in the range 0--3.
+        throw ParserException.createForMalformedContainer(
+            "Unexpected lacing value: " + lacing, /* cause= */ null);
+      }
+    }
+
+    int timecode =
+        (scratch.getData()[timecodeOffset] << 8) | (scratch.getData()[timecodeOffset + 1] & 0xFF);
+    blockTimeUs = clusterTimecodeUs + scaleTimecodeToUs(timecode);
+    boolean isKeyframe =
+        track.type == TRACK_TYPE_AUDIO || (id == ID_SIMPLE_BLOCK && (flags & 0x80) == 0x80);
+    blockFlags = isKeyframe ? C.BUFFER_FLAG_KEY_FRAME : 0;
+    return headerSize;
+  }
+
+  /**
+   * Ensures {@link #scratch} contains at least {@code requiredLength} bytes of data, peeking from
+   * the extractor input if necessary. Up to {@link #BLOCK_HEADER_PEEK_LENGTH} bytes more than
+   * required are peeked, as long as the total doesn't exceed {@code maxLength}, so that a block
+   * header is usually peeked in a single call.
    */
-  private void readScratch(ExtractorInput input, int requiredLength) throws IOException {
-    if (scratch.limit() >= requiredLength) {
+  private void peekScratch(ExtractorInput input, int requiredLength, int maxLength)
+      throws IOException {
+    int limit = scratch.limit();
+    if (limit >= requiredLength) {
       return;
     }
-    if (scratch.capacity() < requiredLength) {
-      scratch.ensureCapacity(max(scratch.capacity() * 2, requiredLength));
+    int peekLength = max(requiredLength, min(maxLength, limit + BLOCK_HEADER_PEEK_LENGTH));
+    if (scratch.capacity() < peekLength) {
+      scratch.ensureCapacity(max(scratch.capacity() * 2, peekLength));
+    }
+    int bytesPeeked =
+        ExtractorUtil.peekToLength(input, scratch.getData(), limit, peekLength - limit);
+    if (limit + bytesPeeked < requiredLength) {
+      throw new EOFException();
     }
-    input.readFully(scratch.getData(), scratch.limit(), requiredLength - scratch.limit());
-    scratch.setLimit(requiredLength);
+    scratch.setLimit(limit + bytesPeeked);
   }
 
   /**
@@ -126,14 +126,9 @@ import java.io.IOException;
    *     C#LENGTH_UNSET} otherwise.
    */
   public static int parseUnsignedVarintLength(int firstByte) {
-    int varIntLength = C.LENGTH_UNSET;
-    for (int i = 0; i < VARINT_LENGTH_MASKS.length; i++) {
-      if ((VARINT_LENGTH_MASKS[i] & firstByte) != 0) {
-        varIntLength = i + 1;
-        break;
-      }
-    }
-    return varIntLength;
+    // The length is one more than the number of leading zeros of the first byte.
+    int leadingZeros = Integer.numberOfLeadingZeros(firstByte & 0xFF) - 24;
+    return leadingZeros < VARINT_LENGTH_MASKS.length ? leadingZeros + 1 : C.LENGTH_UNSET;
   }
 
   /**
@@ -146,12 +141,26 @@ import java.io.IOException;
    */
   public static long assembleVarint(
       byte[] varintBytes, int varintLength, boolean removeLengthMask) {
-    long varint = varintBytes[0] & 0xFFL;
+    return assembleVarint(varintBytes, /* offset= */ 0, varintLength, removeLengthMask);
+  }
+
+  /**
+   * Assemble a varint from the given byte array, starting at an offset.
+   *
+   * @param varintBytes Bytes that contain the varint.
+   * @param offset The offset of the varint in {@code varintBytes}.
+   * @param varintLength Length of the varint to assemble.
+   * @param removeLengthMask Removes the variable-length integer length mask from the value.
+   * @return Parsed and assembled varint.
+   */
+  public static long assembleVarint(
+      byte[] varintBytes, int offset, int varintLength, boolean removeLengthMask) {
+    long varint = varintBytes[offset] & 0xFFL;
     if (removeLengthMask) {
       varint &= ~VARINT_LENGTH_MASKS[varintLength - 1];
     }
     for (int i = 1; i < varintLength; i++) {
-      varint = (varint << 8) | (varintBytes[i] & 0xFFL);
+      varint = (varint << 8) | (varintBytes[offset + i] & 0xFFL);
     }
     return varint;
   }
@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Assertions;
+import com.google.android.exoplayer2.util.Util;
+import java.util.Arrays;
+
+/**
+ * For each sample of each track, the accumulated size of all samples which need to be read before
+ * this sample can be used, when the samples of all tracks are read in timestamp order.
+ *
+ * <p>The sizes are either stored for every sample, or recomputed on demand from checkpoints of the
+ * timestamp-ordered merge of the tracks, taken every {@code checkpointInterval} samples. In the
+ * latter case, the memory used is proportional to the number of checkpoints rather than to the
+ * number of samples.
+ *
+ * <p>Instances aren't thread-safe, because recomputing sizes reuses internal buffers.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class AccumulatedSampleSizes {
+
+  private final TrackSampleTable[] sampleTables;
+  @Nullable private final long[][] accumulatedSampleSizes;
+
+  // Checkpoints of the merge, taken before every checkpointInterval-th merged sample.
+  private final long[] checkpointAccumulatedSizes;
+  private final int[][] checkpointNextSampleIndices;
+
+  // Most recent result per track, as the same samples are looked up repeatedly while reading.
+  private final int[] lastSampleIndices;
+  private final long[] lastAccumulatedSizes;
+
+  // Merge state used to recompute sizes from a checkpoint.
+  private final int[] nextSampleIndices;
+  private final long[] nextSampleTimesUs;
+
+  /**
+   * Creates an instance.
+   *
+   * @param sampleTables The sample tables of the tracks.
+   * @param checkpointInterval The number of merged samples between checkpoints, or 1 to store the
+   *     accumulated size of every sample.
+   */
+  public AccumulatedSampleSizes(TrackSampleTable[] sampleTables, int checkpointInterval) {
+    Assertions.checkArgument(checkpointInterval > 0);
+    this.sampleTables = sampleTables;
+    int trackCount = sampleTables.length;
+    int totalSampleCount = 0;
+    for (TrackSampleTable sampleTable : sampleTables) {
+      totalSampleCount += sampleTable.sampleCount;
+    }
+    lastSampleIndices = new int[trackCount];
+    Arrays.fill(lastSampleIndices, C.INDEX_UNSET);
+    lastAccumulatedSizes = new long[trackCount];
+    nextSampleIndices = new int[trackCount];
+    nextSampleTimesUs = new long[trackCount];
+
+    int checkpointCount =
+        checkpointInterval == 1 ? 0 : Util.ceilDivide(totalSampleCount + 1, checkpointInterval);
+    checkpointAccumulatedSizes = new long[checkpointCount];
+    checkpointNextSampleIndices = new int[trackCount][checkpointCount];
+    if (checkpointInterval == 1) {
+      accumulatedSampleSizes = new long[trackCount][];
+      for (int i = 0; i < trackCount; i++) {
+        accumulatedSampleSizes[i] = new long[sampleTables[i].sampleCount];
+      }
+    } else {
+      accumulatedSampleSizes = null;
+    }
+
+    resetMerge(/* checkpointIndex= */ C.INDEX_UNSET);
+    long accumulatedSize = 0;
+    for (int mergedSampleIndex = 0; ; mergedSampleIndex++) {
+      if (checkpointCount > 0 && mergedSampleIndex % checkpointInterval == 0) {
+        int checkpointIndex = mergedSampleIndex / checkpointInterval;
+        checkpointAccumulatedSizes[checkpointIndex] = accumulatedSize;
+        for (int i = 0; i < trackCount; i++) {
+          checkpointNextSampleIndices[i][checkpointIndex] = nextSampleIndices[i];
+        }
+      }
+      int trackIndex = getNextMergedTrackIndex();
+      if (trackIndex == C.INDEX_UNSET) {
+        break;
+      }
+      int sampleIndex = nextSampleIndices[trackIndex];
+      if (accumulatedSampleSizes != null) {
+        accumulatedSampleSizes[trackIndex][sampleIndex] = accumulatedSize;
+      }
+      accumulatedSize += sampleTables[trackIndex].getSize(sampleIndex);
+      advanceMerge(trackIndex);
+    }
+  }
+
+  /**
+   * Returns the accumulated size of all samples which need to be read before a sample can be used.
+   *
+   * @param trackIndex The index of the track.
+   * @param sampleIndex The index of the sample in the track.
+   * @return The accumulated size, in bytes.
+   */
+  public long get(int trackIndex, int sampleIndex) {
+    if (accumulatedSampleSizes != null) {
+      return accumulatedSampleSizes[trackIndex][sampleIndex];
+    }
+    if (lastSampleIndices[trackIndex] == sampleIndex) {
+      return lastAccumulatedSizes[trackIndex];
+    }
+    // The last checkpoint before the sample is merged, which is at most checkpointInterval merged
+    // samples before it.
+    int checkpointIndex =
+        Util.binarySearchCeil(
+                checkpointNextSampleIndices[trackIndex],
+                sampleIndex,
+                /* inclusive= */ false,
+                /* stayInBounds= */ false)
+            - 1;
+    resetMerge(checkpointIndex);
+    long accumulatedSize = checkpointAccumulatedSizes[checkpointIndex];
+    while (true) {
+      int mergedTrackIndex = getNextMergedTrackIndex();
+      int mergedSampleIndex = nextSampleIndices[mergedTrackIndex];
+      if (mergedTrackIndex == trackIndex && mergedSampleIndex == sampleIndex) {
+        break;
+      }
+      accumulatedSize += sampleTables[mergedTrackIndex].getSize(mergedSampleIndex);
+      advanceMerge(mergedTrackIndex);
+    }
+    lastSampleIndices[trackIndex] = sampleIndex;
+    lastAccumulatedSizes[trackIndex] = accumulatedSize;
+    return accumulatedSize;
+  }
+
+  /** Resets the merge state to a checkpoint, or to the start if the index is unset. */
+  private void resetMerge(int checkpointIndex) {
+    for (int i = 0; i < sampleTables.length; i++) {
+      int sampleIndex =
+          checkpointIndex == C.INDEX_UNSET ? 0 : checkpointNextSampleIndices[i][checkpointIndex];
+      nextSampleIndices[i] = sampleIndex;
+      nextSampleTimesUs[i] =
+          sampleIndex < sampleTables[i].sampleCount
+              ? sampleTables[i].getTimestampUs(sampleIndex)
+              : C.TIME_UNSET;
+    }
+  }
+
+  /**
+   * Returns the index of the track whose next sample is merged next, or {@link C#INDEX_UNSET} if
+   * all samples are merged.
+   */
+  private int getNextMergedTrackIndex() {
+    long minTimeUs = Long.MAX_VALUE;
+    int minTimeTrackIndex = C.INDEX_UNSET;
+    for (int i = 0; i < sampleTables.length; i++) {
+      if (nextSampleIndices[i] < sampleTables[i].sampleCount && nextSampleTimesUs[i] <= minTimeUs) {
+        minTimeTrackIndex = i;
+        minTimeUs = nextSampleTimesUs[i];
+      }
+    }
+    return minTimeTrackIndex;
+  }
+
+  private void advanceMerge(int trackIndex) {
+    int sampleIndex = ++nextSampleIndices[trackIndex];
+    if (sampleIndex < sampleTables[trackIndex].sampleCount) {
+      nextSampleTimesUs[trackIndex] = sampleTables[trackIndex].getTimestampUs(sampleIndex);
+    }
+  }
+}
@@ -19,6 +19,7 @@ import static com.google.android.exoplayer2.util.Assertions.checkNotNull;
 import static com.google.android.exoplayer2.util.MimeTypes.getMimeTypeFromMp4ObjectType;
 import static com.google.android.exoplayer2.util.Util.castNonNull;
 import static java.lang.Math.max;
+import static java.lang.Math.min;
 
 import android.util.Pair;
 import androidx.annotation.Nullable;
@@ -152,6 +153,8 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
    * @param drmInitData {@link DrmInitData} to be included in the format, or {@code null}.
    * @param ignoreEditLists Whether to ignore any edit lists in the trak boxes.
    * @param isQuickTime True for QuickTime media. False otherwise.
+   * @param useCompactSampleTables Whether to decode sample information on demand from a {@link
+   *     CompactSampleTable} where possible, rather than expanding it into per-sample arrays.
    * @param modifyTrackFunction A function to apply to the {@link Track Tracks} in the result.
    * @return A list of {@link TrackSampleTable} instances.
    * @throws ParserException Thrown if the trak atoms can't be parsed.
@@ -163,6 +166,7 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
       @Nullable DrmInitData drmInitData,
       boolean ignoreEditLists,
       boolean isQuickTime,
+      boolean useCompactSampleTables,
       Function<@NullableType Track, @NullableType Track> modifyTrackFunction)
       throws ParserException {
     List<TrackSampleTable> trackSampleTables = new ArrayList<>();
@@ -190,7 +194,13 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
                       checkNotNull(atom.getContainerAtomOfType(Atom.TYPE_mdia))
                           .getContainerAtomOfType(Atom.TYPE_minf))
                   .getContainerAtomOfType(Atom.TYPE_stbl));
-      TrackSampleTable trackSampleTable = parseStbl(track, stblAtom, gaplessInfoHolder);
+      @Nullable TrackSampleTable trackSampleTable = null;
+      if (useCompactSampleTables) {
+        trackSampleTable = parseCompactStbl(track, stblAtom, gaplessInfoHolder);
+      }
+      if (trackSampleTable == null) {
+        trackSampleTable = parseStbl(track, stblAtom, gaplessInfoHolder);
+      }
       trackSampleTables.add(trackSampleTable);
     }
     return trackSampleTables;
@@ -814,6 +824,309 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
         editedDurationUs);
   }
 
+  /**
+   * Parses an stbl atom (defined in ISO/IEC 14496-12) into a sample table that decodes sample
+   * information on demand, or returns null if the sample table can't be represented in this way.
+   *
+   * <p>Tracks with fixed size raw audio samples that need to be rechunked and tracks with edit
+   * lists other than a single edit that covers all samples are not supported.
+   *
+   * @param track Track to which this sample table corresponds.
+   * @param stblAtom stbl (sample table) atom to decode.
+   * @param gaplessInfoHolder Holder to populate with gapless playback information.
+   * @return Sample table described by the stbl atom, or null if it isn't supported.
+   * @throws ParserException Thrown if the stbl atom can't be parsed.
+   */
+  @Nullable
+  private static TrackSampleTable parseCompactStbl(
+      Track track, Atom.ContainerAtom stblAtom, GaplessInfoHolder gaplessInfoHolder)
+      throws ParserException {
+    SampleSizeBox sampleSizeBox;
+    ParsableByteArray sampleSizes;
+    int sampleSizeFieldBits;
+    @Nullable Atom.LeafAtom stszAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_stsz);
+    if (stszAtom != null) {
+      sampleSizeBox = new StszSampleSizeBox(stszAtom, track.format);
+      sampleSizes = stszAtom.data;
+      sampleSizeFieldBits = 32;
+    } else {
+      @Nullable Atom.LeafAtom stz2Atom = stblAtom.getLeafAtomOfType(Atom.TYPE_stz2);
+      if (stz2Atom == null) {
+        throw ParserException.createForMalformedContainer(
+            "Track has no sample table size information", /* cause= */ null);
+      }
+      sampleSizeBox = new Stz2SampleSizeBox(stz2Atom);
+      sampleSizes = stz2Atom.data;
+      sampleSizeFieldBits = sampleSizes.getData()[Atom.FULL_HEADER_SIZE + 3] & 0xFF;
+    }
+    int sampleCount = sampleSizeBox.getSampleCount();
+    int fixedSampleSize = sampleSizeBox.getFixedSampleSize();
+    @Nullable String sampleMimeType = track.format.sampleMimeType;
+    if (sampleCount == 0
+        || (fixedSampleSize != C.LENGTH_UNSET
+            && (MimeTypes.AUDIO_RAW.equals(sampleMimeType)
+                || MimeTypes.AUDIO_MLAW.equals(sampleMimeType)
+                || MimeTypes.AUDIO_ALAW.equals(sampleMimeType)))
+        || (track.editListDurations != null && track.editListDurations.length != 1)) {
+      return null;
+    }
+
+    boolean chunkOffsetsAreLongs = false;
+    @Nullable Atom.LeafAtom chunkOffsetsAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_stco);
+    if (chunkOffsetsAtom == null) {
+      chunkOffsetsAreLongs = true;
+      chunkOffsetsAtom = checkNotNull(stblAtom.getLeafAtomOfType(Atom.TYPE_co64));
+    }
+    ParsableByteArray chunkOffsets = chunkOffsetsAtom.data;
+    ParsableByteArray stsc = checkNotNull(stblAtom.getLeafAtomOfType(Atom.TYPE_stsc)).data;
+    ParsableByteArray stts = checkNotNull(stblAtom.getLeafAtomOfType(Atom.TYPE_stts)).data;
+    @Nullable Atom.LeafAtom stssAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_stss);
+    @Nullable ParsableByteArray stss = stssAtom != null ? stssAtom.data : null;
+    @Nullable Atom.LeafAtom cttsAtom = stblAtom.getLeafAtomOfType(Atom.TYPE_ctts);
+    @Nullable ParsableByteArray ctts = cttsAtom != null ? cttsAtom.data : null;
+
+    // The boxes are read in the same way as in parseStbl, but only changes between consecutive
+    // samples are recorded.
+    stsc.setPosition(Atom.FULL_HEADER_SIZE);
+    int[] chunkRunFirstChunkIndices = new int[min(stsc.readUnsignedIntToInt(), sampleCount) + 1];
+    int[] chunkRunFirstSampleIndices = new int[chunkRunFirstChunkIndices.length];
+    int[] chunkRunSamplesPerChunk = new int[chunkRunFirstChunkIndices.length];
+    int chunkRunCount = 0;
+    ChunkIterator chunkIterator = new ChunkIterator(stsc, chunkOffsets, chunkOffsetsAreLongs);
+
+    stts.setPosition(Atom.FULL_HEADER_SIZE);
+    int remainingTimestampDeltaChanges = stts.readUnsignedIntToInt() - 1;
+    int remainingSamplesAtTimestampDelta = stts.readUnsignedIntToInt();
+    int timestampDeltaInTimeUnits = stts.readUnsignedIntToInt();
+    int timestampDeltaRunCapacity = max(0, min(remainingTimestampDeltaChanges, sampleCount)) + 1;
+    int[] timestampDeltaRunFirstSampleIndices = new int[timestampDeltaRunCapacity];
+    long[] timestampDeltaRunFirstTimestamps = new long[timestampDeltaRunCapacity];
+    int[] timestampDeltaRunDeltas = new int[timestampDeltaRunCapacity];
+    int timestampDeltaRunCount = 0;
+
+    int remainingSamplesAtTimestampOffset = 0;
+    int remainingTimestampOffsetChanges = 0;
+    int timestampOffset = 0;
+    @Nullable int[] timestampOffsetRunFirstSampleIndices = null;
+    @Nullable int[] timestampOffsetRunOffsets = null;
+    int timestampOffsetRunCount = 0;
+    if (ctts != null) {
+      ctts.setPosition(Atom.FULL_HEADER_SIZE);
+      remainingTimestampOffsetChanges = ctts.readUnsignedIntToInt();
+      int timestampOffsetRunCapacity = min(remainingTimestampOffsetChanges, sampleCount) + 1;
+      timestampOffsetRunFirstSampleIndices = new int[timestampOffsetRunCapacity];
+      timestampOffsetRunOffsets = new int[timestampOffsetRunCapacity];
+    }
+
+    int nextSynchronizationSampleIndex = C.INDEX_UNSET;
+    int remainingSynchronizationSamples = 0;
+    @Nullable int[] synchronizationSampleIndices = null;
+    int synchronizationSampleCount = 0;
+    if (stss != null) {
+      stss.setPosition(Atom.FULL_HEADER_SIZE);
+      remainingSynchronizationSamples = stss.readUnsignedIntToInt();
+      if (remainingSynchronizationSamples > 0) {
+        nextSynchronizationSampleIndex = stss.readUnsignedIntToInt() - 1;
+        synchronizationSampleIndices = new int[min(remainingSynchronizationSamples, sampleCount)];
+      }
+    }
+
+    int maximumSize = 0;
+    long timestampTimeUnits = 0;
+    int remainingSamplesInChunk = 0;
+    for (int i = 0; i < sampleCount; i++) {
+      boolean chunkDataComplete = true;
+      boolean isFirstSampleInChunk = false;
+      while (remainingSamplesInChunk == 0 && (chunkDataComplete = chunkIterator.moveNext())) {
+        remainingSamplesInChunk = chunkIterator.numSamples;
+        isFirstSampleInChunk = true;
+      }
+      if (!chunkDataComplete) {
+        Log.w(TAG, "Unexpected end of chunk data");
+        sampleCount = i;
+        break;
+      }
+      if (isFirstSampleInChunk) {
+        int previousRunIndex = chunkRunCount - 1;
+        if (chunkRunCount == 0
+            || chunkRunSamplesPerChunk[previousRunIndex] != chunkIterator.numSamples
+            || chunkRunFirstChunkIndices[previousRunIndex]
+                    + (i - chunkRunFirstSampleIndices[previousRunIndex]) / chunkIterator.numSamples
+                != chunkIterator.index) {
+          if (chunkRunCount == chunkRunFirstChunkIndices.length) {
+            int newLength = chunkRunCount * 2;
+            chunkRunFirstChunkIndices = Arrays.copyOf(chunkRunFirstChunkIndices, newLength);
+            chunkRunFirstSampleIndices = Arrays.copyOf(chunkRunFirstSampleIndices, newLength);
+            chunkRunSamplesPerChunk = Arrays.copyOf(chunkRunSamplesPerChunk, newLength);
+          }
+          chunkRunFirstChunkIndices[chunkRunCount] = chunkIterator.index;
+          chunkRunFirstSampleIndices[chunkRunCount] = i;
+          chunkRunSamplesPerChunk[chunkRunCount] = chunkIterator.numSamples;
+          chunkRunCount++;
+        }
+      }
+
+      if (ctts != null) {
+        while (remainingSamplesAtTimestampOffset == 0 && remainingTimestampOffsetChanges > 0) {
+          remainingSamplesAtTimestampOffset = ctts.readUnsignedIntToInt();
+          timestampOffset = ctts.readInt();
+          remainingTimestampOffsetChanges--;
+        }
+        remainingSamplesAtTimestampOffset--;
+        int[] firstSampleIndices = checkNotNull(timestampOffsetRunFirstSampleIndices);
+        int[] offsets = checkNotNull(timestampOffsetRunOffsets);
+        if (timestampOffsetRunCount == 0
+            || offsets[timestampOffsetRunCount - 1] != timestampOffset) {
+          firstSampleIndices[timestampOffsetRunCount] = i;
+          offsets[timestampOffsetRunCount] = timestampOffset;
+          timestampOffsetRunCount++;
+        }
+      }
+
+      int size = sampleSizeBox.readNextSampleSize();
+      if (size > maximumSize) {
+        maximumSize = size;
+      }
+
+      if (synchronizationSampleIndices != null && i == nextSynchronizationSampleIndex) {
+        synchronizationSampleIndices[synchronizationSampleCount++] = i;
+        remainingSynchronizationSamples--;
+        if (remainingSynchronizationSamples > 0) {
+          nextSynchronizationSampleIndex = checkNotNull(stss).readUnsignedIntToInt() - 1;
+        }
+      }
+
+      if (timestampDeltaRunCount == 0
+          || timestampDeltaRunDeltas[timestampDeltaRunCount - 1] != timestampDeltaInTimeUnits) {
+        timestampDeltaRunFirstSampleIndices[timestampDeltaRunCount] = i;
+        timestampDeltaRunFirstTimestamps[timestampDeltaRunCount] = timestampTimeUnits;
+        timestampDeltaRunDeltas[timestampDeltaRunCount] = timestampDeltaInTimeUnits;
+        timestampDeltaRunCount++;
+      }
+      timestampTimeUnits += timestampDeltaInTimeUnits;
+      remainingSamplesAtTimestampDelta--;
+      if (remainingSamplesAtTimestampDelta == 0 && remainingTimestampDeltaChanges > 0) {
+        remainingSamplesAtTimestampDelta = stts.readUnsignedIntToInt();
+        timestampDeltaInTimeUnits = stts.readInt();
+        remainingTimestampDeltaChanges--;
+      }
+
+      remainingSamplesInChunk--;
+    }
+    if (sampleCount == 0) {
+      return null;
+    }
+    long duration = timestampTimeUnits + timestampOffset;
+
+    CompactSampleTable compactSampleTable =
+        new CompactSampleTable(
+            sampleCount,
+            maximumSize,
+            duration,
+            track.timescale,
+            fixedSampleSize,
+            sampleSizes.getData(),
+            /* sampleSizeDataPosition= */ Atom.FULL_HEADER_SIZE + 8,
+            sampleSizeFieldBits,
+            chunkOffsets.getData(),
+            /* chunkOffsetDataPosition= */ Atom.FULL_HEADER_SIZE + 4,
+            chunkOffsetsAreLongs,
+            Arrays.copyOf(chunkRunFirstChunkIndices, chunkRunCount),
+            Arrays.copyOf(chunkRunFirstSampleIndices, chunkRunCount),
+            Arrays.copyOf(chunkRunSamplesPerChunk, chunkRunCount),
+            Arrays.copyOf(timestampDeltaRunFirstSampleIndices, timestampDeltaRunCount),
+            Arrays.copyOf(timestampDeltaRunFirstTimestamps, timestampDeltaRunCount),
+            Arrays.copyOf(timestampDeltaRunDeltas, timestampDeltaRunCount),
+            timestampOffsetRunFirstSampleIndices != null
+                ? Arrays.copyOf(timestampOffsetRunFirstSampleIndices, timestampOffsetRunCount)
+                : null,
+            timestampOffsetRunOffsets != null
+                ? Arrays.copyOf(timestampOffsetRunOffsets, timestampOffsetRunCount)
+                : null,
+            synchronizationSampleIndices != null
+                ? Arrays.copyOf(synchronizationSampleIndices, synchronizationSampleCount)
+                : null);
+    if (track.editListDurations == null) {
+      long durationUs = Util.scaleLargeTimestamp(duration, C.MICROS_PER_SECOND, track.timescale);
+      return new TrackSampleTable(track, compactSampleTable, durationUs);
+    }
+
+    // Apply the single edit in the same way as parseStbl.
+    long editDuration = track.editListDurations[0];
+    long editMediaTime = checkNotNull(track.editListMediaTimes)[0];
+    if (track.type == C.TRACK_TYPE_AUDIO && sampleCount >= 2) {
+      long editEndTime =
+          editMediaTime
+              + Util.scaleLargeTimestamp(editDuration, track.timescale, track.movieTimescale);
+      int lastIndex = sampleCount - 1;
+      int latestDelayIndex = Util.constrainValue(MAX_GAPLESS_TRIM_SIZE_SAMPLES, 0, lastIndex);
+      int earliestPaddingIndex =
+          Util.constrainValue(sampleCount - MAX_GAPLESS_TRIM_SIZE_SAMPLES, 0, lastIndex);
+      long firstTimestamp = compactSampleTable.getTimestamp(0);
+      if (canApplyEditWithGaplessInfo(
+          firstTimestamp,
+          compactSampleTable.getTimestamp(latestDelayIndex),
+          compactSampleTable.getTimestamp(earliestPaddingIndex),
+          duration,
+          editMediaTime,
+          editEndTime)) {
+        long encoderDelay =
+            Util.scaleLargeTimestamp(
+                editMediaTime - firstTimestamp, track.format.sampleRate, track.timescale);
+        long encoderPadding =
+            Util.scaleLargeTimestamp(
+                duration - editEndTime, track.format.sampleRate, track.timescale);
+        if ((encoderDelay != 0 || encoderPadding != 0)
+            && encoderDelay <= Integer.MAX_VALUE
+            && encoderPadding <= Integer.MAX_VALUE) {
+          gaplessInfoHolder.encoderDelay = (int) encoderDelay;
+          gaplessInfoHolder.encoderPadding = (int) encoderPadding;
+          long editedDurationUs =
+              Util.scaleLargeTimestamp(editDuration, C.MICROS_PER_SECOND, track.movieTimescale);
+          return new TrackSampleTable(track, compactSampleTable, editedDurationUs);
+        }
+      }
+    }
+
+    if (editDuration == 0) {
+      compactSampleTable.setEdit(editMediaTime, /* clipNegativeTimestamps= */ false);
+      long durationUs =
+          Util.scaleLargeTimestamp(duration - editMediaTime, C.MICROS_PER_SECOND, track.timescale);
+      return new TrackSampleTable(track, compactSampleTable, durationUs);
+    }
+
+    if (editMediaTime == -1) {
+      return null;
+    }
+    long editEndTime =
+        editMediaTime
+            + Util.scaleLargeTimestamp(editDuration, track.timescale, track.movieTimescale);
+    int startIndex =
+        compactSampleTable.binarySearchFloor(
+            editMediaTime,
+            /* useTimestampsUs= */ false,
+            /* inclusive= */ true,
+            /* stayInBounds= */ true);
+    int endIndex =
+        compactSampleTable.binarySearchCeil(
+            editEndTime,
+            /* useTimestampsUs= */ false,
+            /* inclusive= */ track.type == C.TRACK_TYPE_AUDIO,
+            /* stayInBounds= */ false);
+    while (startIndex < endIndex && !compactSampleTable.isSynchronizationSample(startIndex)) {
+      startIndex++;
+    }
+    if (startIndex != 0 || endIndex != sampleCount) {
+      // Samples would need to be discarded.
+      return null;
+    }
+    compactSampleTable.setEdit(
+        editMediaTime, /* clipNegativeTimestamps= */ canTrimSamplesWithTimestampChange(track.type));
+    long editedDurationUs =
+        Util.scaleLargeTimestamp(editDuration, C.MICROS_PER_SECOND, track.movieTimescale);
+    return new TrackSampleTable(track, compactSampleTable, editedDurationUs);
+  }
+
   private static boolean canTrimSamplesWithTimestampChange(@C.TrackType int trackType) {
     // Audio samples have an inherent duration and we can't trim data by changing the sample
     // timestamp alone.
@@ -1982,9 +2295,25 @@ import org.checkerframework.checker.nullness.compatqual.NullableType;
     int latestDelayIndex = Util.constrainValue(MAX_GAPLESS_TRIM_SIZE_SAMPLES, 0, lastIndex);
     int earliestPaddingIndex =
         Util.constrainValue(timestamps.length - MAX_GAPLESS_TRIM_SIZE_SAMPLES, 0, lastIndex);
-    return timestamps[0] <= editStartTime
-        && editStartTime < timestamps[latestDelayIndex]
-        && timestamps[earliestPaddingIndex] < editEndTime
+    return canApplyEditWithGaplessInfo(
+        timestamps[0],
+        timestamps[latestDelayIndex],
+        timestamps[earliestPaddingIndex],
+        duration,
+        editStartTime,
+        editEndTime);
+  }
+
+  private static boolean canApplyEditWithGaplessInfo(
+      long firstTimestamp,
+      long latestDelayTimestamp,
+      long earliestPaddingTimestamp,
+      long duration,
+      long editStartTime,
+      long editEndTime) {
+    return firstTimestamp <= editStartTime
+        && editStartTime < latestDelayTimestamp
+        && earliestPaddingTimestamp < editEndTime
         && editEndTime <= duration;
   }
 
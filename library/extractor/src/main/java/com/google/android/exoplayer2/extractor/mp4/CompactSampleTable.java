@@ -0,0 +1,388 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Util;
+
+/**
+ * Sample information of a track that is decoded on demand from a run-length encoded form, rather
+ * than being expanded into one entry per sample.
+ *
+ * <p>Sample sizes and chunk offsets are read directly from the stsz (or stz2) and stco (or co64)
+ * box data. The chunk layout and the timestamps are stored as runs of chunks with the same number
+ * of samples and runs of samples with the same timestamp delta or offset, which are located with a
+ * binary search. Only the indices of synchronization samples are stored individually.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class CompactSampleTable {
+
+  /** Number of samples. */
+  public final int sampleCount;
+
+  /** Maximum sample size. */
+  public final int maximumSize;
+
+  /** The duration of the samples in units of the track timescale, before edits are applied. */
+  public final long duration;
+
+  private final long timescale;
+
+  private final int fixedSampleSize;
+  private final byte[] sampleSizeData;
+  private final int sampleSizeDataPosition;
+  private final int sampleSizeFieldBits;
+
+  private final byte[] chunkOffsetData;
+  private final int chunkOffsetDataPosition;
+  private final boolean chunkOffsetsAreLongs;
+
+  private final int[] chunkRunFirstChunkIndices;
+  private final int[] chunkRunFirstSampleIndices;
+  private final int[] chunkRunSamplesPerChunk;
+
+  private final int[] timestampDeltaRunFirstSampleIndices;
+  private final long[] timestampDeltaRunFirstTimestamps;
+  private final int[] timestampDeltaRunDeltas;
+
+  @Nullable private final int[] timestampOffsetRunFirstSampleIndices;
+  @Nullable private final int[] timestampOffsetRunOffsets;
+
+  @Nullable private final int[] synchronizationSampleIndices;
+
+  private long editMediaTime;
+  private boolean clipNegativeTimestamps;
+
+  /**
+   * Creates an instance.
+   *
+   * @param sampleCount The number of samples.
+   * @param maximumSize The maximum sample size.
+   * @param duration The duration of the samples in units of the track timescale.
+   * @param timescale The track timescale.
+   * @param fixedSampleSize The size of each sample if fixed, or {@link C#LENGTH_UNSET} otherwise.
+   * @param sampleSizeData The stsz or stz2 box data holding the sample sizes if they're not fixed.
+   * @param sampleSizeDataPosition The position of the first sample size in {@code sampleSizeData}.
+   * @param sampleSizeFieldBits The number of bits per sample size, which can be 4, 8, 16 or 32.
+   * @param chunkOffsetData The stco or co64 box data.
+   * @param chunkOffsetDataPosition The position of the first chunk offset in {@code
+   *     chunkOffsetData}.
+   * @param chunkOffsetsAreLongs Whether the chunk offsets are 64-bit.
+   * @param chunkRunFirstChunkIndices The index of the first chunk of each run of chunks with the
+   *     same, non-zero number of samples.
+   * @param chunkRunFirstSampleIndices The index of the first sample of each run of chunks.
+   * @param chunkRunSamplesPerChunk The number of samples per chunk of each run of chunks.
+   * @param timestampDeltaRunFirstSampleIndices The index of the first sample of each run of samples
+   *     with the same timestamp delta.
+   * @param timestampDeltaRunFirstTimestamps The decoding timestamp of the first sample of each run.
+   * @param timestampDeltaRunDeltas The timestamp delta of each run.
+   * @param timestampOffsetRunFirstSampleIndices The index of the first sample of each run of
+   *     samples with the same timestamp offset, or null if there are no timestamp offsets.
+   * @param timestampOffsetRunOffsets The timestamp offset of each run, or null if there are no
+   *     timestamp offsets.
+   * @param synchronizationSampleIndices The sorted indices of the synchronization samples, or null
+   *     if all samples are synchronization samples.
+   */
+  public CompactSampleTable(
+      int sampleCount,
+      int maximumSize,
+      long duration,
+      long timescale,
+      int fixedSampleSize,
+      byte[] sampleSizeData,
+      int sampleSizeDataPosition,
+      int sampleSizeFieldBits,
+      byte[] chunkOffsetData,
+      int chunkOffsetDataPosition,
+      boolean chunkOffsetsAreLongs,
+      int[] chunkRunFirstChunkIndices,
+      int[] chunkRunFirstSampleIndices,
+      int[] chunkRunSamplesPerChunk,
+      int[] timestampDeltaRunFirstSampleIndices,
+      long[] timestampDeltaRunFirstTimestamps,
+      int[] timestampDeltaRunDeltas,
+      @Nullable int[] timestampOffsetRunFirstSampleIndices,
+      @Nullable int[] timestampOffsetRunOffsets,
+      @Nullable int[] synchronizationSampleIndices) {
+    this.sampleCount = sampleCount;
+    this.maximumSize = maximumSize;
+    this.duration = duration;
+    this.timescale = timescale;
+    this.fixedSampleSize = fixedSampleSize;
+    this.sampleSizeData = sampleSizeData;
+    this.sampleSizeDataPosition = sampleSizeDataPosition;
+    this.sampleSizeFieldBits = sampleSizeFieldBits;
+    this.chunkOffsetData = chunkOffsetData;
+    this.chunkOffsetDataPosition = chunkOffsetDataPosition;
+    this.chunkOffsetsAreLongs = chunkOffsetsAreLongs;
+    this.chunkRunFirstChunkIndices = chunkRunFirstChunkIndices;
+    this.chunkRunFirstSampleIndices = chunkRunFirstSampleIndices;
+    this.chunkRunSamplesPerChunk = chunkRunSamplesPerChunk;
+    this.timestampDeltaRunFirstSampleIndices = timestampDeltaRunFirstSampleIndices;
+    this.timestampDeltaRunFirstTimestamps = timestampDeltaRunFirstTimestamps;
+    this.timestampDeltaRunDeltas = timestampDeltaRunDeltas;
+    this.timestampOffsetRunFirstSampleIndices = timestampOffsetRunFirstSampleIndices;
+    this.timestampOffsetRunOffsets = timestampOffsetRunOffsets;
+    this.synchronizationSampleIndices = synchronizationSampleIndices;
+  }
+
+  /**
+   * Applies a single edit to the sample timestamps, which are shifted so that {@code editMediaTime}
+   * is presented at time zero.
+   *
+   * @param editMediaTime The media time at which the edit starts, in units of the track timescale.
+   * @param clipNegativeTimestamps Whether timestamps before the start of the edit are set to zero.
+   */
+  public void setEdit(long editMediaTime, boolean clipNegativeTimestamps) {
+    this.editMediaTime = editMediaTime;
+    this.clipNegativeTimestamps = clipNegativeTimestamps;
+  }
+
+  /** Returns the size of a sample in bytes. */
+  public int getSize(int sampleIndex) {
+    if (fixedSampleSize != C.LENGTH_UNSET) {
+      return fixedSampleSize;
+    }
+    byte[] data = sampleSizeData;
+    switch (sampleSizeFieldBits) {
+      case 4:
+        int value = data[sampleSizeDataPosition + sampleIndex / 2] & 0xFF;
+        return sampleIndex % 2 == 0 ? value >> 4 : value & 0x0F;
+      case 8:
+        return data[sampleSizeDataPosition + sampleIndex] & 0xFF;
+      case 16:
+        int position = sampleSizeDataPosition + 2 * sampleIndex;
+        return (data[position] & 0xFF) << 8 | (data[position + 1] & 0xFF);
+      default:
+        // The sizes are unsigned, but like the expanded table we treat them as ints.
+        return (int) readUnsignedInt(data, sampleSizeDataPosition + 4 * sampleIndex);
+    }
+  }
+
+  /** Returns the byte offset of a sample. */
+  public long getOffset(int sampleIndex) {
+    return getOffset(
+        sampleIndex, /* previousSampleIndex= */ C.INDEX_UNSET, /* previousOffset= */ 0);
+  }
+
+  /**
+   * Returns the byte offset of a sample, using the offset of a sample the caller looked up before
+   * to speed up sequential lookups. The table itself doesn't cache offsets, so that it can be
+   * accessed from multiple threads.
+   *
+   * @param sampleIndex The index of the sample.
+   * @param previousSampleIndex The index of a sample whose offset the caller looked up before, or
+   *     {@link C#INDEX_UNSET}.
+   * @param previousOffset The offset of the sample at {@code previousSampleIndex}.
+   * @return The byte offset of the sample.
+   */
+  public long getOffset(int sampleIndex, int previousSampleIndex, long previousOffset) {
+    if (sampleIndex == previousSampleIndex) {
+      return previousOffset;
+    }
+    int runIndex = findRun(chunkRunFirstSampleIndices, sampleIndex);
+    int samplesPerChunk = chunkRunSamplesPerChunk[runIndex];
+    int indexInRun = sampleIndex - chunkRunFirstSampleIndices[runIndex];
+    int indexInChunk = indexInRun % samplesPerChunk;
+    if (indexInChunk > 0 && sampleIndex == previousSampleIndex + 1) {
+      return previousOffset + getSize(previousSampleIndex);
+    }
+    long offset =
+        getChunkOffset(chunkRunFirstChunkIndices[runIndex] + indexInRun / samplesPerChunk);
+    for (int i = sampleIndex - indexInChunk; i < sampleIndex; i++) {
+      offset += getSize(i);
+    }
+    return offset;
+  }
+
+  /** Returns the presentation timestamp of a sample in microseconds. */
+  public long getTimestampUs(int sampleIndex) {
+    long timestamp = getTimestamp(sampleIndex) - editMediaTime;
+    long timestampUs = Util.scaleLargeTimestamp(timestamp, C.MICROS_PER_SECOND, timescale);
+    return clipNegativeTimestamps ? max(0, timestampUs) : timestampUs;
+  }
+
+  /**
+   * Returns the presentation timestamp of a sample in units of the track timescale, before edits
+   * are applied.
+   */
+  public long getTimestamp(int sampleIndex) {
+    int runIndex = findRun(timestampDeltaRunFirstSampleIndices, sampleIndex);
+    long timestamp =
+        timestampDeltaRunFirstTimestamps[runIndex]
+            + (long) timestampDeltaRunDeltas[runIndex]
+                * (sampleIndex - timestampDeltaRunFirstSampleIndices[runIndex]);
+    if (timestampOffsetRunFirstSampleIndices != null && timestampOffsetRunOffsets != null) {
+      int offsetRunIndex = findRun(timestampOffsetRunFirstSampleIndices, sampleIndex);
+      if (offsetRunIndex >= 0) {
+        timestamp += timestampOffsetRunOffsets[offsetRunIndex];
+      }
+    }
+    return timestamp;
+  }
+
+  /** Returns whether a sample is a synchronization sample. */
+  public boolean isSynchronizationSample(int sampleIndex) {
+    return getIndexOfEarlierOrEqualSynchronizationSample(sampleIndex) == sampleIndex;
+  }
+
+  /**
+   * Returns the index of the last synchronization sample at or before the given sample index, or
+   * {@link C#INDEX_UNSET} if there is none.
+   */
+  public int getIndexOfEarlierOrEqualSynchronizationSample(int sampleIndex) {
+    if (sampleIndex < 0) {
+      return C.INDEX_UNSET;
+    } else if (synchronizationSampleIndices == null) {
+      return sampleIndex;
+    }
+    int index =
+        Util.binarySearchFloor(
+            synchronizationSampleIndices,
+            sampleIndex,
+            /* inclusive= */ true,
+            /* stayInBounds= */ false);
+    return index >= 0 ? synchronizationSampleIndices[index] : C.INDEX_UNSET;
+  }
+
+  /**
+   * Returns the index of the first synchronization sample at or after the given sample index, or
+   * {@link C#INDEX_UNSET} if there is none.
+   */
+  public int getIndexOfLaterOrEqualSynchronizationSample(int sampleIndex) {
+    if (sampleIndex >= sampleCount) {
+      return C.INDEX_UNSET;
+    } else if (synchronizationSampleIndices == null) {
+      return sampleIndex;
+    }
+    int index =
+        Util.binarySearchCeil(
+            synchronizationSampleIndices,
+            sampleIndex,
+            /* inclusive= */ true,
+            /* stayInBounds= */ false);
+    return index < synchronizationSampleIndices.length
+        ? synchronizationSampleIndices[index]
+        : C.INDEX_UNSET;
+  }
+
+  /**
+   * Equivalent to {@link Util#binarySearchFloor(long[], long, boolean, boolean)} on the sample
+   * timestamps, including for timestamps that aren't sorted.
+   *
+   * @param value The timestamp to search for.
+   * @param useTimestampsUs Whether to search the timestamps in microseconds, as returned by {@link
+   *     #getTimestampUs(int)}, or in units of the track timescale, as returned by {@link
+   *     #getTimestamp(int)}.
+   * @param inclusive Whether to return the index of a sample with the given timestamp.
+   * @param stayInBounds Whether to return 0 rather than -1 if all timestamps are greater.
+   * @return The index of the last sample with a smaller (or optionally equal) timestamp.
+   */
+  public int binarySearchFloor(
+      long value, boolean useTimestampsUs, boolean inclusive, boolean stayInBounds) {
+    int index = binarySearch(value, useTimestampsUs);
+    if (index < 0) {
+      index = -(index + 2);
+    } else {
+      while (--index >= 0 && getTimestamp(index, useTimestampsUs) == value) {}
+      if (inclusive) {
+        index++;
+      }
+    }
+    return stayInBounds ? max(0, index) : index;
+  }
+
+  /**
+   * Equivalent to {@link Util#binarySearchCeil(long[], long, boolean, boolean)} on the sample
+   * timestamps, including for timestamps that aren't sorted.
+   *
+   * @param value The timestamp to search for.
+   * @param useTimestampsUs Whether to search the timestamps in microseconds, as returned by {@link
+   *     #getTimestampUs(int)}, or in units of the track timescale, as returned by {@link
+   *     #getTimestamp(int)}.
+   * @param inclusive Whether to return the index of a sample with the given timestamp.
+   * @param stayInBounds Whether to return {@code sampleCount - 1} rather than {@code sampleCount}
+   *     if all timestamps are smaller.
+   * @return The index of the first sample with a greater (or optionally equal) timestamp.
+   */
+  public int binarySearchCeil(
+      long value, boolean useTimestampsUs, boolean inclusive, boolean stayInBounds) {
+    int index = binarySearch(value, useTimestampsUs);
+    if (index < 0) {
+      index = ~index;
+    } else {
+      while (++index < sampleCount && getTimestamp(index, useTimestampsUs) == value) {}
+      if (inclusive) {
+        index--;
+      }
+    }
+    return stayInBounds ? min(sampleCount - 1, index) : index;
+  }
+
+  /** Equivalent to {@link java.util.Arrays#binarySearch(long[], long)} on the sample timestamps. */
+  private int binarySearch(long value, boolean useTimestampsUs) {
+    int low = 0;
+    int high = sampleCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      long midValue = getTimestamp(mid, useTimestampsUs);
+      if (midValue < value) {
+        low = mid + 1;
+      } else if (midValue > value) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -(low + 1);
+  }
+
+  private long getTimestamp(int sampleIndex, boolean useTimestampsUs) {
+    return useTimestampsUs ? getTimestampUs(sampleIndex) : getTimestamp(sampleIndex);
+  }
+
+  private long getChunkOffset(int chunkIndex) {
+    return chunkOffsetsAreLongs
+        ? readUnsignedInt(chunkOffsetData, chunkOffsetDataPosition + 8 * chunkIndex) << 32
+            | readUnsignedInt(chunkOffsetData, chunkOffsetDataPosition + 8 * chunkIndex + 4)
+        : readUnsignedInt(chunkOffsetData, chunkOffsetDataPosition + 4 * chunkIndex);
+  }
+
+  /**
+   * Returns the index of the run containing a sample, given the sorted indices of the first sample
+   * of each run, or -1 if the sample is before the first run.
+   */
+  private static int findRun(int[] runFirstSampleIndices, int sampleIndex) {
+    return Util.binarySearchFloor(
+        runFirstSampleIndices, sampleIndex, /* inclusive= */ true, /* stayInBounds= */ false);
+  }
+
+  private static long readUnsignedInt(byte[] data, int position) {
+    return (data[position] & 0xFFL) << 24
+        | (data[position + 1] & 0xFFL) << 16
+        | (data[position + 2] & 0xFFL) << 8
+        | (data[position + 3] & 0xFFL);
+  }
+}
@@ -75,8 +75,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
 
   /**
    * Flags controlling the behavior of the extractor. Possible flag values are {@link
-   * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS}, {@link #FLAG_READ_MOTION_PHOTO_METADATA} and {@link
-   * #FLAG_READ_SEF_DATA}.
+   * #FLAG_WORKAROUND_IGNORE_EDIT_LISTS}, {@link #FLAG_READ_MOTION_PHOTO_METADATA}, {@link
+   * #FLAG_READ_SEF_DATA} and {@link #FLAG_USE_COMPACT_SAMPLE_TABLES}.
    */
   @Documented
   @Retention(RetentionPolicy.SOURCE)
@@ -86,7 +86,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       value = {
         FLAG_WORKAROUND_IGNORE_EDIT_LISTS,
         FLAG_READ_MOTION_PHOTO_METADATA,
-        FLAG_READ_SEF_DATA
+        FLAG_READ_SEF_DATA,
+        FLAG_USE_COMPACT_SAMPLE_TABLES
       })
   public @interface Flags {}
   /** Flag to ignore any edit lists in the stream. */
@@ -104,6 +105,15 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    * videos.
    */
   public static final int FLAG_READ_SEF_DATA = 1 << 2;
+  /**
+   * Flag to keep the sample tables of the tracks in their run-length encoded form and decode sample
+   * information on demand, rather than expanding them into arrays with an entry per sample.
+   *
+   * <p>This reduces the memory needed for very long files, at the cost of slightly more work per
+   * sample read and per seek. Tracks whose sample tables can't be kept in this form (for example,
+   * because of edit lists with more than one edit) are expanded as usual.
+   */
+  public static final int FLAG_USE_COMPACT_SAMPLE_TABLES = 1 << 3;
 
   /** Parser states. */
   @Documented
@@ -145,6 +155,12 @@ public final class Mp4Extractor implements Extractor, SeekMap {
    */
   private static final long MAXIMUM_READ_AHEAD_BYTES_STREAM = 10 * 1024 * 1024;
 
+  /**
+   * The number of samples between the checkpoints from which accumulated sample sizes are
+   * recomputed when using compact sample tables.
+   */
+  private static final int ACCUMULATED_SAMPLE_SIZES_CHECKPOINT_INTERVAL = 32;
+
   private final @Flags int flags;
 
   // Temporary arrays.
@@ -162,6 +178,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   private long atomSize;
   private int atomHeaderBytesRead;
   @Nullable private ParsableByteArray atomData;
+  private boolean skippingSampleData;
 
   private int sampleTrackIndex;
   private int sampleBytesRead;
@@ -172,7 +189,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
   private ExtractorOutput extractorOutput;
   private Mp4Track[] tracks;
 
-  private long @MonotonicNonNull [][] accumulatedSampleSizes;
+  private @MonotonicNonNull AccumulatedSampleSizes accumulatedSampleSizes;
   private int firstVideoTrackIndex;
   private long durationUs;
   private @FileType int fileType;
@@ -250,6 +267,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
 
   @Override
   public int read(ExtractorInput input, PositionHolder seekPosition) throws IOException {
+    skippingSampleData = false;
     while (true) {
       switch (parserState) {
         case STATE_READING_ATOM_HEADER:
@@ -291,6 +309,15 @@ public final class Mp4Extractor implements Extractor, SeekMap {
 
   // Non-inherited public methods.
 
+  /**
+   * Returns whether the last {@link #read} that returned {@link #RESULT_SEEK} skipped over an
+   * {@code mdat} box that precedes the {@code moov} box. The extractor will seek back to read the
+   * samples in the skipped box once it has read the {@code moov} box.
+   */
+  public boolean isSkippingSampleData() {
+    return skippingSampleData;
+  }
+
   /**
    * Equivalent to {@link SeekMap#getSeekPoints(long)}, except it adds the {@code trackId}
    * parameter.
@@ -320,14 +347,14 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       if (sampleIndex == C.INDEX_UNSET) {
         return new SeekPoints(SeekPoint.START);
       }
-      long sampleTimeUs = sampleTable.timestampsUs[sampleIndex];
+      long sampleTimeUs = sampleTable.getTimestampUs(sampleIndex);
       firstTimeUs = sampleTimeUs;
-      firstOffset = sampleTable.offsets[sampleIndex];
+      firstOffset = sampleTable.getOffset(sampleIndex);
       if (sampleTimeUs < timeUs && sampleIndex < sampleTable.sampleCount - 1) {
         int secondSampleIndex = sampleTable.getIndexOfLaterOrEqualSynchronizationSample(timeUs);
         if (secondSampleIndex != C.INDEX_UNSET && secondSampleIndex != sampleIndex) {
-          secondTimeUs = sampleTable.timestampsUs[secondSampleIndex];
-          secondOffset = sampleTable.offsets[secondSampleIndex];
+          secondTimeUs = sampleTable.getTimestampUs(secondSampleIndex);
+          secondOffset = sampleTable.getOffset(secondSampleIndex);
         }
       }
     } else {
@@ -461,7 +488,9 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       }
     }
     processAtomEnded(atomEndPosition);
-    return seekRequired && parserState != STATE_READING_SAMPLE;
+    seekRequired = seekRequired && parserState != STATE_READING_SAMPLE;
+    skippingSampleData = seekRequired && atomType == Atom.TYPE_mdat;
+    return seekRequired;
   }
 
   private @ReadResult int readSefData(ExtractorInput input, PositionHolder seekPosition)
@@ -530,6 +559,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
             /* drmInitData= */ null,
             ignoreEditLists,
             isQuickTime,
+            /* useCompactSampleTables= */ (flags & FLAG_USE_COMPACT_SAMPLE_TABLES) != 0,
             /* modifyTrackFunction= */ track -> track);
 
     int trackCount = trackSampleTables.size();
@@ -584,7 +614,16 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     this.firstVideoTrackIndex = firstVideoTrackIndex;
     this.durationUs = durationUs;
     this.tracks = tracks.toArray(new Mp4Track[0]);
-    accumulatedSampleSizes = calculateAccumulatedSampleSizes(this.tracks);
+    TrackSampleTable[] sampleTables = new TrackSampleTable[this.tracks.length];
+    for (int i = 0; i < sampleTables.length; i++) {
+      sampleTables[i] = this.tracks[i].sampleTable;
+    }
+    accumulatedSampleSizes =
+        new AccumulatedSampleSizes(
+            sampleTables,
+            /* checkpointInterval= */ (flags & FLAG_USE_COMPACT_SAMPLE_TABLES) != 0
+                ? ACCUMULATED_SAMPLE_SIZES_CHECKPOINT_INTERVAL
+                : 1);
 
     extractorOutput.endTracks();
     extractorOutput.seekMap(this);
@@ -616,8 +655,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     Mp4Track track = tracks[sampleTrackIndex];
     TrackOutput trackOutput = track.trackOutput;
     int sampleIndex = track.sampleIndex;
-    long position = track.sampleTable.offsets[sampleIndex];
-    int sampleSize = track.sampleTable.sizes[sampleIndex];
+    long position = track.getSampleOffset(sampleIndex);
+    int sampleSize = track.sampleTable.getSize(sampleIndex);
     @Nullable TrueHdSampleRechunker trueHdSampleRechunker = track.trueHdSampleRechunker;
     long skipAmount = position - inputPosition + sampleBytesRead;
     if (skipAmount < 0 || skipAmount >= RELOAD_MINIMUM_SEEK_DISTANCE) {
@@ -688,8 +727,8 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       }
     }
 
-    long timeUs = track.sampleTable.timestampsUs[sampleIndex];
-    @C.BufferFlags int flags = track.sampleTable.flags[sampleIndex];
+    long timeUs = track.sampleTable.getTimestampUs(sampleIndex);
+    @C.BufferFlags int flags = track.sampleTable.getFlags(sampleIndex);
     if (trueHdSampleRechunker != null) {
       trueHdSampleRechunker.sampleMetadata(
           trackOutput, timeUs, flags, sampleSize, /* offset= */ 0, /* cryptoData= */ null);
@@ -736,8 +775,9 @@ public final class Mp4Extractor implements Extractor, SeekMap {
       if (sampleIndex == track.sampleTable.sampleCount) {
         continue;
       }
-      long sampleOffset = track.sampleTable.offsets[sampleIndex];
-      long sampleAccumulatedBytes = castNonNull(accumulatedSampleSizes)[trackIndex][sampleIndex];
+      long sampleOffset = track.getSampleOffset(sampleIndex);
+      long sampleAccumulatedBytes =
+          castNonNull(accumulatedSampleSizes).get(trackIndex, sampleIndex);
       long skipAmount = sampleOffset - inputPosition;
       boolean requiresReload = skipAmount < 0 || skipAmount >= RELOAD_MINIMUM_SEEK_DISTANCE;
       if ((!requiresReload && preferredRequiresReload)
@@ -807,45 +847,6 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     }
   }
 
-  /**
-   * For each sample of each track, calculates accumulated size of all samples which need to be read
-   * before this sample can be used.
-   */
-  private static long[][] calculateAccumulatedSampleSizes(Mp4Track[] tracks) {
-    long[][] accumulatedSampleSizes = new long[tracks.length][];
-    int[] nextSampleIndex = new int[tracks.length];
-    long[] nextSampleTimesUs = new long[tracks.length];
-    boolean[] tracksFinished = new boolean[tracks.length];
-    for (int i = 0; i < tracks.length; i++) {
-      accumulatedSampleSizes[i] = new long[tracks[i].sampleTable.sampleCount];
-      nextSampleTimesUs[i] = tracks[i].sampleTable.timestampsUs[0];
-    }
-    long accumulatedSampleSize = 0;
-    int finishedTracks = 0;
-    while (finishedTracks < tracks.length) {
-      long minTimeUs = Long.MAX_VALUE;
-      int minTimeTrackIndex = -1;
-      for (int i = 0; i < tracks.length; i++) {
-        if (!tracksFinished[i] && nextSampleTimesUs[i] <= minTimeUs) {
-          minTimeTrackIndex = i;
-          minTimeUs = nextSampleTimesUs[i];
-        }
-      }
-      int trackSampleIndex = nextSampleIndex[minTimeTrackIndex];
-      accumulatedSampleSizes[minTimeTrackIndex][trackSampleIndex] = accumulatedSampleSize;
-      accumulatedSampleSize += tracks[minTimeTrackIndex].sampleTable.sizes[trackSampleIndex];
-      nextSampleIndex[minTimeTrackIndex] = ++trackSampleIndex;
-      if (trackSampleIndex < accumulatedSampleSizes[minTimeTrackIndex].length) {
-        nextSampleTimesUs[minTimeTrackIndex] =
-            tracks[minTimeTrackIndex].sampleTable.timestampsUs[trackSampleIndex];
-      } else {
-        tracksFinished[minTimeTrackIndex] = true;
-        finishedTracks++;
-      }
-    }
-    return accumulatedSampleSizes;
-  }
-
   /**
    * Adjusts a seek point offset to take into account the track with the given {@code sampleTable},
    * for a given {@code seekTimeUs}.
@@ -861,7 +862,7 @@ public final class Mp4Extractor implements Extractor, SeekMap {
     if (sampleIndex == C.INDEX_UNSET) {
       return offset;
     }
-    long sampleOffset = sampleTable.offsets[sampleIndex];
+    long sampleOffset = sampleTable.getOffset(sampleIndex);
     return min(sampleOffset, offset);
   }
 
@@ -961,6 +962,9 @@ public final class Mp4Extractor implements Extractor, SeekMap {
 
     public int sampleIndex;
 
+    private int offsetSampleIndex;
+    private long offset;
+
     public Mp4Track(Track track, TrackSampleTable sampleTable, TrackOutput trackOutput) {
       this.track = track;
       this.sampleTable = sampleTable;
@@ -969,6 +973,18 @@ public final class Mp4Extractor implements Extractor, SeekMap {
           MimeTypes.AUDIO_TRUEHD.equals(track.format.sampleMimeType)
               ? new TrueHdSampleRechunker()
               : null;
+      offsetSampleIndex = C.INDEX_UNSET;
+    }
+
+    /**
+     * Returns the offset of a sample, using the previously returned offset to speed up sequential
+     * lookups. Must only be called while reading samples, as seek points are looked up on another
+     * thread.
+     */
+    public long getSampleOffset(int sampleIndex) {
+      offset = sampleTable.getOffset(sampleIndex, offsetSampleIndex, offset);
+      offsetSampleIndex = sampleIndex;
+      return offset;
     }
   }
 }
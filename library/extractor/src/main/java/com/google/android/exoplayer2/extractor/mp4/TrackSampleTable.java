@@ -15,6 +15,7 @@
  */
 package com.google.android.exoplayer2.extractor.mp4;
 
+import androidx.annotation.Nullable;
 import com.google.android.exoplayer2.C;
 import com.google.android.exoplayer2.util.Assertions;
 import com.google.android.exoplayer2.util.Util;
@@ -34,19 +35,17 @@ import com.google.android.exoplayer2.util.Util;
   public final Track track;
   /** Number of samples. */
   public final int sampleCount;
-  /** Sample offsets in bytes. */
-  public final long[] offsets;
-  /** Sample sizes in bytes. */
-  public final int[] sizes;
-  /** Maximum sample size in {@link #sizes}. */
+  /** Maximum sample size. */
   public final int maximumSize;
-  /** Sample timestamps in microseconds. */
-  public final long[] timestampsUs;
-  /** Sample flags. */
-  public final int[] flags;
   /** The duration of the track sample table in microseconds. */
   public final long durationUs;
 
+  private final long[] offsets;
+  private final int[] sizes;
+  private final long[] timestampsUs;
+  private final int[] flags;
+  @Nullable private final CompactSampleTable compactSampleTable;
+
   public TrackSampleTable(
       Track track,
       long[] offsets,
@@ -66,12 +65,76 @@ import com.google.android.exoplayer2.util.Util;
     this.timestampsUs = timestampsUs;
     this.flags = flags;
     this.durationUs = durationUs;
+    compactSampleTable = null;
     sampleCount = offsets.length;
     if (flags.length > 0) {
       flags[flags.length - 1] |= C.BUFFER_FLAG_LAST_SAMPLE;
     }
   }
 
+  /**
+   * Creates a sample table whose sample information is decoded on demand from a {@link
+   * CompactSampleTable}.
+   */
+  public TrackSampleTable(Track track, CompactSampleTable compactSampleTable, long durationUs) {
+    this.track = track;
+    this.compactSampleTable = compactSampleTable;
+    this.durationUs = durationUs;
+    sampleCount = compactSampleTable.sampleCount;
+    maximumSize = compactSampleTable.maximumSize;
+    offsets = new long[0];
+    sizes = new int[0];
+    timestampsUs = new long[0];
+    flags = new int[0];
+  }
+
+  /** Returns the offset of a sample in bytes. */
+  public long getOffset(int sampleIndex) {
+    return compactSampleTable != null
+        ? compactSampleTable.getOffset(sampleIndex)
+        : offsets[sampleIndex];
+  }
+
+  /**
+   * Returns the offset of a sample in bytes, using the offset of a sample the caller looked up
+   * before to speed up sequential lookups.
+   *
+   * @see CompactSampleTable#getOffset(int, int, long)
+   */
+  public long getOffset(int sampleIndex, int previousSampleIndex, long previousOffset) {
+    return compactSampleTable != null
+        ? compactSampleTable.getOffset(sampleIndex, previousSampleIndex, previousOffset)
+        : offsets[sampleIndex];
+  }
+
+  /** Returns the size of a sample in bytes. */
+  public int getSize(int sampleIndex) {
+    return compactSampleTable != null
+        ? compactSampleTable.getSize(sampleIndex)
+        : sizes[sampleIndex];
+  }
+
+  /** Returns the timestamp of a sample in microseconds. */
+  public long getTimestampUs(int sampleIndex) {
+    return compactSampleTable != null
+        ? compactSampleTable.getTimestampUs(sampleIndex)
+        : timestampsUs[sampleIndex];
+  }
+
+  /** Returns the {@link C.BufferFlags} of a sample. */
+  public @C.BufferFlags int getFlags(int sampleIndex) {
+    if (compactSampleTable == null) {
+      return flags[sampleIndex];
+    }
+    @C.BufferFlags
+    int flags =
+        compactSampleTable.isSynchronizationSample(sampleIndex) ? C.BUFFER_FLAG_KEY_FRAME : 0;
+    if (sampleIndex == sampleCount - 1) {
+      flags |= C.BUFFER_FLAG_LAST_SAMPLE;
+    }
+    return flags;
+  }
+
   /**
    * Returns the sample index of the closest synchronization sample at or before the given
    * timestamp, if one is available.
@@ -82,6 +145,15 @@ import com.google.android.exoplayer2.util.Util;
   public int getIndexOfEarlierOrEqualSynchronizationSample(long timeUs) {
     // Video frame timestamps may not be sorted, so the behavior of this call can be undefined.
     // Frames are not reordered past synchronization samples so this works in practice.
+    if (compactSampleTable != null) {
+      int startIndex =
+          compactSampleTable.binarySearchFloor(
+              timeUs,
+              /* useTimestampsUs= */ true,
+              /* inclusive= */ true,
+              /* stayInBounds= */ false);
+      return compactSampleTable.getIndexOfEarlierOrEqualSynchronizationSample(startIndex);
+    }
     int startIndex = Util.binarySearchFloor(timestampsUs, timeUs, true, false);
     for (int i = startIndex; i >= 0; i--) {
       if ((flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
@@ -99,6 +171,15 @@ import com.google.android.exoplayer2.util.Util;
    * @return index Index of the synchronization sample, or {@link C#INDEX_UNSET} if none.
    */
   public int getIndexOfLaterOrEqualSynchronizationSample(long timeUs) {
+    if (compactSampleTable != null) {
+      int startIndex =
+          compactSampleTable.binarySearchCeil(
+              timeUs,
+              /* useTimestampsUs= */ true,
+              /* inclusive= */ true,
+              /* stayInBounds= */ false);
+      return compactSampleTable.getIndexOfLaterOrEqualSynchronizationSample(startIndex);
+    }
     int startIndex = Util.binarySearchCeil(timestampsUs, timeUs, true, false);
     for (int i = startIndex; i < timestampsUs.length; i++) {
       if ((flags[i] & C.BUFFER_FLAG_KEY_FRAME) != 0) {
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.ts;
+
+import static java.lang.Math.max;
+
+import androidx.annotation.Nullable;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.extractor.TrackOutput;
+import com.google.android.exoplayer2.upstream.DataReader;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A {@link TrackOutput} that can record the calls made to it, so that they can be made to the
+ * {@link TrackOutput} it wraps later, on another thread.
+ *
+ * <p>Calls are forwarded immediately unless {@link #startDeferring(byte[])} has been called. Calls
+ * made while deferring are made to the wrapped output, in order, by {@link #stopDeferring()}.
+ *
+ * <p>Sample data in the shared array passed to {@link #startDeferring(byte[])} is recorded by
+ * reference, so that it's only copied once, into the wrapped output. Other sample data is copied
+ * into a buffer that's reused, as are the objects recording the calls.
+ *
+ * @deprecated com.google.android.exoplayer2 is deprecated. Please migrate to androidx.media3 (which
+ *     contains the same ExoPlayer code). See <a
+ *     href="https://developer.android.com/guide/topics/media/media3/getting-started/migration-guide">the
+ *     migration guide</a> for more details, including a script to help with the migration.
+ */
+@Deprecated
+/* package */ final class DeferringTrackOutput implements TrackOutput {
+
+  private static final int INITIAL_DATA_CAPACITY = 4096;
+
+  private final TrackOutput output;
+  private final ParsableByteArray deferredData;
+  private final ParsableByteArray sharedDataReader;
+  private final List<DeferredCall> deferredCalls;
+
+  private boolean deferring;
+  @Nullable private byte[] sharedData;
+  private int deferredCallCount;
+
+  /**
+   * Creates an instance.
+   *
+   * @param output The {@link TrackOutput} to which calls are forwarded.
+   */
+  public DeferringTrackOutput(TrackOutput output) {
+    this.output = output;
+    deferredData = new ParsableByteArray(INITIAL_DATA_CAPACITY);
+    deferredData.setLimit(0);
+    sharedDataReader = new ParsableByteArray();
+    deferredCalls = new ArrayList<>();
+  }
+
+  /**
+   * Starts recording calls instead of forwarding them.
+   *
+   * @param sharedData An array whose content doesn't change until {@link #stopDeferring()}, or
+   *     null. Sample data passed in a {@link ParsableByteArray} backed by this array is recorded by
+   *     reference instead of being copied.
+   */
+  public void startDeferring(@Nullable byte[] sharedData) {
+    this.sharedData = sharedData;
+    deferring = true;
+  }
+
+  /** Makes the recorded calls to the wrapped output, and starts forwarding calls again. */
+  public void stopDeferring() {
+    deferring = false;
+    sharedData = null;
+    for (int i = 0; i < deferredCallCount; i++) {
+      DeferredCall call = deferredCalls.get(i);
+      if (call.format != null) {
+        output.format(call.format);
+      } else if (call.dataLength > 0) {
+        ParsableByteArray data;
+        if (call.sharedData != null) {
+          data = sharedDataReader;
+          data.reset(call.sharedData, /* limit= */ call.dataPosition + call.dataLength);
+        } else {
+          data = deferredData;
+        }
+        data.setPosition(call.dataPosition);
+        output.sampleData(data, call.dataLength, call.sampleDataPart);
+      } else {
+        output.sampleMetadata(call.timeUs, call.flags, call.size, call.offset, call.cryptoData);
+      }
+      call.clear();
+    }
+    deferredCallCount = 0;
+    deferredData.reset(/* limit= */ 0);
+  }
+
+  @Override
+  public void format(Format format) {
+    if (!deferring) {
+      output.format(format);
+      return;
+    }
+    obtainDeferredCall().format = format;
+  }
+
+  @Override
+  public int sampleData(
+      DataReader input, int length, boolean allowEndOfInput, @SampleDataPart int sampleDataPart)
+      throws IOException {
+    if (!deferring) {
+      return output.sampleData(input, length, allowEndOfInput, sampleDataPart);
+    }
+    int dataPosition = prepareDeferredData(length);
+    int bytesRead = input.read(deferredData.getData(), dataPosition, length);
+    if (bytesRead == C.RESULT_END_OF_INPUT) {
+      if (allowEndOfInput) {
+        return C.RESULT_END_OF_INPUT;
+      }
+      throw new EOFException();
+    }
+    addDeferredData(dataPosition, bytesRead, sampleDataPart);
+    return bytesRead;
+  }
+
+  @Override
+  public void sampleData(ParsableByteArray data, int length, @SampleDataPart int sampleDataPart) {
+    if (!deferring) {
+      output.sampleData(data, length, sampleDataPart);
+      return;
+    }
+    if (length > 0 && data.getData() == sharedData) {
+      DeferredCall call = obtainDeferredCall();
+      call.sharedData = sharedData;
+      call.dataPosition = data.getPosition();
+      call.dataLength = length;
+      call.sampleDataPart = sampleDataPart;
+      data.skipBytes(length);
+      return;
+    }
+    int dataPosition = prepareDeferredData(length);
+    data.readBytes(deferredData.getData(), dataPosition, length);
+    addDeferredData(dataPosition, length, sampleDataPart);
+  }
+
+  @Override
+  public void sampleMetadata(
+      long timeUs,
+      @C.BufferFlags int flags,
+      int size,
+      int offset,
+      @Nullable CryptoData cryptoData) {
+    if (!deferring) {
+      output.sampleMetadata(timeUs, flags, size, offset, cryptoData);
+      return;
+    }
+    DeferredCall call = obtainDeferredCall();
+    call.timeUs = timeUs;
+    call.flags = flags;
+    call.size = size;
+    call.offset = offset;
+    call.cryptoData = cryptoData;
+  }
+
+  /**
+   * Makes room for {@code length} more bytes of data, and returns the position to write them at.
+   */
+  private int prepareDeferredData(int length) {
+    int dataPosition = deferredData.limit();
+    int requiredCapacity = dataPosition + length;
+    if (requiredCapacity > deferredData.capacity()) {
+      deferredData.ensureCapacity(max(requiredCapacity, deferredData.capacity() * 2));
+    }
+    return dataPosition;
+  }
+
+  private void addDeferredData(int dataPosition, int length, @SampleDataPart int sampleDataPart) {
+    if (length == 0) {
+      return;
+    }
+    deferredData.setLimit(dataPosition + length);
+    DeferredCall call = obtainDeferredCall();
+    call.dataPosition = dataPosition;
+    call.dataLength = length;
+    call.sampleDataPart = sampleDataPart;
+  }
+
+  /** Returns a cleared {@link DeferredCall} appended to the recorded calls. */
+  private DeferredCall obtainDeferredCall() {
+    if (deferredCallCount == deferredCalls.size()) {
+      deferredCalls.add(new DeferredCall());
+    }
+    return deferredCalls.get(deferredCallCount++);
+  }
+
+  /**
+   * A recorded call: a call to {@link #format} if the format is set, a call to {@code sampleData}
+   * if the data length is positive, and a call to {@link #sampleMetadata} otherwise.
+   *
+   * <p>The data of a {@code sampleData} call is in the shared array if it's set, and in the
+   * deferred data buffer otherwise.
+   */
+  private static final class DeferredCall {
+
+    @Nullable public Format format;
+
+    @Nullable public byte[] sharedData;
+    public int dataPosition;
+    public int dataLength;
+    public @SampleDataPart int sampleDataPart;
+
+    public long timeUs;
+    public @C.BufferFlags int flags;
+    public int size;
+    public int offset;
+    @Nullable public CryptoData cryptoData;
+
+    /** Clears the call so that it can be reused. */
+    public void clear() {
+      format = null;
+      sharedData = null;
+      dataLength = 0;
+      cryptoData = null;
+    }
+  }
+}
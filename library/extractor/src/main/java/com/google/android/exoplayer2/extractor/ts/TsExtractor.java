@@ -16,6 +16,8 @@
 package com.google.android.exoplayer2.extractor.ts;
 
 import static com.google.android.exoplayer2.extractor.ts.TsPayloadReader.FLAG_PAYLOAD_UNIT_START_INDICATOR;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
 import static java.lang.annotation.ElementType.TYPE_USE;
 
 import android.util.SparseArray;
@@ -41,6 +43,7 @@ import com.google.android.exoplayer2.util.ParsableBitArray;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.TimestampAdjuster;
 import com.google.android.exoplayer2.util.Util;
+import com.google.common.util.concurrent.Uninterruptibles;
 import java.io.IOException;
 import java.lang.annotation.Documented;
 import java.lang.annotation.Retention;
@@ -50,6 +53,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import org.checkerframework.checker.nullness.compatqual.NullableType;
 import org.checkerframework.checker.nullness.qual.MonotonicNonNull;
 
@@ -79,8 +88,10 @@ public final class TsExtractor implements Extractor {
 
   /** Behave as defined in ISO/IEC 13818-1. */
   public static final int MODE_MULTI_PMT = 0;
+
   /** Assume only one PMT will be contained in the stream, even if more are declared by the PAT. */
   public static final int MODE_SINGLE_PMT = 1;
+
   /**
    * Enable single PMT mode, map {@link TrackOutput}s by their type (instead of PID) and ignore
    * continuity counters.
@@ -122,17 +133,22 @@ public final class TsExtractor implements Extractor {
   private static final long HEVC_FORMAT_IDENTIFIER = 0x48455643;
 
   private static final int BUFFER_SIZE = TS_PACKET_SIZE * 50;
+  private static final int PARALLEL_DEMUXING_BUFFER_SIZE = TS_PACKET_SIZE * 512;
+  private static final long DEMUXING_THREAD_KEEP_ALIVE_MS = 1000;
   private static final int SNIFF_TS_PACKET_COUNT = 5;
 
   private final @Mode int mode;
   private final int timestampSearchBytes;
   private final List<TimestampAdjuster> timestampAdjusters;
   private final ParsableByteArray tsPacketBuffer;
-  private final SparseIntArray continuityCounters;
+  private final byte[] continuityCounters; // Indexed by pid
   private final TsPayloadReader.Factory payloadReaderFactory;
-  private final SparseArray<TsPayloadReader> tsPayloadReaders; // Indexed by pid
+  private final @NullableType TsPayloadReader[] tsPayloadReaders; // Indexed by pid
+  private final List<Future<?>> pendingProgramPacketBatches;
+  private final SparseArray<DeferringTrackOutput> deferringTrackOutputs; // Indexed by track id
+  private final ExtractorOutput deferringOutput;
   private final SparseBooleanArray trackIds;
-  private final SparseBooleanArray trackPids;
+  private final boolean[] trackPids; // Indexed by pid
   private final TsDurationReader durationReader;
 
   // Accessed only by the loading thread.
@@ -145,6 +161,14 @@ public final class TsExtractor implements Extractor {
   @Nullable private TsPayloadReader id3Reader;
   private int bytesSinceLastSync;
   private int pcrPid;
+  private int[] packetStartPositions;
+  private int[] packetHeaders;
+  private int[] packetPayloadPositions;
+  private int[] packetHeaderFlags;
+  private boolean parallelDemuxingEnabled;
+  private int @MonotonicNonNull [] programIndices; // Indexed by pid
+  private ProgramPacketBatch @MonotonicNonNull [] programPacketBatches;
+  @Nullable private ExecutorService demuxingExecutor;
 
   public TsExtractor() {
     this(/* defaultTsPayloadReaderFlags= */ 0);
@@ -224,15 +248,57 @@ public final class TsExtractor implements Extractor {
     }
     tsPacketBuffer = new ParsableByteArray(new byte[BUFFER_SIZE], 0);
     trackIds = new SparseBooleanArray();
-    trackPids = new SparseBooleanArray();
-    tsPayloadReaders = new SparseArray<>();
-    continuityCounters = new SparseIntArray();
+    trackPids = new boolean[MAX_PID_PLUS_ONE];
+    tsPayloadReaders = new TsPayloadReader[MAX_PID_PLUS_ONE];
+    pendingProgramPacketBatches = new ArrayList<>();
+    deferringTrackOutputs = new SparseArray<>();
+    deferringOutput = new DeferringExtractorOutput();
+    continuityCounters = new byte[MAX_PID_PLUS_ONE];
+    Arrays.fill(continuityCounters, (byte) C.INDEX_UNSET);
+    int maxPacketCount = BUFFER_SIZE / TS_PACKET_SIZE;
+    packetStartPositions = new int[maxPacketCount];
+    packetHeaders = new int[maxPacketCount];
+    packetPayloadPositions = new int[maxPacketCount];
+    packetHeaderFlags = new int[maxPacketCount];
     durationReader = new TsDurationReader(timestampSearchBytes);
     output = ExtractorOutput.PLACEHOLDER;
     pcrPid = -1;
     resetPayloadReaders();
   }
 
+  /**
+   * Sets whether the elementary streams of different programs are demultiplexed in parallel, on
+   * worker threads. Only applies in {@link #MODE_MULTI_PMT} to streams with more than one program.
+   * The default value is {@code false}.
+   *
+   * <p>The packet identifiers are still filtered on the loading thread, which then hands the
+   * packets of each program to a worker thread in batches. The packets of a program are always
+   * consumed in stream order, and all the packets read by a call to {@link #read(ExtractorInput,
+   * PositionHolder)} are consumed before it returns. {@link TrackOutput TrackOutputs} are only
+   * called on the loading thread: the output of the payload readers on the worker threads is
+   * recorded, and passed to the {@link TrackOutput TrackOutputs} once all the batches are consumed.
+   *
+   * <p>This method is experimental and will be renamed or removed in a future release. It must be
+   * called before the first call to {@link #read(ExtractorInput, PositionHolder)}.
+   *
+   * @param parallelDemuxingEnabled Whether to demultiplex programs in parallel.
+   */
+  public void experimentalSetParallelDemuxingEnabled(boolean parallelDemuxingEnabled) {
+    this.parallelDemuxingEnabled = parallelDemuxingEnabled;
+    if (parallelDemuxingEnabled && programIndices == null) {
+      programIndices = new int[MAX_PID_PLUS_ONE];
+      Arrays.fill(programIndices, C.INDEX_UNSET);
+    }
+    // Larger batches make up for the cost of handing them to the worker threads.
+    int bufferSize = parallelDemuxingEnabled ? PARALLEL_DEMUXING_BUFFER_SIZE : BUFFER_SIZE;
+    tsPacketBuffer.reset(new byte[bufferSize], /* limit= */ 0);
+    int maxPacketCount = bufferSize / TS_PACKET_SIZE;
+    packetStartPositions = new int[maxPacketCount];
+    packetHeaders = new int[maxPacketCount];
+    packetPayloadPositions = new int[maxPacketCount];
+    packetHeaderFlags = new int[maxPacketCount];
+  }
+
   // Extractor implementation.
 
   @Override
@@ -291,16 +357,20 @@ public final class TsExtractor implements Extractor {
       tsBinarySearchSeeker.setSeekTargetUs(timeUs);
     }
     tsPacketBuffer.reset(/* limit= */ 0);
-    continuityCounters.clear();
-    for (int i = 0; i < tsPayloadReaders.size(); i++) {
-      tsPayloadReaders.valueAt(i).seek();
+    Arrays.fill(continuityCounters, (byte) C.INDEX_UNSET);
+    for (@Nullable TsPayloadReader tsPayloadReader : tsPayloadReaders) {
+      if (tsPayloadReader != null) {
+        tsPayloadReader.seek();
+      }
     }
     bytesSinceLastSync = 0;
   }
 
   @Override
   public void release() {
-    // Do nothing
+    if (demuxingExecutor != null) {
+      demuxingExecutor.shutdown();
+    }
   }
 
   @Override
@@ -332,66 +402,158 @@ public final class TsExtractor implements Extractor {
       return RESULT_END_OF_INPUT;
     }
 
-    int endOfPacket = findEndOfFirstTsPacketInBuffer();
-    int limit = tsPacketBuffer.limit();
-    if (endOfPacket > limit) {
+    int packetCount = readPacketHeaders();
+    if (packetCount == 0) {
       return RESULT_CONTINUE;
     }
+    int endOfPackets = tsPacketBuffer.getPosition();
+    @Nullable
+    ProgramPacketBatch[] programPacketBatches =
+        shouldDemuxInParallel() ? getProgramPacketBatches() : null;
+    boolean wereTracksEnded = tracksEnded;
+    for (int i = 0; i < packetCount; i++) {
+      consumePacket(i, inputLength, programPacketBatches);
+      if (tracksEnded != wereTracksEnded) {
+        // Let the next read handle the end of the tracks before consuming more packets.
+        endOfPackets = packetStartPositions[i] + TS_PACKET_SIZE;
+        break;
+      }
+    }
+    if (programPacketBatches != null) {
+      consumeProgramPacketBatches(programPacketBatches);
+    }
+    tsPacketBuffer.setPosition(endOfPackets);
+    return RESULT_CONTINUE;
+  }
 
-    @TsPayloadReader.Flags int packetHeaderFlags = 0;
+  // Internals.
+
+  /**
+   * Reads the headers of all the complete TS packets in the packet buffer into the packet arrays,
+   * and sets the position of the packet buffer to the end of the last complete packet.
+   *
+   * <p>The payload position of each packet is within the packet. Packets whose adaptation field
+   * extends beyond the end of the packet are treated as packets without a payload.
+   *
+   * @return The number of complete packets.
+   * @throws ParserException If no sync byte can be found in {@link #MODE_HLS}.
+   */
+  private int readPacketHeaders() throws ParserException {
+    byte[] data = tsPacketBuffer.getData();
+    int limit = tsPacketBuffer.limit();
+    int packetCount = 0;
+    int endOfPacket;
+    while ((endOfPacket = findEndOfFirstTsPacketInBuffer()) <= limit) {
+      int packetStart = endOfPacket - TS_PACKET_SIZE;
+      // Note: See ISO/IEC 13818-1, section 2.4.3.2 for details of the header format.
+      int tsPacketHeader =
+          (data[packetStart] & 0xFF) << 24
+              | (data[packetStart + 1] & 0xFF) << 16
+              | (data[packetStart + 2] & 0xFF) << 8
+              | (data[packetStart + 3] & 0xFF);
+      @TsPayloadReader.Flags
+      int packetFlags = (tsPacketHeader & 0x400000) != 0 ? FLAG_PAYLOAD_UNIT_START_INDICATOR : 0;
+      int payloadPosition = packetStart + 4;
+      // Skip the adaptation field.
+      if ((tsPacketHeader & 0x20) != 0) {
+        int adaptationFieldLength = data[payloadPosition] & 0xFF;
+        if (adaptationFieldLength > 0) {
+          int adaptationFieldFlags = data[payloadPosition + 1] & 0xFF;
+          packetFlags |=
+              (adaptationFieldFlags & 0x40) != 0 // random_access_indicator.
+                  ? TsPayloadReader.FLAG_RANDOM_ACCESS_INDICATOR
+                  : 0;
+        }
+        payloadPosition += 1 + adaptationFieldLength;
+        if (payloadPosition > endOfPacket) {
+          // The adaptation_field_length is malformed, so the payload can't be located. Ignore it.
+          payloadPosition = endOfPacket;
+          tsPacketHeader &= ~0x10;
+        }
+      }
+      packetStartPositions[packetCount] = packetStart;
+      packetHeaders[packetCount] = tsPacketHeader;
+      packetPayloadPositions[packetCount] = payloadPosition;
+      packetHeaderFlags[packetCount] = packetFlags;
+      packetCount++;
+      tsPacketBuffer.setPosition(endOfPacket);
+    }
+    return packetCount;
+  }
 
-    // Note: See ISO/IEC 13818-1, section 2.4.3.2 for details of the header format.
-    int tsPacketHeader = tsPacketBuffer.readInt();
+  /**
+   * Consumes a TS packet whose header was read by {@link #readPacketHeaders()}.
+   *
+   * @param packetIndex The index of the packet in the packet arrays.
+   * @param inputLength The length of the input, or {@link C#LENGTH_UNSET} if it's unknown.
+   * @param programPacketBatches The batches to which the packets of the elementary streams of each
+   *     program are added instead of being consumed, or null to consume all packets immediately.
+   * @throws IOException If an error occurs consuming the packet.
+   */
+  private void consumePacket(
+      int packetIndex, long inputLength, @Nullable ProgramPacketBatch[] programPacketBatches)
+      throws IOException {
+    int tsPacketHeader = packetHeaders[packetIndex];
     if ((tsPacketHeader & 0x800000) != 0) { // transport_error_indicator
       // There are uncorrectable errors in this packet.
-      tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
+      return;
     }
-    packetHeaderFlags |= (tsPacketHeader & 0x400000) != 0 ? FLAG_PAYLOAD_UNIT_START_INDICATOR : 0;
     // Ignoring transport_priority (tsPacketHeader & 0x200000)
     int pid = (tsPacketHeader & 0x1FFF00) >> 8;
     // Ignoring transport_scrambling_control (tsPacketHeader & 0xC0)
-    boolean adaptationFieldExists = (tsPacketHeader & 0x20) != 0;
     boolean payloadExists = (tsPacketHeader & 0x10) != 0;
 
-    TsPayloadReader payloadReader = payloadExists ? tsPayloadReaders.get(pid) : null;
+    @Nullable TsPayloadReader payloadReader = payloadExists ? tsPayloadReaders[pid] : null;
     if (payloadReader == null) {
-      tsPacketBuffer.setPosition(endOfPacket);
-      return RESULT_CONTINUE;
+      return;
     }
 
     // Discontinuity check.
+    boolean discontinuityFound = false;
     if (mode != MODE_HLS) {
       int continuityCounter = tsPacketHeader & 0xF;
-      int previousCounter = continuityCounters.get(pid, continuityCounter - 1);
-      continuityCounters.put(pid, continuityCounter);
+      int previousCounter =
+          continuityCounters[pid] == C.INDEX_UNSET
+              ? continuityCounter - 1
+              : continuityCounters[pid];
+      continuityCounters[pid] = (byte) continuityCounter;
       if (previousCounter == continuityCounter) {
         // Duplicate packet found.
-        tsPacketBuffer.setPosition(endOfPacket);
-        return RESULT_CONTINUE;
+        return;
       } else if (continuityCounter != ((previousCounter + 1) & 0xF)) {
         // Discontinuity found.
-        payloadReader.seek();
+        discontinuityFound = true;
       }
     }
 
-    // Skip the adaptation field.
-    if (adaptationFieldExists) {
-      int adaptationFieldLength = tsPacketBuffer.readUnsignedByte();
-      int adaptationFieldFlags = tsPacketBuffer.readUnsignedByte();
-
-      packetHeaderFlags |=
-          (adaptationFieldFlags & 0x40) != 0 // random_access_indicator.
-              ? TsPayloadReader.FLAG_RANDOM_ACCESS_INDICATOR
-              : 0;
-      tsPacketBuffer.skipBytes(adaptationFieldLength - 1 /* flags */);
+    int payloadPosition = packetPayloadPositions[packetIndex];
+    int endOfPacket = packetStartPositions[packetIndex] + TS_PACKET_SIZE;
+    @TsPayloadReader.Flags int packetFlags = packetHeaderFlags[packetIndex];
+    int programIndex =
+        programPacketBatches != null && programIndices != null
+            ? programIndices[pid]
+            : C.INDEX_UNSET;
+    if (programPacketBatches != null
+        && programIndex != C.INDEX_UNSET
+        && programIndex < programPacketBatches.length) {
+      programPacketBatches[programIndex].add(
+          payloadReader, payloadPosition, endOfPacket, packetFlags, discontinuityFound);
+      return;
+    } else if (programPacketBatches != null) {
+      // Not an elementary stream packet, so the packets before it must be consumed first.
+      consumeProgramPacketBatches(programPacketBatches);
+    }
+    if (discontinuityFound) {
+      payloadReader.seek();
     }
 
     // Read the payload.
     boolean wereTracksEnded = tracksEnded;
     if (shouldConsumePacketPayload(pid)) {
+      int limit = tsPacketBuffer.limit();
+      tsPacketBuffer.setPosition(payloadPosition);
       tsPacketBuffer.setLimit(endOfPacket);
-      payloadReader.consume(tsPacketBuffer, packetHeaderFlags);
+      payloadReader.consume(tsPacketBuffer, packetFlags);
       tsPacketBuffer.setLimit(limit);
     }
     if (mode != MODE_HLS && !wereTracksEnded && tracksEnded && inputLength != C.LENGTH_UNSET) {
@@ -400,12 +562,105 @@ public final class TsExtractor implements Extractor {
       // to those containing the track information.
       pendingSeekToStart = true;
     }
+  }
 
-    tsPacketBuffer.setPosition(endOfPacket);
-    return RESULT_CONTINUE;
+  private boolean shouldDemuxInParallel() {
+    return parallelDemuxingEnabled
+        && mode == MODE_MULTI_PMT
+        && tracksEnded
+        && timestampAdjusters.size() > 1;
   }
 
-  // Internals.
+  private ProgramPacketBatch[] getProgramPacketBatches() {
+    if (programPacketBatches == null) {
+      // Each program has its own timestamp adjuster in MODE_MULTI_PMT.
+      int programCount = timestampAdjusters.size();
+      ProgramPacketBatch[] batches = new ProgramPacketBatch[programCount];
+      for (int i = 0; i < programCount; i++) {
+        batches[i] = new ProgramPacketBatch(tsPacketBuffer.getData());
+      }
+      programPacketBatches = batches;
+      // The loading thread consumes the packets of one of the programs.
+      int threadCount =
+          min(programCount - 1, max(1, Runtime.getRuntime().availableProcessors() - 1));
+      ThreadPoolExecutor executor =
+          new ThreadPoolExecutor(
+              threadCount,
+              threadCount,
+              DEMUXING_THREAD_KEEP_ALIVE_MS,
+              TimeUnit.MILLISECONDS,
+              new LinkedBlockingQueue<>(),
+              runnable -> new Thread(runnable, "ExoPlayer:TsExtractor"));
+      executor.allowCoreThreadTimeOut(true);
+      demuxingExecutor = executor;
+    }
+    return programPacketBatches;
+  }
+
+  /**
+   * Consumes the packets added to the batches, on the loading thread for the first non-empty batch
+   * and on the worker threads for the others, and waits until all of them are consumed.
+   */
+  private void consumeProgramPacketBatches(ProgramPacketBatch[] programPacketBatches)
+      throws IOException {
+    ExecutorService demuxingExecutor = Assertions.checkNotNull(this.demuxingExecutor);
+    @Nullable ProgramPacketBatch loadingThreadBatch = null;
+    for (ProgramPacketBatch batch : programPacketBatches) {
+      if (batch.isEmpty()) {
+        continue;
+      }
+      if (loadingThreadBatch == null) {
+        loadingThreadBatch = batch;
+        // Record the output of the payload readers, so that it can be passed to the track outputs
+        // on the loading thread once all the batches are consumed. The packet buffer isn't modified
+        // until then, so payloads in it are recorded without being copied.
+        for (int i = 0; i < deferringTrackOutputs.size(); i++) {
+          deferringTrackOutputs.valueAt(i).startDeferring(tsPacketBuffer.getData());
+        }
+      } else {
+        pendingProgramPacketBatches.add(demuxingExecutor.submit(batch));
+      }
+    }
+    if (loadingThreadBatch == null) {
+      return;
+    }
+    @Nullable RuntimeException runtimeException = null;
+    try {
+      loadingThreadBatch.run();
+    } catch (RuntimeException e) {
+      runtimeException = e;
+    }
+    // Always wait for the worker threads, so that they never output samples after this method.
+    for (int i = 0; i < pendingProgramPacketBatches.size(); i++) {
+      try {
+        Uninterruptibles.getUninterruptibly(pendingProgramPacketBatches.get(i));
+      } catch (ExecutionException e) {
+        if (runtimeException == null) {
+          Throwable cause = e.getCause();
+          runtimeException =
+              cause instanceof RuntimeException
+                  ? (RuntimeException) cause
+                  : new IllegalStateException(cause);
+        }
+      }
+    }
+    pendingProgramPacketBatches.clear();
+    for (int i = 0; i < deferringTrackOutputs.size(); i++) {
+      deferringTrackOutputs.valueAt(i).stopDeferring();
+    }
+    @Nullable ParserException parserException = null;
+    for (ProgramPacketBatch batch : programPacketBatches) {
+      if (parserException == null) {
+        parserException = batch.parserException;
+      }
+      batch.clear();
+    }
+    if (runtimeException != null) {
+      throw runtimeException;
+    } else if (parserException != null) {
+      throw parserException;
+    }
+  }
 
   private void maybeOutputSeekMap(long inputLength) {
     if (!hasOutputSeekMap) {
@@ -428,7 +683,7 @@ public final class TsExtractor implements Extractor {
   private boolean fillBufferWithAtLeastOnePacket(ExtractorInput input) throws IOException {
     byte[] data = tsPacketBuffer.getData();
     // Shift bytes to the start of the buffer if there isn't enough space left at the end.
-    if (BUFFER_SIZE - tsPacketBuffer.getPosition() < TS_PACKET_SIZE) {
+    if (data.length - tsPacketBuffer.getPosition() < TS_PACKET_SIZE) {
       int bytesLeft = tsPacketBuffer.bytesLeft();
       if (bytesLeft > 0) {
         System.arraycopy(data, tsPacketBuffer.getPosition(), data, 0, bytesLeft);
@@ -438,7 +693,7 @@ public final class TsExtractor implements Extractor {
     // Read more bytes until we have at least one packet.
     while (tsPacketBuffer.bytesLeft() < TS_PACKET_SIZE) {
       int limit = tsPacketBuffer.limit();
-      int read = input.read(data, limit, BUFFER_SIZE - limit);
+      int read = input.read(data, limit, data.length - limit);
       if (read == C.RESULT_END_OF_INPUT) {
         return false;
       }
@@ -476,24 +731,49 @@ public final class TsExtractor implements Extractor {
   }
 
   private boolean shouldConsumePacketPayload(int packetPid) {
-    return mode == MODE_HLS
-        || tracksEnded
-        || !trackPids.get(packetPid, /* valueIfKeyNotFound= */ false); // It's a PSI packet
+    return mode == MODE_HLS || tracksEnded || !trackPids[packetPid]; // It's a PSI packet
   }
 
   private void resetPayloadReaders() {
     trackIds.clear();
-    tsPayloadReaders.clear();
+    Arrays.fill(tsPayloadReaders, null);
     SparseArray<TsPayloadReader> initialPayloadReaders =
         payloadReaderFactory.createInitialPayloadReaders();
     int initialPayloadReadersSize = initialPayloadReaders.size();
     for (int i = 0; i < initialPayloadReadersSize; i++) {
-      tsPayloadReaders.put(initialPayloadReaders.keyAt(i), initialPayloadReaders.valueAt(i));
+      tsPayloadReaders[initialPayloadReaders.keyAt(i)] = initialPayloadReaders.valueAt(i);
     }
-    tsPayloadReaders.put(TS_PAT_PID, new SectionReader(new PatReader()));
+    tsPayloadReaders[TS_PAT_PID] = new SectionReader(new PatReader());
     id3Reader = null;
   }
 
+  /**
+   * An {@link ExtractorOutput} whose tracks can defer their output while programs are demultiplexed
+   * in parallel.
+   */
+  private final class DeferringExtractorOutput implements ExtractorOutput {
+
+    @Override
+    public TrackOutput track(int id, int type) {
+      @Nullable DeferringTrackOutput trackOutput = deferringTrackOutputs.get(id);
+      if (trackOutput == null) {
+        trackOutput = new DeferringTrackOutput(output.track(id, type));
+        deferringTrackOutputs.put(id, trackOutput);
+      }
+      return trackOutput;
+    }
+
+    @Override
+    public void endTracks() {
+      output.endTracks();
+    }
+
+    @Override
+    public void seekMap(SeekMap seekMap) {
+      output.seekMap(seekMap);
+    }
+  }
+
   /** Parses Program Association Table data. */
   private class PatReader implements SectionPayloadReader {
 
@@ -537,14 +817,14 @@ public final class TsExtractor implements Extractor {
           patScratch.skipBits(13); // network_PID (13)
         } else {
           int pid = patScratch.readBits(13);
-          if (tsPayloadReaders.get(pid) == null) {
-            tsPayloadReaders.put(pid, new SectionReader(new PmtReader(pid)));
+          if (tsPayloadReaders[pid] == null) {
+            tsPayloadReaders[pid] = new SectionReader(new PmtReader(pid));
             remainingPmts++;
           }
         }
       }
       if (mode != MODE_HLS) {
-        tsPayloadReaders.remove(TS_PAT_PID);
+        tsPayloadReaders[TS_PAT_PID] = null;
       }
     }
   }
@@ -599,6 +879,7 @@ public final class TsExtractor implements Extractor {
             new TimestampAdjuster(timestampAdjusters.get(0).getFirstSampleTimestampUs());
         timestampAdjusters.add(timestampAdjuster);
       }
+      int programIndex = timestampAdjusters.indexOf(timestampAdjuster);
 
       // section_syntax_indicator(1), '0'(1), reserved(2), section_length(4)
       int secondHeaderByte = sectionData.readUnsignedByte();
@@ -674,21 +955,26 @@ public final class TsExtractor implements Extractor {
         }
       }
 
+      // The tracks of programs that may be demultiplexed on worker threads defer their output.
+      ExtractorOutput readerOutput = programIndices != null ? deferringOutput : output;
       int trackIdCount = trackIdToPidScratch.size();
       for (int i = 0; i < trackIdCount; i++) {
         int trackId = trackIdToPidScratch.keyAt(i);
         int trackPid = trackIdToPidScratch.valueAt(i);
         trackIds.put(trackId, true);
-        trackPids.put(trackPid, true);
+        trackPids[trackPid] = true;
         @Nullable TsPayloadReader reader = trackIdToReaderScratch.valueAt(i);
         if (reader != null) {
           if (reader != id3Reader) {
             reader.init(
                 timestampAdjuster,
-                output,
+                readerOutput,
                 new TrackIdGenerator(programNumber, trackId, MAX_PID_PLUS_ONE));
           }
-          tsPayloadReaders.put(trackPid, reader);
+          tsPayloadReaders[trackPid] = reader;
+          if (programIndices != null) {
+            programIndices[trackPid] = programIndex;
+          }
         }
       }
 
@@ -699,7 +985,7 @@ public final class TsExtractor implements Extractor {
           tracksEnded = true;
         }
       } else {
-        tsPayloadReaders.remove(pid);
+        tsPayloadReaders[pid] = null;
         remainingPmts = mode == MODE_SINGLE_PMT ? 0 : remainingPmts - 1;
         if (remainingPmts == 0) {
           output.endTracks();
@@ -782,4 +1068,75 @@ public final class TsExtractor implements Extractor {
           Arrays.copyOfRange(data.getData(), descriptorsStartPosition, descriptorsEndPosition));
     }
   }
+
+  /**
+   * The packets of the elementary streams of one program in the packet buffer, which are consumed
+   * by the payload readers of the program in stream order.
+   */
+  private static final class ProgramPacketBatch implements Runnable {
+
+    private final byte[] packetBuffer;
+    private final ParsableByteArray packetData;
+    private final @NullableType TsPayloadReader[] payloadReaders;
+    private final int[] payloadPositions;
+    private final int[] packetEndPositions;
+    private final int[] packetHeaderFlags;
+    private final boolean[] discontinuities;
+
+    private int size;
+    @Nullable private ParserException parserException;
+
+    public ProgramPacketBatch(byte[] packetBuffer) {
+      this.packetBuffer = packetBuffer;
+      packetData = new ParsableByteArray();
+      // Packets don't overlap, so a batch never holds more than a full buffer of packets.
+      int capacity = packetBuffer.length / TS_PACKET_SIZE;
+      payloadReaders = new TsPayloadReader[capacity];
+      payloadPositions = new int[capacity];
+      packetEndPositions = new int[capacity];
+      packetHeaderFlags = new int[capacity];
+      discontinuities = new boolean[capacity];
+    }
+
+    public boolean isEmpty() {
+      return size == 0;
+    }
+
+    public void add(
+        TsPayloadReader payloadReader,
+        int payloadPosition,
+        int packetEndPosition,
+        @TsPayloadReader.Flags int packetHeaderFlags,
+        boolean discontinuity) {
+      payloadReaders[size] = payloadReader;
+      payloadPositions[size] = payloadPosition;
+      packetEndPositions[size] = packetEndPosition;
+      this.packetHeaderFlags[size] = packetHeaderFlags;
+      discontinuities[size] = discontinuity;
+      size++;
+    }
+
+    public void clear() {
+      Arrays.fill(payloadReaders, 0, size, null);
+      size = 0;
+      parserException = null;
+    }
+
+    @Override
+    public void run() {
+      try {
+        for (int i = 0; i < size; i++) {
+          TsPayloadReader payloadReader = Assertions.checkNotNull(payloadReaders[i]);
+          if (discontinuities[i]) {
+            payloadReader.seek();
+          }
+          packetData.reset(packetBuffer, packetEndPositions[i]);
+          packetData.setPosition(payloadPositions[i]);
+          payloadReader.consume(packetData, packetHeaderFlags[i]);
+        }
+      } catch (ParserException e) {
+        parserException = e;
+      }
+    }
+  }
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.extractor.mp4.Mp4Extractor;
+import com.google.android.exoplayer2.extractor.ts.TsExtractor;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.util.FileTypes;
+import java.io.IOException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for {@link FileTypeSniffer}. */
+@RunWith(AndroidJUnit4.class)
+public final class FileTypeSnifferTest {
+
+  @Test
+  public void sniffFileType_containerFiles_returnsFileType() throws IOException {
+    assertThat(sniffFileType("media/flv/sample.flv")).isEqualTo(FileTypes.FLV);
+    assertThat(sniffFileType("media/flac/bear.flac")).isEqualTo(FileTypes.FLAC);
+    assertThat(sniffFileType("media/wav/sample.wav")).isEqualTo(FileTypes.WAV);
+    assertThat(sniffFileType("media/wav/sample_rf64.wav")).isEqualTo(FileTypes.WAV);
+    assertThat(sniffFileType("media/avi/sample.avi")).isEqualTo(FileTypes.AVI);
+    assertThat(sniffFileType("media/mp4/sample.mp4")).isEqualTo(FileTypes.MP4);
+    assertThat(sniffFileType("media/mp4/sample_fragmented.mp4")).isEqualTo(FileTypes.MP4);
+    assertThat(sniffFileType("media/amr/sample_nb.amr")).isEqualTo(FileTypes.AMR);
+    assertThat(sniffFileType("media/ts/sample_ac3.ps")).isEqualTo(FileTypes.PS);
+    assertThat(sniffFileType("media/ogg/bear.opus")).isEqualTo(FileTypes.OGG);
+    assertThat(sniffFileType("media/ts/sample_ac3.ts")).isEqualTo(FileTypes.TS);
+    assertThat(sniffFileType("media/mkv/sample.mkv")).isEqualTo(FileTypes.MATROSKA);
+    assertThat(sniffFileType("media/jpeg/non-motion-photo-shortened.jpg"))
+        .isEqualTo(FileTypes.JPEG);
+  }
+
+  @Test
+  public void sniffFileType_elementaryAudioFiles_returnsFileType() throws IOException {
+    assertThat(sniffFileType("media/ts/sample.adts")).isEqualTo(FileTypes.ADTS);
+    assertThat(sniffFileType("media/ts/sample_with_id3.adts")).isEqualTo(FileTypes.ADTS);
+    assertThat(sniffFileType("media/ts/sample.ac3")).isEqualTo(FileTypes.AC3);
+    assertThat(sniffFileType("media/ts/sample.ac4")).isEqualTo(FileTypes.AC4);
+    assertThat(sniffFileType("media/mp3/bear-vbr-xing-header.mp3")).isEqualTo(FileTypes.MP3);
+  }
+
+  @Test
+  public void sniffFileType_id3TagLongerThanSniffedBytes_returnsUnknown() throws IOException {
+    // The ID3 tag at the start of this file is longer than SNIFF_BYTE_COUNT.
+    assertThat(sniffFileType("media/mp3/bear-id3.mp3")).isEqualTo(FileTypes.UNKNOWN);
+  }
+
+  @Test
+  public void sniffFileType_unknownData_returnsUnknown() throws IOException {
+    assertThat(FileTypeSniffer.sniffFileType(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}, /* length= */ 8))
+        .isEqualTo(FileTypes.UNKNOWN);
+    assertThat(FileTypeSniffer.sniffFileType(new byte[0], /* length= */ 0))
+        .isEqualTo(FileTypes.UNKNOWN);
+  }
+
+  @Test
+  public void sniffFileType_resetsPeekPosition() throws IOException {
+    FakeExtractorInput input =
+        new FakeExtractorInput.Builder()
+            .setData(
+                TestUtil.getByteArray(
+                    ApplicationProvider.getApplicationContext(), "media/mp4/sample.mp4"))
+            .setSimulatePartialReads(true)
+            .build();
+
+    FileTypeSniffer.sniffFileType(input);
+
+    assertThat(input.getPeekPosition()).isEqualTo(0);
+  }
+
+  @Test
+  public void sniffFileType_dataArrivingSlowly_stopsPeekingOnceFileTypeIsKnown()
+      throws IOException {
+    FakeExtractorInput fakeExtractorInput =
+        new FakeExtractorInput.Builder()
+            .setData(
+                TestUtil.getByteArray(
+                    ApplicationProvider.getApplicationContext(), "media/mkv/sample.mkv"))
+            .build();
+    // Each peek returns a single byte, like a live stream whose data arrives slowly. Peeking past
+    // the Matroska header signature would block on such a stream.
+    ExtractorInput input =
+        new ForwardingExtractorInput(fakeExtractorInput) {
+          @Override
+          public int peek(byte[] target, int offset, int length) throws IOException {
+            assertThat(getPeekPosition()).isLessThan(12);
+            return super.peek(target, offset, /* length= */ 1);
+          }
+        };
+
+    assertThat(FileTypeSniffer.sniffFileType(input)).isEqualTo(FileTypes.MATROSKA);
+  }
+
+  @Test
+  public void sniffFileType_inputShorterThanSignatures_returnsFileTypeAtEndOfInput()
+      throws IOException {
+    FakeExtractorInput input =
+        new FakeExtractorInput.Builder()
+            .setData(new byte[] {(byte) 0xFF, (byte) 0xF1, 0x50, (byte) 0x80})
+            .build();
+
+    assertThat(FileTypeSniffer.sniffFileType(input)).isEqualTo(FileTypes.ADTS);
+  }
+
+  @Test
+  public void getFileType_returnsTypeOfBundledExtractor() {
+    assertThat(FileTypeSniffer.getFileType(new Mp4Extractor())).isEqualTo(FileTypes.MP4);
+    assertThat(FileTypeSniffer.getFileType(new TsExtractor())).isEqualTo(FileTypes.TS);
+  }
+
+  private static @FileTypes.Type int sniffFileType(String file) throws IOException {
+    FakeExtractorInput input =
+        new FakeExtractorInput.Builder()
+            .setData(TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), file))
+            .build();
+    return FileTypeSniffer.sniffFileType(input);
+  }
+}
@@ -16,11 +16,13 @@
 package com.google.android.exoplayer2.extractor.mkv;
 
 import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertThrows;
 
 import androidx.test.ext.junit.runners.AndroidJUnit4;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.testutil.FakeExtractorInput;
 import com.google.android.exoplayer2.testutil.TestUtil;
+import java.io.EOFException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -131,6 +133,63 @@ public class DefaultEbmlReaderTest {
     assertEvents(input, expected.events);
   }
 
+  @Test
+  public void elementsWithPartialReads() throws IOException {
+    ExtractorInput input =
+        new FakeExtractorInput.Builder()
+            .setData(TestUtil.createByteArray(0x1A, 0x45, 0xDF, 0xA3, 0x84, 0x42, 0x85, 0x81, 0x01))
+            .setSimulatePartialReads(true)
+            .build();
+    TestProcessor expected = new TestProcessor();
+    expected.startMasterElement(TestProcessor.ID_EBML, 5, 4);
+    expected.integerElement(TestProcessor.ID_DOC_TYPE_READ_VERSION, 1);
+    expected.endMasterElement(TestProcessor.ID_EBML);
+    assertEvents(input, expected.events);
+  }
+
+  @Test
+  public void elementWithEightByteContentSize() throws IOException {
+    ExtractorInput input =
+        createTestInput(
+            0x1A, 0x45, 0xDF, 0xA3, 0x01, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x00, 0x42, 0xF7,
+            0x81, 0x01);
+    TestProcessor expected = new TestProcessor();
+    expected.startMasterElement(TestProcessor.ID_EBML, 12, 0);
+    expected.endMasterElement(TestProcessor.ID_EBML);
+    expected.integerElement(TestProcessor.ID_EBML_READ_VERSION, 1);
+    assertEvents(input, expected.events);
+  }
+
+  @Test
+  public void elementHeaderTruncatedInContentSize() throws IOException {
+    // The content size needs two bytes, but only one is left.
+    ExtractorInput input = createTestInput(0x42, 0x82, 0x40);
+    DefaultEbmlReader reader = new DefaultEbmlReader();
+    reader.init(new TestProcessor());
+
+    assertThrows(EOFException.class, () -> reader.read(input));
+  }
+
+  @Test
+  public void elementHeaderTruncatedAfterId() throws IOException {
+    ExtractorInput input = createTestInput(0x42, 0x82);
+    DefaultEbmlReader reader = new DefaultEbmlReader();
+    reader.init(new TestProcessor());
+
+    assertThrows(EOFException.class, () -> reader.read(input));
+  }
+
+  @Test
+  public void invalidIdResyncsToNextLevel1Element() throws IOException {
+    // 0x08 starts an ID that's longer than four bytes and 0xFF isn't a level 1 element, so both
+    // are skipped.
+    ExtractorInput input = createTestInput(0x08, 0xFF, 0x18, 0x53, 0x80, 0x67, 0x80);
+    TestProcessor expected = new TestProcessor();
+    expected.startMasterElement(TestProcessor.ID_SEGMENT, 7, 0);
+    expected.endMasterElement(TestProcessor.ID_SEGMENT);
+    assertEvents(input, expected.events);
+  }
+
   private static void assertEvents(ExtractorInput input, List<String> expectedEvents)
       throws IOException {
     DefaultEbmlReader reader = new DefaultEbmlReader();
@@ -199,7 +258,7 @@ public class DefaultEbmlReaderTest {
 
     @Override
     public boolean isLevel1Element(int id) {
-      return false;
+      return id == ID_SEGMENT;
     }
 
     @Override
@@ -15,8 +15,22 @@
  */
 package com.google.android.exoplayer2.extractor.mkv;
 
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.testutil.ExtractorAsserts;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput.SimulatedIOException;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
+import com.google.android.exoplayer2.testutil.TestUtil;
 import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Bytes;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.ParameterizedRobolectricTestRunner;
@@ -27,6 +41,9 @@ import org.robolectric.ParameterizedRobolectricTestRunner.Parameters;
 @RunWith(ParameterizedRobolectricTestRunner.class)
 public final class MatroskaExtractorTest {
 
+  private static final int LACING_FLAGS_XIPH = 0x02;
+  private static final int LACING_FLAGS_EBML = 0x06;
+
   @Parameters(name = "{0}")
   public static ImmutableList<ExtractorAsserts.SimulationConfig> params() {
     return ExtractorAsserts.configs();
@@ -118,4 +135,128 @@ public final class MatroskaExtractorTest {
     ExtractorAsserts.assertBehavior(
         MatroskaExtractor::new, "media/mkv/subsample_encrypted_altref.webm", simulationConfig);
   }
+
+  @Test
+  public void simpleBlock_withXiphLacingLongerThanPeekLength_outputsAllSamples() throws Exception {
+    int[] sampleSizes = createSampleSizes(/* sampleCount= */ 40);
+    ByteArrayOutputStream laceSizes = new ByteArrayOutputStream();
+    for (int i = 0; i < sampleSizes.length - 1; i++) {
+      int remainingSize = sampleSizes[i];
+      while (remainingSize >= 0xFF) {
+        laceSizes.write(0xFF);
+        remainingSize -= 0xFF;
+      }
+      laceSizes.write(remainingSize);
+    }
+
+    assertLacedSamples(LACING_FLAGS_XIPH, laceSizes.toByteArray(), sampleSizes);
+  }
+
+  @Test
+  public void simpleBlock_withEbmlLacingLongerThanPeekLength_outputsAllSamples() throws Exception {
+    int[] sampleSizes = createSampleSizes(/* sampleCount= */ 40);
+    ByteArrayOutputStream laceSizes = new ByteArrayOutputStream();
+    for (int i = 0; i < sampleSizes.length - 1; i++) {
+      // Sizes after the first are signed differences, offset by half the two byte varint range.
+      int value = i == 0 ? sampleSizes[0] : sampleSizes[i] - sampleSizes[i - 1] + 0x1FFF;
+      laceSizes.write(0x40 | (value >> 8));
+      laceSizes.write(value & 0xFF);
+    }
+
+    assertLacedSamples(LACING_FLAGS_EBML, laceSizes.toByteArray(), sampleSizes);
+  }
+
+  /**
+   * Extracts a file with a single MP3 track and a single laced SimpleBlock, and asserts that the
+   * samples are output with the given sizes.
+   */
+  private void assertLacedSamples(int lacingFlags, byte[] laceSizes, int[] sampleSizes)
+      throws Exception {
+    byte[] sampleData =
+        TestUtil.buildTestData(Arrays.stream(sampleSizes).sum(), /* seed= */ sampleSizes.length);
+    // The block header is the track number, the relative timecode, the flags and the number of
+    // laced samples minus one, followed by the lace sizes.
+    byte[] blockHeader =
+        TestUtil.createByteArray(0x81, 0x00, 0x00, 0x80 | lacingFlags, sampleSizes.length - 1);
+    byte[] simpleBlock = createElement(/* id= */ 0xA3, blockHeader, laceSizes, sampleData);
+    byte[] data =
+        Bytes.concat(
+            createElement(
+                /* id= */ 0x1A45DFA3,
+                createElement(/* id= */ 0x4282, "matroska".getBytes(StandardCharsets.US_ASCII))),
+            createElement(
+                /* id= */ 0x18538067,
+                createElement(/* id= */ 0x1549A966),
+                createElement(
+                    /* id= */ 0x1654AE6B,
+                    createElement(
+                        /* id= */ 0xAE,
+                        createElement(/* id= */ 0xD7, TestUtil.createByteArray(1)),
+                        createElement(
+                            /* id= */ 0x86, "A_MPEG/L3".getBytes(StandardCharsets.US_ASCII)))),
+                createElement(
+                    /* id= */ 0x1F43B675,
+                    createElement(/* id= */ 0xE7, TestUtil.createByteArray(0)),
+                    simpleBlock)));
+
+    FakeTrackOutput trackOutput = extractSingleTrack(data);
+
+    assertThat(trackOutput.getSampleCount()).isEqualTo(sampleSizes.length);
+    int offset = 0;
+    for (int i = 0; i < sampleSizes.length; i++) {
+      assertThat(trackOutput.getSampleData(i))
+          .isEqualTo(Arrays.copyOfRange(sampleData, offset, offset + sampleSizes[i]));
+      offset += sampleSizes[i];
+    }
+  }
+
+  private FakeTrackOutput extractSingleTrack(byte[] data) throws IOException {
+    FakeExtractorInput input =
+        new FakeExtractorInput.Builder()
+            .setData(data)
+            .setSimulateIOErrors(simulationConfig.simulateIOErrors)
+            .setSimulateUnknownLength(simulationConfig.simulateUnknownLength)
+            .setSimulatePartialReads(simulationConfig.simulatePartialReads)
+            .build();
+    MatroskaExtractor extractor = new MatroskaExtractor();
+    FakeExtractorOutput output = new FakeExtractorOutput();
+    extractor.init(output);
+    PositionHolder seekPositionHolder = new PositionHolder();
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      try {
+        readResult = extractor.read(input, seekPositionHolder);
+      } catch (SimulatedIOException e) {
+        // Retry from the current position.
+      }
+    }
+    assertThat(output.numberOfTracks).isEqualTo(1);
+    return output.trackOutputs.valueAt(0);
+  }
+
+  /** Returns sample sizes that need two Xiph lacing bytes and vary between samples. */
+  private static int[] createSampleSizes(int sampleCount) {
+    int[] sampleSizes = new int[sampleCount];
+    for (int i = 0; i < sampleCount; i++) {
+      sampleSizes[i] = 300 + (i % 7) * 11;
+    }
+    return sampleSizes;
+  }
+
+  /** Returns an EBML element with an eight byte content size. */
+  private static byte[] createElement(int id, byte[]... contents) {
+    byte[] content = Bytes.concat(contents);
+    ByteArrayOutputStream element = new ByteArrayOutputStream();
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      if ((id >>> shift) != 0) {
+        element.write(id >>> shift);
+      }
+    }
+    element.write(0x01);
+    for (int shift = 48; shift >= 0; shift -= 8) {
+      element.write((int) ((long) content.length >>> shift));
+    }
+    element.write(content, /* off= */ 0, content.length);
+    return element.toByteArray();
+  }
 }
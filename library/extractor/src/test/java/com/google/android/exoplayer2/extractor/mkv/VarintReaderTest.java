@@ -187,6 +187,26 @@ public final class VarintReaderTest {
     testReadVarintFlaky(reader, false, DATA_8_BYTE_MAX, 8, VALUE_8_BYTE_MAX_WITH_MASK);
   }
 
+  @Test
+  public void parseUnsignedVarintLength() {
+    assertThat(VarintReader.parseUnsignedVarintLength(0)).isEqualTo(C.LENGTH_UNSET);
+    assertThat(VarintReader.parseUnsignedVarintLength(DATA_1_BYTE_MAX[0])).isEqualTo(1);
+    assertThat(VarintReader.parseUnsignedVarintLength(DATA_1_BYTE_64[0])).isEqualTo(1);
+    assertThat(VarintReader.parseUnsignedVarintLength(DATA_2_BYTE_MAX[0])).isEqualTo(2);
+    assertThat(VarintReader.parseUnsignedVarintLength(DATA_4_BYTE_MAX[0])).isEqualTo(4);
+    assertThat(VarintReader.parseUnsignedVarintLength(DATA_8_BYTE_0[0])).isEqualTo(8);
+  }
+
+  @Test
+  public void assembleVarintWithOffset() {
+    byte[] data = new byte[] {MAX_BYTE, 0x1F, MAX_BYTE, MAX_BYTE, MAX_BYTE, MAX_BYTE};
+
+    assertThat(VarintReader.assembleVarint(data, /* offset= */ 1, 4, /* removeLengthMask= */ true))
+        .isEqualTo(VALUE_4_BYTE_MAX);
+    assertThat(VarintReader.assembleVarint(data, /* offset= */ 1, 4, /* removeLengthMask= */ false))
+        .isEqualTo(VALUE_4_BYTE_MAX_WITH_MASK);
+  }
+
   private static void testReadVarint(
       VarintReader reader, boolean removeMask, byte[] data, int expectedLength, long expectedValue)
       throws IOException {
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests for {@link AccumulatedSampleSizes}. */
+@RunWith(AndroidJUnit4.class)
+public final class AccumulatedSampleSizesTest {
+
+  @Test
+  public void get_withEveryCheckpoint_returnsSizesInTimestampOrder() {
+    TrackSampleTable[] sampleTables =
+        new TrackSampleTable[] {
+          createSampleTable(/* sizes= */ new int[] {10, 20, 30}, new long[] {0, 200, 400}),
+          createSampleTable(/* sizes= */ new int[] {1, 2, 3}, new long[] {100, 200, 300})
+        };
+
+    AccumulatedSampleSizes accumulatedSampleSizes =
+        new AccumulatedSampleSizes(sampleTables, /* checkpointInterval= */ 1);
+
+    // Merged order: (0, 0), (1, 0), (1, 1), (0, 1), (1, 2), (0, 2). Ties go to the later track.
+    assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 0, /* sampleIndex= */ 0)).isEqualTo(0);
+    assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 1, /* sampleIndex= */ 0)).isEqualTo(10);
+    assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 1, /* sampleIndex= */ 1)).isEqualTo(11);
+    assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 0, /* sampleIndex= */ 1)).isEqualTo(13);
+    assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 1, /* sampleIndex= */ 2)).isEqualTo(33);
+    assertThat(accumulatedSampleSizes.get(/* trackIndex= */ 0, /* sampleIndex= */ 2)).isEqualTo(36);
+  }
+
+  @Test
+  public void get_withSparseCheckpoints_matchesSizesWithEveryCheckpoint() {
+    Random random = new Random(/* seed= */ 0);
+    TrackSampleTable[] sampleTables = new TrackSampleTable[3];
+    for (int i = 0; i < sampleTables.length; i++) {
+      int sampleCount = 50 + random.nextInt(100);
+      int[] sizes = new int[sampleCount];
+      long[] timestampsUs = new long[sampleCount];
+      for (int j = 0; j < sampleCount; j++) {
+        sizes[j] = 1 + random.nextInt(1000);
+        // Reordered timestamps, as with B-frames, and duplicate timestamps across tracks.
+        timestampsUs[j] = (j + (j % 3 == 1 ? 2 : 0)) * 1000L * (i + 1);
+      }
+      sampleTables[i] = createSampleTable(sizes, timestampsUs);
+    }
+    AccumulatedSampleSizes expected =
+        new AccumulatedSampleSizes(sampleTables, /* checkpointInterval= */ 1);
+
+    AccumulatedSampleSizes actual =
+        new AccumulatedSampleSizes(sampleTables, /* checkpointInterval= */ 7);
+
+    // Look samples up in a different order than they are merged in.
+    for (int i = sampleTables.length - 1; i >= 0; i--) {
+      for (int j = 0; j < sampleTables[i].sampleCount; j += 2) {
+        assertThat(actual.get(i, j)).isEqualTo(expected.get(i, j));
+      }
+      for (int j = sampleTables[i].sampleCount - 1; j >= 0; j--) {
+        assertThat(actual.get(i, j)).isEqualTo(expected.get(i, j));
+      }
+    }
+  }
+
+  private static TrackSampleTable createSampleTable(int[] sizes, long[] timestampsUs) {
+    Track track =
+        new Track(
+            /* id= */ 1,
+            C.TRACK_TYPE_VIDEO,
+            /* timescale= */ C.MICROS_PER_SECOND,
+            /* movieTimescale= */ C.MICROS_PER_SECOND,
+            /* durationUs= */ C.TIME_UNSET,
+            new Format.Builder().build(),
+            Track.TRANSFORMATION_NONE,
+            /* sampleDescriptionEncryptionBoxes= */ null,
+            /* nalUnitLengthFieldLength= */ 0,
+            /* editListDurations= */ null,
+            /* editListMediaTimes= */ null);
+    int maximumSize = 0;
+    for (int size : sizes) {
+      maximumSize = Math.max(maximumSize, size);
+    }
+    return new TrackSampleTable(
+        track,
+        /* offsets= */ new long[sizes.length],
+        sizes,
+        maximumSize,
+        timestampsUs,
+        /* flags= */ new int[sizes.length],
+        /* durationUs= */ C.TIME_UNSET);
+  }
+}
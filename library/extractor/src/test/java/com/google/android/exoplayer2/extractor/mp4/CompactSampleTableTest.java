@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.mp4;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.util.Util;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Tests for {@link CompactSampleTable}. */
+@RunWith(AndroidJUnit4.class)
+public final class CompactSampleTableTest {
+
+  // Full box header, entry count and, for stsz and stz2, the sample size or field size.
+  private static final String SAMPLE_SIZE_BOX_HEADER = "0000000000000000000000000000000000000000";
+  private static final String CHUNK_OFFSET_BOX_HEADER = "00000000000000000000000000000000";
+
+  @Test
+  public void getSize_stz2With4BitFields_returnsSizes() {
+    CompactSampleTable table =
+        createTable(
+            /* sampleSizeHex= */ "1234",
+            /* sampleSizeFieldBits= */ 4,
+            /* chunkOffsetHex= */ "0000000000000000",
+            /* chunkOffsetsAreLongs= */ false);
+
+    assertThat(getSizes(table)).isEqualTo(new int[] {1, 2, 3, 4});
+  }
+
+  @Test
+  public void getSize_stz2With8BitFields_returnsSizes() {
+    CompactSampleTable table =
+        createTable(
+            /* sampleSizeHex= */ "01ff0304",
+            /* sampleSizeFieldBits= */ 8,
+            /* chunkOffsetHex= */ "0000000000000000",
+            /* chunkOffsetsAreLongs= */ false);
+
+    assertThat(getSizes(table)).isEqualTo(new int[] {1, 255, 3, 4});
+  }
+
+  @Test
+  public void getSize_stz2With16BitFields_returnsSizes() {
+    CompactSampleTable table =
+        createTable(
+            /* sampleSizeHex= */ "000100020003ffff",
+            /* sampleSizeFieldBits= */ 16,
+            /* chunkOffsetHex= */ "0000000000000000",
+            /* chunkOffsetsAreLongs= */ false);
+
+    assertThat(getSizes(table)).isEqualTo(new int[] {1, 2, 3, 65_535});
+  }
+
+  @Test
+  public void getOffset_co64_returnsOffsetsBeyond32Bits() {
+    CompactSampleTable table =
+        createTable(
+            /* sampleSizeHex= */ "05060708",
+            /* sampleSizeFieldBits= */ 8,
+            /* chunkOffsetHex= */ "0000000180000000" + "0000000200000010",
+            /* chunkOffsetsAreLongs= */ true);
+
+    assertThat(getOffsets(table))
+        .isEqualTo(new long[] {0x1_8000_0000L, 0x1_8000_0005L, 0x2_0000_0010L, 0x2_0000_0017L});
+  }
+
+  @Test
+  public void getOffset_stcoWithHighBitSet_returnsUnsignedOffsets() {
+    CompactSampleTable table =
+        createTable(
+            /* sampleSizeHex= */ "05060708",
+            /* sampleSizeFieldBits= */ 8,
+            /* chunkOffsetHex= */ "80000000" + "fffffff0",
+            /* chunkOffsetsAreLongs= */ false);
+
+    assertThat(getOffsets(table))
+        .isEqualTo(new long[] {0x8000_0000L, 0x8000_0005L, 0xFFFF_FFF0L, 0xFFFF_FFF7L});
+  }
+
+  @Test
+  public void getOffset_withPreviousSample_matchesOffsetWithoutPreviousSample() {
+    CompactSampleTable table =
+        createTable(
+            /* sampleSizeHex= */ "05060708",
+            /* sampleSizeFieldBits= */ 8,
+            /* chunkOffsetHex= */ "0000000180000000" + "0000000200000010",
+            /* chunkOffsetsAreLongs= */ true);
+
+    long previousOffset = 0;
+    for (int i = 0; i < table.sampleCount; i++) {
+      long offset = table.getOffset(i, /* previousSampleIndex= */ i - 1, previousOffset);
+      assertThat(offset).isEqualTo(table.getOffset(i));
+      assertThat(table.getOffset(i, /* previousSampleIndex= */ i, offset)).isEqualTo(offset);
+      previousOffset = offset;
+    }
+    // A previous sample that isn't adjacent is ignored.
+    assertThat(table.getOffset(/* sampleIndex= */ 3, /* previousSampleIndex= */ 0, 0x1_8000_0000L))
+        .isEqualTo(0x2_0000_0017L);
+  }
+
+  /** Creates a table with four samples in two chunks and a sample duration of 1 second. */
+  private static CompactSampleTable createTable(
+      String sampleSizeHex,
+      int sampleSizeFieldBits,
+      String chunkOffsetHex,
+      boolean chunkOffsetsAreLongs) {
+    int sampleCount = 4;
+    return new CompactSampleTable(
+        sampleCount,
+        /* maximumSize= */ 65_535,
+        /* duration= */ sampleCount,
+        /* timescale= */ 1,
+        /* fixedSampleSize= */ C.LENGTH_UNSET,
+        Util.getBytesFromHexString(SAMPLE_SIZE_BOX_HEADER + sampleSizeHex),
+        /* sampleSizeDataPosition= */ Atom.FULL_HEADER_SIZE + 8,
+        sampleSizeFieldBits,
+        Util.getBytesFromHexString(CHUNK_OFFSET_BOX_HEADER + chunkOffsetHex),
+        /* chunkOffsetDataPosition= */ Atom.FULL_HEADER_SIZE + 4,
+        chunkOffsetsAreLongs,
+        /* chunkRunFirstChunkIndices= */ new int[] {0},
+        /* chunkRunFirstSampleIndices= */ new int[] {0},
+        /* chunkRunSamplesPerChunk= */ new int[] {2},
+        /* timestampDeltaRunFirstSampleIndices= */ new int[] {0},
+        /* timestampDeltaRunFirstTimestamps= */ new long[] {0},
+        /* timestampDeltaRunDeltas= */ new int[] {1},
+        /* timestampOffsetRunFirstSampleIndices= */ null,
+        /* timestampOffsetRunOffsets= */ null,
+        /* synchronizationSampleIndices= */ null);
+  }
+
+  private static int[] getSizes(CompactSampleTable table) {
+    int[] sizes = new int[table.sampleCount];
+    for (int i = 0; i < sizes.length; i++) {
+      sizes[i] = table.getSize(i);
+    }
+    return sizes;
+  }
+
+  private static long[] getOffsets(CompactSampleTable table) {
+    long[] offsets = new long[table.sampleCount];
+    for (int i = 0; i < offsets.length; i++) {
+      offsets[i] = table.getOffset(i);
+    }
+    return offsets;
+  }
+}
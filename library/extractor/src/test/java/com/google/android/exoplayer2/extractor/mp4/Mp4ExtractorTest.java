@@ -16,6 +16,7 @@
 package com.google.android.exoplayer2.extractor.mp4;
 
 import com.google.android.exoplayer2.testutil.ExtractorAsserts;
+import com.google.android.exoplayer2.testutil.ExtractorAsserts.AssertionConfig;
 import com.google.common.collect.ImmutableList;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -39,6 +40,15 @@ public final class Mp4ExtractorTest {
     ExtractorAsserts.assertBehavior(Mp4Extractor::new, "media/mp4/sample.mp4", simulationConfig);
   }
 
+  @Test
+  public void mp4Sample_withCompactSampleTables() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> new Mp4Extractor(Mp4Extractor.FLAG_USE_COMPACT_SAMPLE_TABLES),
+        "media/mp4/sample.mp4",
+        new AssertionConfig.Builder().setDumpFilesPrefix("extractordumps/mp4/sample.mp4").build(),
+        simulationConfig);
+  }
+
   @Test
   public void mp4SampleWithSlowMotionMetadata() throws Exception {
     ExtractorAsserts.assertBehavior(
@@ -125,4 +135,26 @@ public final class Mp4ExtractorTest {
     ExtractorAsserts.assertBehavior(
         Mp4Extractor::new, "media/mp4/sample_with_colr_mdcv_and_clli.mp4", simulationConfig);
   }
+
+  @Test
+  public void mp4SampleWithAc4Track_withCompactSampleTables() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> new Mp4Extractor(Mp4Extractor.FLAG_USE_COMPACT_SAMPLE_TABLES),
+        "media/mp4/sample_ac4.mp4",
+        new AssertionConfig.Builder()
+            .setDumpFilesPrefix("extractordumps/mp4/sample_ac4.mp4")
+            .build(),
+        simulationConfig);
+  }
+
+  @Test
+  public void mp4SampleWithDolbyTrueHDTrack_withCompactSampleTables() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> new Mp4Extractor(Mp4Extractor.FLAG_USE_COMPACT_SAMPLE_TABLES),
+        "media/mp4/sample_dthd.mp4",
+        new AssertionConfig.Builder()
+            .setDumpFilesPrefix("extractordumps/mp4/sample_dthd.mp4")
+            .build(),
+        simulationConfig);
+  }
 }
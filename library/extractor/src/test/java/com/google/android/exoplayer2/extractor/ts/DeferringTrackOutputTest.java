@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.ts;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.C;
+import com.google.android.exoplayer2.Format;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeTrackOutput;
+import com.google.android.exoplayer2.util.MimeTypes;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit test for {@link DeferringTrackOutput}. */
+@RunWith(AndroidJUnit4.class)
+public final class DeferringTrackOutputTest {
+
+  private static final Format FORMAT =
+      new Format.Builder().setSampleMimeType(MimeTypes.AUDIO_AAC).build();
+
+  @Test
+  public void stopDeferring_makesRecordedCallsInOrder() throws Exception {
+    FakeTrackOutput fakeTrackOutput =
+        new FakeTrackOutput(/* deduplicateConsecutiveFormats= */ false);
+    DeferringTrackOutput deferringTrackOutput = new DeferringTrackOutput(fakeTrackOutput);
+
+    deferringTrackOutput.startDeferring(/* sharedData= */ null);
+    deferringTrackOutput.format(FORMAT);
+    deferringTrackOutput.sampleData(new ParsableByteArray(new byte[] {1, 2, 3}), /* length= */ 3);
+    deferringTrackOutput.sampleMetadata(
+        /* timeUs= */ 0, C.BUFFER_FLAG_KEY_FRAME, /* size= */ 3, /* offset= */ 0, null);
+    deferringTrackOutput.sampleData(
+        new FakeExtractorInput.Builder().setData(new byte[] {4, 5}).build(),
+        /* length= */ 2,
+        /* allowEndOfInput= */ false);
+    deferringTrackOutput.sampleMetadata(
+        /* timeUs= */ 1000, /* flags= */ 0, /* size= */ 2, /* offset= */ 0, null);
+    int sampleCountWhileDeferring = fakeTrackOutput.getSampleCount();
+    deferringTrackOutput.stopDeferring();
+
+    assertThat(sampleCountWhileDeferring).isEqualTo(0);
+    assertThat(fakeTrackOutput.lastFormat).isEqualTo(FORMAT);
+    assertThat(fakeTrackOutput.getSampleCount()).isEqualTo(2);
+    assertThat(fakeTrackOutput.getSampleData(0)).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(fakeTrackOutput.getSampleTimeUs(0)).isEqualTo(0);
+    assertThat(fakeTrackOutput.getSampleFlags(0)).isEqualTo(C.BUFFER_FLAG_KEY_FRAME);
+    assertThat(fakeTrackOutput.getSampleData(1)).isEqualTo(new byte[] {4, 5});
+    assertThat(fakeTrackOutput.getSampleTimeUs(1)).isEqualTo(1000);
+  }
+
+  @Test
+  public void stopDeferring_withSharedData_readsSharedDataWithoutCopying() {
+    FakeTrackOutput fakeTrackOutput =
+        new FakeTrackOutput(/* deduplicateConsecutiveFormats= */ false);
+    DeferringTrackOutput deferringTrackOutput = new DeferringTrackOutput(fakeTrackOutput);
+    byte[] sharedData = new byte[] {1, 2, 3, 4};
+    byte[] otherData = new byte[] {5, 6};
+
+    deferringTrackOutput.startDeferring(sharedData);
+    deferringTrackOutput.format(FORMAT);
+    ParsableByteArray sharedDataArray = new ParsableByteArray(sharedData);
+    sharedDataArray.skipBytes(1);
+    deferringTrackOutput.sampleData(sharedDataArray, /* length= */ 2);
+    deferringTrackOutput.sampleData(new ParsableByteArray(otherData), /* length= */ 2);
+    deferringTrackOutput.sampleMetadata(
+        /* timeUs= */ 0, C.BUFFER_FLAG_KEY_FRAME, /* size= */ 4, /* offset= */ 0, null);
+    // The shared data is read when the calls are made, whereas other data is copied.
+    sharedData[2] = 7;
+    otherData[0] = 8;
+    deferringTrackOutput.stopDeferring();
+
+    assertThat(sharedDataArray.getPosition()).isEqualTo(3);
+    assertThat(fakeTrackOutput.getSampleCount()).isEqualTo(1);
+    assertThat(fakeTrackOutput.getSampleData(0)).isEqualTo(new byte[] {2, 7, 5, 6});
+  }
+
+  @Test
+  public void stopDeferring_repeatedly_reusesRecordedCalls() {
+    FakeTrackOutput fakeTrackOutput =
+        new FakeTrackOutput(/* deduplicateConsecutiveFormats= */ false);
+    DeferringTrackOutput deferringTrackOutput = new DeferringTrackOutput(fakeTrackOutput);
+    byte[] sharedData = new byte[] {1, 2, 3};
+
+    deferringTrackOutput.startDeferring(sharedData);
+    deferringTrackOutput.format(FORMAT);
+    deferringTrackOutput.sampleData(new ParsableByteArray(sharedData), /* length= */ 3);
+    deferringTrackOutput.sampleMetadata(
+        /* timeUs= */ 0, C.BUFFER_FLAG_KEY_FRAME, /* size= */ 3, /* offset= */ 0, null);
+    deferringTrackOutput.stopDeferring();
+    // The calls recorded first are reused for calls of other types.
+    deferringTrackOutput.startDeferring(/* sharedData= */ null);
+    deferringTrackOutput.sampleMetadata(
+        /* timeUs= */ 1000, /* flags= */ 0, /* size= */ 0, /* offset= */ 0, null);
+    deferringTrackOutput.sampleData(new ParsableByteArray(new byte[] {4, 5}), /* length= */ 2);
+    deferringTrackOutput.sampleMetadata(
+        /* timeUs= */ 2000, /* flags= */ 0, /* size= */ 2, /* offset= */ 0, null);
+    deferringTrackOutput.stopDeferring();
+
+    assertThat(fakeTrackOutput.getSampleCount()).isEqualTo(3);
+    assertThat(fakeTrackOutput.getSampleData(0)).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(fakeTrackOutput.getSampleTimeUs(1)).isEqualTo(1000);
+    assertThat(fakeTrackOutput.getSampleData(1)).isEmpty();
+    assertThat(fakeTrackOutput.getSampleData(2)).isEqualTo(new byte[] {4, 5});
+    assertThat(fakeTrackOutput.getSampleTimeUs(2)).isEqualTo(2000);
+  }
+
+  @Test
+  public void sampleData_whenNotDeferring_forwardsCalls() {
+    FakeTrackOutput fakeTrackOutput =
+        new FakeTrackOutput(/* deduplicateConsecutiveFormats= */ false);
+    DeferringTrackOutput deferringTrackOutput = new DeferringTrackOutput(fakeTrackOutput);
+
+    deferringTrackOutput.format(FORMAT);
+    deferringTrackOutput.sampleData(new ParsableByteArray(new byte[] {1, 2, 3}), /* length= */ 3);
+    deferringTrackOutput.sampleMetadata(
+        /* timeUs= */ 0, C.BUFFER_FLAG_KEY_FRAME, /* size= */ 3, /* offset= */ 0, null);
+
+    assertThat(fakeTrackOutput.getSampleCount()).isEqualTo(1);
+    assertThat(fakeTrackOutput.getSampleData(0)).isEqualTo(new byte[] {1, 2, 3});
+  }
+}
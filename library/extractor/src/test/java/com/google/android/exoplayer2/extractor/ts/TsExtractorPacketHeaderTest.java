@@ -0,0 +1,333 @@
+/*
+ * Copyright (C) 2023 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.google.android.exoplayer2.extractor.ts;
+
+import static com.google.android.exoplayer2.extractor.ts.TsExtractor.TS_PACKET_SIZE;
+import static com.google.common.truth.Truth.assertThat;
+
+import android.util.SparseArray;
+import androidx.annotation.Nullable;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import com.google.android.exoplayer2.extractor.Extractor;
+import com.google.android.exoplayer2.extractor.ExtractorOutput;
+import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.ts.TsPayloadReader.EsInfo;
+import com.google.android.exoplayer2.extractor.ts.TsPayloadReader.TrackIdGenerator;
+import com.google.android.exoplayer2.testutil.FakeExtractorInput;
+import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
+import com.google.android.exoplayer2.util.ParsableByteArray;
+import com.google.android.exoplayer2.util.TimestampAdjuster;
+import com.google.common.primitives.Bytes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/** Unit tests for how {@link TsExtractor} parses the headers of TS packets. */
+@RunWith(AndroidJUnit4.class)
+public final class TsExtractorPacketHeaderTest {
+
+  private static final int PID = 0x100;
+  /** The highest PID that can carry a payload, as 0x1FFF is used for null packets. */
+  private static final int MAX_PID = 0x1FFE;
+  private static final int ADAPTATION_FIELD_CONTROL_PAYLOAD_ONLY = 0b01;
+  private static final int ADAPTATION_FIELD_CONTROL_ADAPTATION_FIELD_ONLY = 0b10;
+  private static final int ADAPTATION_FIELD_CONTROL_ADAPTATION_FIELD_AND_PAYLOAD = 0b11;
+
+  @Test
+  public void read_afterLostSyncByte_resynchronizes() throws Exception {
+    byte[] data =
+        Bytes.concat(
+            createPacket(
+                ADAPTATION_FIELD_CONTROL_PAYLOAD_ONLY,
+                /* continuityCounter= */ 0,
+                createPayload(/* value= */ 1, /* length= */ 184)),
+            // A lost sync byte followed by the rest of a packet.
+            Arrays.copyOfRange(
+                createPacket(
+                    ADAPTATION_FIELD_CONTROL_PAYLOAD_ONLY,
+                    /* continuityCounter= */ 1,
+                    createPayload(/* value= */ 2, /* length= */ 184)),
+                /* from= */ 1,
+                /* to= */ TS_PACKET_SIZE),
+            createPacket(
+                ADAPTATION_FIELD_CONTROL_PAYLOAD_ONLY,
+                /* continuityCounter= */ 2,
+                createPayload(/* value= */ 3, /* length= */ 184)));
+
+    RecordingPayloadReader payloadReader = extract(data);
+
+    assertThat(payloadReader.payloads).hasSize(2);
+    assertThat(payloadReader.payloads.get(0)).isEqualTo(createPayload(/* value= */ 1, 184));
+    assertThat(payloadReader.payloads.get(1)).isEqualTo(createPayload(/* value= */ 3, 184));
+  }
+
+  @Test
+  public void read_packetWithAdaptationFieldOnly_isNotConsumed() throws Exception {
+    byte[] adaptationField = new byte[184];
+    adaptationField[0] = (byte) 183;
+    adaptationField[1] = 0x40; // random_access_indicator.
+    byte[] data =
+        Bytes.concat(
+            createPacket(
+                ADAPTATION_FIELD_CONTROL_ADAPTATION_FIELD_ONLY,
+                /* continuityCounter= */ 0,
+                adaptationField),
+            createPacket(
+                ADAPTATION_FIELD_CONTROL_PAYLOAD_ONLY,
+                /* continuityCounter= */ 0,
+                createPayload(/* value= */ 1, /* length= */ 184)));
+
+    RecordingPayloadReader payloadReader = extract(data);
+
+    assertThat(payloadReader.events).containsExactly("consume");
+    assertThat(payloadReader.payloads.get(0)).isEqualTo(createPayload(/* value= */ 1, 184));
+  }
+
+  @Test
+  public void read_adaptationFieldLengthZero_consumesPayloadAfterLengthByte() throws Exception {
+    // The first payload byte would set random_access_indicator if it were read as flags.
+    byte[] payload = createPayload(/* value= */ 0x40, /* length= */ 183);
+    byte[] data =
+        createPacket(
+            ADAPTATION_FIELD_CONTROL_ADAPTATION_FIELD_AND_PAYLOAD,
+            /* continuityCounter= */ 0,
+            Bytes.concat(new byte[] {0}, payload));
+
+    RecordingPayloadReader payloadReader = extract(data);
+
+    assertThat(payloadReader.payloads).hasSize(1);
+    assertThat(payloadReader.payloads.get(0)).isEqualTo(payload);
+    assertThat(payloadReader.flags.get(0) & TsPayloadReader.FLAG_RANDOM_ACCESS_INDICATOR)
+        .isEqualTo(0);
+  }
+
+  @Test
+  public void read_adaptationFieldWithFlags_consumesPayloadWithRandomAccessIndicator()
+      throws Exception {
+    byte[] payload = createPayload(/* value= */ 1, /* length= */ 182);
+    byte[] data =
+        createPacket(
+            ADAPTATION_FIELD_CONTROL_ADAPTATION_FIELD_AND_PAYLOAD,
+            /* continuityCounter= */ 0,
+            Bytes.concat(new byte[] {1, 0x40}, payload));
+
+    RecordingPayloadReader payloadReader = extract(data);
+
+    assertThat(payloadReader.payloads.get(0)).isEqualTo(payload);
+    assertThat(payloadReader.flags.get(0) & TsPayloadReader.FLAG_RANDOM_ACCESS_INDICATOR)
+        .isEqualTo(TsPayloadReader.FLAG_RANDOM_ACCESS_INDICATOR);
+  }
+
+  @Test
+  public void read_adaptationFieldLength183WithPayload_consumesEmptyPayload() throws Exception {
+    byte[] adaptationField = new byte[184];
+    adaptationField[0] = (byte) 183;
+    byte[] data =
+        createPacket(
+            ADAPTATION_FIELD_CONTROL_ADAPTATION_FIELD_AND_PAYLOAD,
+            /* continuityCounter= */ 0,
+            adaptationField);
+
+    RecordingPayloadReader payloadReader = extract(data);
+
+    assertThat(payloadReader.payloads).hasSize(1);
+    assertThat(payloadReader.payloads.get(0)).isEmpty();
+  }
+
+  @Test
+  public void read_adaptationFieldLengthBeyondPacket_skipsPacket() throws Exception {
+    byte[] adaptationField = new byte[184];
+    adaptationField[0] = (byte) 200;
+    byte[] data =
+        Bytes.concat(
+            createPacket(
+                ADAPTATION_FIELD_CONTROL_ADAPTATION_FIELD_AND_PAYLOAD,
+                /* continuityCounter= */ 0,
+                adaptationField),
+            createPacket(
+                ADAPTATION_FIELD_CONTROL_PAYLOAD_ONLY,
+                /* continuityCounter= */ 0,
+                createPayload(/* value= */ 1, /* length= */ 184)));
+
+    RecordingPayloadReader payloadReader = extract(data);
+
+    assertThat(payloadReader.events).containsExactly("consume");
+    assertThat(payloadReader.payloads.get(0)).isEqualTo(createPayload(/* value= */ 1, 184));
+  }
+
+  @Test
+  public void read_continuityCounterGapWithinOneRead_seeksPayloadReaderBeforeNextPacket()
+      throws Exception {
+    byte[] data =
+        Bytes.concat(
+            createPacket(
+                ADAPTATION_FIELD_CONTROL_PAYLOAD_ONLY,
+                /* continuityCounter= */ 0,
+                createPayload(/* value= */ 1, /* length= */ 184)),
+            createPacket(
+                ADAPTATION_FIELD_CONTROL_PAYLOAD_ONLY,
+                /* continuityCounter= */ 1,
+                createPayload(/* value= */ 2, /* length= */ 184)),
+            createPacket(
+                ADAPTATION_FIELD_CONTROL_PAYLOAD_ONLY,
+                /* continuityCounter= */ 3,
+                createPayload(/* value= */ 3, /* length= */ 184)),
+            // A duplicate packet, which is dropped.
+            createPacket(
+                ADAPTATION_FIELD_CONTROL_PAYLOAD_ONLY,
+                /* continuityCounter= */ 3,
+                createPayload(/* value= */ 3, /* length= */ 184)));
+
+    RecordingPayloadReader payloadReader = extract(data);
+
+    assertThat(payloadReader.events)
+        .containsExactly("consume", "consume", "seek", "consume")
+        .inOrder();
+  }
+
+  @Test
+  public void read_interleavedPids_tracksContinuityCounterPerPid() throws Exception {
+    byte[] data =
+        Bytes.concat(
+            createPacket(
+                PID,
+                ADAPTATION_FIELD_CONTROL_PAYLOAD_ONLY,
+                /* continuityCounter= */ 0,
+                createPayload(/* value= */ 1, /* length= */ 184)),
+            createPacket(
+                MAX_PID,
+                ADAPTATION_FIELD_CONTROL_PAYLOAD_ONLY,
+                /* continuityCounter= */ 7,
+                createPayload(/* value= */ 2, /* length= */ 184)),
+            createPacket(
+                PID,
+                ADAPTATION_FIELD_CONTROL_PAYLOAD_ONLY,
+                /* continuityCounter= */ 1,
+                createPayload(/* value= */ 3, /* length= */ 184)),
+            // A gap in the continuity counter of MAX_PID only.
+            createPacket(
+                MAX_PID,
+                ADAPTATION_FIELD_CONTROL_PAYLOAD_ONLY,
+                /* continuityCounter= */ 9,
+                createPayload(/* value= */ 4, /* length= */ 184)));
+    RecordingPayloadReader payloadReader = new RecordingPayloadReader();
+    RecordingPayloadReader maxPidPayloadReader = new RecordingPayloadReader();
+    SparseArray<TsPayloadReader> payloadReaders = new SparseArray<>();
+    payloadReaders.put(PID, payloadReader);
+    payloadReaders.put(MAX_PID, maxPidPayloadReader);
+
+    extract(data, payloadReaders);
+
+    assertThat(payloadReader.events).containsExactly("consume", "consume").inOrder();
+    assertThat(payloadReader.payloads.get(1)).isEqualTo(createPayload(/* value= */ 3, 184));
+    assertThat(maxPidPayloadReader.events).containsExactly("consume", "seek", "consume").inOrder();
+    assertThat(maxPidPayloadReader.payloads.get(1)).isEqualTo(createPayload(/* value= */ 4, 184));
+  }
+
+  /** Extracts the data, and returns the payload reader of {@link #PID}. */
+  private static RecordingPayloadReader extract(byte[] data) throws Exception {
+    RecordingPayloadReader payloadReader = new RecordingPayloadReader();
+    SparseArray<TsPayloadReader> payloadReaders = new SparseArray<>();
+    payloadReaders.put(PID, payloadReader);
+    extract(data, payloadReaders);
+    return payloadReader;
+  }
+
+  /** Extracts the data with the given payload readers, keyed by PID. */
+  private static void extract(byte[] data, SparseArray<TsPayloadReader> initialPayloadReaders)
+      throws Exception {
+    TsExtractor tsExtractor =
+        new TsExtractor(
+            TsExtractor.MODE_SINGLE_PMT,
+            new TimestampAdjuster(/* firstSampleTimestampUs= */ 0),
+            new TsPayloadReader.Factory() {
+              @Override
+              public SparseArray<TsPayloadReader> createInitialPayloadReaders() {
+                return initialPayloadReaders;
+              }
+
+              @Nullable
+              @Override
+              public TsPayloadReader createPayloadReader(int streamType, EsInfo esInfo) {
+                return null;
+              }
+            });
+    tsExtractor.init(new FakeExtractorOutput());
+    FakeExtractorInput input = new FakeExtractorInput.Builder().setData(data).build();
+    PositionHolder seekPositionHolder = new PositionHolder();
+    while (tsExtractor.read(input, seekPositionHolder) != Extractor.RESULT_END_OF_INPUT) {}
+  }
+
+  /** Returns a TS packet of {@link #PID} without the payload unit start indicator. */
+  private static byte[] createPacket(
+      int adaptationFieldControl, int continuityCounter, byte[] packetData) {
+    return createPacket(PID, adaptationFieldControl, continuityCounter, packetData);
+  }
+
+  /** Returns a TS packet without the payload unit start indicator. */
+  private static byte[] createPacket(
+      int pid, int adaptationFieldControl, int continuityCounter, byte[] packetData) {
+    byte[] packet = new byte[TS_PACKET_SIZE];
+    packet[0] = TsExtractor.TS_SYNC_BYTE;
+    packet[1] = (byte) (pid >> 8);
+    packet[2] = (byte) pid;
+    packet[3] = (byte) (adaptationFieldControl << 4 | continuityCounter);
+    System.arraycopy(packetData, 0, packet, 4, packetData.length);
+    return packet;
+  }
+
+  private static byte[] createPayload(int value, int length) {
+    byte[] payload = new byte[length];
+    Arrays.fill(payload, (byte) value);
+    return payload;
+  }
+
+  /** A {@link TsPayloadReader} that records the payloads it consumes. */
+  private static final class RecordingPayloadReader implements TsPayloadReader {
+
+    public final List<String> events;
+    public final List<byte[]> payloads;
+    public final List<Integer> flags;
+
+    public RecordingPayloadReader() {
+      events = new ArrayList<>();
+      payloads = new ArrayList<>();
+      flags = new ArrayList<>();
+    }
+
+    @Override
+    public void init(
+        TimestampAdjuster timestampAdjuster,
+        ExtractorOutput extractorOutput,
+        TrackIdGenerator idGenerator) {}
+
+    @Override
+    public void seek() {
+      events.add("seek");
+    }
+
+    @Override
+    public void consume(ParsableByteArray data, @Flags int flags) {
+      byte[] payload = new byte[data.bytesLeft()];
+      data.readBytes(payload, /* offset= */ 0, payload.length);
+      events.add("consume");
+      payloads.add(payload);
+      this.flags.add(flags);
+    }
+  }
+}
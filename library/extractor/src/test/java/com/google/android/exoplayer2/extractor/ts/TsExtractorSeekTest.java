@@ -24,6 +24,8 @@ import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorInput;
 import com.google.android.exoplayer2.extractor.PositionHolder;
 import com.google.android.exoplayer2.extractor.SeekMap;
+import com.google.android.exoplayer2.testutil.FakeDataSet;
+import com.google.android.exoplayer2.testutil.FakeDataSource;
 import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
 import com.google.android.exoplayer2.testutil.FakeTrackOutput;
 import com.google.android.exoplayer2.testutil.TestUtil;
@@ -118,6 +120,50 @@ public final class TsExtractorSeekTest {
         trackOutput, targetSeekTimeUs, extractedFrameIndex);
   }
 
+  @Test
+  public void handlePendingSeek_afterPreviousSeek_opensFewerConnections() throws IOException {
+    Uri fileUri = TestUtil.buildAssetUri(TEST_FILE);
+    FakeDataSource fakeDataSource =
+        new FakeDataSource(
+            new FakeDataSet()
+                .setData(
+                    fileUri,
+                    TestUtil.getByteArray(ApplicationProvider.getApplicationContext(), TEST_FILE)));
+    long firstSeekTimeUs = 100_000;
+    long targetSeekTimeUs = 150_000;
+
+    TsExtractor freshExtractor = new TsExtractor();
+    FakeExtractorOutput freshExtractorOutput = new FakeExtractorOutput();
+    SeekMap freshSeekMap =
+        TestUtil.extractSeekMap(freshExtractor, freshExtractorOutput, fakeDataSource, fileUri);
+    fakeDataSource.getAndClearOpenedDataSpecs();
+    TestUtil.seekToTimeUs(
+        freshExtractor,
+        freshSeekMap,
+        targetSeekTimeUs,
+        fakeDataSource,
+        freshExtractorOutput.trackOutputs.get(AUDIO_TRACK_ID),
+        fileUri);
+    int freshOpenCount = fakeDataSource.getAndClearOpenedDataSpecs().length;
+
+    TsExtractor extractor = new TsExtractor();
+    FakeExtractorOutput extractorOutput = new FakeExtractorOutput();
+    SeekMap seekMap = TestUtil.extractSeekMap(extractor, extractorOutput, fakeDataSource, fileUri);
+    FakeTrackOutput trackOutput = extractorOutput.trackOutputs.get(AUDIO_TRACK_ID);
+    TestUtil.seekToTimeUs(
+        extractor, seekMap, firstSeekTimeUs, fakeDataSource, trackOutput, fileUri);
+    fakeDataSource.getAndClearOpenedDataSpecs();
+    int extractedFrameIndex =
+        TestUtil.seekToTimeUs(
+            extractor, seekMap, targetSeekTimeUs, fakeDataSource, trackOutput, fileUri);
+    int openCount = fakeDataSource.getAndClearOpenedDataSpecs().length;
+
+    assertThat(extractedFrameIndex).isNotEqualTo(-1);
+    assertFirstFrameAfterSeekContainTargetSeekTime(
+        trackOutput, targetSeekTimeUs, extractedFrameIndex);
+    assertThat(openCount).isLessThan(freshOpenCount);
+  }
+
   @Test
   public void handlePendingSeek_handlesSeekingBackward_extractsCorrectFrame() throws IOException {
     TsExtractor extractor = new TsExtractor();
@@ -26,6 +26,7 @@ import com.google.android.exoplayer2.Format;
 import com.google.android.exoplayer2.extractor.Extractor;
 import com.google.android.exoplayer2.extractor.ExtractorOutput;
 import com.google.android.exoplayer2.extractor.PositionHolder;
+import com.google.android.exoplayer2.extractor.SeekMap;
 import com.google.android.exoplayer2.extractor.TrackOutput;
 import com.google.android.exoplayer2.extractor.ts.TsPayloadReader.EsInfo;
 import com.google.android.exoplayer2.extractor.ts.TsPayloadReader.TrackIdGenerator;
@@ -34,9 +35,13 @@ import com.google.android.exoplayer2.testutil.FakeExtractorInput;
 import com.google.android.exoplayer2.testutil.FakeExtractorOutput;
 import com.google.android.exoplayer2.testutil.FakeTrackOutput;
 import com.google.android.exoplayer2.testutil.TestUtil;
+import com.google.android.exoplayer2.upstream.DataReader;
 import com.google.android.exoplayer2.util.ParsableByteArray;
 import com.google.android.exoplayer2.util.TimestampAdjuster;
 import com.google.common.collect.ImmutableList;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.ParameterizedRobolectricTestRunner;
@@ -146,6 +151,85 @@ public final class TsExtractorTest {
     ExtractorAsserts.assertBehavior(TsExtractor::new, "media/ts/sample_latm.ts", simulationConfig);
   }
 
+  @Test
+  public void sampleWithMultiplePrograms() throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () ->
+            new TsExtractor(
+                TsExtractor.MODE_MULTI_PMT,
+                /* defaultTsPayloadReaderFlags= */ 0,
+                TsExtractor.DEFAULT_TIMESTAMP_SEARCH_BYTES),
+        "media/ts/sample_two_programs.ts",
+        simulationConfig);
+  }
+
+  @Test
+  public void sampleWithMultiplePrograms_withParallelDemuxing_outputsSameSamples()
+      throws Exception {
+    ExtractorAsserts.assertBehavior(
+        () -> {
+          TsExtractor tsExtractor =
+              new TsExtractor(
+                  TsExtractor.MODE_MULTI_PMT,
+                  /* defaultTsPayloadReaderFlags= */ 0,
+                  TsExtractor.DEFAULT_TIMESTAMP_SEARCH_BYTES);
+          tsExtractor.experimentalSetParallelDemuxingEnabled(true);
+          return tsExtractor;
+        },
+        "media/ts/sample_two_programs.ts",
+        simulationConfig);
+  }
+
+  @Test
+  public void sampleWithMultiplePrograms_withParallelDemuxing_callsTrackOutputsOnLoadingThread()
+      throws Exception {
+    TsExtractor tsExtractor =
+        new TsExtractor(
+            TsExtractor.MODE_MULTI_PMT,
+            /* defaultTsPayloadReaderFlags= */ 0,
+            TsExtractor.DEFAULT_TIMESTAMP_SEARCH_BYTES);
+    tsExtractor.experimentalSetParallelDemuxingEnabled(true);
+    FakeExtractorInput input =
+        new FakeExtractorInput.Builder()
+            .setData(
+                TestUtil.getByteArray(
+                    ApplicationProvider.getApplicationContext(), "media/ts/sample_two_programs.ts"))
+            .build();
+    FakeExtractorOutput fakeExtractorOutput = new FakeExtractorOutput();
+    Set<Thread> trackOutputThreads = new HashSet<>();
+    tsExtractor.init(
+        new ExtractorOutput() {
+          @Override
+          public TrackOutput track(int id, int type) {
+            return new ThreadRecordingTrackOutput(
+                fakeExtractorOutput.track(id, type), trackOutputThreads);
+          }
+
+          @Override
+          public void endTracks() {
+            fakeExtractorOutput.endTracks();
+          }
+
+          @Override
+          public void seekMap(SeekMap seekMap) {
+            fakeExtractorOutput.seekMap(seekMap);
+          }
+        });
+
+    PositionHolder seekPositionHolder = new PositionHolder();
+    int readResult = Extractor.RESULT_CONTINUE;
+    while (readResult != Extractor.RESULT_END_OF_INPUT) {
+      readResult = tsExtractor.read(input, seekPositionHolder);
+      if (readResult == Extractor.RESULT_SEEK) {
+        input.setPosition((int) seekPositionHolder.position);
+      }
+    }
+    tsExtractor.release();
+
+    assertThat(fakeExtractorOutput.numberOfTracks).isEqualTo(2);
+    assertThat(trackOutputThreads).containsExactly(Thread.currentThread());
+  }
+
   @Test
   public void streamWithJunkData() throws Exception {
     ExtractorAsserts.assertBehavior(
@@ -216,6 +300,55 @@ public final class TsExtractorTest {
     assertThat(factory.sdtReader.consumedSdts).isEqualTo(2);
   }
 
+  /** A {@link TrackOutput} that records the threads on which it's called. */
+  private static final class ThreadRecordingTrackOutput implements TrackOutput {
+
+    private final TrackOutput trackOutput;
+    private final Set<Thread> threads;
+
+    public ThreadRecordingTrackOutput(TrackOutput trackOutput, Set<Thread> threads) {
+      this.trackOutput = trackOutput;
+      this.threads = threads;
+    }
+
+    @Override
+    public void format(Format format) {
+      recordThread();
+      trackOutput.format(format);
+    }
+
+    @Override
+    public int sampleData(
+        DataReader input, int length, boolean allowEndOfInput, @SampleDataPart int sampleDataPart)
+        throws IOException {
+      recordThread();
+      return trackOutput.sampleData(input, length, allowEndOfInput, sampleDataPart);
+    }
+
+    @Override
+    public void sampleData(ParsableByteArray data, int length, @SampleDataPart int sampleDataPart) {
+      recordThread();
+      trackOutput.sampleData(data, length, sampleDataPart);
+    }
+
+    @Override
+    public void sampleMetadata(
+        long timeUs,
+        @C.BufferFlags int flags,
+        int size,
+        int offset,
+        @Nullable CryptoData cryptoData) {
+      recordThread();
+      trackOutput.sampleMetadata(timeUs, flags, size, offset, cryptoData);
+    }
+
+    private void recordThread() {
+      synchronized (threads) {
+        threads.add(Thread.currentThread());
+      }
+    }
+  }
+
   private static final class CustomTsPayloadReaderFactory implements TsPayloadReader.Factory {
 
     private final boolean provideSdtReader;
@@ -53,6 +53,7 @@ public class TestExoPlayerBuilder {
   private long seekBackIncrementMs;
   private long seekForwardIncrementMs;
   private boolean deviceVolumeControlEnabled;
+  private boolean dynamicSchedulingEnabled;
 
   public TestExoPlayerBuilder(Context context) {
     this.context = context;
@@ -67,6 +68,7 @@ public class TestExoPlayerBuilder {
     seekBackIncrementMs = C.DEFAULT_SEEK_BACK_INCREMENT_MS;
     seekForwardIncrementMs = C.DEFAULT_SEEK_FORWARD_INCREMENT_MS;
     deviceVolumeControlEnabled = false;
+    dynamicSchedulingEnabled = false;
   }
 
   /**
@@ -294,6 +296,20 @@ public class TestExoPlayerBuilder {
     return this;
   }
 
+  /**
+   * Sets whether the playback loop is scheduled dynamically. See {@link
+   * ExoPlayer.Builder#experimentalSetDynamicSchedulingEnabled(boolean)}.
+   *
+   * @param dynamicSchedulingEnabled Whether dynamic scheduling is enabled.
+   * @return This builder.
+   */
+  @CanIgnoreReturnValue
+  public TestExoPlayerBuilder experimentalSetDynamicSchedulingEnabled(
+      boolean dynamicSchedulingEnabled) {
+    this.dynamicSchedulingEnabled = dynamicSchedulingEnabled;
+    return this;
+  }
+
   /** Returns the seek forward increment used by the player. */
   public long getSeekForwardIncrementMs() {
     return seekForwardIncrementMs;
@@ -335,7 +351,8 @@ public class TestExoPlayerBuilder {
             .setLooper(looper)
             .setSeekBackIncrementMs(seekBackIncrementMs)
             .setSeekForwardIncrementMs(seekForwardIncrementMs)
-            .setDeviceVolumeControlEnabled(deviceVolumeControlEnabled);
+            .setDeviceVolumeControlEnabled(deviceVolumeControlEnabled)
+            .experimentalSetDynamicSchedulingEnabled(dynamicSchedulingEnabled);
     if (mediaSourceFactory != null) {
       builder.setMediaSourceFactory(mediaSourceFactory);
     }